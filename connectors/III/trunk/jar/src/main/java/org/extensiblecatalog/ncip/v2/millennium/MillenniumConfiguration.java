@@ -70,6 +70,10 @@ public class MillenniumConfiguration extends DefaultConnectorConfiguration {
     public final static String MILLENNIUM_AUTHENTICATION_TYPE_KEY = "MillenniumConfiguration.AuthenticationType";
     public final static String MILLENNIUM_AUTHENTICATION_TYPE_DEFAULT = "Both";
 
+    // In seconds; 0 (the default) turns off keeping the web opac sessions of patrons
+    public final static String MILLENNIUM_PATRON_SESSION_IDLE_TIME_KEY = "MillenniumConfiguration.PatronSessionIdleTime";
+    public final static String MILLENNIUM_PATRON_SESSION_IDLE_TIME_DEFAULT = "0";
+
     protected String url;
     protected int port;
     protected String libraryName;
@@ -88,6 +92,7 @@ public class MillenniumConfiguration extends DefaultConnectorConfiguration {
     protected String patronUserVariable;
     protected String patronPasswordVariable;
     protected MillenniumAuthenticationType authenticationType;
+    protected int patronSessionIdleTime;
 
     public MillenniumConfiguration() {
 
@@ -115,6 +120,7 @@ public class MillenniumConfiguration extends DefaultConnectorConfiguration {
         String patronUserVariableString = null;
         String patronPasswordVariableString = null;
         String authenticationTypeString = null;
+        String patronSessionIdleTimeString = null;
 
         urlString = getProperty(MILLENNIUM_URL_KEY, MILLENNIUM_URL_DEFAULT);
         portString = getProperty(MILLENNIUM_PORT_KEY, MILLENNIUM_PORT_DEFAULT);
@@ -137,6 +143,8 @@ public class MillenniumConfiguration extends DefaultConnectorConfiguration {
             MILLENNIUM_PATRON_PASSWORD_VARIABLE_DEFAULT);
         authenticationTypeString = getProperty(MILLENNIUM_AUTHENTICATION_TYPE_KEY,
             MILLENNIUM_AUTHENTICATION_TYPE_DEFAULT);
+        patronSessionIdleTimeString = getProperty(MILLENNIUM_PATRON_SESSION_IDLE_TIME_KEY,
+            MILLENNIUM_PATRON_SESSION_IDLE_TIME_DEFAULT);
 
         if ( urlString != null ) {
 
@@ -241,6 +249,12 @@ public class MillenniumConfiguration extends DefaultConnectorConfiguration {
 
         }
 
+        if ( patronSessionIdleTimeString != null ) {
+
+            this.patronSessionIdleTime = Integer.parseInt(patronSessionIdleTimeString.trim());
+
+        }
+
     }
 
 
@@ -383,4 +397,12 @@ public class MillenniumConfiguration extends DefaultConnectorConfiguration {
         this.authenticationType = authenticationType;
     }
 
+    public int getPatronSessionIdleTime() {
+        return patronSessionIdleTime;
+    }
+
+    public void setPatronSessionIdleTime(int patronSessionIdleTime) {
+        this.patronSessionIdleTime = patronSessionIdleTime;
+    }
+
 } 
\ No newline at end of file
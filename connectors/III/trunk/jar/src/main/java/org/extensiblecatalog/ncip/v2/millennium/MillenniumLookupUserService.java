@@ -132,7 +132,26 @@ public class MillenniumLookupUserService implements LookupUserService {
 				//String requestPage = "";
 				
 				htmlProperty authenticateStatus = null;
-				if ((authenticatedUserName.size() == getLDAPUserVarList.length) && (authenticatedUserPassword.size() == getLDAPPasswordVarList.length)) {
+				MillenniumPatronSessionCache patronSessionCache = millenniumSvcMgr.getPatronSessionCache();
+				String patronSessionKey = null;
+				boolean resumedSession = false;
+				if (patronSessionCache.isEnabled()) {
+					patronSessionKey = MillenniumPatronSessionCache.createKey(authenticatedUserName, authenticatedUserPassword);
+					MillenniumPatronSessionCache.PatronSession patronSession = patronSessionCache.get(patronSessionKey);
+					if (patronSession != null) {
+						authenticateStatus = millenniumSvcMgr.resumePatronSession(patronSession);
+						if (authenticateStatus.recordStatus.returnStatus) {
+							authUserName = patronSession.authUserName;
+							foundLDAPUser = patronSession.ldapUser;
+							foundPatronUser = !patronSession.ldapUser;
+							resumedSession = true;
+							LOG.debug("LookupUser - Resumed the session of the patron");
+						} else {
+							patronSessionCache.remove(patronSessionKey);
+						}
+					}
+				}
+				if ((resumedSession == false) && (authenticatedUserName.size() == getLDAPUserVarList.length) && (authenticatedUserPassword.size() == getLDAPPasswordVarList.length)) {
 					for (int x = 0; x < authenticatedUserName.size(); x++) {
 						//LOG.debug("User pair: " + getLDAPUserVarList[x] + ", " + authenticatedUserName.get(x));
 						PairGroup userPair = millenniumSvcMgr.setPairGroup(getLDAPUserVarList[x], authenticatedUserName.get(x));	
@@ -153,7 +172,7 @@ public class MillenniumLookupUserService implements LookupUserService {
 					}
 				}	
 				//LOG.debug("2 - FoundLDAPUser: " + foundLDAPUser);
-				if ((foundLDAPUser == false) && ((authenticatedUserName.size() == getPatronUserVarList.length) && (authenticatedUserPassword.size() == getPatronPasswordVarList.length))) {
+				if ((resumedSession == false) && (foundLDAPUser == false) && ((authenticatedUserName.size() == getPatronUserVarList.length) && (authenticatedUserPassword.size() == getPatronPasswordVarList.length))) {
 					testAuthUser = new ArrayList<PairGroup>();
 					testAuthPass = new ArrayList<PairGroup>();
 					for (int x = 0; x < authenticatedUserName.size(); x++) {
@@ -174,6 +193,11 @@ public class MillenniumLookupUserService implements LookupUserService {
 					}
 				}
 					
+				if ((resumedSession == false) && (foundLDAPUser || foundPatronUser) && (patronSessionKey != null)) {
+					patronSessionCache.put(patronSessionKey, new MillenniumPatronSessionCache.PatronSession(authenticateStatus.sessionId,
+							authenticateStatus.userid, authenticateStatus.pageItem, foundLDAPUser, authUserName));
+				}
+
 				if (foundLDAPUser || foundPatronUser) {
 					//UserOptionalFields userOptionalFields = new UserOptionalFields();
 
@@ -204,9 +228,12 @@ public class MillenniumLookupUserService implements LookupUserService {
 						getOverdues = true;
 					}
 					LOG.debug("LookupUser - Found - Items: " + getItems + ". Holds: " + getHolds + ". Overdues: " + getOverdues);
+					// The pages do not depend on each other, so get them at the same time
+					StatusString[] getPagesStatus = millenniumSvcMgr.getAuthenticationItemsPages(authenticatedUserId, strSessionId,
+							getItems ? "items" : null, getOverdues ? "overdues" : null, getHolds ? "holds" : null);
 					if (getItems) {
 						LOG.debug("LookupUser - Found Items Currently Checked out");
-						StatusString getItemsStatus = millenniumSvcMgr.getAuthenticationItemsPage(authenticatedUserId, strSessionId, "items");
+						StatusString getItemsStatus = getPagesStatus[0];
 						if (getItemsStatus.recordStatus.returnStatus) {
 							LOG.debug("LookupUser - Success received items page. HTML char: " + getItemsStatus.statusValue.length());
 							ArrayList<AuthenticationItemsInfo> itemsCheckedOutList = null;//millenniumSvcMgr.getItemsCheckedOut(authenticatedUserId, strSessionId, "items");
@@ -258,7 +285,7 @@ public class MillenniumLookupUserService implements LookupUserService {
 										
 					if (getOverdues) {
 						LOG.debug("LookupUser - Found Items Overdues");
-						StatusString getOverduesStatus = millenniumSvcMgr.getAuthenticationItemsPage(authenticatedUserId, strSessionId, "overdues");
+						StatusString getOverduesStatus = getPagesStatus[1];
 						if (getOverduesStatus.recordStatus.returnStatus) {
 							LOG.debug("LookupUser - Success received overdues page. HTML char: " + getOverduesStatus.statusValue.length());
 							ArrayList<AuthenticationItemsInfo> itemsOverduesList = null; //millenniumSvcMgr.getItemsOverdues (authenticatedUserId, strSessionId, "overdues");
@@ -343,7 +370,7 @@ public class MillenniumLookupUserService implements LookupUserService {
 									
 					if (getHolds) {
 						LOG.debug("LookupUser - Found Items Holds");
-						StatusString getHoldsStatus = millenniumSvcMgr.getAuthenticationItemsPage(authenticatedUserId, strSessionId, "holds");
+						StatusString getHoldsStatus = getPagesStatus[2];
 						if (getHoldsStatus.recordStatus.returnStatus) {
 							LOG.debug("LookupUser - Success received holds page. HTML char: " + getHoldsStatus.statusValue.length());
 							ArrayList<AuthenticationItemsInfo> itemsHoldsList = null; //millenniumSvcMgr.getItemsHolds (authenticatedUserId, strSessionId, "holds");
@@ -478,10 +505,14 @@ public class MillenniumLookupUserService implements LookupUserService {
 		// 			"Services is not support", null, "Services is not support!");
 		//} // if (foundService)
 		
+        MillenniumPatronSessionCache patronSessionCache = millenniumSvcMgr.getPatronSessionCache();
         if ( problems != null ) {
         	responseData.setProblems(problems);
         	
             if (foundLDAPUser || foundPatronUser) {
+            	if (patronSessionCache.isEnabled()) {
+            		patronSessionCache.remove(MillenniumPatronSessionCache.createKey(authenticatedUserName, authenticatedUserPassword));
+            	}
             	baseUrl = "https://" + IIIClassicBaseUrl + "/logout";
             	millenniumSvcMgr.LogOut(baseUrl); 	
             }
@@ -499,8 +530,11 @@ public class MillenniumLookupUserService implements LookupUserService {
 			}
 			responseData.setUserId(user);
 			
-			baseUrl = "https://" + IIIClassicBaseUrl + "/logout";
-        	millenniumSvcMgr.LogOut(baseUrl);
+			// The session is kept for the next lookup of the patron
+			if (!patronSessionCache.isEnabled()) {
+				baseUrl = "https://" + IIIClassicBaseUrl + "/logout";
+				millenniumSvcMgr.LogOut(baseUrl);
+			}
 			
         	return responseData;
         }
@@ -0,0 +1,165 @@
+/**
+ * Copyright (c) 2012 eXtensible Catalog Organization
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the MIT/X11 license. The text of the license can be
+ * found at http://www.opensource.org/licenses/mit-license.php.
+ */
+
+package org.extensiblecatalog.ncip.v2.millennium;
+
+import java.io.UnsupportedEncodingException;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.extensiblecatalog.ncip.v2.millennium.MillenniumRemoteServiceManager.PairGroup;
+
+/**
+ * MillenniumPatronSessionCache keeps the web opac sessions of patrons who logged in, so that their next lookups can
+ * reuse the session instead of logging in again, which takes three requests to the web opac.
+ * 
+ * Sessions are kept under an HMAC of the user name(s) and password(s) the patron logged in with, so a session is
+ * only reused for a request with the same credentials. The HMAC key is random and only kept in memory, so neither
+ * the credentials nor a hash of them that could be attacked offline are kept. A session that
+ * has not been used for the idle time is dropped, as the web opac would have ended it by then.
+ */
+public class MillenniumPatronSessionCache {
+
+	/**
+	 * The maximum number of sessions kept; when the cache is full, sessions of new logins are not kept.
+	 */
+	public static final int MAX_SESSIONS = 10000;
+
+	private static final String KEY_ALGORITHM = "HmacSHA256";
+
+	/**
+	 * The key of the HMAC of the credentials, chosen at random for each process.
+	 */
+	private static final SecretKeySpec credentialsKey;
+
+	static {
+		byte[] keyBytes = new byte[32];
+		new SecureRandom().nextBytes(keyBytes);
+		credentialsKey = new SecretKeySpec(keyBytes, KEY_ALGORITHM);
+	}
+
+	public static class PatronSession {
+		public final String sessionId;
+		public final String userId;
+		public final String pageItem;
+		public final boolean ldapUser;
+		public final ArrayList<PairGroup> authUserName;
+		private volatile long lastUsed;
+
+		public PatronSession(String sessionId, String userId, String pageItem, boolean ldapUser, ArrayList<PairGroup> authUserName) {
+			this.sessionId = sessionId;
+			this.userId = userId;
+			this.pageItem = pageItem;
+			this.ldapUser = ldapUser;
+			this.authUserName = authUserName;
+			this.lastUsed = System.currentTimeMillis();
+		}
+	}
+
+	private final ConcurrentHashMap<String, PatronSession> sessions = new ConcurrentHashMap<String, PatronSession>();
+
+	private volatile long idleTime;
+
+	/**
+	 * @param idleTime
+	 *            the time in milliseconds after which an unused session is dropped; if zero or less, no sessions are
+	 *            kept
+	 */
+	public MillenniumPatronSessionCache(long idleTime) {
+		this.idleTime = idleTime;
+	}
+
+	public boolean isEnabled() {
+		return idleTime > 0;
+	}
+
+	/**
+	 * Returns the session for the credentials, or null if there is none or it has been idle for too long.
+	 */
+	public PatronSession get(String key) {
+		PatronSession session = sessions.get(key);
+		if (session != null) {
+			long now = System.currentTimeMillis();
+			if (now - session.lastUsed > idleTime) {
+				sessions.remove(key, session);
+				session = null;
+			} else {
+				session.lastUsed = now;
+			}
+		}
+		return session;
+	}
+
+	public void put(String key, PatronSession session) {
+		if (isEnabled()) {
+			purgeIdleSessions();
+			if (sessions.size() < MAX_SESSIONS) {
+				sessions.put(key, session);
+			}
+		}
+	}
+
+	public void remove(String key) {
+		sessions.remove(key);
+	}
+
+	private void purgeIdleSessions() {
+		long now = System.currentTimeMillis();
+		Iterator<PatronSession> iterator = sessions.values().iterator();
+		while (iterator.hasNext()) {
+			if (now - iterator.next().lastUsed > idleTime) {
+				iterator.remove();
+			}
+		}
+	}
+
+	public long getIdleTime() {
+		return idleTime;
+	}
+
+	public void setIdleTime(long idleTime) {
+		this.idleTime = idleTime;
+	}
+
+	/**
+	 * Creates the key of the session from the credentials of the patron - an HMAC-SHA256 of them under the
+	 * per-process random key.
+	 */
+	public static String createKey(List<String> userNames, List<String> passwords) {
+		try {
+			// Mac instances are not thread safe, so each key is computed with a new one
+			Mac mac = Mac.getInstance(KEY_ALGORITHM);
+			mac.init(credentialsKey);
+			for (String userName : userNames) {
+				mac.update(userName.getBytes("UTF-8"));
+				mac.update((byte) 0);
+			}
+			mac.update((byte) 1);
+			for (String password : passwords) {
+				mac.update(password.getBytes("UTF-8"));
+				mac.update((byte) 0);
+			}
+			StringBuilder key = new StringBuilder();
+			for (byte b : mac.doFinal()) {
+				key.append(Integer.toHexString((b & 0xff) | 0x100).substring(1));
+			}
+			return key.toString();
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException(e);
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
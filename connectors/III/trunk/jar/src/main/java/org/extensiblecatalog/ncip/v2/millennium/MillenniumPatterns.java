@@ -0,0 +1,157 @@
+/**
+ * Copyright (c) 2012 eXtensible Catalog Organization
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the MIT/X11 license. The text of the license can be
+ * found at http://www.opensource.org/licenses/mit-license.php.
+ */
+
+package org.extensiblecatalog.ncip.v2.millennium;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * MillenniumPatterns compiles each of the patterns used for screen scraping the web opac only once and keeps it
+ * for the following requests; compiled Patterns are thread-safe.
+ * 
+ * The patterns look like {@code ^(.*?)<!-- field % -->(.*?)</td></tr>$} and are tried one after the other on the
+ * whole html page until one of them is found. Most of the time is spent in the patterns that are not found, as the
+ * matcher tries each line of the page (or with (?s), each position after it) before giving up. So the plain text
+ * parts of each pattern, such as {@code <!-- field % -->}, are noted when it is compiled and the page is first
+ * searched for them, which takes a single pass; if any of them is missing the pattern cannot be found and the
+ * matcher is not run at all.
+ */
+public class MillenniumPatterns {
+
+	public static final int FLAGS = Pattern.MULTILINE + Pattern.CASE_INSENSITIVE;
+
+	/**
+	 * Patterns built from configuration values are cached too, but no more than this many patterns are kept.
+	 */
+	private static final int MAX_CACHED_PATTERNS = 512;
+
+	private static final ConcurrentHashMap<String, CompiledPattern> patterns = new ConcurrentHashMap<String, CompiledPattern>();
+
+	private static class CompiledPattern {
+		final Pattern pattern;
+		final String[] requiredText;
+
+		CompiledPattern(String regex) {
+			this.pattern = Pattern.compile(regex, FLAGS);
+			this.requiredText = findRequiredText(regex);
+		}
+	}
+
+	private MillenniumPatterns() {
+	}
+
+	/**
+	 * Returns the compiled pattern, with the flags used throughout the Millennium connector.
+	 */
+	public static Pattern compile(String regex) {
+		return getCompiledPattern(regex).pattern;
+	}
+
+	/**
+	 * Returns a matcher of the compiled pattern for the input. If the input lacks any text the pattern requires,
+	 * the matcher is for an empty input instead, so that find() returns false without searching the page.
+	 */
+	public static Matcher matcher(String regex, CharSequence input) {
+		CompiledPattern compiledPattern = getCompiledPattern(regex);
+		for (String text : compiledPattern.requiredText) {
+			if (!containsIgnoreCase(input, text)) {
+				return compiledPattern.pattern.matcher("");
+			}
+		}
+		return compiledPattern.pattern.matcher(input);
+	}
+
+	/**
+	 * Returns the last position in the input where a match of the pattern could start, which is where the last of
+	 * the text the pattern requires that is found the earliest in the input begins. Once a match ends after this
+	 * position, there is no need for another find(), which would otherwise try every line left in the page. Returns
+	 * the length of the input if the pattern requires no text & -1 if any of it is missing.
+	 */
+	public static int lastPossibleStart(String regex, CharSequence input) {
+		String inputString = input.toString();
+		int lastStart = inputString.length();
+		for (String text : getCompiledPattern(regex).requiredText) {
+			int index = lastIndexOfIgnoreCase(inputString, text);
+			if (index < lastStart) {
+				lastStart = index;
+			}
+		}
+		return lastStart;
+	}
+
+	private static CompiledPattern getCompiledPattern(String regex) {
+		CompiledPattern compiledPattern = patterns.get(regex);
+		if (compiledPattern == null) {
+			compiledPattern = new CompiledPattern(regex);
+			if (patterns.size() < MAX_CACHED_PATTERNS) {
+				CompiledPattern existing = patterns.putIfAbsent(regex, compiledPattern);
+				if (existing != null) {
+					compiledPattern = existing;
+				}
+			}
+		}
+		return compiledPattern;
+	}
+
+	/**
+	 * Splits the pattern at the lazy groups, inline flags and anchors and returns the parts that are plain text. Any
+	 * part with another regular expression construct in it is left out, as is everything if the pattern has an
+	 * alternation, since then no part is certain to be required.
+	 */
+	static String[] findRequiredText(String regex) {
+		List<String> requiredText = new ArrayList<String>();
+		if (regex.indexOf('|') < 0) {
+			for (String part : regex.split("\\(\\.\\*\\?\\)|\\(\\?s\\)|\\^|\\$")) {
+				if (part.length() > 0 && !hasMetaCharacters(part)) {
+					requiredText.add(part);
+				}
+			}
+		}
+		return requiredText.toArray(new String[requiredText.size()]);
+	}
+
+	private static boolean hasMetaCharacters(String part) {
+		for (int i = 0; i < part.length(); i++) {
+			if ("\\[](){}.*+?^$|".indexOf(part.charAt(i)) >= 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	static boolean containsIgnoreCase(CharSequence input, String text) {
+		String inputString = input.toString();
+		int last = inputString.length() - text.length();
+		for (int i = 0; i <= last; i++) {
+			if (matchesIgnoreCase(inputString, i, text)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	static int lastIndexOfIgnoreCase(String input, String text) {
+		for (int i = input.length() - text.length(); i >= 0; i--) {
+			if (matchesIgnoreCase(input, i, text)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static boolean matchesIgnoreCase(String input, int offset, String text) {
+		char c = input.charAt(offset);
+		char first = text.charAt(0);
+		return (c == first || Character.toUpperCase(c) == Character.toUpperCase(first) || Character.toLowerCase(c) == Character.toLowerCase(first))
+				&& input.regionMatches(true, offset, text, 0, text.length());
+	}
+}
@@ -25,8 +25,15 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * MillenniumRemoteServiceManager is responsible for locating the correct back-end service;  
@@ -50,7 +57,34 @@ public class MillenniumRemoteServiceManager implements RemoteServiceManager {
 	/**
 	 * HttpClient used for screen scraping the web opac
 	 */
-	private HttpClient client = new HttpClient(new MultiThreadedHttpConnectionManager());
+	private HttpClient client = createHttpClient();
+
+	/**
+	 * The number of connections to the web opac the HttpClient opens at the same time
+	 */
+	private static final int MAX_CONNECTIONS_PER_HOST = 20;
+
+	/**
+	 * Threads fetching the pages of a patron at the same time; no more than there are connections to the web opac,
+	 * as further threads would only wait for a connection. Fetches beyond that wait in the queue.
+	 */
+	private static final ThreadPoolExecutor pageFetchExecutor = new ThreadPoolExecutor(MAX_CONNECTIONS_PER_HOST,
+			MAX_CONNECTIONS_PER_HOST, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+		private final AtomicInteger threadNumber = new AtomicInteger();
+
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "MillenniumPageFetch-" + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	static {
+		// Let the threads end when there are no pages to fetch
+		pageFetchExecutor.allowCoreThreadTimeOut(true);
+	}
+
+	private final MillenniumPatronSessionCache patronSessionCache;
 
     public MillenniumRemoteServiceManager() throws ToolkitException {
 
@@ -70,9 +104,22 @@ public class MillenniumRemoteServiceManager implements RemoteServiceManager {
       IIIClassicBaseUrl = MillenniumConfig.getURL();
       intPort = MillenniumConfig.getPort();
       SNo = MillenniumConfig.getSearchScope();
+      patronSessionCache = new MillenniumPatronSessionCache(MillenniumConfig.getPatronSessionIdleTime() * 1000L);
 
   }
 
+	private static HttpClient createHttpClient() {
+		MultiThreadedHttpConnectionManager connectionManager = new MultiThreadedHttpConnectionManager();
+		// The default of 2 connections per host would queue the pages fetched at the same time
+		connectionManager.getParams().setDefaultMaxConnectionsPerHost(MAX_CONNECTIONS_PER_HOST);
+		connectionManager.getParams().setMaxTotalConnections(100);
+		return new HttpClient(connectionManager);
+	}
+
+	public MillenniumPatronSessionCache getPatronSessionCache() {
+		return patronSessionCache;
+	}
+
     public MillenniumConfiguration buildConfiguration() {
         return MillenniumConfig;
     }
@@ -211,8 +258,8 @@ public class MillenniumRemoteServiceManager implements RemoteServiceManager {
 		StatusArrayString getItemListStatus = new StatusArrayString();
 		ArrayList <String> arraylistItemStatus = new ArrayList <String>();
 		//LOG.debug("getArrayListItemStatus - loolupPattern: " + lookupPattern);
-		Pattern findPattern = Pattern.compile(lookupPattern, Pattern.MULTILINE + Pattern.CASE_INSENSITIVE);
-		Matcher findPatternMatch = findPattern.matcher(html);
+		Matcher findPatternMatch = MillenniumPatterns.matcher(lookupPattern, html);
+		int lastPossibleStart = MillenniumPatterns.lastPossibleStart(lookupPattern, html);
 		String itemValue = "";
 		String itemValueFormat = "";
 		boolean itemFound = false;
@@ -302,6 +349,9 @@ public class MillenniumRemoteServiceManager implements RemoteServiceManager {
 			}
 			//LOG.debug("finalValue: " + finalValue);
 			arraylistItemStatus.add(finalValue);
+			if (findPatternMatch.end() > lastPossibleStart) {
+				break; // No other match is possible, so don't search the rest of the page
+			}
 		}
 		if (itemFound) {
 			iStatus.returnStatus = true;
@@ -348,9 +398,7 @@ public class MillenniumRemoteServiceManager implements RemoteServiceManager {
 		boolean locationFound = true;
 		
 		// Searching html to find if it has more additional copies of item status
-		Pattern additionCopyPattern = Pattern.compile("^(.*?)center><form method=(?s)(.*?)post(.*?)(?s)(.*?)action=(?s)(.*?)>(.*?)<input type(.*?)(?s)(.*?)submit(?s)(.*?)value=(?s)(.*?)/>$",
-				Pattern.MULTILINE + Pattern.CASE_INSENSITIVE);
-		Matcher additionalCopyPatternMatch = additionCopyPattern.matcher(html);
+		Matcher additionalCopyPatternMatch = MillenniumPatterns.matcher("^(.*?)center><form method=(?s)(.*?)post(.*?)(?s)(.*?)action=(?s)(.*?)>(.*?)<input type(.*?)(?s)(.*?)submit(?s)(.*?)value=(?s)(.*?)/>$", html);
 		String additionalLink = "";
 		String additionalStr = "";
 		String additionalhtml = "";
@@ -700,8 +748,7 @@ public class MillenniumRemoteServiceManager implements RemoteServiceManager {
 				"(.*?)</td>(?s)(.*?)<td(.*?)class=\"patFuncFinesDetailAmt\">(.*?)</td>$";
 		//String searchPattern = "^(.*?)<td(.*?)class=\"patFuncFinesTotalAmt\">(.*?)</em></td>$";
 		//LOG.debug("SearchingPattern: " + searchPattern);
-		Pattern iPattern = Pattern.compile(searchPattern, Pattern.MULTILINE + Pattern.CASE_INSENSITIVE);
-		Matcher iPatternMatch = iPattern.matcher(html);
+		Matcher iPatternMatch = MillenniumPatterns.matcher(searchPattern, html);
 
 		int i =0;
 		while (iPatternMatch.find()){
@@ -1638,26 +1685,25 @@ public class MillenniumRemoteServiceManager implements RemoteServiceManager {
 
 		GetMethod getMethod = null;
 		try {
-			synchronized (client) {
-				getMethod = new GetMethod(url);
-				getMethod.addRequestHeader("Cookie", "III_SESSION_ID=" + sessionId);
-				int statusCode = client.executeMethod(getMethod);
+			getMethod = new GetMethod(url);
+			getMethod.addRequestHeader("Cookie", "III_SESSION_ID=" + sessionId);
+			// A state of its own, so that no cookies of other patrons' requests are sent along
+			int statusCode = client.executeMethod(null, getMethod, new HttpState());
 
-				if (statusCode == 200) {
-					LOG.debug("getAuthenticationItemsPage for: (" + iLookup + ") - Success, statusCode(200).");
-					html = getMethod.getResponseBodyAsString();
-					iStatus.returnStatus = true;
-					iStatus.returnMsg = "MillenniumRemoteServiceManager-getAuthenticationItemsPage for: (" + iLookup + ") - Success";
-					getItempageStatus.recordStatus = iStatus;
-					getItempageStatus.statusValue = html;
-				} else // We could not get the page
-				{
-					LOG.debug("getAuthenticationItemsPage for: (" + iLookup + ") - False, statusCode (" + statusCode + ").");
-					iStatus.returnStatus = false;
-					iStatus.returnMsg = "MillenniumRemoteServiceManager-getAuthenticationItemsPage for: (" + iLookup + ") - False";
-					getItempageStatus.recordStatus = iStatus;
-					getItempageStatus.statusValue = html;
-				}
+			if (statusCode == 200) {
+				LOG.debug("getAuthenticationItemsPage for: (" + iLookup + ") - Success, statusCode(200).");
+				html = getMethod.getResponseBodyAsString();
+				iStatus.returnStatus = true;
+				iStatus.returnMsg = "MillenniumRemoteServiceManager-getAuthenticationItemsPage for: (" + iLookup + ") - Success";
+				getItempageStatus.recordStatus = iStatus;
+				getItempageStatus.statusValue = html;
+			} else // We could not get the page
+			{
+				LOG.debug("getAuthenticationItemsPage for: (" + iLookup + ") - False, statusCode (" + statusCode + ").");
+				iStatus.returnStatus = false;
+				iStatus.returnMsg = "MillenniumRemoteServiceManager-getAuthenticationItemsPage for: (" + iLookup + ") - False";
+				getItempageStatus.recordStatus = iStatus;
+				getItempageStatus.statusValue = html;
 			}
 		} catch (HttpException e) {
 			//e.printStackTrace();
@@ -1679,6 +1725,80 @@ public class MillenniumRemoteServiceManager implements RemoteServiceManager {
 		return getItempageStatus;
 	}
 	
+	/*
+	 * getAuthenticationItemsPages
+	 * Gets several AuthenticationItemsPages of the patron at the same time. A null iLookup is skipped & its page
+	 * is null in the returned array, which has the pages in the order of iLookups.
+	 */
+	public StatusString[] getAuthenticationItemsPages (final String userId, final String sessionId, String... iLookups) {
+		StatusString[] pages = new StatusString[iLookups.length];
+		ArrayList<Future<StatusString>> futures = new ArrayList<Future<StatusString>>();
+		int lastLookup = -1;
+		for (int x = 0; x < iLookups.length; x++) {
+			final String iLookup = iLookups[x];
+			if (iLookup != null) {
+				lastLookup = x;
+				futures.add(pageFetchExecutor.submit(new Callable<StatusString>() {
+					public StatusString call() {
+						return getAuthenticationItemsPage(userId, sessionId, iLookup);
+					}
+				}));
+			} else {
+				futures.add(null);
+			}
+		}
+		for (int x = 0; x <= lastLookup; x++) {
+			if (futures.get(x) != null) {
+				pages[x] = getPageFetched(futures.get(x), iLookups[x]);
+			}
+		}
+		return pages;
+	}
+
+	private StatusString getPageFetched (Future<StatusString> future, String iLookup) {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			future.cancel(true);
+		} catch (ExecutionException e) {
+			LOG.error("getAuthenticationItemsPages for: (" + iLookup + ") - Error!", e.getCause());
+		}
+		Status iStatus = new Status();
+		iStatus.returnStatus = false;
+		iStatus.returnMsg = "MillenniumRemoteServiceManager-getAuthenticationItemsPages for: (" + iLookup + ") - False";
+		StatusString getItempageStatus = new StatusString();
+		getItempageStatus.recordStatus = iStatus;
+		return getItempageStatus;
+	}
+
+	/*
+	 * resumePatronSession
+	 * Gets the page the patron was taken to after logging in once more, with the kept session. If the session is
+	 * still logged in, returns the same as Authenticate would; otherwise the returnStatus is false.
+	 */
+	public htmlProperty resumePatronSession (MillenniumPatronSessionCache.PatronSession patronSession) {
+		Status iStatus = new Status();
+		htmlProperty authenticateStatus = new htmlProperty();
+		StatusString pageStatus = getAuthenticationItemsPage(patronSession.userId, patronSession.sessionId, patronSession.pageItem);
+		// Pages of a logged in patron link to the patron's other pages
+		if (pageStatus.recordStatus.returnStatus && pageStatus.statusValue.contains("/patroninfo~" + SNo + "/" + patronSession.userId + "/")) {
+			iStatus.returnStatus = true;
+			iStatus.returnMsg = "MillenniumRemoteServiceManager-resumePatronSession - Success";
+			authenticateStatus.html = pageStatus.statusValue;
+		} else {
+			LOG.debug("resumePatronSession - The session of the patron has ended.");
+			iStatus.returnStatus = false;
+			iStatus.returnMsg = "MillenniumRemoteServiceManager-resumePatronSession - False";
+		}
+		authenticateStatus.recordStatus = iStatus;
+		authenticateStatus.sessionId = patronSession.sessionId;
+		authenticateStatus.userid = patronSession.userId;
+		authenticateStatus.pageItem = patronSession.pageItem;
+		authenticateStatus.url = "https://" + IIIClassicBaseUrl + "/patroninfo~" + SNo + "/" + patronSession.userId + "/" + patronSession.pageItem;
+		return authenticateStatus;
+	}
+
 	/*
 	 * 11/10/2011 @ 8:15 AM - Bach Nguyen - Added getItemsCheckedOut to get information about Items Currently Checked Out
 	 * It will look all brecord, Title, barcode, Status and Call number in received html page then put them into array list.
@@ -2595,8 +2715,7 @@ public class MillenniumRemoteServiceManager implements RemoteServiceManager {
 		String beginStr1 = null;
 		String endStr1 = null;
 		String lookupPattern = "^(.*?)[0-9][0-9]-[0-9][0-9]-[0-9][0-9](.*?)$";
-		Pattern findPattern = Pattern.compile(lookupPattern, Pattern.MULTILINE + Pattern.CASE_INSENSITIVE);
-		Matcher findPatternMatch = findPattern.matcher(ParseDate);
+		Matcher findPatternMatch = MillenniumPatterns.matcher(lookupPattern, ParseDate);
 
 		while (findPatternMatch.find()) {
 			beginStr1 = findPatternMatch.group(1).trim();
@@ -2629,8 +2748,7 @@ public class MillenniumRemoteServiceManager implements RemoteServiceManager {
 		//ParseDate = "DUE 03-27-12 <b> RENEWED</b>Now due 05-19-12 <span class=\"patFuncRenewCount\">Renewed 2 times</span>";
 		String patternValue = "^DUE(.*?)<b>(.*?)</b>Now due(.*?)<span(.*?)class=\"patFuncRenewCount\">Renewed(.*?)(time.*)</span>$";
 
-		Pattern findPattern = Pattern.compile(patternValue, Pattern.MULTILINE + Pattern.CASE_INSENSITIVE);
-		Matcher findPatternMatch = findPattern.matcher(ParseDate);
+		Matcher findPatternMatch = MillenniumPatterns.matcher(patternValue, ParseDate);
 
 		if (findPatternMatch.find()) {
 			iStatus.returnStatus = true;
@@ -2639,8 +2757,7 @@ public class MillenniumRemoteServiceManager implements RemoteServiceManager {
 			RenewItemDateString.statusValue = findPatternMatch.group(3);
 		} else {
 			patternValue = "^DUE(.*?)<font color=\"(.*?)\">(.*?)</font>(.*?)<span(.*?)class=\"patFuncRenewCount\">Renewed(.*?)(time.*)</span>$";
-			findPattern = Pattern.compile(patternValue, Pattern.MULTILINE + Pattern.CASE_INSENSITIVE);
-			findPatternMatch = findPattern.matcher(ParseDate);
+			findPatternMatch = MillenniumPatterns.matcher(patternValue, ParseDate);
 			if (findPatternMatch.find()) {
 				iStatus.returnStatus = false;
 				iStatus.returnMsg = "MillenniumRemoteServiceManager-setRenewSimpleDateFormat - False";
@@ -2662,8 +2779,7 @@ public class MillenniumRemoteServiceManager implements RemoteServiceManager {
 		String endStr1 = null;
 		String beginStr2 = null;
 		String lookupPattern = "^(.*?)[0-9][0-9]-[0-9][0-9]-[0-9][0-9](.*?)$";
-		Pattern findPattern = Pattern.compile(lookupPattern, Pattern.MULTILINE + Pattern.CASE_INSENSITIVE);
-		Matcher findPatternMatch = findPattern.matcher(strStatus);
+		Matcher findPatternMatch = MillenniumPatterns.matcher(lookupPattern, strStatus);
 
 		while (findPatternMatch.find()) {
 			//beginStr1 = findPatternMatch.group(1).trim();
@@ -2672,8 +2788,7 @@ public class MillenniumRemoteServiceManager implements RemoteServiceManager {
 		}
 		if (endStr1.length() > 0 && endStr1.contains("RECALLED")) {
 			lookupPattern = "^+(.*?)RECALLED(.*?)$";
-			findPattern = Pattern.compile(lookupPattern, Pattern.MULTILINE + Pattern.CASE_INSENSITIVE);
-			findPatternMatch = findPattern.matcher(endStr1);
+			findPatternMatch = MillenniumPatterns.matcher(lookupPattern, endStr1);
 			while (findPatternMatch.find()) {
 				beginStr2 = findPatternMatch.group(1).trim();
 				//LOG.debug("Millennium - beginStr2/beginStr1: " + beginStr2);
@@ -2690,8 +2805,7 @@ public class MillenniumRemoteServiceManager implements RemoteServiceManager {
 		String itemFineAmount = null;
 		//LOG.debug("strStatus: " + strStatus); 
 		String lookupPattern = "^(.*?)FINE(.*?)up to now(.*?)</font>(.*?)$";
-		Pattern findPattern = Pattern.compile(lookupPattern, Pattern.MULTILINE + Pattern.CASE_INSENSITIVE);
-		Matcher findPatternMatch = findPattern.matcher(strStatus);
+		Matcher findPatternMatch = MillenniumPatterns.matcher(lookupPattern, strStatus);
 
 		while (findPatternMatch.find()) {
 			itemFineAmount = findPatternMatch.group(3).replace(")", "").replace(".", "").replace("$", "").trim();
@@ -2706,8 +2820,7 @@ public class MillenniumRemoteServiceManager implements RemoteServiceManager {
 		//String endStr1 = null;
 		if (strStatus.contains("reqFillTimeMsg")) {
 			String lookupPattern = "^(.*?)<span class=\"reqFillTimeMsg\">(.*?)</span>$";
-			Pattern findPattern = Pattern.compile(lookupPattern, Pattern.MULTILINE + Pattern.CASE_INSENSITIVE);
-			Matcher findPatternMatch = findPattern.matcher(strStatus);
+			Matcher findPatternMatch = MillenniumPatterns.matcher(lookupPattern, strStatus);
 
 			while (findPatternMatch.find()) {
 				beginStr1 = findPatternMatch.group(1).trim();
@@ -2727,8 +2840,7 @@ public class MillenniumRemoteServiceManager implements RemoteServiceManager {
 		String beginStr1 = null;
 		//String endStr1 = null;
 		String lookupPattern = "^(.*?)of(.*?)holds$";
-		Pattern findPattern = Pattern.compile(lookupPattern, Pattern.MULTILINE + Pattern.CASE_INSENSITIVE);
-		Matcher findPatternMatch = findPattern.matcher(strStatus);
+		Matcher findPatternMatch = MillenniumPatterns.matcher(lookupPattern, strStatus);
 		//LOG.debug("strStatus in getHoldsQueuePosition: " + strStatus);		
 		while (findPatternMatch.find()) {
 			beginStr1 = findPatternMatch.group(1).trim();
@@ -2743,8 +2855,7 @@ public class MillenniumRemoteServiceManager implements RemoteServiceManager {
 		String renewCount = null;
 		//String beginStr1 = null;
 		String lookupPattern = "^(.*?)<span  class=\"patFuncRenewCount\">Renewed(.*?)(time.*)(.*?)$";
-		Pattern findPattern = Pattern.compile(lookupPattern, Pattern.MULTILINE + Pattern.CASE_INSENSITIVE);
-		Matcher findPatternMatch = findPattern.matcher(strStatus);
+		Matcher findPatternMatch = MillenniumPatterns.matcher(lookupPattern, strStatus);
 		//LOG.debug("strCount in getRenewalCount: " + strStatus);
 		//int y = 1;
 		while (findPatternMatch.find()) {
@@ -2763,8 +2874,7 @@ public class MillenniumRemoteServiceManager implements RemoteServiceManager {
 		Status iStatus = new Status();
 		StatusString requestItemValue = new StatusString();
 		String lookupPattern = "^<td(.*?)<input type=\"radio\" name=\"radio\" value=\"(.*?)\"(.*?)</td>$";
-		Pattern findPattern = Pattern.compile(lookupPattern, Pattern.MULTILINE + Pattern.CASE_INSENSITIVE);
-		Matcher findPatternMatch = findPattern.matcher(html);
+		Matcher findPatternMatch = MillenniumPatterns.matcher(lookupPattern, html);
 		if (findPatternMatch.find()) {
 			iStatus.returnStatus = true;
 			iStatus.returnMsg = "MillenniumRemoteServiceManager-getRequestItemValue - Success";
@@ -2783,8 +2893,7 @@ public class MillenniumRemoteServiceManager implements RemoteServiceManager {
 		Status iStatus = new Status();
 		StatusString requestItemTitle = new StatusString();
 		String lookupPattern = "^(.*?)Requesting <strong>(.*?)</strong>(.*?)$";
-		Pattern findPattern = Pattern.compile(lookupPattern, Pattern.MULTILINE + Pattern.CASE_INSENSITIVE);
-		Matcher findPatternMatch = findPattern.matcher(html);
+		Matcher findPatternMatch = MillenniumPatterns.matcher(lookupPattern, html);
 		if (findPatternMatch.find()) {
 			iStatus.returnStatus = true;
 			iStatus.returnMsg = "MillenniumRemoteServiceManager-getRequestItemTitle - Success";
@@ -2802,8 +2911,7 @@ public class MillenniumRemoteServiceManager implements RemoteServiceManager {
 	public String getRequestItemLocationValue (String html) {
 		String requestItemLocationValue = null;
 		String lookupPattern = "^(.*?)<input type=\"hidden\" name=\"locx00\" value=\"(.*?)\"(.*?)/>$";
-		Pattern findPattern = Pattern.compile(lookupPattern, Pattern.MULTILINE + Pattern.CASE_INSENSITIVE);
-		Matcher findPatternMatch = findPattern.matcher(html);
+		Matcher findPatternMatch = MillenniumPatterns.matcher(lookupPattern, html);
 		while (findPatternMatch.find()) {
 			requestItemLocationValue = findPatternMatch.group(2).trim();
 		}
@@ -0,0 +1,91 @@
+/**
+ * Copyright (c) 2012 eXtensible Catalog Organization
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the MIT/X11 license. The text of the license can be
+ * found at http://www.opensource.org/licenses/mit-license.php.
+ */
+
+package org.extensiblecatalog.ncip.v2.millennium;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * MillenniumPatternBenchmark times the item status patterns of {@link MillenniumRemoteServiceManager#getItemStatusList}
+ * on saved web opac pages, compiled on each use as they used to be and through {@link MillenniumPatterns}, and checks
+ * that both find the same values.
+ * 
+ * It is kept with the test sources so that it is not packaged into the connector jar; run it from the test classes:
+ * java org.extensiblecatalog.ncip.v2.millennium.MillenniumPatternBenchmark [-n iterations] page.html ...
+ */
+public class MillenniumPatternBenchmark {
+
+	// The labels are the ones in the sample toolkit.properties
+	private static final String[] PATTERNS = {
+		"^(.*?)center><form method=(?s)(.*?)post(.*?)(?s)(.*?)action=(?s)(.*?)>(.*?)<input type(.*?)(?s)(.*?)submit(?s)(.*?)value=(?s)(.*?)/>$",
+		"^(.*?)<!-- field % -->(.*?)</td></tr>$",
+		"^(.*?)<!-- BEGIN BIBHOLDINGSRECORDS -->(?s)(.*?)bibHoldingsLabel(.*?)(?s)Lib. Has(.*?)bibHoldingsEntry(.*?)>(.*?)</td>$",
+		"^(.*?)field C -->&nbsp;<a(.*?)>(.*?)</a>(.*?)<!-- field v -->(.*?)</td>$",
+		"^(.*?)field C -->(.*?)<!-- field v -->(.*?)</td>$",
+		"^(.*?)<!-- field C -->(.*?)</td>$",
+		"^(.*?)<!-- BEGIN BIBHOLDINGSRECORDS -->(?s)(.*?)bibHoldingsLabel(.*?)(?s)CALL #(.*?)bibHoldingsEntry(.*?)>(.*?)</td>$",
+		"^(?s)(.*?)<!-- field 1 -->(.*?)</td>$",
+		"^(.*?)<!-- BEGIN BIBHOLDINGSRECORDS -->(?s)(.*?)bibHoldingsLabel(.*?)(?s)Location(.*?)bibHoldingsEntry(.*?)>(.*?)</td>$"
+	};
+
+	public static void main(String[] args) {
+		int iterations = 100;
+		int firstPage = 0;
+		if (args.length > 1 && args[0].equals("-n")) {
+			iterations = Integer.parseInt(args[1]);
+			firstPage = 2;
+		}
+		if (args.length <= firstPage) {
+			System.out.println("Usage: java " + MillenniumPatternBenchmark.class.getName() + " [-n iterations] page.html ...");
+			return;
+		}
+
+		MillenniumFileHandle fileHandle = new MillenniumFileHandle();
+		for (int i = firstPage; i < args.length; i++) {
+			String html = fileHandle.ReadTextFile(args[i]);
+
+			String compiledEachTime = null;
+			String precompiled = null;
+			long start = System.nanoTime();
+			for (int x = 0; x < iterations; x++) {
+				compiledEachTime = findAll(html, false);
+			}
+			long compiledEachTimeNanos = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for (int x = 0; x < iterations; x++) {
+				precompiled = findAll(html, true);
+			}
+			long precompiledNanos = System.nanoTime() - start;
+
+			System.out.println(args[i] + " (" + html.length() + " chars, " + iterations + " iterations): compiled each time "
+					+ compiledEachTimeNanos / 1000000 + " ms, MillenniumPatterns " + precompiledNanos / 1000000 + " ms"
+					+ (compiledEachTime.equals(precompiled) ? "" : " - RESULTS DIFFER"));
+		}
+	}
+
+	private static String findAll(String html, boolean precompiled) {
+		StringBuilder found = new StringBuilder();
+		for (String pattern : PATTERNS) {
+			Matcher matcher = precompiled ? MillenniumPatterns.matcher(pattern, html)
+					: Pattern.compile(pattern, MillenniumPatterns.FLAGS).matcher(html);
+			int lastPossibleStart = precompiled ? MillenniumPatterns.lastPossibleStart(pattern, html) : html.length();
+			while (matcher.find()) {
+				for (int group = 1; group <= matcher.groupCount(); group++) {
+					found.append(matcher.group(group)).append('\n');
+				}
+				if (matcher.end() > lastPossibleStart) {
+					break;
+				}
+			}
+			found.append("--\n");
+		}
+		return found.toString();
+	}
+}
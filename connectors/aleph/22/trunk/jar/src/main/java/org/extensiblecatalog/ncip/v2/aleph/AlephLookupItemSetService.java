@@ -3,19 +3,19 @@ package org.extensiblecatalog.ncip.v2.aleph;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Random;
 
 import javax.xml.parsers.ParserConfigurationException;
 
 import org.apache.commons.lang.StringUtils;
+import org.extensiblecatalog.ncip.v2.common.NextItemTokenStore;
 import org.extensiblecatalog.ncip.v2.aleph.item.AlephItem;
 import org.extensiblecatalog.ncip.v2.aleph.util.AlephException;
 import org.extensiblecatalog.ncip.v2.aleph.util.AlephRemoteServiceManager;
 import org.extensiblecatalog.ncip.v2.aleph.util.AlephUtil;
 import org.extensiblecatalog.ncip.v2.aleph.util.ItemToken;
 import org.extensiblecatalog.ncip.v2.aleph.util.LocalConfig;
+import org.extensiblecatalog.ncip.v2.aleph.util.RestDlfConnector.RecordItemsBatch;
 import org.extensiblecatalog.ncip.v2.service.BibInformation;
 import org.extensiblecatalog.ncip.v2.service.BibliographicDescription;
 import org.extensiblecatalog.ncip.v2.service.BibliographicId;
@@ -40,9 +40,7 @@ import org.xml.sax.SAXException;
 
 public class AlephLookupItemSetService implements LookupItemSetService {
 
-	private static HashMap<String, ItemToken> tokens = new HashMap<String, ItemToken>();
-
-	private Random random = new Random();
+	private static NextItemTokenStore<ItemToken> tokens = new NextItemTokenStore<ItemToken>();
 
 	private String newTokenKey = null;
 
@@ -69,15 +67,13 @@ public class AlephLookupItemSetService implements LookupItemSetService {
 		List<Problem> problems = new ArrayList<Problem>();
 		try {
 			nextItemToken = parseItemToken(initData, alephSvcMgr);
-
-			if (nextItemToken != null && nextItemToken.isExpired()) {
-
-				Problem p = new Problem(new ProblemType("Usage of expired NextItemToken is not allowed."), null, null);
-				problems.add(p);
-			}
 		} catch (ServiceException se) {
 			if (se.getError().equals(ServiceError.UNSUPPORTED_REQUEST)) {
-				Problem p = new Problem(new ProblemType("Unknown NextItemToken was used."), null, null, "It has probably been deleted.");
+				Problem p;
+				if (tokens.isExpired(initData.getNextItemToken()))
+					p = new Problem(new ProblemType("Usage of expired NextItemToken is not allowed."), null, null);
+				else
+					p = new Problem(new ProblemType("Unknown NextItemToken was used."), null, null, "It has probably been deleted.");
 				problems.add(p);
 			}
 		}
@@ -157,175 +153,179 @@ public class AlephLookupItemSetService implements LookupItemSetService {
 
 		String id;
 
-		for (BibliographicId bibId : bibIds) {
+		// Without MaximumItemsCount the items of all the records are forwarded, so they can be fetched ahead
+		RecordItemsBatch batch = alephSvcMgr.lookupItemsBatch(parseRecordIds(bibIds), initData, this);
 
-			isLast = bibIds.get(bibIds.size() - 1).equals(bibId);
-
-			try {
-				if (bibId.getBibliographicRecordId() != null) {
-					id = bibId.getBibliographicRecordId().getBibliographicRecordIdentifier();
-
-					if (id.isEmpty()) {
-						if (wantSeeAllProblems) {
-							bibInformation = new BibInformation();
-							Problem problem = new Problem(new ProblemType("Empty BibliographicRecordIdentifierValue."), null,
-									"Here you have specified empty BibliographicRecordIdentifierValue.");
-							bibInformation.setProblems(Arrays.asList(problem));
-							bibInformation.setBibliographicId(bibId);
-							bibInformations.add(bibInformation);
+		try {
+			for (int i = 0; i < bibIds.size(); i++) {
+
+				BibliographicId bibId = bibIds.get(i);
+
+				isLast = bibIds.get(bibIds.size() - 1).equals(bibId);
+
+				try {
+					if (bibId.getBibliographicRecordId() != null) {
+						id = bibId.getBibliographicRecordId().getBibliographicRecordIdentifier();
+
+						if (id.isEmpty()) {
+							if (wantSeeAllProblems) {
+								bibInformation = new BibInformation();
+								Problem problem = new Problem(new ProblemType("Empty BibliographicRecordIdentifierValue."), null,
+										"Here you have specified empty BibliographicRecordIdentifierValue.");
+								bibInformation.setProblems(Arrays.asList(problem));
+								bibInformation.setBibliographicId(bibId);
+								bibInformations.add(bibInformation);
+							}
+							continue;
 						}
-						continue;
-					}
 
-					bibInformation = new BibInformation();
+						bibInformation = new BibInformation();
 
-					alephItems = alephSvcMgr.lookupItems(id, initData, this);
+						if (batch != null)
+							alephItems = batch.getItems(i);
+						else
+							alephItems = alephSvcMgr.lookupItems(id, initData, this);
 
-					bibInformation.setBibliographicId(bibId);
+						bibInformation.setBibliographicId(bibId);
 
-					if (alephItems != null && alephItems.size() > 0) {
+						if (alephItems != null && alephItems.size() > 0) {
 
-						holdingSets = parseHoldingsSets(alephItems, initData);
+							holdingSets = parseHoldingsSets(alephItems, initData);
 
-						bibInformation.setHoldingsSets(holdingSets);
+							bibInformation.setHoldingsSets(holdingSets);
 
-						bibInformations.add(bibInformation);
-
-						// Note that newTokenKey is always null until it is set from RestDlfConnector (lookupItems method)
-						if (newTokenKey != null) {
-							responseData.setNextItemToken(newTokenKey);
-							newTokenKey = null;
-							break;
-						}
+							bibInformations.add(bibInformation);
 
-					} else if (wantSeeAllProblems) {
-						Problem p = new Problem(Version1LookupItemProcessingError.UNKNOWN_ITEM, null, "Item " + id + ", you are searching for, does not exist.");
+							// Note that newTokenKey is always null until it is set from RestDlfConnector (lookupItems method)
+							if (newTokenKey != null) {
+								responseData.setNextItemToken(newTokenKey);
+								newTokenKey = null;
+								break;
+							}
 
-						bibInformation.setProblems(Arrays.asList(p));
+						} else if (wantSeeAllProblems) {
+							Problem p = new Problem(Version1LookupItemProcessingError.UNKNOWN_ITEM, null, "Item " + id + ", you are searching for, does not exist.");
 
-						bibInformations.add(bibInformation);
-						++itemsForwarded;
+							bibInformation.setProblems(Arrays.asList(p));
 
-						// Do not create NextItemToken if this is last item desired
-						boolean createNextItemToken = maximumItemsCount == itemsForwarded && !isLast;
+							bibInformations.add(bibInformation);
+							++itemsForwarded;
 
-						if (createNextItemToken) {
-							// Set next item token
-							ItemToken itemToken = new ItemToken();
+							// Do not create NextItemToken if this is last item desired
+							boolean createNextItemToken = maximumItemsCount == itemsForwarded && !isLast;
 
-							itemToken.setBibliographicId(id);
+							if (createNextItemToken) {
+								// Set next item token
+								ItemToken itemToken = new ItemToken();
 
-							int newToken = random.nextInt();
-							itemToken.setNextToken(Integer.toString(newToken));
+								itemToken.setBibliographicId(id);
 
-							this.addItemToken(Integer.toString(newToken), itemToken);
+								String newToken = this.addItemToken(itemToken);
 
-							responseData.setNextItemToken(Integer.toString(newToken));
-							break;
+								responseData.setNextItemToken(newToken);
+								break;
+							}
 						}
-					}
 
-				} else if (bibId.getBibliographicItemId() != null) {
-					id = bibId.getBibliographicItemId().getBibliographicItemIdentifier();
-
-					if (id.isEmpty()) {
-						if (wantSeeAllProblems) {
-							bibInformation = new BibInformation();
-							Problem problem = new Problem(new ProblemType("Empty BibliographicItemIdentifierValue."), null,
-									"Here you have specified empty BibliographicItemIdentifierValue.");
-							bibInformation.setProblems(Arrays.asList(problem));
-							bibInformations.add(bibInformation);
+					} else if (bibId.getBibliographicItemId() != null) {
+						id = bibId.getBibliographicItemId().getBibliographicItemIdentifier();
+
+						if (id.isEmpty()) {
+							if (wantSeeAllProblems) {
+								bibInformation = new BibInformation();
+								Problem problem = new Problem(new ProblemType("Empty BibliographicItemIdentifierValue."), null,
+										"Here you have specified empty BibliographicItemIdentifierValue.");
+								bibInformation.setProblems(Arrays.asList(problem));
+								bibInformations.add(bibInformation);
+							}
+							continue;
 						}
-						continue;
-					}
-					bibInformation = new BibInformation();
-
-					bibInformation.setBibliographicId(bibId);
+						bibInformation = new BibInformation();
 
-					alephItem = alephSvcMgr.lookupItem(id, initData);
-					if (alephItem != null) {
+						bibInformation.setBibliographicId(bibId);
 
-						holdingSets = Arrays.asList(parseHoldingsSet(alephItem, initData));
+						alephItem = alephSvcMgr.lookupItem(id, initData);
+						if (alephItem != null) {
 
-						bibInformation.setHoldingsSets(holdingSets);
+							holdingSets = Arrays.asList(parseHoldingsSet(alephItem, initData));
 
-						bibInformations.add(bibInformation);
-						++itemsForwarded;
-
-						// Do not create NextItemToken if this is last item desired
-						boolean createNextItemToken = maximumItemsCount == itemsForwarded && !isLast;
+							bibInformation.setHoldingsSets(holdingSets);
 
-						if (createNextItemToken) {
+							bibInformations.add(bibInformation);
+							++itemsForwarded;
 
-							ItemToken itemToken = new ItemToken();
-							itemToken.setBibliographicId(id);
-							itemToken.setItemId(alephItem.getItemId().getItemIdentifierValue());
+							// Do not create NextItemToken if this is last item desired
+							boolean createNextItemToken = maximumItemsCount == itemsForwarded && !isLast;
 
-							int newToken = random.nextInt();
+							if (createNextItemToken) {
 
-							itemToken.setNextToken(Integer.toString(newToken));
-							this.addItemToken(Integer.toString(newToken), itemToken);
+								ItemToken itemToken = new ItemToken();
+								itemToken.setBibliographicId(id);
+								itemToken.setItemId(alephItem.getItemId().getItemIdentifierValue());
 
-							responseData.setNextItemToken(Integer.toString(newToken));
-							break;
-						}
-					} else if (wantSeeAllProblems) {
-						Problem p = new Problem(Version1LookupItemProcessingError.UNKNOWN_ITEM, null, "Item " + id + ", you are searching for, does not exist.");
+								String newToken = this.addItemToken(itemToken);
 
-						bibInformation.setProblems(Arrays.asList(p));
+								responseData.setNextItemToken(newToken);
+								break;
+							}
+						} else if (wantSeeAllProblems) {
+							Problem p = new Problem(Version1LookupItemProcessingError.UNKNOWN_ITEM, null, "Item " + id + ", you are searching for, does not exist.");
 
-						// Note that Problem elements within <ns1:BibInformation> is also considered as one item forwarded
-						bibInformations.add(bibInformation);
-						++itemsForwarded;
+							bibInformation.setProblems(Arrays.asList(p));
 
-						// Do not create NextItemToken if this is last item desired
-						boolean createNextItemToken = maximumItemsCount == itemsForwarded && !isLast;
+							// Note that Problem elements within <ns1:BibInformation> is also considered as one item forwarded
+							bibInformations.add(bibInformation);
+							++itemsForwarded;
 
-						if (createNextItemToken) {
+							// Do not create NextItemToken if this is last item desired
+							boolean createNextItemToken = maximumItemsCount == itemsForwarded && !isLast;
 
-							ItemToken itemToken = new ItemToken();
-							itemToken.setBibliographicId(id);
+							if (createNextItemToken) {
 
-							int newToken = random.nextInt();
+								ItemToken itemToken = new ItemToken();
+								itemToken.setBibliographicId(id);
 
-							itemToken.setNextToken(Integer.toString(newToken));
-							this.addItemToken(Integer.toString(newToken), itemToken);
+								String newToken = this.addItemToken(itemToken);
 
-							responseData.setNextItemToken(Integer.toString(newToken));
-							break;
+								responseData.setNextItemToken(newToken);
+								break;
+							}
 						}
-					}
 
-				} else {
-					bibInformation = new BibInformation();
+					} else {
+						bibInformation = new BibInformation();
 
-					bibInformation.setProblems(ServiceHelper.generateProblems(Version1GeneralProcessingError.NEEDED_DATA_MISSING, "BibliographicItemId/RecordId", null,
-							"BibliographicItemId/RecordId was not properly set. Please think about turning on SchemaValidation in toolkit.properties."));
-					bibInformations.add(bibInformation);
-					++itemsForwarded;
+						bibInformation.setProblems(ServiceHelper.generateProblems(Version1GeneralProcessingError.NEEDED_DATA_MISSING, "BibliographicItemId/RecordId", null,
+								"BibliographicItemId/RecordId was not properly set. Please think about turning on SchemaValidation in toolkit.properties."));
+						bibInformations.add(bibInformation);
+						++itemsForwarded;
+					}
+				} catch (IOException ie) {
+					Problem p = new Problem(new ProblemType("Processing IOException error."), ie.getMessage(), "Are you connected to the Internet/Intranet?");
+					responseData.setProblems(Arrays.asList(p));
+					break;
+				} catch (ParserConfigurationException pce) {
+					Problem p = new Problem(new ProblemType("Processing ParserConfigurationException error."), null, pce.getMessage());
+					responseData.setProblems(Arrays.asList(p));
+					break;
+				} catch (SAXException se) {
+					Problem p = new Problem(new ProblemType("Processing SAXException error."), null, se.getMessage());
+					responseData.setProblems(Arrays.asList(p));
+					break;
+				} catch (AlephException ae) {
+					Problem p = new Problem(new ProblemType("Processing AlephException error."), null, ae.getMessage());
+					responseData.setProblems(Arrays.asList(p));
+					break;
+				} catch (Exception e) {
+					Problem p = new Problem(new ProblemType("Unknown processing exception error."), null, StringUtils.join(e.getStackTrace(), "\n"));
+					responseData.setProblems(Arrays.asList(p));
+					break;
 				}
-			} catch (IOException ie) {
-				Problem p = new Problem(new ProblemType("Processing IOException error."), ie.getMessage(), "Are you connected to the Internet/Intranet?");
-				responseData.setProblems(Arrays.asList(p));
-				break;
-			} catch (ParserConfigurationException pce) {
-				Problem p = new Problem(new ProblemType("Processing ParserConfigurationException error."), null, pce.getMessage());
-				responseData.setProblems(Arrays.asList(p));
-				break;
-			} catch (SAXException se) {
-				Problem p = new Problem(new ProblemType("Processing SAXException error."), null, se.getMessage());
-				responseData.setProblems(Arrays.asList(p));
-				break;
-			} catch (AlephException ae) {
-				Problem p = new Problem(new ProblemType("Processing AlephException error."), null, ae.getMessage());
-				responseData.setProblems(Arrays.asList(p));
-				break;
-			} catch (Exception e) {
-				Problem p = new Problem(new ProblemType("Unknown processing exception error."), null, StringUtils.join(e.getStackTrace(), "\n"));
-				responseData.setProblems(Arrays.asList(p));
-				break;
-			}
 
+			}
+		} finally {
+			if (batch != null)
+				batch.cancel();
 		}
 
 	}
@@ -396,12 +396,9 @@ public class AlephLookupItemSetService implements LookupItemSetService {
 						ItemToken itemToken = new ItemToken();
 						itemToken.setBibliographicId(id);
 
-						int newToken = random.nextInt();
-
-						itemToken.setNextToken(Integer.toString(newToken));
-						this.addItemToken(Integer.toString(newToken), itemToken);
+						String newToken = this.addItemToken(itemToken);
 
-						responseData.setNextItemToken(Integer.toString(newToken));
+						responseData.setNextItemToken(newToken);
 						break;
 					}
 				} else if (wantSeeAllProblems) {
@@ -421,12 +418,9 @@ public class AlephLookupItemSetService implements LookupItemSetService {
 						ItemToken itemToken = new ItemToken();
 						itemToken.setBibliographicId(id);
 
-						int newToken = random.nextInt();
+						String newToken = this.addItemToken(itemToken);
 
-						itemToken.setNextToken(Integer.toString(newToken));
-						this.addItemToken(Integer.toString(newToken), itemToken);
-
-						responseData.setNextItemToken(Integer.toString(newToken));
+						responseData.setNextItemToken(newToken);
 						break;
 					}
 				}
@@ -455,6 +449,26 @@ public class AlephLookupItemSetService implements LookupItemSetService {
 
 	}
 
+	/**
+	 * Returns the identifiers of the BibliographicRecordIds to look items up for, null for the other BibliographicIds.
+	 * 
+	 * @param bibIds
+	 * @return {@link List} of the same size as bibIds
+	 */
+	private List<String> parseRecordIds(List<BibliographicId> bibIds) {
+		List<String> recordIds = new ArrayList<String>(bibIds.size());
+		for (BibliographicId bibId : bibIds) {
+			String id = null;
+			if (bibId.getBibliographicRecordId() != null) {
+				id = bibId.getBibliographicRecordId().getBibliographicRecordIdentifier();
+				if (id.isEmpty())
+					id = null;
+			}
+			recordIds.add(id);
+		}
+		return recordIds;
+	}
+
 	/**
 	 * Parses response from requested ItemId (we know for sure there is only one item to parse)
 	 * 
@@ -522,8 +536,9 @@ public class AlephLookupItemSetService implements LookupItemSetService {
 	}
 
 	/**
-	 * Returns ItemToken stored in static HashMap, associated with {@link String} tokenKey.<br />
-	 * If passed tokenKey is empty or null, null will be returned.
+	 * Returns ItemToken stored in static NextItemTokenStore, associated with {@link String} tokenKey, and removes it from the store.<br />
+	 * If passed tokenKey is empty or null, null will be returned.<br />
+	 * If there is no such token or it has expired, ServiceException with UNSUPPORTED_REQUEST error is thrown.
 	 * 
 	 * @param tokenKey
 	 * @param bibIds
@@ -541,10 +556,10 @@ public class AlephLookupItemSetService implements LookupItemSetService {
 
 		if (tokenKey != null && !tokenKey.isEmpty()) {
 
-			AlephUtil.markExpiredTokens(tokens, LocalConfig.getTokenExpirationTime());
+			tokens.setTimeToLive(LocalConfig.getTokenExpirationTime() * 1000L);
 
-			nextItemToken = tokens.get(tokenKey);
-			if (nextItemToken != null && !nextItemToken.isExpired()) {
+			nextItemToken = tokens.remove(tokenKey);
+			if (nextItemToken != null) {
 
 				bibIds = initData.getBibliographicIds();
 				itemIds = initData.getItemIds();
@@ -566,12 +581,9 @@ public class AlephLookupItemSetService implements LookupItemSetService {
 						itemIds.subList(0, ++index).clear();
 					}
 				}
-
-				tokens.remove(tokenKey);
-			} else if (nextItemToken == null) {
-				throw new ServiceException(ServiceError.UNSUPPORTED_REQUEST, null, null);
 			} else {
-				// Do nothing .. token expiration will be announced to user with Problem element in responseData
+				// Unknown or expired token .. will be announced to user with Problem element in responseData
+				throw new ServiceException(ServiceError.UNSUPPORTED_REQUEST, null, null);
 			}
 		}
 		return nextItemToken;
@@ -653,11 +665,19 @@ public class AlephLookupItemSetService implements LookupItemSetService {
 		return maximumItemsCount;
 	}
 
-	public void addItemToken(String key, ItemToken token) {
+	/**
+	 * Stores the token until it is used or expires.
+	 * 
+	 * @param token
+	 * @return the key of the token, to be returned as NextItemToken
+	 */
+	public String addItemToken(ItemToken token) {
+
+		String key = tokens.add(token);
 
-		AlephUtil.purgeExpiredTokens(tokens);
+		token.setNextToken(key);
 
-		tokens.put(key, token);
+		return key;
 	}
 
 	public ItemToken getNextItemToken() {
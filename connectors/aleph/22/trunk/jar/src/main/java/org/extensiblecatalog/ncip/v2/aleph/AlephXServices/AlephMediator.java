@@ -24,6 +24,8 @@ import java.util.List;
 import java.util.Map;
 
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 
 
@@ -1202,9 +1204,13 @@ public class AlephMediator implements Serializable {
 	private Map<String, AlephItem> getCircStatusByBibId(AlephAgency agency, String bibId) throws AlephException, IOException, ParserConfigurationException, SAXException {
 		XService xService = XServiceFactory.createCircStatusXService(agency.getBibLibrary(), bibId);
 
-		Document doc = xService.execute(getXServerName(), getXServerPort(), false);
-		XMLParserUtil.outputNode(doc);
-		List<AlephItem> foundItems = AlephItemFactory.getAlephItemsCircStatus(agency, doc);
+		final AlephAgency itemAgency = agency;
+		List<AlephItem> foundItems = xService.execute(getXServerName(), getXServerPort(), false, new XService.ResponseHandler<List<AlephItem>>() {
+			@Override
+			public List<AlephItem> handleResponse(XMLStreamReader reader) throws XMLStreamException, AlephException {
+				return AlephItemFactory.getAlephItemsCircStatus(itemAgency, reader);
+			}
+		});
 		Map<String, AlephItem> barcodeStatusMap = new HashMap<String, AlephItem>();
 		for (AlephItem item : foundItems) {
 			if (item.getBarcode() != null) {
@@ -4,6 +4,7 @@ import org.extensiblecatalog.ncip.v2.aleph.util.AlephConstants;
 import org.extensiblecatalog.ncip.v2.aleph.util.AlephException;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStreamWriter;
 import java.io.Serializable;
 import java.net.URL;
@@ -14,9 +15,9 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import org.w3c.dom.Document;
 import org.xml.sax.SAXException;
@@ -38,6 +39,13 @@ public class XService implements Serializable{
 	private static final long serialVersionUID = -6422599660124064422L;
 	private Map<String,List<String>> parameters;
 	
+	/**
+	 * Reads the response of an X Service call as it arrives, without building a Document.
+	 */
+	public interface ResponseHandler<T> {
+		T handleResponse(XMLStreamReader reader) throws XMLStreamException, AlephException;
+	}
+	
 	public XService(String xServiceName){
 		addParameter(AlephConstants.PARAM_X_SERVICE_NAME,xServiceName);
 	}
@@ -171,6 +179,40 @@ public class XService implements Serializable{
 		return postHttpRequest(url);
 	}
 	
+	/**
+	 * execute
+	 * 
+	 * Executes this X Service call against a remote xServer and passes the
+	 * response to the handler with a StAX reader, so the response is never
+	 * held in memory as a whole.
+	 * 
+	 * @param xServerName
+	 * @param xServerPort
+	 * @param sslEnabled
+	 * @param handler reads the response
+	 * @return the result of the handler
+	 * @throws IOException
+	 */
+	public <T> T execute(String xServerName, String xServerPort, 
+			boolean sslEnabled, ResponseHandler<T> handler) throws AlephException, IOException{
+		if (xServerName==null||xServerPort==null) throw new AlephException ("X-Server Name and/or port undefined");
+		URL url = new URL(getUrlString(xServerName,xServerPort,sslEnabled));
+		
+		InputStream response = sendHttpRequest(url);
+		try {
+			XMLStreamReader reader = XServiceParser.createXMLStreamReader(response);
+			try {
+				return handler.handleResponse(reader);
+			} finally {
+				reader.close();
+			}
+		} catch (XMLStreamException e) {
+			throw new AlephException("Error reading X Service response: " + e.getMessage());
+		} finally {
+			response.close();
+		}
+	}
+	
 	public String getUrlString(String xServerName, String xServerPort, boolean sslEnabled){
 		String urlString = sslEnabled?"https://":"http://";
 		urlString += xServerName+":"+xServerPort+"/X";
@@ -192,23 +234,42 @@ public class XService implements Serializable{
 	 */
 	protected Document postHttpRequest(URL url) throws IOException,ParserConfigurationException, SAXException{
 		
-		DocumentBuilder docBuilder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-		Document doc = docBuilder.newDocument();
+		Document doc;
 		if(url!=null){
-	        // Construct data
-			String data = encodeParameters(getParameters());
-	    
-	        // Send data
-	        URLConnection conn = url.openConnection();
-	        conn.setDoOutput(true);
-	        OutputStreamWriter wr = new OutputStreamWriter(conn.getOutputStream());
-	        wr.write(data.toString());
-	        wr.flush();
-	    
 	        // Get the response
-			doc = docBuilder.parse(conn.getInputStream());
-	        wr.close();
+			InputStream response = sendHttpRequest(url);
+			try {
+				doc = XServiceParser.parse(response);
+			} finally {
+				response.close();
+			}
+		} else {
+			doc = XServiceParser.newDocument();
 		}
 		return doc;
 	}
+	
+	/**
+	 * sendHttpRequest
+	 * 
+	 * Post the parameters to the url passed
+	 * 
+	 * @param url The url object to connect and write to
+	 * @return the stream of the response, to be closed by the caller
+	 * 
+	 * @throws IOException
+	 */
+	protected InputStream sendHttpRequest(URL url) throws IOException{
+        // Construct data
+		String data = encodeParameters(getParameters());
+    
+        // Send data
+        URLConnection conn = url.openConnection();
+        conn.setDoOutput(true);
+        OutputStreamWriter wr = new OutputStreamWriter(conn.getOutputStream());
+        wr.write(data.toString());
+        wr.close();
+    
+        return conn.getInputStream();
+	}
 }
@@ -0,0 +1,77 @@
+package org.extensiblecatalog.ncip.v2.aleph.AlephXServices.xservice;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.w3c.dom.Document;
+import org.xml.sax.SAXException;
+
+/**
+ * Parses X-Server responses, safely from any number of threads.
+ *
+ * DocumentBuilder instances are not thread-safe, so each thread gets its own builder, which is reset after each use
+ * and kept for the next one instead of looking up the factory for every call. For large responses which only need to
+ * be read once, e.g. circ-status, a StAX reader can be used instead, which never builds the document tree; its
+ * {@link XMLInputFactory} is shared by all threads and set to coalesce text, so each text node is a single event.
+ */
+public class XServiceParser {
+
+	private static final DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
+
+	private static final ThreadLocal<DocumentBuilder> documentBuilders = new ThreadLocal<DocumentBuilder>();
+
+	private static final XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
+
+	static {
+		xmlInputFactory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+		xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+	}
+
+	private XServiceParser() {
+	}
+
+	/**
+	 * Parses the stream into a Document with this thread's DocumentBuilder.
+	 */
+	public static Document parse(InputStream stream) throws ParserConfigurationException, SAXException, IOException {
+		DocumentBuilder builder = getDocumentBuilder();
+		try {
+			return builder.parse(stream);
+		} finally {
+			builder.reset();
+		}
+	}
+
+	/**
+	 * Returns a new empty Document.
+	 */
+	public static Document newDocument() throws ParserConfigurationException {
+		return getDocumentBuilder().newDocument();
+	}
+
+	/**
+	 * Returns a StAX reader of the stream; the caller closes both.
+	 */
+	public static XMLStreamReader createXMLStreamReader(InputStream stream) throws XMLStreamException {
+		return xmlInputFactory.createXMLStreamReader(stream);
+	}
+
+	private static DocumentBuilder getDocumentBuilder() throws ParserConfigurationException {
+		DocumentBuilder builder = documentBuilders.get();
+		if (builder == null) {
+			// DocumentBuilderFactory is not guaranteed to be thread-safe
+			synchronized (documentBuilderFactory) {
+				builder = documentBuilderFactory.newDocumentBuilder();
+			}
+			documentBuilders.set(builder);
+		}
+		return builder;
+	}
+}
@@ -13,6 +13,9 @@ import java.util.ArrayList;
 import java.util.List;
 
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.NamedNodeMap;
@@ -285,31 +288,41 @@ public class AlephItemFactory implements Serializable{
 			for (int k=0; k<childNodes.getLength(); k++){
 				Node childNode = childNodes.item(k);
 				if (childNode!=null){
-					//z30-description
-					if (AlephConstants.Z30_DESCRIPTION_NODE.equalsIgnoreCase(childNode.getNodeName())){
-						alephItem.setDescription(XMLParserUtil.getNodeTextValue(childNode));
-					} else if (AlephConstants.LOAN_STATUS_NODE.equalsIgnoreCase(childNode.getNodeName())){
-						alephItem.setCirculationStatus(AlephUtil.parseCirculationStatus(XMLParserUtil.getNodeTextValue(childNode)));
-					} else if (AlephConstants.DUE_DATE_NODE.equalsIgnoreCase(childNode.getNodeName())){
-						try {
-							alephItem.setDueDate(XMLParserUtil.getNodeTextValue(childNode),AlephConstants.CIRC_STATUS_DUE_DATE_FORMAT);
-						} catch (ParseException pe){
-							//just ignore, probably set to null
-						}
-					} else if (AlephConstants.LOCATION_NODE.equalsIgnoreCase(childNode.getNodeName())){
-						alephItem.setLocation(XMLParserUtil.getNodeTextValue(childNode));
-					} else if (AlephConstants.BARCODE_NODE.equalsIgnoreCase(childNode.getNodeName())){
-						alephItem.setBarcode(XMLParserUtil.getNodeTextValue(childNode));
-					} else if (AlephConstants.REC_KEY_NODE.equalsIgnoreCase(childNode.getNodeName())){
-						String itemId = XMLParserUtil.getNodeTextValue(childNode);
-						if (itemId!=null) alephItem.setItemId(itemId);
-					}
+					setItemDataValue(alephItem, childNode.getNodeName(), XMLParserUtil.getNodeTextValue(childNode));
 				}
 			}
 		}
 		return alephItem;
 	}
 	
+	/**
+	 * Set the value of one child of an item data node on the AlephItem
+	 * 
+	 * @param alephItem
+	 * @param name name of the child node
+	 * @param value text value of the child node
+	 */
+	private static void setItemDataValue(AlephItem alephItem, String name, String value) throws AlephException{
+		//z30-description
+		if (AlephConstants.Z30_DESCRIPTION_NODE.equalsIgnoreCase(name)){
+			alephItem.setDescription(value);
+		} else if (AlephConstants.LOAN_STATUS_NODE.equalsIgnoreCase(name)){
+			alephItem.setCirculationStatus(AlephUtil.parseCirculationStatus(value));
+		} else if (AlephConstants.DUE_DATE_NODE.equalsIgnoreCase(name)){
+			try {
+				alephItem.setDueDate(value,AlephConstants.CIRC_STATUS_DUE_DATE_FORMAT);
+			} catch (ParseException pe){
+				//just ignore, probably set to null
+			}
+		} else if (AlephConstants.LOCATION_NODE.equalsIgnoreCase(name)){
+			alephItem.setLocation(value);
+		} else if (AlephConstants.BARCODE_NODE.equalsIgnoreCase(name)){
+			alephItem.setBarcode(value);
+		} else if (AlephConstants.REC_KEY_NODE.equalsIgnoreCase(name)){
+			if (value!=null) alephItem.setItemId(value);
+		}
+	}
+	
 	/**
 	 * Get all loan items in the xml response doc (item-l)
 	 * 
@@ -646,4 +659,63 @@ public class AlephItemFactory implements Serializable{
 		}
 		return items;
 	}
+	
+	/**
+	 * Same as {@link #getAlephItemsCircStatus(AlephAgency, Document)}, but reads the 
+	 * circ-status response as it arrives instead of from a parsed Document.
+	 * 
+	 * @param reader positioned at the start of the response
+	 * @return
+	 * @throws AlephException
+	 * @throws XMLStreamException
+	 */
+	public static List<AlephItem> getAlephItemsCircStatus(AlephAgency agency, XMLStreamReader reader) throws AlephException, XMLStreamException{
+		List<AlephItem> items = new ArrayList<AlephItem>();
+		AlephItem alephItem = null;
+		String childName = null;
+		String childValue = null;
+		// depth below the current item data node
+		int depth = 0;
+		while (reader.hasNext()){
+			switch (reader.next()){
+			case XMLStreamConstants.START_ELEMENT:
+				if (alephItem==null){
+					if (AlephConstants.ITEM_DATA_NODE.equalsIgnoreCase(reader.getLocalName())){
+						alephItem = createAlephItem(agency);
+						depth = 0;
+					}
+				} else {
+					depth++;
+					if (depth==1){
+						childName = reader.getLocalName();
+						childValue = null;
+					}
+				}
+				break;
+			case XMLStreamConstants.CHARACTERS:
+			case XMLStreamConstants.CDATA:
+				// like XMLParserUtil.getNodeTextValue, only the first text of the child counts
+				if (alephItem!=null&&depth==1&&childValue==null){
+					childValue = reader.getText();
+				}
+				break;
+			case XMLStreamConstants.END_ELEMENT:
+				if (alephItem!=null){
+					if (depth==0){
+						items.add(alephItem);
+						alephItem = null;
+					} else {
+						if (depth==1){
+							setItemDataValue(alephItem, childName, XMLParserUtil.replaceSpecialCharacters(childValue));
+						}
+						depth--;
+					}
+				}
+				break;
+			default:
+				break;
+			}
+		}
+		return items;
+	}
 }
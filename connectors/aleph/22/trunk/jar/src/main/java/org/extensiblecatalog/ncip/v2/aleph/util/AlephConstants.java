@@ -389,6 +389,10 @@ public class AlephConstants {
 	public static final String REST_DLF_PORT = "RestDlfPort";
 	public static final String REST_DLF_SERVER = "RestDlfServer";
 	public static final String REST_DLF_SUFFIX = "RestDlfSuffix";
+	public static final String REST_DLF_USE_STAX_PARSER = "RestDlfUseStAXParser";
+	public static final String REST_DLF_MAX_CONCURRENT_FETCHES = "RestDlfMaxConcurrentFetches";
+	public static final String REST_DLF_REQUEST_TIMEOUT = "RestDlfRequestTimeout";
+	public static final String REST_DLF_MAX_BATCH_SIZE = "RestDlfMaxBatchSize";
 	public static final String AUTH_DATA_FORMAT_TYPE = "AuthDataFormatType";
 	public static final String USER_REGISTRATION_LINK = "UserRegistrationLink";
 
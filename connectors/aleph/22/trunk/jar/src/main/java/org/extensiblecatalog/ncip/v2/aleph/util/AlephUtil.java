@@ -516,36 +516,6 @@ public class AlephUtil {
 		return isCorrectRecordId(alephLoanId, bibLibLength);
 	}
 
-	/**
-	 * Marks expired tokens as expired.<br>
-	 * Note that these expired tokens are removed immediately after new token is created.<br>
-	 * The purpose of not removing those earlier is to let user know of the token expiration.
-	 * 
-	 * @param tokens
-	 * @param tokenExpirationTimeInSeconds
-	 */
-	public static void markExpiredTokens(HashMap<String, ItemToken> tokens, int tokenExpirationTimeInSeconds) {
-		long theTime = new Date().getTime();
-
-		for (ItemToken token : tokens.values()) {
-			if (token.getTimeCreated() + tokenExpirationTimeInSeconds * 1000 < theTime) {
-				token.setExpired();
-			}
-		}
-	}
-
-	/**
-	 * Removes expired tokens from memory hashmap.
-	 * 
-	 * @param tokens
-	 */
-	public static void purgeExpiredTokens(HashMap<String, ItemToken> tokens) {
-		for (Map.Entry<String, ItemToken> tokenEntry : tokens.entrySet()) {
-			if (tokenEntry.getValue().isExpired())
-				tokens.remove(tokenEntry.getKey());
-		}
-	}
-
 	public static BibliographicItemId createBibliographicItemIdAsISBN(String bibliographicItemIdentifier) {
 		BibliographicItemId bibliographicItemId = new BibliographicItemId();
 		bibliographicItemId.setBibliographicItemIdentifier(bibliographicItemIdentifier);
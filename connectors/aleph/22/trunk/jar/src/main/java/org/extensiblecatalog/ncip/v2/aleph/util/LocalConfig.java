@@ -30,6 +30,74 @@ public class LocalConfig {
 
 	private static int bibLibraryLength;
 
+	private static boolean useStaxParser;
+
+	private static int maxConcurrentFetches = 4;
+
+	private static int requestTimeout = 30000;
+
+	private static int maxBatchSize = 20;
+
+	/**
+	 * @return whether the item & loan responses of RESTful APIs are parsed with StAX instead of SAX
+	 */
+	public static boolean isUseStaxParser() {
+		return useStaxParser;
+	}
+
+	/**
+	 * @param useStaxParser
+	 *            whether the item & loan responses of RESTful APIs are parsed with StAX instead of SAX
+	 */
+	public static void setUseStaxParser(boolean useStaxParser) {
+		LocalConfig.useStaxParser = useStaxParser;
+	}
+
+	/**
+	 * @return the maximum number of requests made concurrently to the Aleph server while serving LookupItemSet & LookupUser
+	 */
+	public static int getMaxConcurrentFetches() {
+		return maxConcurrentFetches;
+	}
+
+	/**
+	 * @param maxConcurrentFetches
+	 *            the maximum number of requests made concurrently to the Aleph server (1 or less to make them one at a time)
+	 */
+	public static void setMaxConcurrentFetches(int maxConcurrentFetches) {
+		LocalConfig.maxConcurrentFetches = maxConcurrentFetches;
+	}
+
+	/**
+	 * @return the connect & read timeout in milliseconds of concurrent requests to the Aleph server (0 for no timeout)
+	 */
+	public static int getRequestTimeout() {
+		return requestTimeout;
+	}
+
+	/**
+	 * @param requestTimeout
+	 *            the connect & read timeout in milliseconds of concurrent requests to the Aleph server (0 for no timeout)
+	 */
+	public static void setRequestTimeout(int requestTimeout) {
+		LocalConfig.requestTimeout = requestTimeout;
+	}
+
+	/**
+	 * @return the maximum number of records of LookupItemSet whose items are fetched ahead of the response being built
+	 */
+	public static int getMaxBatchSize() {
+		return maxBatchSize;
+	}
+
+	/**
+	 * @param maxBatchSize
+	 *            the maximum number of records of LookupItemSet whose items are fetched ahead (1 or less to fetch one record at a time)
+	 */
+	public static void setMaxBatchSize(int maxBatchSize) {
+		LocalConfig.maxBatchSize = maxBatchSize;
+	}
+
 	/**
 	 * @return the echoParticularProblemsToLUIS
 	 */
@@ -1,22 +1,36 @@
 package org.extensiblecatalog.ncip.v2.aleph.util;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStreamWriter;
 import java.math.BigDecimal;
 import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
 import java.net.URL;
+import java.net.URLConnection;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.GregorianCalendar;
 import java.util.List;
 import java.util.Properties;
-import java.util.Random;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.xml.parsers.FactoryConfigurationError;
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.parsers.SAXParser;
-import javax.xml.parsers.SAXParserFactory;
 import javax.xml.transform.TransformerException;
 
 import org.extensiblecatalog.ncip.v2.aleph.AlephLookupItemSetService;
@@ -75,19 +89,16 @@ public class RestDlfConnector extends AlephMediator {
 
 	private static final long serialVersionUID = -4425639616999642735L;
 
-	private static SAXParser parser;
+	// Handlers of the item & loan paths are kept per thread & reset for each request; parsers are provided by RestDlfParser
+	private static final ThreadLocal<AlephItemHandler> itemHandlers = new ThreadLocal<AlephItemHandler>();
 
-	private Random random = new Random();
+	private static final ThreadLocal<AlephLoanHandler> loanHandlers = new ThreadLocal<AlephLoanHandler>();
+
+	// Executors fetching items of lookupItems & sub-requests of lookupUser concurrently, by Aleph server; the number of threads limits the concurrent GETs to the server
+	private static final Map<String, ExecutorService> fetchExecutors = new ConcurrentHashMap<String, ExecutorService>();
 
 	public RestDlfConnector() throws ServiceException {
 
-		try {
-			parser = SAXParserFactory.newInstance().newSAXParser();
-		} catch (ParserConfigurationException e1) {
-			throw new ServiceException(ServiceError.RUNTIME_ERROR, "Failed to initialize SAX Parser from SAXParserFactory.");
-		} catch (SAXException e1) {
-			throw new ServiceException(ServiceError.RUNTIME_ERROR, "Failed to initialize SAX Parser from SAXParserFactory.");
-		}
 		try {
 			DefaultConnectorConfiguration config = (DefaultConnectorConfiguration) new ConnectorConfigurationFactory(new Properties()).getConfiguration();
 			AlephConfiguration alephConfig = new AlephConfiguration(config);
@@ -116,6 +127,20 @@ public class RestDlfConnector extends AlephMediator {
 			LocalConfig.setUserPhoneStoredIn(alephConfig.getProperty(AlephConstants.PATRON_ADDRESS_MAPPING_PHONE));
 			LocalConfig.setUserStreetStoredIn(alephConfig.getProperty(AlephConstants.PATRON_ADDRESS_MAPPING_STREET));
 
+			LocalConfig.setUseStaxParser(Boolean.parseBoolean(alephConfig.getProperty(AlephConstants.REST_DLF_USE_STAX_PARSER)));
+
+			String maxConcurrentFetches = alephConfig.getProperty(AlephConstants.REST_DLF_MAX_CONCURRENT_FETCHES);
+			if (maxConcurrentFetches != null && !maxConcurrentFetches.trim().isEmpty())
+				LocalConfig.setMaxConcurrentFetches(Integer.parseInt(maxConcurrentFetches.trim()));
+
+			String requestTimeout = alephConfig.getProperty(AlephConstants.REST_DLF_REQUEST_TIMEOUT);
+			if (requestTimeout != null && !requestTimeout.trim().isEmpty())
+				LocalConfig.setRequestTimeout(Integer.parseInt(requestTimeout.trim()));
+
+			String maxBatchSize = alephConfig.getProperty(AlephConstants.REST_DLF_MAX_BATCH_SIZE);
+			if (maxBatchSize != null && !maxBatchSize.trim().isEmpty())
+				LocalConfig.setMaxBatchSize(Integer.parseInt(maxBatchSize.trim()));
+
 			try {
 				LocalConfig.setMaxItemPreparationTimeDelay(Integer.parseInt(alephConfig.getProperty(AlephConstants.MAX_ITEM_PREPARATION_TIME_DELAY)));
 			} catch (Exception e) {
@@ -128,6 +153,58 @@ public class RestDlfConnector extends AlephMediator {
 
 	}
 
+	private static AlephItemHandler getItemHandler(LookupItemInitiationData initData) throws AlephException {
+		AlephItemHandler itemHandler = itemHandlers.get();
+		if (itemHandler == null) {
+			itemHandler = new AlephItemHandler(initData);
+			itemHandlers.set(itemHandler);
+		} else
+			itemHandler.reset(initData);
+		return itemHandler;
+	}
+
+	/**
+	 * Returns the executor fetching from the configured Aleph server, or null if requests are to be made one at a time.
+	 */
+	private static ExecutorService getFetchExecutor() {
+		final int maxConcurrentFetches = LocalConfig.getMaxConcurrentFetches();
+		if (maxConcurrentFetches <= 1)
+			return null;
+
+		final String server = LocalConfig.getServerName() + ":" + LocalConfig.getServerPort();
+		ExecutorService executor = fetchExecutors.get(server);
+		if (executor == null) {
+			synchronized (fetchExecutors) {
+				executor = fetchExecutors.get(server);
+				if (executor == null) {
+					executor = Executors.newFixedThreadPool(maxConcurrentFetches, new ThreadFactory() {
+
+						private final AtomicInteger threadNumber = new AtomicInteger();
+
+						@Override
+						public Thread newThread(Runnable runnable) {
+							Thread thread = new Thread(runnable, "RestDlfFetch-" + server + "-" + threadNumber.incrementAndGet());
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+					fetchExecutors.put(server, executor);
+				}
+			}
+		}
+		return executor;
+	}
+
+	private static AlephLoanHandler getLoanHandler() {
+		AlephLoanHandler loanHandler = loanHandlers.get();
+		if (loanHandler == null) {
+			loanHandler = new AlephLoanHandler();
+			loanHandlers.set(loanHandler);
+		} else
+			loanHandler.reset();
+		return loanHandler;
+	}
+
 	public AlephItem lookupItem(String id, LookupItemSetInitiationData initData) throws ParserConfigurationException, IOException, SAXException, AlephException {
 		LookupItemInitiationData LIinitData = new LookupItemInitiationData();
 		ItemId itemId = new ItemId();
@@ -168,9 +245,9 @@ public class RestDlfConnector extends AlephMediator {
 
 		InputSource streamSource = new InputSource(url.openStream());
 
-		AlephItemHandler itemHandler = new AlephItemHandler(initData);
+		AlephItemHandler itemHandler = getItemHandler(initData);
 
-		parser.parse(streamSource, itemHandler);
+		RestDlfParser.parse(streamSource, itemHandler, LocalConfig.isUseStaxParser());
 
 		return itemHandler.getCurrentAlephItem();
 	}
@@ -207,7 +284,7 @@ public class RestDlfConnector extends AlephMediator {
 		URL url;
 		InputSource streamSource;
 
-		AlephItemHandler itemHandler = new AlephItemHandler(lookupItemInitData);
+		List<AlephItem> listOfItems;
 
 		// If there is maximumItemsCount set, then parse only URLs in range of maxItemsCount
 		// Else parse all at once with "view=full" GET request
@@ -226,7 +303,7 @@ public class RestDlfConnector extends AlephMediator {
 
 			streamSource = new InputSource(url.openStream());
 
-			parser.parse(streamSource, urlsHandler);
+			RestDlfParser.parse(streamSource, urlsHandler);
 
 			if (urlsHandler.haveParsedMaxLinks()) {
 				// Just create NextItemToken & continue
@@ -249,11 +326,7 @@ public class RestDlfConnector extends AlephMediator {
 					else
 						itemToken.setNoOfDoneItemIds(urlsHandler.getNextLinkIndex());
 
-					String tokenKey = Integer.toString(random.nextInt());
-
-					itemToken.setNextToken(tokenKey);
-
-					service.addItemToken(tokenKey, itemToken);
+					String tokenKey = service.addItemToken(itemToken);
 
 					service.setNewTokenKey(tokenKey);
 
@@ -264,33 +337,194 @@ public class RestDlfConnector extends AlephMediator {
 
 			BigDecimal totalNumberOfPieces = new BigDecimal(urlsHandler.getTotalItemsCount());
 
-			for (String link : urlsHandler.getLinks()) {
+			listOfItems = fetchItems(urlsHandler.getLinks(), lookupItemInitData, lang, totalNumberOfPieces);
+
+		} else {
+
+			AlephItemHandler itemHandler = getItemHandler(lookupItemInitData);
 
-				url = new URLBuilder().parseLink(link).addRequest("lang", lang).toURL();
+			url = new URLBuilder().setBase(LocalConfig.getServerName(), LocalConfig.getServerPort())
+					.setPath(LocalConfig.getServerSuffix(), AlephConstants.ITEM_PATH_ELEMENT, recordId, AlephConstants.PARAM_ITEMS).addRequest("view", "full")
+					.addRequest("lang", lang).toURL();
 
-				streamSource = new InputSource(url.openStream());
+			streamSource = new InputSource(url.openStream());
 
-				parser.parse(streamSource, itemHandler);
+			RestDlfParser.parse(streamSource, itemHandler, LocalConfig.isUseStaxParser());
 
-				itemHandler.getCurrentAlephItem().setNumberOfPieces(totalNumberOfPieces);
+			listOfItems = itemHandler.getListOfItems();
+		}
+		return listOfItems;
 
-				// Now because handler doesn't know URL it's parsing, we need to set itemIds manually
-				String[] linkParts = link.split("/");
-				itemHandler.getCurrentAlephItem().setItemId(linkParts[5] + AlephConstants.UNIQUE_ITEM_ID_SEPARATOR + linkParts[7]);
+	}
+
+	/**
+	 * Fetches & parses the items of the links, concurrently if configured so, and returns them in the order of the links.
+	 * 
+	 * @return items parsed, or null if there were none
+	 */
+	private List<AlephItem> fetchItems(List<String> links, final LookupItemInitiationData lookupItemInitData, final String lang, final BigDecimal totalNumberOfPieces)
+			throws IOException, SAXException, AlephException {
+
+		List<AlephItem> listOfItems = null;
+
+		ExecutorService executor = links.size() > 1 ? getFetchExecutor() : null;
+
+		if (executor == null) {
+
+			for (String link : links) {
+				listOfItems = addItems(listOfItems, fetchItem(link, lookupItemInitData, lang, totalNumberOfPieces));
 			}
 
 		} else {
 
-			url = new URLBuilder().setBase(LocalConfig.getServerName(), LocalConfig.getServerPort())
-					.setPath(LocalConfig.getServerSuffix(), AlephConstants.ITEM_PATH_ELEMENT, recordId, AlephConstants.PARAM_ITEMS).addRequest("view", "full")
-					.addRequest("lang", lang).toURL();
+			List<Future<List<AlephItem>>> futures = new ArrayList<Future<List<AlephItem>>>(links.size());
+			try {
+				for (final String link : links) {
+					futures.add(executor.submit(new Callable<List<AlephItem>>() {
 
-			streamSource = new InputSource(url.openStream());
+						@Override
+						public List<AlephItem> call() throws Exception {
+							return fetchItem(link, lookupItemInitData, lang, totalNumberOfPieces);
+						}
+					}));
+				}
 
-			parser.parse(streamSource, itemHandler);
+				for (Future<List<AlephItem>> future : futures) {
+					listOfItems = addItems(listOfItems, getFetchedItems(future));
+				}
+			} finally {
+				// Stop fetching the rest if one of the items failed
+				for (Future<List<AlephItem>> future : futures) {
+					future.cancel(true);
+				}
+			}
 		}
-		return itemHandler.getListOfItems();
+		return listOfItems;
+	}
 
+	/**
+	 * Waits for the items fetched by the executor, rethrowing what the fetch has thrown.
+	 */
+	private static List<AlephItem> getFetchedItems(Future<List<AlephItem>> future) throws IOException, SAXException, AlephException {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException)
+				throw (IOException) cause;
+			else if (cause instanceof SAXException)
+				throw (SAXException) cause;
+			else if (cause instanceof AlephException)
+				throw (AlephException) cause;
+			else if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			else if (cause instanceof Error)
+				throw (Error) cause;
+			else
+				throw new IOException("Failed to fetch items.", cause);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while fetching items.");
+		}
+	}
+
+	/**
+	 * Starts looking up the items of records of LookupItemSet with no MaximumItemsCount, whose records do not depend on each other.
+	 * 
+	 * The RESTful API serves one record per request, so the records are fetched concurrently instead, up to
+	 * {@link LocalConfig#getMaxBatchSize()} records ahead of the one taken from the batch.
+	 * 
+	 * @param recordIds
+	 *            the record ids in the order they are to be taken; null for those not to be looked up
+	 * @return the batch, or null if records are to be looked up one at a time
+	 */
+	public RecordItemsBatch lookupItemsBatch(List<String> recordIds, LookupItemSetInitiationData luisInitData, AlephLookupItemSetService service) {
+		ExecutorService executor = getFetchExecutor();
+		if (executor == null || LocalConfig.getMaxBatchSize() <= 1 || service.getMaximumItemsCount() != 0)
+			return null;
+		return new RecordItemsBatch(executor, recordIds, luisInitData, service);
+	}
+
+	/**
+	 * Items of records being fetched ahead for LookupItemSet. {@link #cancel()} has to be called once the batch is not needed anymore.
+	 */
+	public class RecordItemsBatch {
+
+		private final ExecutorService executor;
+
+		private final List<String> recordIds;
+
+		private final LookupItemSetInitiationData luisInitData;
+
+		private final AlephLookupItemSetService service;
+
+		private final List<Future<List<AlephItem>>> futures;
+
+		private RecordItemsBatch(ExecutorService executor, List<String> recordIds, LookupItemSetInitiationData luisInitData, AlephLookupItemSetService service) {
+			this.executor = executor;
+			this.recordIds = recordIds;
+			this.luisInitData = luisInitData;
+			this.service = service;
+			this.futures = new ArrayList<Future<List<AlephItem>>>(recordIds.size());
+		}
+
+		/**
+		 * Returns the items of the record at the index, as {@link RestDlfConnector#lookupItems(String, LookupItemSetInitiationData, AlephLookupItemSetService)} does.
+		 */
+		public List<AlephItem> getItems(int index) throws IOException, SAXException, AlephException {
+			int batchEnd = Math.min(recordIds.size(), index + LocalConfig.getMaxBatchSize());
+			while (futures.size() < batchEnd) {
+				final String recordId = recordIds.get(futures.size());
+				futures.add(recordId == null ? null : executor.submit(new Callable<List<AlephItem>>() {
+
+					@Override
+					public List<AlephItem> call() throws Exception {
+						return lookupItems(recordId, luisInitData, service);
+					}
+				}));
+			}
+			Future<List<AlephItem>> future = futures.get(index);
+			if (future == null)
+				throw new IllegalArgumentException("Record " + index + " of the batch is not to be looked up.");
+			return getFetchedItems(future);
+		}
+
+		/**
+		 * Stops fetching the records not taken yet.
+		 */
+		public void cancel() {
+			for (Future<List<AlephItem>> future : futures) {
+				if (future != null)
+					future.cancel(true);
+			}
+		}
+	}
+
+	private static List<AlephItem> addItems(List<AlephItem> listOfItems, List<AlephItem> items) {
+		if (items != null) {
+			if (listOfItems == null)
+				listOfItems = new ArrayList<AlephItem>();
+			listOfItems.addAll(items);
+		}
+		return listOfItems;
+	}
+
+	private static List<AlephItem> fetchItem(String link, LookupItemInitiationData lookupItemInitData, String lang, BigDecimal totalNumberOfPieces) throws IOException,
+			SAXException, AlephException {
+
+		AlephItemHandler itemHandler = getItemHandler(lookupItemInitData);
+
+		URL url = new URLBuilder().parseLink(link).addRequest("lang", lang).toURL();
+
+		RestDlfParser.parse(new InputSource(url.openStream()), itemHandler, LocalConfig.isUseStaxParser());
+
+		itemHandler.getCurrentAlephItem().setNumberOfPieces(totalNumberOfPieces);
+
+		// Now because handler doesn't know URL it's parsing, we need to set itemIds manually
+		String[] linkParts = link.split("/");
+		itemHandler.getCurrentAlephItem().setItemId(linkParts[5] + AlephConstants.UNIQUE_ITEM_ID_SEPARATOR + linkParts[7]);
+
+		return itemHandler.getListOfItems();
 	}
 
 	/**
@@ -375,23 +609,23 @@ public class RestDlfConnector extends AlephMediator {
 					.toURL();
 		}
 
+		// The sub-requests are independent of each other, so fetch them all at once, but parse them one by one in this order as the handlers fill the same AlephRestDlfUser
+		byte[][] responses = fetchAll(loansUrl != null ? loansUrl : loansHistoryUrl, requestsUrl, addressUrl, cashUrl, circulationsUrl, blocksOrTrapsUrl, registrationUrl);
+
 		AlephLookupUserHandler userHandler = new AlephLookupUserHandler(initData);
 
 		InputSource streamSource;
 
 		if (loansUrl != null || loansHistoryUrl != null) {
 
-			AlephLoanHandler loanHandler = new AlephLoanHandler();
+			AlephLoanHandler loanHandler = getLoanHandler();
 
 			if (appProfileType != null && !appProfileType.isEmpty())
 				loanHandler.setLocalizationDesired(true);
 
-			if (loansUrl != null) {
-				streamSource = new InputSource(loansUrl.openStream());
-			} else
-				streamSource = new InputSource(loansHistoryUrl.openStream());
+			streamSource = new InputSource(new ByteArrayInputStream(responses[0]));
 
-			parser.parse(streamSource, loanHandler);
+			RestDlfParser.parse(streamSource, loanHandler, LocalConfig.isUseStaxParser());
 			userHandler.getAlephUser().setLoanedItems(loanHandler.getListOfLoanedItems());
 
 		}
@@ -402,10 +636,10 @@ public class RestDlfConnector extends AlephMediator {
 			if (appProfileType != null && !appProfileType.isEmpty())
 				requestItemHandler.setLocalizationDesired(true);
 
-			streamSource = new InputSource(requestsUrl.openStream());
+			streamSource = new InputSource(new ByteArrayInputStream(responses[1]));
 
 			// Here parser parses all available info saveable into RequestItem class
-			parser.parse(streamSource, requestItemHandler);
+			RestDlfParser.parse(streamSource, requestItemHandler);
 
 			List<RequestedItem> requestedItems = requestItemHandler.getRequestedItems();
 
@@ -427,34 +661,136 @@ public class RestDlfConnector extends AlephMediator {
 		}
 
 		if (addressUrl != null) {
-			streamSource = new InputSource(addressUrl.openStream());
+			streamSource = new InputSource(new ByteArrayInputStream(responses[2]));
 
-			parser.parse(streamSource, userHandler.parseAddress());
+			RestDlfParser.parse(streamSource, userHandler.parseAddress());
 		}
 		if (cashUrl != null) {
-			streamSource = new InputSource(cashUrl.openStream());
+			streamSource = new InputSource(new ByteArrayInputStream(responses[3]));
 
-			parser.parse(streamSource, userHandler.parseCash());
+			RestDlfParser.parse(streamSource, userHandler.parseCash());
 		}
 		if (circulationsUrl != null) {
-			streamSource = new InputSource(circulationsUrl.openStream());
+			streamSource = new InputSource(new ByteArrayInputStream(responses[4]));
 
-			parser.parse(streamSource, userHandler.parseCirculations());
+			RestDlfParser.parse(streamSource, userHandler.parseCirculations());
 		}
 		if (blocksOrTrapsUrl != null) {
-			streamSource = new InputSource(blocksOrTrapsUrl.openStream());
+			streamSource = new InputSource(new ByteArrayInputStream(responses[5]));
 
-			parser.parse(streamSource, userHandler.parseBlockOrTraps());
+			RestDlfParser.parse(streamSource, userHandler.parseBlockOrTraps());
 		}
 		if (registrationUrl != null) {
-			streamSource = new InputSource(registrationUrl.openStream());
+			streamSource = new InputSource(new ByteArrayInputStream(responses[6]));
 
-			parser.parse(streamSource, userHandler.parseRegistration());
+			RestDlfParser.parse(streamSource, userHandler.parseRegistration());
 		}
 
 		return userHandler.getAlephUser();
 	}
 
+	/**
+	 * Fetches the responses to the URLs on the shared executor, waiting at most the configured request timeout for each of them.
+	 *
+	 * @param urls
+	 *            URLs to fetch, any of which may be null
+	 * @return the response bodies in the order of the URLs, null where the URL was null
+	 */
+	private static byte[][] fetchAll(URL... urls) throws IOException {
+
+		final byte[][] responses = new byte[urls.length][];
+
+		int count = 0;
+		for (URL url : urls) {
+			if (url != null)
+				count++;
+		}
+
+		ExecutorService executor = count > 1 ? getFetchExecutor() : null;
+
+		if (executor == null) {
+
+			for (int i = 0; i < urls.length; i++) {
+				if (urls[i] != null)
+					responses[i] = fetch(urls[i]);
+			}
+
+		} else {
+
+			List<Future<byte[]>> futures = new ArrayList<Future<byte[]>>(urls.length);
+			try {
+				for (final URL url : urls) {
+					if (url == null) {
+						futures.add(null);
+						continue;
+					}
+					futures.add(executor.submit(new Callable<byte[]>() {
+
+						@Override
+						public byte[] call() throws Exception {
+							return fetch(url);
+						}
+					}));
+				}
+
+				int timeout = LocalConfig.getRequestTimeout();
+				for (int i = 0; i < urls.length; i++) {
+					Future<byte[]> future = futures.get(i);
+					if (future == null)
+						continue;
+					try {
+						responses[i] = timeout > 0 ? future.get(timeout, TimeUnit.MILLISECONDS) : future.get();
+					} catch (TimeoutException e) {
+						throw new SocketTimeoutException("Timed out fetching " + urls[i] + " after " + timeout + " ms.");
+					} catch (ExecutionException e) {
+						Throwable cause = e.getCause();
+						if (cause instanceof IOException)
+							throw (IOException) cause;
+						else if (cause instanceof RuntimeException)
+							throw (RuntimeException) cause;
+						else if (cause instanceof Error)
+							throw (Error) cause;
+						else
+							throw new IOException("Failed to fetch " + urls[i] + ".", cause);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new InterruptedIOException("Interrupted while fetching " + urls[i] + ".");
+					}
+				}
+			} finally {
+				// Stop fetching the rest if one of the sub-requests failed
+				for (Future<byte[]> future : futures) {
+					if (future != null)
+						future.cancel(true);
+				}
+			}
+		}
+		return responses;
+	}
+
+	private static byte[] fetch(URL url) throws IOException {
+		URLConnection connection = url.openConnection();
+
+		int timeout = LocalConfig.getRequestTimeout();
+		if (timeout > 0) {
+			connection.setConnectTimeout(timeout);
+			connection.setReadTimeout(timeout);
+		}
+
+		InputStream stream = connection.getInputStream();
+		try {
+			ByteArrayOutputStream response = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int length;
+			while ((length = stream.read(buffer)) != -1) {
+				response.write(buffer, 0, length);
+			}
+			return response.toByteArray();
+		} finally {
+			stream.close();
+		}
+	}
+
 	public AlephRequestItem lookupRequest(LookupRequestInitiationData initData) throws AlephException, IOException, SAXException, ParserConfigurationException, ServiceException {
 
 		String alephItemId = initData.getItemId().getItemIdentifierValue();
@@ -486,7 +822,7 @@ public class RestDlfConnector extends AlephMediator {
 		InputSource streamSource = new InputSource(holdsUrl.openStream());
 
 		// Here parser finds requested request's link if any
-		parser.parse(streamSource, requestHandler);
+		RestDlfParser.parse(streamSource, requestHandler);
 
 		if (requestHandler.requestWasFound() && requestHandler.getRequestLink() != null) {
 
@@ -495,7 +831,7 @@ public class RestDlfConnector extends AlephMediator {
 			streamSource = new InputSource(requestLink.openStream());
 
 			// Here parser parses info pasteable into LookupRequestResponseData
-			parser.parse(streamSource, requestHandler);
+			RestDlfParser.parse(streamSource, requestHandler);
 
 			RequestDetails requestDetails = requestHandler.getAlephRequestItem().getRequestDetails();
 
@@ -593,7 +929,7 @@ public class RestDlfConnector extends AlephMediator {
 				AlephDoRequestHandler requestItemHandler = new AlephDoRequestHandler(itemIdVal);
 
 				// Here parser detects error if any
-				parser.parse(streamSource, requestItemHandler);
+				RestDlfParser.parse(streamSource, requestItemHandler);
 
 				if (!requestItemHandler.returnedError()) {
 
@@ -606,7 +942,7 @@ public class RestDlfConnector extends AlephMediator {
 					streamSource = new InputSource(holdsUrl.openStream());
 
 					// Here parser parses the newly created requestLink
-					parser.parse(streamSource, requestItemHandler);
+					RestDlfParser.parse(streamSource, requestItemHandler);
 
 					if (requestItemHandler.requestWasFound()) {
 
@@ -615,7 +951,7 @@ public class RestDlfConnector extends AlephMediator {
 						streamSource = new InputSource(requestUrl.openStream());
 
 						// Here parser parses RequestId
-						parser.parse(streamSource, requestItemHandler);
+						RestDlfParser.parse(streamSource, requestItemHandler);
 
 						requestItem.addRequestId(requestItemHandler.getRequestId());
 					}
@@ -686,7 +1022,7 @@ public class RestDlfConnector extends AlephMediator {
 		InputSource streamSource = new InputSource(holdsUrl.openStream());
 
 		// Here parser finds request, detects if delete="Y"
-		parser.parse(streamSource, requestItemHandler);
+		RestDlfParser.parse(streamSource, requestItemHandler);
 
 		if (requestItemHandler.requestWasFound() && requestItemHandler.isDeletable()) {
 
@@ -699,7 +1035,7 @@ public class RestDlfConnector extends AlephMediator {
 			streamSource = new InputSource(httpCon.getInputStream());
 
 			// Here parser gets error if any
-			parser.parse(streamSource, requestItemHandler);
+			RestDlfParser.parse(streamSource, requestItemHandler);
 
 			if (requestItemHandler.returnedError()) {
 				Problem problem = new Problem();
@@ -742,7 +1078,7 @@ public class RestDlfConnector extends AlephMediator {
 		InputSource streamSource = new InputSource(loansUrl.openStream());
 
 		// Here parser looks up our loan about to be renewed
-		parser.parse(streamSource, renewHandler);
+		RestDlfParser.parse(streamSource, renewHandler);
 
 		if (renewHandler.loanWasFound() && renewHandler.isRenewable()) {
 
@@ -761,7 +1097,7 @@ public class RestDlfConnector extends AlephMediator {
 			streamSource = new InputSource(httpCon.getInputStream());
 
 			// Here parser finds out whether was renew successful or not & why
-			parser.parse(streamSource, renewHandler);
+			RestDlfParser.parse(streamSource, renewHandler);
 
 			if (renewHandler.actionSucceeded()) {
 
@@ -796,7 +1132,7 @@ public class RestDlfConnector extends AlephMediator {
 					streamSource = new InputSource(loanLink.openStream());
 
 					// Here the parser looks for itemDocNo, bibDocNo & itemSeqNo
-					parser.parse(streamSource, renewHandler);
+					RestDlfParser.parse(streamSource, renewHandler);
 
 					if (renewHandler.isFullIdFound()) {
 						String alephItemId = AlephUtil.buildAlephItemId(renewHandler.getBibDocNumber(), renewHandler.getItemDocNumber(), renewHandler.getItemSequenceNumber());
@@ -851,13 +1187,13 @@ public class RestDlfConnector extends AlephMediator {
 		AlephUpdateUserHandler updateUserHandler = new AlephUpdateUserHandler();
 
 		// Parse values of z304-address-1 & z304-date-from & z304-date-to .. to correctly build post_xml with mandatory fields
-		parser.parse(streamSource, updateUserHandler.setParsingMandatoryFields());
+		RestDlfParser.parse(streamSource, updateUserHandler.setParsingMandatoryFields());
 
 		if (updateUserHandler.isUpdateable() && updateUserHandler.parsedAllMandatoryFields()) {
 
 			// Parse all other values in order to be capable of particular modifications in each element
 			streamSource = new InputSource(addressLink.openStream());
-			parser.parse(streamSource, updateUserHandler);
+			RestDlfParser.parse(streamSource, updateUserHandler);
 
 			AlephPatronAddress patronAddressParsed = updateUserHandler.getPatronAddress();
 
@@ -1296,7 +1632,7 @@ public class RestDlfConnector extends AlephMediator {
 			streamSource = new InputSource(httpCon.getInputStream());
 
 			// Parse reply-code or reply-text
-			parser.parse(streamSource, updateUserHandler);
+			RestDlfParser.parse(streamSource, updateUserHandler);
 
 			return updateUserHandler.getReplyText();
 
@@ -0,0 +1,143 @@
+package org.extensiblecatalog.ncip.v2.aleph.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Parses responses of Aleph RESTful APIs with the SAX handlers in
+ * {@link org.extensiblecatalog.ncip.v2.aleph.util.SAXHandlers}, safely from any number of threads.
+ *
+ * SAXParser instances are not thread-safe, so each thread gets its own parser, which is reset after each use and
+ * kept for the next one. Alternatively the response can be read with StAX, whose {@link XMLInputFactory} is shared by
+ * all threads; the StAX events are passed to the same handlers as SAX events would be. As the StAX reader is set to
+ * coalesce text, each text node reaches the handler in a single characters() call.
+ *
+ * The input stream of the {@link InputSource} is closed once it has been parsed.
+ */
+public class RestDlfParser {
+
+	private static final SAXParserFactory saxParserFactory = SAXParserFactory.newInstance();
+
+	private static final ThreadLocal<SAXParser> saxParsers = new ThreadLocal<SAXParser>();
+
+	private static final XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
+
+	static {
+		xmlInputFactory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+		xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+	}
+
+	private RestDlfParser() {
+	}
+
+	/**
+	 * Parses the source with this thread's SAX parser.
+	 */
+	public static void parse(InputSource source, DefaultHandler handler) throws SAXException, IOException {
+		parse(source, handler, false);
+	}
+
+	/**
+	 * Parses the source with this thread's SAX parser or, if useStax is true, with a StAX reader.
+	 */
+	public static void parse(InputSource source, DefaultHandler handler, boolean useStax) throws SAXException, IOException {
+		try {
+			if (useStax) {
+				parseStax(source.getByteStream(), handler);
+			} else {
+				SAXParser parser = getSAXParser();
+				try {
+					parser.parse(source, handler);
+				} finally {
+					parser.reset();
+				}
+			}
+		} finally {
+			InputStream stream = source.getByteStream();
+			if (stream != null)
+				stream.close();
+		}
+	}
+
+	private static SAXParser getSAXParser() throws SAXException {
+		SAXParser parser = saxParsers.get();
+		if (parser == null) {
+			// SAXParserFactory is not guaranteed to be thread-safe
+			synchronized (saxParserFactory) {
+				try {
+					parser = saxParserFactory.newSAXParser();
+				} catch (ParserConfigurationException e) {
+					throw new SAXException("Failed to initialize SAX Parser from SAXParserFactory.", e);
+				}
+			}
+			saxParsers.set(parser);
+		}
+		return parser;
+	}
+
+	private static void parseStax(InputStream stream, DefaultHandler handler) throws SAXException {
+		XMLStreamReader reader = null;
+		try {
+			reader = xmlInputFactory.createXMLStreamReader(stream);
+
+			handler.startDocument();
+			while (reader.hasNext()) {
+				switch (reader.next()) {
+				case XMLStreamConstants.START_ELEMENT:
+					AttributesImpl attributes = new AttributesImpl();
+					for (int i = 0; i < reader.getAttributeCount(); i++) {
+						String namespace = reader.getAttributeNamespace(i);
+						attributes.addAttribute(namespace == null ? "" : namespace, reader.getAttributeLocalName(i),
+								qName(reader.getAttributePrefix(i), reader.getAttributeLocalName(i)), reader.getAttributeType(i), reader.getAttributeValue(i));
+					}
+					handler.startElement(namespaceURI(reader), reader.getLocalName(), qName(reader.getPrefix(), reader.getLocalName()), attributes);
+					break;
+				case XMLStreamConstants.END_ELEMENT:
+					handler.endElement(namespaceURI(reader), reader.getLocalName(), qName(reader.getPrefix(), reader.getLocalName()));
+					break;
+				case XMLStreamConstants.CHARACTERS:
+				case XMLStreamConstants.CDATA:
+				case XMLStreamConstants.SPACE:
+					handler.characters(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+					break;
+				default:
+					break;
+				}
+			}
+			handler.endDocument();
+
+		} catch (XMLStreamException e) {
+			throw new SAXException(e);
+		} finally {
+			if (reader != null) {
+				try {
+					reader.close();
+				} catch (XMLStreamException e) {
+					// The stream itself is closed by the caller
+				}
+			}
+		}
+	}
+
+	private static String namespaceURI(XMLStreamReader reader) {
+		String namespace = reader.getNamespaceURI();
+		return namespace == null ? "" : namespace;
+	}
+
+	private static String qName(String prefix, String localName) {
+		return prefix == null || prefix.isEmpty() ? localName : prefix + ":" + localName;
+	}
+}
@@ -67,6 +67,41 @@ public class AlephItemHandler extends DefaultHandler {
 	}
 
 	public AlephItemHandler(LookupItemInitiationData initData) throws AlephException {
+		reset(initData);
+	}
+
+	/**
+	 * Prepares this handler for parsing items for another request, so that instances can be reused. The lists and items returned by earlier parses are not affected.
+	 * 
+	 * @param initData
+	 * @return this handler
+	 */
+	public AlephItemHandler reset(LookupItemInitiationData initData) {
+
+		listOfItems = null;
+		currentAlephItem = null;
+
+		secondCallNoType = null;
+		z30callNumberReached = false;
+		z30callNumber2TypeReached = false;
+		z30callNumber2Reached = false;
+
+		z30subLibraryReached = false;
+		z30collectionReached = false;
+
+		statusReached = false;
+		queueReached = false;
+		z30desrciptionReached = false;
+		z13authorReached = false;
+		z13isbnReached = false;
+		z13titleReached = false;
+		z13publisherReached = false;
+		z30copyIdReached = false;
+		z30materialReached = false;
+		z30barcodeReached = false;
+		z30itemStatusReached = false;
+
+		localizationDesired = false;
 
 		bibDescriptionDesired = initData.getBibliographicDescriptionDesired();
 		circulationStatusDesired = initData.getCirculationStatusDesired();
@@ -81,6 +116,8 @@ public class AlephItemHandler extends DefaultHandler {
 			if (localization != null && !localization.isEmpty())
 				localizationDesired = true;
 		}
+
+		return this;
 	}
 
 	@Override
@@ -62,7 +62,41 @@ public class AlephLoanHandler extends DefaultHandler {
 	 * This initializes SAX parser for parsing loans.
 	 */
 	public AlephLoanHandler() {
+		reset();
+	}
+
+	/**
+	 * Prepares this handler for parsing loans for another request, so that instances can be reused. The list returned by earlier parses is not affected, and localization is
+	 * not desired until set again.
+	 * 
+	 * @return this handler
+	 */
+	public AlephLoanHandler reset() {
 		loanedItems = new ArrayList<LoanedItem>();
+		currentLoanedItem = null;
+		bibliographicDescription = null;
+
+		bibDocNumber = null;
+		itemDocNumber = null;
+		itemSequenceNumber = null;
+		loanNumber = null;
+
+		localizationDesired = false;
+		renewable = false;
+
+		z36dueDateReached = false;
+		z36loanDateReached = false;
+		z13authorReached = false;
+		z13titleReached = false;
+		z13publisherReached = false;
+		z30materialReached = false;
+		z13docNumberReached = false;
+		z30docNumberReached = false;
+		z36itemSequenceReached = false;
+		itemFullIdFound = false;
+		z36numberReached = false;
+
+		return this;
 	}
 
 	@Override
@@ -4,13 +4,12 @@ import java.io.IOException;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Random;
 
 import javax.xml.parsers.ParserConfigurationException;
 
 import org.apache.commons.lang.StringUtils;
+import org.extensiblecatalog.ncip.v2.common.NextItemTokenStore;
 import org.extensiblecatalog.ncip.v2.koha.util.ItemToken;
 import org.extensiblecatalog.ncip.v2.koha.util.KohaException;
 import org.extensiblecatalog.ncip.v2.koha.util.KohaRemoteServiceManager;
@@ -47,9 +46,7 @@ import org.xml.sax.SAXException;
 
 public class KohaLookupItemSetService implements org.extensiblecatalog.ncip.v2.ilsdiv1_1.ILSDIv1_1_LookupItemSetService {
 
-	private static HashMap<String, ItemToken> tokens = new HashMap<String, ItemToken>();
-
-	private Random random = new Random();
+	private static NextItemTokenStore<ItemToken> tokens = new NextItemTokenStore<ItemToken>();
 
 	private String newTokenKey = null;
 
@@ -76,15 +73,13 @@ public class KohaLookupItemSetService implements org.extensiblecatalog.ncip.v2.i
 		List<Problem> problems = new ArrayList<Problem>();
 		try {
 			nextItemToken = parseItemToken(initData, kohaSvcMgr);
-
-			if (nextItemToken != null && nextItemToken.isExpired()) {
-
-				Problem p = new Problem(new ProblemType("Usage of expired NextItemToken is not allowed."), null, null);
-				problems.add(p);
-			}
 		} catch (ServiceException se) {
 			if (se.getError().equals(ServiceError.UNSUPPORTED_REQUEST)) {
-				Problem p = new Problem(new ProblemType("Unknown NextItemToken was used."), null, null, "It has probably been deleted.");
+				Problem p;
+				if (tokens.isExpired(initData.getNextItemToken()))
+					p = new Problem(new ProblemType("Usage of expired NextItemToken is not allowed."), null, null);
+				else
+					p = new Problem(new ProblemType("Unknown NextItemToken was used."), null, null, "It has probably been deleted.");
 				problems.add(p);
 			}
 		}
@@ -198,12 +193,9 @@ public class KohaLookupItemSetService implements org.extensiblecatalog.ncip.v2.i
 						ItemToken itemToken = new ItemToken();
 						itemToken.setBibliographicId(bibRecordIdVal);
 
-						int newToken = random.nextInt();
+						String newToken = this.addItemToken(itemToken);
 
-						itemToken.setNextToken(Integer.toString(newToken));
-						this.addItemToken(Integer.toString(newToken), itemToken);
-
-						responseData.setNextItemToken(Integer.toString(newToken));
+						responseData.setNextItemToken(newToken);
 						break;
 					}
 
@@ -285,12 +277,9 @@ public class KohaLookupItemSetService implements org.extensiblecatalog.ncip.v2.i
 
 							itemToken.setBibliographicId(ke.getNotFoundIdentifierValue());
 
-							int newToken = random.nextInt();
-							itemToken.setNextToken(Integer.toString(newToken));
-
-							this.addItemToken(Integer.toString(newToken), itemToken);
+							String newToken = this.addItemToken(itemToken);
 
-							responseData.setNextItemToken(Integer.toString(newToken));
+							responseData.setNextItemToken(newToken);
 							break;
 						}
 					}
@@ -370,12 +359,9 @@ public class KohaLookupItemSetService implements org.extensiblecatalog.ncip.v2.i
 					ItemToken itemToken = new ItemToken();
 					itemToken.setBibliographicId(itemIdVal);
 
-					int newToken = random.nextInt();
-
-					itemToken.setNextToken(Integer.toString(newToken));
-					this.addItemToken(Integer.toString(newToken), itemToken);
+					String newToken = this.addItemToken(itemToken);
 
-					responseData.setNextItemToken(Integer.toString(newToken));
+					responseData.setNextItemToken(newToken);
 					break;
 				}
 			} catch (IOException ie) {
@@ -409,12 +395,9 @@ public class KohaLookupItemSetService implements org.extensiblecatalog.ncip.v2.i
 							ItemToken itemToken = new ItemToken();
 							itemToken.setBibliographicId(itemIdVal);
 
-							int newToken = random.nextInt();
+							String newToken = this.addItemToken(itemToken);
 
-							itemToken.setNextToken(Integer.toString(newToken));
-							this.addItemToken(Integer.toString(newToken), itemToken);
-
-							responseData.setNextItemToken(Integer.toString(newToken));
+							responseData.setNextItemToken(newToken);
 							break;
 						}
 					}
@@ -556,11 +539,7 @@ public class KohaLookupItemSetService implements org.extensiblecatalog.ncip.v2.i
 
 				itemToken.setNoOfDoneItemIds(i);
 
-				String tokenKey = Integer.toString(random.nextInt());
-
-				itemToken.setNextToken(tokenKey);
-
-				addItemToken(tokenKey, itemToken);
+				String tokenKey = addItemToken(itemToken);
 
 				newTokenKey = tokenKey;
 				break;
@@ -577,11 +556,7 @@ public class KohaLookupItemSetService implements org.extensiblecatalog.ncip.v2.i
 
 			itemToken.setDoneWithRecordId(true);
 
-			String tokenKey = Integer.toString(random.nextInt());
-
-			itemToken.setNextToken(tokenKey);
-
-			addItemToken(tokenKey, itemToken);
+			String tokenKey = addItemToken(itemToken);
 
 			newTokenKey = tokenKey;
 		}
@@ -602,8 +577,9 @@ public class KohaLookupItemSetService implements org.extensiblecatalog.ncip.v2.i
 	}
 
 	/**
-	 * Returns ItemToken stored in static HashMap, associated with {@link String} tokenKey.<br />
-	 * If passed tokenKey is empty or null, null will be returned.
+	 * Returns ItemToken stored in static NextItemTokenStore, associated with {@link String} tokenKey, and removes it from the store.<br />
+	 * If passed tokenKey is empty or null, null will be returned.<br />
+	 * If there is no such token or it has expired, ServiceException with UNSUPPORTED_REQUEST error is thrown.
 	 * 
 	 * @param tokenKey
 	 * @param bibIds
@@ -621,10 +597,10 @@ public class KohaLookupItemSetService implements org.extensiblecatalog.ncip.v2.i
 
 		if (tokenKey != null && !tokenKey.isEmpty()) {
 
-			KohaUtil.markExpiredTokens(tokens, LocalConfig.getTokenExpirationTime());
+			tokens.setTimeToLive(LocalConfig.getTokenExpirationTime() * 1000L);
 
-			nextItemToken = tokens.get(tokenKey);
-			if (nextItemToken != null && !nextItemToken.isExpired()) {
+			nextItemToken = tokens.remove(tokenKey);
+			if (nextItemToken != null) {
 
 				bibIds = initData.getBibliographicIds();
 				itemIds = initData.getItemIds();
@@ -646,12 +622,9 @@ public class KohaLookupItemSetService implements org.extensiblecatalog.ncip.v2.i
 						itemIds.subList(0, ++index).clear();
 					}
 				}
-
-				tokens.remove(tokenKey);
-			} else if (nextItemToken == null) {
-				throw new ServiceException(ServiceError.UNSUPPORTED_REQUEST, null, null);
 			} else {
-				// Do nothing .. token expiration will be announced to user with Problem element in responseData
+				// Unknown or expired token .. will be announced to user with Problem element in responseData
+				throw new ServiceException(ServiceError.UNSUPPORTED_REQUEST, null, null);
 			}
 		}
 		return nextItemToken;
@@ -716,11 +689,19 @@ public class KohaLookupItemSetService implements org.extensiblecatalog.ncip.v2.i
 		return -1;
 	}
 
-	public void addItemToken(String key, ItemToken token) {
+	/**
+	 * Stores the token until it is used or expires.
+	 * 
+	 * @param token
+	 * @return the key of the token, to be returned as NextItemToken
+	 */
+	public String addItemToken(ItemToken token) {
+
+		String key = tokens.add(token);
 
-		KohaUtil.purgeExpiredTokens(tokens);
+		token.setNextToken(key);
 
-		tokens.put(key, token);
+		return key;
 	}
 
 }
@@ -1,7 +1,5 @@
 package org.extensiblecatalog.ncip.v2.koha.util;
 
-import java.util.Date;
-
 /**
  * Represents last returned item.
  * 
@@ -10,8 +8,6 @@ import java.util.Date;
  */
 public class ItemToken {
 
-	private long timeCreated;
-
 	private String bibliographicId;
 
 	private String holdingsId;
@@ -24,14 +20,8 @@ public class ItemToken {
 
 	private boolean doneWithRecordId = false;
 
-	private boolean expired = false;
-
 	private int numberOfDoneItemIds = 0;
 
-	public ItemToken() {
-		timeCreated = new Date().getTime();
-	}
-
 	public String getBibliographicId() {
 		return bibliographicId;
 	}
@@ -95,18 +85,6 @@ public class ItemToken {
 		this.doneWithRecordId = doneWithRecordId;
 	}
 
-	public long getTimeCreated() {
-		return timeCreated;
-	}
-
-	public boolean isExpired() {
-		return expired;
-	}
-
-	public void setExpired() {
-		expired = true;
-	}
-
 	public String toString() {
 		StringBuffer b = new StringBuffer();
 		b.append("[bibliographicId=" + bibliographicId);
@@ -2,8 +2,9 @@ package org.extensiblecatalog.ncip.v2.koha.util;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
+import java.io.Reader;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URISyntaxException;
@@ -31,7 +32,6 @@ import javax.xml.parsers.SAXParserFactory;
 import org.apache.commons.lang.StringUtils;
 import org.extensiblecatalog.ncip.v2.common.ConnectorConfigurationFactory;
 import org.extensiblecatalog.ncip.v2.common.DefaultConnectorConfiguration;
-import org.extensiblecatalog.ncip.v2.koha.util.SAXHandlers.KohaLoginHandler;
 import org.extensiblecatalog.ncip.v2.service.AgencyAddressInformation;
 import org.extensiblecatalog.ncip.v2.service.AgencyAddressRoleType;
 import org.extensiblecatalog.ncip.v2.service.CancelRequestItemInitiationData;
@@ -57,28 +57,30 @@ import org.extensiblecatalog.ncip.v2.service.Version1UnstructuredAddressType;
 import org.json.simple.JSONObject;
 import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
-import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
 public class KohaConnector {
 
-	private static SAXParser saxParser;
+	private static final int MAX_LOGIN_ATTEMPTS = 5;
 
-	private static JSONParser jsonParser;
+	private static final SAXParserFactory saxParserFactory = SAXParserFactory.newInstance();
 
-	private static InputSource streamSource;
+	// Neither of the parsers is thread-safe, so each thread gets its own
+	private static final ThreadLocal<SAXParser> saxParsers = new ThreadLocal<SAXParser>();
 
-	private static String currentSessionIdCookie = "";
-	
-	private static int loginAttempts;
+	private static final ThreadLocal<JSONParser> jsonParsers = new ThreadLocal<JSONParser>() {
+		@Override
+		protected JSONParser initialValue() {
+			return new JSONParser();
+		}
+	};
 
-	public KohaConnector() throws ServiceException {
+	private static final KohaSessionPool sessionPool = new KohaSessionPool();
 
-		loginAttempts = 0;
+	public KohaConnector() throws ServiceException {
 
 		try {
-			saxParser = SAXParserFactory.newInstance().newSAXParser();
-			jsonParser = new JSONParser();
+			getSAXParser();
 			DefaultConnectorConfiguration config = (DefaultConnectorConfiguration) new ConnectorConfigurationFactory(new Properties()).getConfiguration();
 			KohaConfiguration kohaConfig = new KohaConfiguration(config);
 
@@ -118,6 +120,14 @@ public class KohaConnector {
 
 			LocalConfig.setTokenExpirationTime(Integer.parseInt(kohaConfig.getProperty(KohaConstants.CONF_NEXT_ITEM_TOKEN_EXPIRATION_TIME)));
 
+			if (kohaConfig.getProperty(KohaConstants.CONF_SESSION_POOL_SIZE) != null)
+				LocalConfig.setSessionPoolSize(Integer.parseInt(kohaConfig.getProperty(KohaConstants.CONF_SESSION_POOL_SIZE)));
+			if (kohaConfig.getProperty(KohaConstants.CONF_SESSION_REFRESH_TIME) != null)
+				LocalConfig.setSessionRefreshTime(Integer.parseInt(kohaConfig.getProperty(KohaConstants.CONF_SESSION_REFRESH_TIME)));
+
+			sessionPool.setMaxSessions(LocalConfig.getSessionPoolSize());
+			sessionPool.setRefreshTime(LocalConfig.getSessionRefreshTime() * 1000L);
+
 			LocalConfig.setEchoParticularProblemsToLUIS(Boolean.parseBoolean(kohaConfig.getProperty(KohaConstants.CONF_INCLUDE_PARTICULAR_PROBLEMS_TO_LUIS)));
 
 			try {
@@ -153,6 +163,26 @@ public class KohaConnector {
 		}
 	}
 
+	static SAXParser getSAXParser() throws SAXException {
+		SAXParser saxParser = saxParsers.get();
+		if (saxParser == null) {
+			// SAXParserFactory is not guaranteed to be thread-safe
+			synchronized (saxParserFactory) {
+				try {
+					saxParser = saxParserFactory.newSAXParser();
+				} catch (ParserConfigurationException e) {
+					throw new SAXException("Failed to initialize SAX Parser from SAXParserFactory.", e);
+				}
+			}
+			saxParsers.set(saxParser);
+		}
+		return saxParser;
+	}
+
+	private static JSONParser getJSONParser() {
+		return jsonParsers.get();
+	}
+
 	private static class DefaultTrustManager implements X509TrustManager {
 
 		@Override
@@ -177,9 +207,7 @@ public class KohaConnector {
 
 		urlBuilder.addRequest(KohaConstants.PARAM_BOR_NO_DESIRED);
 
-		String rawResponse = getPlainTextResponse(urlBuilder.toURL());
-
-		return (JSONObject) jsonParser.parse(rawResponse);
+		return getJSONResponse(urlBuilder.toURL(), new KohaJSONHandler());
 	}
 
 	/**
@@ -223,9 +251,18 @@ public class KohaConnector {
 		if (!personalInfoDesired)
 			urlBuilder.addRequest(KohaConstants.PARAM_NOT_USER_INFO);
 
-		String response = getPlainTextResponse(urlBuilder.toURL());
-
-		return (JSONObject) jsonParser.parse(response);
+		// Leave out whatever Koha returns although it was not asked for
+		KohaJSONHandler handler = new KohaJSONHandler();
+		if (!loanedItemsDesired)
+			handler.skip(KohaConstants.JSON_LOANED_ITEMS);
+		if (!requestedItemsDesired)
+			handler.skip(KohaConstants.JSON_REQUESTED_ITEMS);
+		if (!userFiscalAccountDesired)
+			handler.skip(KohaConstants.JSON_USER_FISCAL_ACCOUNT);
+		if (!personalInfoDesired && !blockOrTrapDesired && !initData.getDateOfBirthDesired())
+			handler.skip(KohaConstants.JSON_USER_INFO);
+
+		return getJSONResponse(urlBuilder.toURL(), handler);
 	}
 
 	public JSONObject cancelRequestItem(CancelRequestItemInitiationData initData, boolean itemIdIsNotEmpty) throws KohaException, IOException, SAXException,
@@ -239,9 +276,7 @@ public class KohaConnector {
 		else
 			urlBuilder.addRequest(KohaConstants.PARAM_REQUEST_ID, initData.getRequestId().getRequestIdentifierValue());
 
-		String response = getPlainTextResponse(urlBuilder.toURL());
-
-		return (JSONObject) jsonParser.parse(response);
+		return getJSONResponse(urlBuilder.toURL(), new KohaJSONHandler());
 	}
 
 	public JSONObject lookupItem(LookupItemInitiationData initData) throws KohaException, IOException, SAXException, ParserConfigurationException, ParseException,
@@ -268,9 +303,7 @@ public class KohaConnector {
 		if (!itemInfoDesired)
 			urlBuilder.addRequest(KohaConstants.PARAM_NOT_ITEM_INFO);
 
-		String response = getPlainTextResponse(urlBuilder.toURL(), itemIdVal);
-
-		return (JSONObject) jsonParser.parse(response);
+		return getJSONResponse(urlBuilder.toURL(), itemIdVal, new KohaJSONHandler());
 	}
 
 	public JSONObject lookupItem(String id, ILSDIvOneOneLookupItemSetInitiationData initData) throws ParserConfigurationException, IOException, SAXException, KohaException,
@@ -306,9 +339,11 @@ public class KohaConnector {
 		if (userIdProvided)
 			urlBuilder.addRequest(KohaConstants.PARAM_CAN_BE_REQUESTED_BY_USERID, initData.getUserId().getUserIdentifierValue());
 
-		String response = getPlainTextResponse(urlBuilder.toURL(), bibId);
+		KohaJSONHandler handler = new KohaJSONHandler();
+		if (!bibInfoDesired)
+			handler.skip(KohaConstants.JSON_BIB_INFO);
 
-		return (JSONObject) jsonParser.parse(response);
+		return getJSONResponse(urlBuilder.toURL(), bibId, handler);
 	}
 
 	public JSONObject lookupRequest(LookupRequestInitiationData initData, boolean requestIdIsNotEmpty) throws KohaException, IOException, SAXException,
@@ -322,9 +357,7 @@ public class KohaConnector {
 			urlBuilder.addRequest(KohaConstants.PARAM_ITEM_ID, initData.getItemId().getItemIdentifierValue()).addRequest(KohaConstants.PARAM_USER_ID,
 					initData.getUserId().getUserIdentifierValue());
 
-		String response = getPlainTextResponse(urlBuilder.toURL());
-
-		return (JSONObject) jsonParser.parse(response);
+		return getJSONResponse(urlBuilder.toURL(), new KohaJSONHandler());
 	}
 
 	public JSONObject renewItem(RenewItemInitiationData initData) throws KohaException, IOException, SAXException, ParserConfigurationException, URISyntaxException, ParseException {
@@ -337,9 +370,7 @@ public class KohaConnector {
 		if (desiredDateDue != null)
 			urlBuilder.addRequest(KohaConstants.PARAM_DESIRED_DATE_DUE, KohaUtil.convertToKohaDate(desiredDateDue));
 
-		String response = getPlainTextResponse(urlBuilder.toURL());
-
-		return (JSONObject) jsonParser.parse(response);
+		return getJSONResponse(urlBuilder.toURL(), new KohaJSONHandler());
 	}
 
 	public JSONObject requestItem(RequestItemInitiationData initData) throws KohaException, IOException, SAXException, ParserConfigurationException, URISyntaxException,
@@ -375,9 +406,7 @@ public class KohaConnector {
 
 		URL url = urlBuilder.toURL();
 
-		String response = getPlainTextResponse(url);
-
-		return (JSONObject) jsonParser.parse(response);
+		return getJSONResponse(url, new KohaJSONHandler());
 	}
 
 	public AgencyAddressInformation getAgencyPhysicalAddressInformation() {
@@ -415,105 +444,95 @@ public class KohaConnector {
 		return new URLBuilder().setBase(LocalConfig.getServerName(), LocalConfig.getIntranetServerPort()).setPath(LocalConfig.getSvcSuffix());
 	}
 
-	private static URLBuilder getCommonSvcNcipURLBuilder(String service) {
+	static URLBuilder getCommonSvcNcipURLBuilder(String service) {
 		return getCommonSvcURLBuilder().appendPath(KohaConstants.SVC_NCIP).addRequest(KohaConstants.PARAM_SERVICE, service);
 	}
 
-	private String getPlainTextResponse(URL url) throws KohaException, IOException, SAXException, URISyntaxException {
-		return getPlainTextResponse(url, null);
+	private JSONObject getJSONResponse(URL url, KohaJSONHandler handler) throws KohaException, IOException, SAXException, URISyntaxException, ParseException {
+		return getJSONResponse(url, null, handler);
 	}
 
-	private String getPlainTextResponse(URL url, String identifier) throws KohaException, IOException, SAXException, URISyntaxException {
+	/**
+	 * Parses the JSON response as it is read from the connection, without reading it into a String first. Response
+	 * bodies of failed requests are read as text & passed to the {@link KohaException} thrown.
+	 */
+	private JSONObject getJSONResponse(URL url, String identifier, KohaJSONHandler handler) throws KohaException, IOException, SAXException, URISyntaxException,
+			ParseException {
 
-		boolean isHttps = url.getProtocol().equals("https");
+		for (int loginAttempts = 0; loginAttempts < MAX_LOGIN_ATTEMPTS; ++loginAttempts) {
+			KohaSessionPool.Session session = sessionPool.acquire();
 
-		HttpURLConnection conn = null;
-		if (isHttps)
-			conn = (HttpsURLConnection) url.openConnection();
-		else
-			conn = (HttpURLConnection) url.openConnection();
-		
-		conn.addRequestProperty("Cookie", currentSessionIdCookie);
-		int statusCode = conn.getResponseCode();
-		if (statusCode != 403) {
-			loginAttempts = 0;
-
-			BufferedReader reader;
-			if (statusCode == 200)
-				reader = new BufferedReader(new InputStreamReader(conn.getInputStream()));
-			else
-				reader = new BufferedReader(new InputStreamReader(conn.getErrorStream()));
+			boolean isHttps = url.getProtocol().equals("https");
 
-			StringBuilder stringBuilder = new StringBuilder();
+			HttpURLConnection conn = null;
+			int statusCode;
+			String responseEntity;
+			// The session goes back to the pool however this attempt ends, so that none is lost to an exception
+			boolean sessionRejected = false;
+			try {
+				if (isHttps)
+					conn = (HttpsURLConnection) url.openConnection();
+				else
+					conn = (HttpURLConnection) url.openConnection();
+
+				conn.addRequestProperty("Cookie", session.getCookie());
+				statusCode = conn.getResponseCode();
+
+				// The body is always read to the end & the stream closed instead of disconnecting, so that the
+				// connection is kept alive for the next request
+				if (statusCode == 200) {
+					Reader reader = new BufferedReader(new InputStreamReader(conn.getInputStream()));
+					try {
+						getJSONParser().parse(reader, handler);
+						while (reader.read() != -1)
+							;
+					} finally {
+						reader.close();
+					}
+					return (JSONObject) handler.getResult();
+				}
 
-			String line = null;
-			while ((line = reader.readLine()) != null) {
-				stringBuilder.append(line + "\n");
+				responseEntity = readResponse(statusCode < 400 ? conn.getInputStream() : conn.getErrorStream());
+				sessionRejected = statusCode == 403;
+			} finally {
+				if (sessionRejected)
+					sessionPool.invalidate(session);
+				else
+					sessionPool.release(session);
 			}
 
-			conn.disconnect();
+			if (sessionRejected)
+				continue;
 
-			String responseEntity = stringBuilder.toString();
-
-			if (statusCode == 200) {
-				return responseEntity;
-			} else if (statusCode == 400) {
+			if (statusCode == 400) {
 				throw KohaException.create400BadRequestException(responseEntity);
 			} else if (statusCode == 404) {
 				throw KohaException.create404NotFoundException(responseEntity, identifier);
 			} else {
 				throw KohaException.createCommonException(statusCode, responseEntity);
 			}
-		} else {
-			conn.disconnect();
-			renewSessionCookie();
-			return getPlainTextResponse(url, identifier);
 		}
-	}
-
-	/**
-	 * Logins definer admin user (from settings in toolkit.properties) & saves
-	 * cookies to be able to continue parsing requests as logged user.
-	 * 
-	 * @param streamSource
-	 * @param url
-	 * @throws IOException
-	 * @throws SAXException
-	 */
-	private static void renewSessionCookie() throws IOException, SAXException, KohaException {
-
-		if (++loginAttempts < 5) {
-			HttpURLConnection httpCon = (HttpURLConnection) getCommonSvcNcipURLBuilder(null).toURL().openConnection();
-			httpCon.setDoOutput(true);
-			httpCon.setRequestMethod("POST");
-
-			String credentials = "userid=" + LocalConfig.getAdminName() + "&password=" + LocalConfig.getAdminPass();
 
-			OutputStreamWriter outWriter = new OutputStreamWriter(httpCon.getOutputStream());
-			outWriter.write(credentials);
-			outWriter.close();
-
-			streamSource = new InputSource(httpCon.getInputStream());
-
-			KohaLoginHandler loginHandler = new KohaLoginHandler();
+		throw KohaException.createTooManyLoginAttempts();
+	}
 
-			saxParser.parse(streamSource, loginHandler);
+	private static String readResponse(InputStream inputStream) throws IOException {
 
-			if (!loginHandler.isLogged()) {
-				throw new KohaException("Invalid credentials were provided in toolkit.properties - cannot log in.");
-			}
+		if (inputStream == null)
+			return "";
 
-			String[] cookies = httpCon.getHeaderField("Set-Cookie").split(";");
+		BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream));
+		try {
+			StringBuilder stringBuilder = new StringBuilder();
 
-			for (String cookie : cookies) {
-				if (cookie.contains("CGISESSID=")) {
-					currentSessionIdCookie = cookie;
-					break;
-				}
+			String line = null;
+			while ((line = reader.readLine()) != null) {
+				stringBuilder.append(line).append('\n');
 			}
 
-		} else {
-			throw KohaException.createTooManyLoginAttempts();
+			return stringBuilder.toString();
+		} finally {
+			reader.close();
 		}
 	}
 }
@@ -45,6 +45,8 @@ public class KohaConstants {
 	public static final String CONF_TRANSFER_BRANCH_TIME = "TransferBranchTime";
 	public static final String CONF_CURRENCY_CODE = "CurrencyCode";
 	public static final String CONF_TRUST_ALL_CERTIFICATES = "TrustAllCertificates";
+	public static final String CONF_SESSION_POOL_SIZE = "SessionPoolSize";
+	public static final String CONF_SESSION_REFRESH_TIME = "SessionRefreshTime";
 
 	public static final String CONF_STRING_FORMAT_FOR_EXPIRED = "expired";
 	public static final String CONF_STRING_FORMAT_FOR_TOTALFINES = "totalfines";
@@ -109,6 +111,16 @@ public class KohaConstants {
 	public static final String XML_VAL_STATUS_EXPIRED = "expired";
 	public static final String XML_VAL_STATUS_OK = "ok";
 
+	//
+	// JSON PARSING SECTION
+	//
+
+	public static final String JSON_USER_INFO = "userInfo";
+	public static final String JSON_LOANED_ITEMS = "loanedItems";
+	public static final String JSON_REQUESTED_ITEMS = "requestedItems";
+	public static final String JSON_USER_FISCAL_ACCOUNT = "userFiscalAccount";
+	public static final String JSON_BIB_INFO = "bibInfo";
+
 	public static final String SERVICE_LOOKUP_ITEM = "lookup_item";
 	public static final String SERVICE_LOOKUP_ITEM_SET = "lookup_item_set";
 	public static final String SERVICE_LOOKUP_USER = "lookup_user";
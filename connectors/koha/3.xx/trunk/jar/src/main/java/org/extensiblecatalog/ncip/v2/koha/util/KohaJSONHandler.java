@@ -0,0 +1,131 @@
+package org.extensiblecatalog.ncip.v2.koha.util;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.Set;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.ContentHandler;
+import org.json.simple.parser.ParseException;
+
+/**
+ * Builds the same {@link JSONObject} tree as {@link org.json.simple.parser.JSONParser#parse(java.io.Reader)} from the
+ * parser's events, so that the response can be parsed as it is read from the connection instead of being read into a
+ * String first.
+ *
+ * Members of the root object whose names were passed to {@link #skip(String)} are not built at all; their values are
+ * passed over as they are read, so sections of the response the initiation data did not ask for take no memory.
+ */
+public class KohaJSONHandler implements ContentHandler {
+
+	private final Set<String> skippedKeys = new HashSet<String>();
+
+	// Holds the JSONObjects & JSONArrays being built & the names of the members being read
+	private final LinkedList<Object> stack = new LinkedList<Object>();
+
+	// Greater than zero while reading a skipped value - the depth of objects & arrays within it plus one
+	private int skipDepth;
+
+	private Object result;
+
+	/**
+	 * Leaves out the member of the root object with this name.
+	 */
+	public KohaJSONHandler skip(String key) {
+		skippedKeys.add(key);
+		return this;
+	}
+
+	/**
+	 * @return the root value of the last parsed JSON text
+	 */
+	public Object getResult() {
+		return result;
+	}
+
+	@Override
+	public void startJSON() throws ParseException, IOException {
+		stack.clear();
+		skipDepth = 0;
+		result = null;
+	}
+
+	@Override
+	public void endJSON() throws ParseException, IOException {
+	}
+
+	@Override
+	public boolean startObject() throws ParseException, IOException {
+		if (skipDepth > 0)
+			++skipDepth;
+		else
+			stack.addFirst(new JSONObject());
+		return true;
+	}
+
+	@Override
+	public boolean endObject() throws ParseException, IOException {
+		if (skipDepth > 0)
+			--skipDepth;
+		else
+			addValue(stack.removeFirst());
+		return true;
+	}
+
+	@Override
+	public boolean startObjectEntry(String key) throws ParseException, IOException {
+		if (skipDepth == 0) {
+			if (stack.size() == 1 && skippedKeys.contains(key))
+				skipDepth = 1;
+			else
+				stack.addFirst(key);
+		}
+		return true;
+	}
+
+	@Override
+	public boolean endObjectEntry() throws ParseException, IOException {
+		if (skipDepth == 1)
+			skipDepth = 0;
+		return true;
+	}
+
+	@Override
+	public boolean startArray() throws ParseException, IOException {
+		if (skipDepth > 0)
+			++skipDepth;
+		else
+			stack.addFirst(new JSONArray());
+		return true;
+	}
+
+	@Override
+	public boolean endArray() throws ParseException, IOException {
+		if (skipDepth > 0)
+			--skipDepth;
+		else
+			addValue(stack.removeFirst());
+		return true;
+	}
+
+	@Override
+	public boolean primitive(Object value) throws ParseException, IOException {
+		if (skipDepth == 0)
+			addValue(value);
+		return true;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void addValue(Object value) {
+		if (stack.isEmpty()) {
+			result = value;
+		} else if (stack.getFirst() instanceof String) {
+			String key = (String) stack.removeFirst();
+			((JSONObject) stack.getFirst()).put(key, value);
+		} else {
+			((JSONArray) stack.getFirst()).add(value);
+		}
+	}
+}
@@ -0,0 +1,244 @@
+package org.extensiblecatalog.ncip.v2.koha.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.net.HttpURLConnection;
+import java.util.LinkedList;
+
+import javax.xml.parsers.SAXParser;
+
+import org.extensiblecatalog.ncip.v2.koha.util.SAXHandlers.KohaLoginHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * Pool of Koha sessions logged in as the admin user from toolkit.properties.
+ *
+ * A request borrows a session with {@link #acquire()} and hands it back with {@link #release(Session)}, or with
+ * {@link #invalidate(Session)} if Koha refused its cookie. New sessions are created only when no idle session is left
+ * and fewer than {@link #getMaxSessions()} sessions are open; otherwise the request waits for one to be released. Only
+ * one login is in flight at a time, so an expired session does not make every waiting request log in at once.
+ *
+ * Sessions idle for longer than {@link #getRefreshTime()} are dropped when they would be borrowed and a new one is
+ * logged in instead, before Koha would expire them and answer with 403.
+ */
+public class KohaSessionPool {
+
+	public static final int DEFAULT_MAX_SESSIONS = 8;
+
+	/**
+	 * In milliseconds.
+	 */
+	public static final long DEFAULT_REFRESH_TIME = 30 * 60 * 1000L;
+
+	/**
+	 * In milliseconds.
+	 */
+	public static final long DEFAULT_ACQUIRE_TIMEOUT = 60 * 1000L;
+
+	private final LinkedList<Session> idleSessions = new LinkedList<Session>();
+
+	private final Object loginLock = new Object();
+
+	private int openSessions = 0;
+
+	private volatile int maxSessions = DEFAULT_MAX_SESSIONS;
+
+	private volatile long refreshTime = DEFAULT_REFRESH_TIME;
+
+	private volatile long acquireTimeout = DEFAULT_ACQUIRE_TIMEOUT;
+
+	public static class Session {
+
+		private final String cookie;
+
+		private long lastUsed;
+
+		private Session(String cookie) {
+			this.cookie = cookie;
+			this.lastUsed = System.currentTimeMillis();
+		}
+
+		public String getCookie() {
+			return cookie;
+		}
+	}
+
+	/**
+	 * Borrows an idle session, logging in a new one if there is none and the pool is not full.
+	 *
+	 * @throws KohaException
+	 *             if no session is released within the acquire timeout or the login fails
+	 */
+	public Session acquire() throws KohaException, IOException, SAXException {
+
+		Session session = takeIdleSession(true);
+		if (session != null)
+			return session;
+
+		// A slot has been reserved for this thread, so log in ...
+		boolean loggedIn = false;
+		try {
+			synchronized (loginLock) {
+				// ... unless a session was released while waiting for the login in flight
+				session = takeIdleSession(false);
+				if (session == null) {
+					session = new Session(login());
+					loggedIn = true;
+				}
+			}
+		} finally {
+			if (!loggedIn)
+				closeSlot();
+		}
+		return session;
+	}
+
+	/**
+	 * Returns the session to the pool.
+	 */
+	public void release(Session session) {
+		synchronized (this) {
+			session.lastUsed = System.currentTimeMillis();
+			idleSessions.addFirst(session);
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Discards the session, e.g. because Koha answered with 403 to its cookie.
+	 */
+	public void invalidate(Session session) {
+		closeSlot();
+	}
+
+	/**
+	 * Discards all idle sessions.
+	 */
+	public synchronized void clear() {
+		openSessions -= idleSessions.size();
+		idleSessions.clear();
+		notifyAll();
+	}
+
+	/**
+	 * Takes the most recently used idle session that is not due for refresh. If there is none and reserveSlot is true,
+	 * waits until either a session is released or a slot is free, which is then reserved for the caller and null is
+	 * returned.
+	 */
+	private synchronized Session takeIdleSession(boolean reserveSlot) throws KohaException {
+
+		long deadline = System.currentTimeMillis() + acquireTimeout;
+		while (true) {
+			long now = System.currentTimeMillis();
+			while (!idleSessions.isEmpty()) {
+				Session session = idleSessions.removeFirst();
+				if (now - session.lastUsed < refreshTime)
+					return session;
+
+				--openSessions;
+			}
+
+			if (!reserveSlot)
+				return null;
+
+			if (openSessions < maxSessions) {
+				++openSessions;
+				return null;
+			}
+
+			long timeout = deadline - now;
+			if (timeout <= 0)
+				throw new KohaException("Timed out waiting for a Koha session - all " + maxSessions + " sessions are in use.");
+
+			try {
+				wait(timeout);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new KohaException("Interrupted while waiting for a Koha session.");
+			}
+		}
+	}
+
+	private synchronized void closeSlot() {
+		--openSessions;
+		notifyAll();
+	}
+
+	/**
+	 * Logs in the admin user (from settings in toolkit.properties) and returns the session cookie.
+	 */
+	private static String login() throws IOException, SAXException, KohaException {
+
+		HttpURLConnection httpCon = (HttpURLConnection) KohaConnector.getCommonSvcNcipURLBuilder(null).toURL().openConnection();
+		httpCon.setDoOutput(true);
+		httpCon.setRequestMethod("POST");
+
+		String credentials = "userid=" + LocalConfig.getAdminName() + "&password=" + LocalConfig.getAdminPass();
+
+		OutputStreamWriter outWriter = new OutputStreamWriter(httpCon.getOutputStream());
+		outWriter.write(credentials);
+		outWriter.close();
+
+		KohaLoginHandler loginHandler = new KohaLoginHandler();
+
+		InputStream inputStream = httpCon.getInputStream();
+		try {
+			SAXParser saxParser = KohaConnector.getSAXParser();
+			try {
+				saxParser.parse(new InputSource(inputStream), loginHandler);
+			} finally {
+				saxParser.reset();
+			}
+		} finally {
+			inputStream.close();
+		}
+
+		if (!loginHandler.isLogged()) {
+			throw new KohaException("Invalid credentials were provided in toolkit.properties - cannot log in.");
+		}
+
+		String setCookie = httpCon.getHeaderField("Set-Cookie");
+		if (setCookie != null) {
+			for (String cookie : setCookie.split(";")) {
+				if (cookie.contains("CGISESSID=")) {
+					return cookie.trim();
+				}
+			}
+		}
+
+		throw new KohaException("Koha did not return a session cookie after login.");
+	}
+
+	public int getMaxSessions() {
+		return maxSessions;
+	}
+
+	public synchronized void setMaxSessions(int maxSessions) {
+		this.maxSessions = maxSessions;
+		notifyAll();
+	}
+
+	/**
+	 * @return the time in milliseconds after which an idle session is replaced by a new one
+	 */
+	public long getRefreshTime() {
+		return refreshTime;
+	}
+
+	public void setRefreshTime(long refreshTime) {
+		this.refreshTime = refreshTime;
+	}
+
+	/**
+	 * @return the time in milliseconds to wait for a session when all of them are in use
+	 */
+	public long getAcquireTimeout() {
+		return acquireTimeout;
+	}
+
+	public void setAcquireTimeout(long acquireTimeout) {
+		this.acquireTimeout = acquireTimeout;
+	}
+}
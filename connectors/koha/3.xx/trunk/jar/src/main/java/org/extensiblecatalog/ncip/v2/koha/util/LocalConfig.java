@@ -37,6 +37,10 @@ public class LocalConfig {
 
 	private static int tokenExpirationTime;
 
+	private static int sessionPoolSize = KohaSessionPool.DEFAULT_MAX_SESSIONS;
+
+	private static int sessionRefreshTime = (int) (KohaSessionPool.DEFAULT_REFRESH_TIME / 1000);
+
 	private static int bibLibraryLength;
 
 	private static Map<String, Integer> transferBranchTime;
@@ -222,6 +226,36 @@ public class LocalConfig {
 		LocalConfig.tokenExpirationTime = tokenExpirationTime;
 	}
 
+	/**
+	 * @return the maximum number of Koha sessions open at a time
+	 */
+	public static int getSessionPoolSize() {
+		return sessionPoolSize;
+	}
+
+	/**
+	 * @param sessionPoolSize
+	 *            the sessionPoolSize to set
+	 */
+	public static void setSessionPoolSize(int sessionPoolSize) {
+		LocalConfig.sessionPoolSize = sessionPoolSize;
+	}
+
+	/**
+	 * @return the time in seconds after which an idle Koha session is replaced by a new one
+	 */
+	public static int getSessionRefreshTime() {
+		return sessionRefreshTime;
+	}
+
+	/**
+	 * @param sessionRefreshTime
+	 *            the sessionRefreshTime to set
+	 */
+	public static void setSessionRefreshTime(int sessionRefreshTime) {
+		LocalConfig.sessionRefreshTime = sessionRefreshTime;
+	}
+
 	/**
 	 * @return the bibLibraryLength
 	 */
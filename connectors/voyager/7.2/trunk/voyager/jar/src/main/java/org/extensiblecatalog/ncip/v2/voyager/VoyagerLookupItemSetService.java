@@ -14,14 +14,19 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.GregorianCalendar;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
-import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
 import org.extensiblecatalog.ncip.v2.common.ConnectorConfigurationFactory;
+import org.extensiblecatalog.ncip.v2.common.NextItemTokenStore;
 import org.extensiblecatalog.ncip.v2.service.*;
 import org.extensiblecatalog.ncip.v2.voyager.util.ILSException;
 import org.extensiblecatalog.ncip.v2.voyager.util.ItemToken;
@@ -57,9 +62,59 @@ public class VoyagerLookupItemSetService implements LookupItemSetService {
     final int MAX_ITEMS_TO_RETURN = Integer.parseInt(
     		(String) voyagerConfig.getProperty(VoyagerConstants.CONFIG_VOYAGER_MAX_LUIS_ITEMS));
 
-    static Random random = new Random();
+    static NextItemTokenStore<ItemToken> tokens = new NextItemTokenStore<ItemToken>();
 
-    static HashMap<String, ItemToken> tokens = new HashMap<String, ItemToken>();
+    /**
+     * The XPath expressions used on the vxws documents. JDOM's XPath objects cannot be
+     * shared between threads, so each thread compiles them once.
+     */
+    private static final ThreadLocal<HoldingsXPaths> xpaths = new ThreadLocal<HoldingsXPaths>() {
+        @Override
+        protected HoldingsXPaths initialValue() {
+            try {
+                return new HoldingsXPaths();
+            } catch (JDOMException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    };
+
+    private static class HoldingsXPaths {
+
+        final XPath holdings;
+
+        final XPath itemData;
+
+        final XPath mfhdRecords;
+
+        final XPath electronicResourceUrl;
+
+        final XPath message;
+
+        HoldingsXPaths() throws JDOMException {
+            Namespace holNs = Namespace.getNamespace(
+            		"hol", "http://www.endinfosys.com/Voyager/holdings");
+            Namespace serNs = Namespace.getNamespace(
+            		"ser", "http://www.endinfosys.com/Voyager/serviceParameters");
+            Namespace mfhdNs = Namespace.getNamespace("mfhd", "http://www.endinfosys.com/Voyager/mfhd");
+            Namespace slimNs = Namespace.getNamespace("slim", "http://www.loc.gov/MARC21/slim");
+
+            holdings = XPath.newInstance("/response/holdings/institution/holding");
+            // Relative to a holding, with the name of the item data in $name
+            itemData = XPath.newInstance("item/itemData[@name=$name]");
+            mfhdRecords = XPath.newInstance("//mfhd:mfhdRecord");
+            mfhdRecords.addNamespace(holNs);
+            mfhdRecords.addNamespace(serNs);
+            mfhdRecords.addNamespace(mfhdNs);
+            electronicResourceUrl = XPath.newInstance(
+            		"//slim:datafield[@tag='856']/slim:subfield[@code='u']");
+            electronicResourceUrl.addNamespace(holNs);
+            electronicResourceUrl.addNamespace(serNs);
+            electronicResourceUrl.addNamespace(slimNs);
+            message = XPath.newInstance("/ser:voyagerServiceData/ser:messages/ser:message");
+            message.addNamespace(serNs);
+        }
+    }
 
     VoyagerRemoteServiceManager voyagerSvcMgr;
 
@@ -111,14 +166,13 @@ public class VoyagerLookupItemSetService implements LookupItemSetService {
         String token = initData.getNextItemToken();
         ItemToken nextItemToken = null;
         if (token != null) {
-            nextItemToken = tokens.get(token);
+            // Remove token from the store; unknown and expired tokens are both invalid
+            nextItemToken = tokens.remove(token);
             if (nextItemToken != null) {
                 int index = getIndexOfBibId(bibIds, nextItemToken.getBibliographicId());
                 if (index != -1) {
                     bibIds.subList(0, index).clear();
                 }
-                // Remove token from memory hashmap
-                tokens.remove(token);
             } else {
                 problems.addAll(ServiceHelper.generateProblems(
                 		Version1GeneralProcessingError.TEMPORARY_PROCESSING_FAILURE,
@@ -131,8 +185,23 @@ public class VoyagerLookupItemSetService implements LookupItemSetService {
 
         List<BibInformation> bibInformations = new ArrayList<BibInformation>();
 
-        // Loop through Bib Ids in request
+        // Start fetching the holdings of all bibs at once; the remote service manager
+        // bounds how many requests are made at the same time
+        List<Future<Document>> restfulFetches = new ArrayList<Future<Document>>();
+        List<Future<Document>> xmlFetches = new ArrayList<Future<Document>>();
         for (BibliographicId bibId : bibIds) {
+            if (isFetchable(bibId)) {
+                restfulFetches.add(getHoldingRecordsFromRestful(bibId));
+                xmlFetches.add(getHoldingRecordsFromXml(bibId));
+            } else {
+                restfulFetches.add(null);
+                xmlFetches.add(null);
+            }
+        }
+
+        // Loop through Bib Ids in request
+        for (int bibIndex = 0; bibIndex < bibIds.size(); bibIndex++) {
+            BibliographicId bibId = bibIds.get(bibIndex);
 
             String id = null;
             String itemAgencyId = null;
@@ -166,14 +235,16 @@ public class VoyagerLookupItemSetService implements LookupItemSetService {
                 }
 
                 // Retrieve XML from vxws web services
-                holdingsDocFromRestful = getHoldingRecordsFromRestful(bibId);
-                holdingsDocFromXml = getHoldingRecordsFromXml(bibId);
+                holdingsDocFromRestful = getFetchedDocument(restfulFetches.get(bibIndex));
+                holdingsDocFromXml = getFetchedDocument(xmlFetches.get(bibIndex));
 
                 if (holdingsDocFromXml == null) {
                     problems.addAll(ServiceHelper.generateProblems(
                     		Version1GeneralProcessingError.TEMPORARY_PROCESSING_FAILURE,
                             null, id, "Problem contacting the vxws service"));
                     luisResponseData.setProblems(problems);
+                    cancelFetches(restfulFetches);
+                    cancelFetches(xmlFetches);
                     return luisResponseData;
                 }
 
@@ -188,7 +259,12 @@ public class VoyagerLookupItemSetService implements LookupItemSetService {
                 }
 
                 // Get holding Ids belonging to this bib
-                holdingIds = getHoldingIdsFromHoldingDoc(holdingsDocFromXml);
+                Map<String, Element> mfhdRecords = getMfhdRecordsFromHoldingDoc(holdingsDocFromXml);
+                holdingIds = new ArrayList<String>(mfhdRecords.keySet());
+
+                // Index the holdings once instead of searching the documents for each holding
+                Map<String, List<Element>> holdingsById = getHoldingsById(holdingsDocFromRestful);
+                String eResourceUrl = getElectronicResourceUrl(holdingsDocFromXml);
 
                 if (nextItemToken != null) {
                      int index = holdingIds.indexOf(nextItemToken.getHoldingsId());
@@ -226,7 +302,8 @@ public class VoyagerLookupItemSetService implements LookupItemSetService {
                 // Build HoldingSet with items in it
                 for (String holdingId : holdingIds) {
                     log.debug("Processing Holding id = " + holdingId);
-                    itemIds = getItemIdsFromHoldingDoc(holdingId, holdingsDocFromRestful);
+                    List<Element> holdings = getHoldingsForHoldingId(holdingId, holdingsById);
+                    itemIds = getItemIdsFromHoldingDoc(holdings);
                     log.debug("All itemIds: " + itemIds);
                     if (nextItemToken != null) {
                          int index = itemIds.indexOf(nextItemToken.getItemId());
@@ -242,8 +319,7 @@ public class VoyagerLookupItemSetService implements LookupItemSetService {
                     holdingSet.setHoldingsSetId(holdingId);
 
 //                    if (initData.getElectronicResourceDesired()) {
-                        ElectronicResource eResource = getElectronicResourceForHoldingId(
-                        		holdingId, holdingsDocFromXml);
+                        ElectronicResource eResource = getElectronicResourceForHoldingId(eResourceUrl);
                         if (eResource != null) {
                             holdingSet.setElectronicResource(eResource);
                         }
@@ -253,7 +329,7 @@ public class VoyagerLookupItemSetService implements LookupItemSetService {
                     if (itemIds != null && itemIds.size() > 0) {
 
                         holdingSet.setCallNumber(
-                        		getCallNumberForHoldingDoc(holdingId, holdingsDocFromRestful));
+                        		getCallNumberForHoldingDoc(holdings));
 
                         // Set location
                         // Decision made to omit Location at the Holding Set level this release
@@ -286,8 +362,7 @@ public class VoyagerLookupItemSetService implements LookupItemSetService {
 
                         Map<String, String> statuses = null;
                         if (initData.getCirculationStatusDesired()) {
-                            statuses = getCirculationStatusForItemIds(itemIds, 
-                            		holdingsDocFromRestful);
+                            statuses = getCirculationStatusForItemIds(itemIds, holdings);
                         }
 
                         // TODO: Double check that this really isn't available through GetHoldings
@@ -300,21 +375,19 @@ public class VoyagerLookupItemSetService implements LookupItemSetService {
 
                         Map<String, ItemDescription> itemDescriptions = null;
                         if (initData.getItemDescriptionDesired()) {
-                            itemDescriptions = getItemDescriptionForItemIds(
-                            		itemIds, holdingsDocFromRestful);
+                            itemDescriptions = getItemDescriptionForItemIds(itemIds, holdings);
                         }
 
                         // TODO: Refactor this because we no longer want to return a list of locs.
                         Map<String, Location> locations = null;
                         if (initData.getLocationDesired()) {
-                            locations = getLocationForItemIds(itemIds, holdingsDocFromRestful);
+                            locations = getLocationForItemIds(itemIds, holdings);
                         }
 
                         Map<String, String> copyNumbers = new HashMap<String, String>();
                         Map<String, GregorianCalendar> dueDates = null;
                         if (itemDescriptions == null) {
-                            itemDescriptions = getItemDescriptionForItemIds(
-                            		itemIds, holdingsDocFromRestful);
+                            itemDescriptions = getItemDescriptionForItemIds(itemIds, holdings);
                         }
 
                         Iterator<String> itrId = itemDescriptions.keySet().iterator();
@@ -323,8 +396,8 @@ public class VoyagerLookupItemSetService implements LookupItemSetService {
                             copyNumbers.put(itemDescriptions.get(key).getCopyNumber(), key);
                         }
 
-                        dueDates = getDueDateForItemIds(itemIds, holdingsDocFromXml,
-                        		copyNumbers, holdingId);
+                        dueDates = getDueDateForItemIds(itemIds, mfhdRecords.get(holdingId),
+                        		copyNumbers);
 
                         Iterator<String> itr = itemInformations.keySet().iterator();
                         while (itr.hasNext()) {
@@ -389,11 +462,10 @@ public class VoyagerLookupItemSetService implements LookupItemSetService {
                             itemToken.setBibliographicId(id);
                             itemToken.setHoldingsId(holdingId);
                             itemToken.setItemId(itemIds.get(itemIds.size() - 1));
-                            int newToken = random.nextInt();
-                            itemToken.setNextToken(Integer.toString(newToken));
-                            tokens.put(Integer.toString(newToken), itemToken);
+                            String newToken = tokens.add(itemToken);
+                            itemToken.setNextToken(newToken);
 
-                            luisResponseData.setNextItemToken(Integer.toString(newToken));
+                            luisResponseData.setNextItemToken(newToken);
 
                             reachedMaxItemCount = true;
 
@@ -411,11 +483,10 @@ public class VoyagerLookupItemSetService implements LookupItemSetService {
                             itemToken.setBibliographicId(id);
                             itemToken.setHoldingsId(holdingId);
                             itemToken.setItemId("");
-                            int newToken = random.nextInt();
-                            itemToken.setNextToken(Integer.toString(newToken));
-                            tokens.put(Integer.toString(newToken), itemToken);
+                            String newToken = tokens.add(itemToken);
+                            itemToken.setNextToken(newToken);
 
-                            luisResponseData.setNextItemToken(Integer.toString(newToken));
+                            luisResponseData.setNextItemToken(newToken);
 
                             reachedMaxItemCount = true;
                         }
@@ -456,6 +527,10 @@ public class VoyagerLookupItemSetService implements LookupItemSetService {
             }
         }
 
+        // The bibs after the maximum number of items are not needed
+        cancelFetches(restfulFetches);
+        cancelFetches(xmlFetches);
+
         Date eService = new Date();
         log.debug("LUIS Service time log : " + (eService.getTime() - sService.getTime()) + "  " + 
         		((eService.getTime() - sService.getTime())/1000) + " sec");
@@ -476,18 +551,8 @@ public class VoyagerLookupItemSetService implements LookupItemSetService {
     }
 
     private ElectronicResource getElectronicResource(Document doc) throws ILSException {
-        Namespace holNs = Namespace.getNamespace(
-        		"hol", "http://www.endinfosys.com/Voyager/holdings");
-        Namespace serNs = Namespace.getNamespace(
-        		"ser", "http://www.endinfosys.com/Voyager/serviceParameters");
-        Namespace slimNs = Namespace.getNamespace("slim", "http://www.loc.gov/MARC21/slim");
-        XPath xpath;
         try {
-            xpath = XPath.newInstance("//slim:datafield[@tag='856']/slim:subfield[@code='u']");
-            xpath.addNamespace(serNs);
-            xpath.addNamespace(holNs);
-            xpath.addNamespace(slimNs);
-            Element url = (Element) xpath.selectSingleNode(doc);
+            Element url = (Element) xpaths.get().electronicResourceUrl.selectSingleNode(doc);
             if (url != null) {
                 log.debug("Found url " + url.getTextTrim());
                 ElectronicResource electronicResource = new ElectronicResource();
@@ -504,13 +569,8 @@ public class VoyagerLookupItemSetService implements LookupItemSetService {
     }
 
     private boolean doesRecordExist(Document holdingsDocFromXml) throws ILSException {
-        Namespace ns = Namespace.getNamespace(
-        		"ser", "http://www.endinfosys.com/Voyager/serviceParameters");
-        XPath xpath;
         try {
-            xpath = XPath.newInstance("/ser:voyagerServiceData/ser:messages/ser:message");
-            xpath.addNamespace(ns);
-            Element message = (Element) xpath.selectSingleNode(holdingsDocFromXml);
+            Element message = (Element) xpaths.get().message.selectSingleNode(holdingsDocFromXml);
             if (message != null && message.getText().startsWith("Could not retrieve bib record")) {
             	log.debug("The message text is: " + message.getText());
                 log.debug("Could not retrieve bib record");
@@ -540,7 +600,44 @@ public class VoyagerLookupItemSetService implements LookupItemSetService {
         return itemIds.subList(0, numOfitemIdsToProcess);
     }
 
-    private Document getHoldingRecordsFromRestful(BibliographicId bibliographicId) {
+    /**
+     * Whether the holdings of the bib can be fetched, i.e. it passes the checks made on it
+     * before they are used.
+     */
+    private boolean isFetchable(BibliographicId bibId) {
+        BibliographicRecordId recordId = bibId.getBibliographicRecordId();
+        if (recordId == null || recordId.getAgencyId() == null) {
+            return false;
+        }
+        String id = recordId.getBibliographicRecordIdentifier();
+        String itemAgencyId = recordId.getAgencyId().getValue();
+        return id != null && !id.equals("") && itemAgencyId != null && !itemAgencyId.equals("")
+        		&& checkValidAgencyId(itemAgencyId);
+    }
+
+    private Document getFetchedDocument(Future<Document> fetch) {
+        try {
+            return fetch.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fetch.cancel(true);
+            log.error("Interrupted while waiting for the vxws service");
+            return null;
+        } catch (ExecutionException e) {
+            log.error("An error occurred contacting the vxws service", e.getCause());
+            return null;
+        }
+    }
+
+    private void cancelFetches(List<Future<Document>> fetches) {
+        for (Future<Document> fetch : fetches) {
+            if (fetch != null) {
+                fetch.cancel(false);
+            }
+        }
+    }
+
+    private Future<Document> getHoldingRecordsFromRestful(BibliographicId bibliographicId) {
         String itemAgencyId;
         String host;
         String bibId = bibliographicId.getBibliographicRecordId().
@@ -564,196 +661,179 @@ public class VoyagerLookupItemSetService implements LookupItemSetService {
         }
 
         String webServicesUrl =  host + "/vxws/record/" + bibId + "/holdings?view=items";
-        Document doc = voyagerSvcMgr.getWebServicesDoc(webServicesUrl);
 
-        return doc;
+        return voyagerSvcMgr.getWebServicesDocAsync(webServicesUrl);
     }
 
-    private List<String> getHoldingIdsFromHoldingDoc(Document doc) throws ILSException {
-        List<String> holdingIds = new ArrayList<String>();
+    /**
+     * Returns the mfhd records of the GetHoldingsService document by their mfhd ids,
+     * in document order.
+     */
+    private Map<String, Element> getMfhdRecordsFromHoldingDoc(Document doc) throws ILSException {
+        Map<String, Element> mfhdRecords = new LinkedHashMap<String, Element>();
 
-        Namespace holNs = Namespace.getNamespace(
-        		"hol", "http://www.endinfosys.com/Voyager/holdings");
-        Namespace serNs = Namespace.getNamespace(
-        		"ser", "http://www.endinfosys.com/Voyager/serviceParameters");
-        Namespace mfhdNs = Namespace.getNamespace("mfhd", "http://www.endinfosys.com/Voyager/mfhd");
         try {
-            XPath xpath = XPath.newInstance("//mfhd:mfhdRecord");
-            xpath.addNamespace(holNs);
-            xpath.addNamespace(serNs);
-            xpath.addNamespace(mfhdNs);
-            List<Element> mfhdElements  = xpath.selectNodes(doc);
+            List<Element> mfhdElements  = xpaths.get().mfhdRecords.selectNodes(doc);
             for (Element mfhdElement : mfhdElements) {
-                holdingIds.add(mfhdElement.getAttributeValue("mfhdId"));
+                mfhdRecords.put(mfhdElement.getAttributeValue("mfhdId"), mfhdElement);
                 log.debug("Found mfhd Id " + mfhdElement.getAttributeValue("mfhdId"));
             }
         } catch (JDOMException e) {
             throw new ILSException(e);
         }
-        return holdingIds;
+        return mfhdRecords;
     }
 
-    private Map<String, GregorianCalendar> getDueDateForItemIds(List<String> itemIds, Document doc, 
-    		Map<String, String> copyNumbers, String mfhdId) {
+    /**
+     * Returns the holding elements of the restful holdings document by their lower-cased
+     * holding ids, the last part of their href.
+     */
+    private Map<String, List<Element>> getHoldingsById(Document doc) throws ILSException {
+        Map<String, List<Element>> holdingsById = new HashMap<String, List<Element>>();
+        if (doc == null) {
+            return holdingsById;
+        }
+        try {
+            List<Element> holdings = xpaths.get().holdings.selectNodes(doc);
+            for (Element holding : holdings) {
+                String holdingId = getIdFromHref(holding).toLowerCase();
+                List<Element> holdingsWithId = holdingsById.get(holdingId);
+                if (holdingsWithId == null) {
+                    holdingsWithId = new ArrayList<Element>(1);
+                    holdingsById.put(holdingId, holdingsWithId);
+                }
+                holdingsWithId.add(holding);
+            }
+        } catch (JDOMException e) {
+            log.error("Error processing document for holdings");
+            throw new ILSException(e);
+        }
+        return holdingsById;
+    }
+
+    private List<Element> getHoldingsForHoldingId(String holdingId,
+    		Map<String, List<Element>> holdingsById) {
+        List<Element> holdings = holdingsById.get(holdingId.toLowerCase());
+        if (holdings == null) {
+            return new ArrayList<Element>();
+        }
+        return holdings;
+    }
+
+    private String getIdFromHref(Element element) {
+        String href = element.getAttributeValue("href");
+        int index = href.lastIndexOf("/");
+        return href.substring(index).substring(1);
+    }
+
+    private Map<String, GregorianCalendar> getDueDateForItemIds(List<String> itemIds,
+    		Element mfhdRecord, Map<String, String> copyNumbers) {
 
-        Namespace holNs = Namespace.getNamespace(
-        		"hol", "http://www.endinfosys.com/Voyager/holdings");
-        Namespace serNs = Namespace.getNamespace(
-        		"ser", "http://www.endinfosys.com/Voyager/serviceParameters");
         Namespace mfhdNs = Namespace.getNamespace("mfhd", "http://www.endinfosys.com/Voyager/mfhd");
         Namespace itemNs = Namespace.getNamespace("item", "http://www.endinfosys.com/Voyager/item");
 
-        List<Element> mfhdElements;
         List<Element> itemRecords;
         List<Element> itemData;
         Element itemCollection;
-        Element mfhdCollection;
 
         String copyNumber = null;
         String statusDate = null;
 
         Map<String, GregorianCalendar> dueDates = new HashMap<String, GregorianCalendar>();
 
-        try {
-            List<Element> list = doc.getRootElement().getChild("serviceData", serNs).
-            		getChild("holdingsRecord", holNs).getChildren();
-            mfhdCollection = doc.getRootElement().getChild("serviceData", serNs).
-            		getChild("holdingsRecord", holNs).getChild("mfhdCollection", holNs);
-            mfhdElements = mfhdCollection.getChildren("mfhdRecord", mfhdNs);
-
-            for (Element mfhdRecord : mfhdElements) {
-                  if (!mfhdRecord.getAttributeValue("mfhdId").equalsIgnoreCase(mfhdId))
-                      continue;
-
-                if (mfhdRecord.getChild("itemCollection", mfhdNs) != null) {
-                    itemCollection = mfhdRecord.getChild("itemCollection", mfhdNs);
-                    itemRecords = itemCollection.getChildren("itemRecord", itemNs);
-                    for (Element itemRecord : itemRecords) {
-                        itemData = itemRecord.getChildren("itemData", itemNs);
-                        boolean foundCopy = false;
-                        for (Element item : itemData) {
-                            if (item.getAttributeValue("name").equalsIgnoreCase("copyNumber")){
-                                copyNumber = item.getTextTrim();
-                                if (copyNumbers.containsKey(copyNumber)){
-                                    log.info("Found match between copy numbers");
-                                    foundCopy = true;
-                                }
-                            }
-                            if (item.getAttributeValue("name").equalsIgnoreCase("statusDate")){
-                                statusDate = item.getTextTrim();
-                            }
-                        }
-                        if (foundCopy) {
-                            if (statusDate != null && !"".equals(statusDate)) {
-                                log.debug("Found statusDate: " + statusDate);
-                                String[] dateComponents = statusDate.substring(0, 10).split("-");
-                                String[] timeComponents = statusDate.substring(11).split(":");
-
-                                GregorianCalendar gc = new GregorianCalendar(
-                                		Integer.parseInt(dateComponents[0]),
-                                		//GC months start at 0 so subtract 1
-                                        Integer.parseInt(dateComponents[1]) - 1, 
-                                        Integer.parseInt(dateComponents[2]),
-                                        Integer.parseInt(timeComponents[0]),
-                                        Integer.parseInt(timeComponents[1]),
-                                        Integer.parseInt(timeComponents[2]));
-
-                                dueDates.put(copyNumbers.get(copyNumber), gc);
-                                foundCopy = false;
-                            } else {
-                                log.debug("Warning: statusDate is null");
-                                foundCopy = false;
-                            }
+        if (mfhdRecord == null) {
+            log.debug("No due dates found");
+            return null;
+        }
+
+        if (mfhdRecord.getChild("itemCollection", mfhdNs) != null) {
+            itemCollection = mfhdRecord.getChild("itemCollection", mfhdNs);
+            itemRecords = itemCollection.getChildren("itemRecord", itemNs);
+            for (Element itemRecord : itemRecords) {
+                itemData = itemRecord.getChildren("itemData", itemNs);
+                boolean foundCopy = false;
+                for (Element item : itemData) {
+                    if (item.getAttributeValue("name").equalsIgnoreCase("copyNumber")){
+                        copyNumber = item.getTextTrim();
+                        if (copyNumbers.containsKey(copyNumber)){
+                            log.info("Found match between copy numbers");
+                            foundCopy = true;
                         }
                     }
+                    if (item.getAttributeValue("name").equalsIgnoreCase("statusDate")){
+                        statusDate = item.getTextTrim();
+                    }
+                }
+                if (foundCopy) {
+                    if (statusDate != null && !"".equals(statusDate)) {
+                        log.debug("Found statusDate: " + statusDate);
+                        String[] dateComponents = statusDate.substring(0, 10).split("-");
+                        String[] timeComponents = statusDate.substring(11).split(":");
+
+                        GregorianCalendar gc = new GregorianCalendar(
+                        		Integer.parseInt(dateComponents[0]),
+                        		//GC months start at 0 so subtract 1
+                                Integer.parseInt(dateComponents[1]) - 1, 
+                                Integer.parseInt(dateComponents[2]),
+                                Integer.parseInt(timeComponents[0]),
+                                Integer.parseInt(timeComponents[1]),
+                                Integer.parseInt(timeComponents[2]));
+
+                        dueDates.put(copyNumbers.get(copyNumber), gc);
+                        foundCopy = false;
+                    } else {
+                        log.debug("Warning: statusDate is null");
+                        foundCopy = false;
+                    }
                 }
             }
-        } catch (NullPointerException e) {
-            log.debug("No due dates found");
-            return null;
         }
         return dueDates;
     }
 
-    private ElectronicResource getElectronicResourceForHoldingId(String mfhdId, Document doc) 
-    		throws ILSException {
-
-        Namespace holNs = Namespace.getNamespace(
-        		"hol", "http://www.endinfosys.com/Voyager/holdings");
-        Namespace serNs = Namespace.getNamespace(
-        		"ser", "http://www.endinfosys.com/Voyager/serviceParameters");
-        Namespace slimNs = Namespace.getNamespace("slim", "http://www.loc.gov/MARC21/slim");
-        ElectronicResource electronicResource = new ElectronicResource();
-
+    private String getElectronicResourceUrl(Document doc) throws ILSException {
         try {
-            XPath xpath = XPath.newInstance(
-            		"//slim:datafield[@tag='856']/slim:subfield[@code='u']");
-            xpath.addNamespace(holNs);
-            xpath.addNamespace(serNs);
-            xpath.addNamespace(slimNs);
-            Element urlElement = (Element) xpath.selectSingleNode(doc);
-            String href = urlElement.getTextTrim();
-            log.debug("Found eResource url " + href);
-            electronicResource.setReferenceToResource(href);
+            Element urlElement = (Element) xpaths.get().electronicResourceUrl.selectSingleNode(doc);
+            if (urlElement == null) {
+                log.debug("eResource not found");
+                return null;
+            }
+            log.debug("Found eResource url " + urlElement.getTextTrim());
+            return urlElement.getTextTrim();
         } catch (JDOMException e) {
             log.error("Error processing document for eResource");
             throw new ILSException(e);
-        } catch (NullPointerException e) {
-            log.debug("eResource not found");
-            return null;
         }
+    }
 
+    private ElectronicResource getElectronicResourceForHoldingId(String href) {
+        if (href == null) {
+            return null;
+        }
+        ElectronicResource electronicResource = new ElectronicResource();
+        electronicResource.setReferenceToResource(href);
         return electronicResource;
     }
 
-    private List<String> getItemIdsFromHoldingDoc(String holdingId, Document doc)
-    		throws ILSException {
-        List<Element> items, holdings = null;
+    private List<String> getItemIdsFromHoldingDoc(List<Element> holdings) {
         List<String> itemIds = new ArrayList<String>();
-        String itemId, holdingIdFound;
-        String href;
-        int index;
-        try {
-            XPath xpath = XPath.newInstance("/response/holdings/institution/holding");
-            holdings = xpath.selectNodes(doc);
-            for (Element holding : holdings) {
-                href = holding.getAttributeValue("href");
-                index = href.lastIndexOf("/");
-                holdingIdFound = href.substring(index).substring(1);
-                if (holdingIdFound.equalsIgnoreCase(holdingId)){
-                    items = holding.getChildren("item");
-                    for (Element item : items) {
-                        href = item.getAttributeValue("href");
-                        index = href.lastIndexOf("/");
-                        itemId = href.substring(index).substring(1);
-                        itemIds.add(itemId);
-                    }
-                }
+        for (Element holding : holdings) {
+            List<Element> items = holding.getChildren("item");
+            for (Element item : items) {
+                itemIds.add(getIdFromHref(item));
             }
-        } catch (JDOMException e) {
-            log.error("Error processing document for eResource");
-            throw new ILSException(e);
         }
         return itemIds;
     }
 
-    private String getCallNumberForHoldingDoc(String holdingId, Document doc) throws ILSException {
-        List<Element> holdings = null;
-        Element itemData;
+    private String getCallNumberForHoldingDoc(List<Element> holdings) throws ILSException {
         String callNumber = null;
-        String href, holdingIdFound;
-        int index;
         try {
-            XPath xpath = XPath.newInstance("/response/holdings/institution/holding");
-            holdings = xpath.selectNodes(doc);
+            XPath xpath = xpaths.get().itemData;
+            xpath.setVariable("name", "callNumber");
             for (Element holding : holdings) {
-                href = holding.getAttributeValue("href");
-                index = href.lastIndexOf("/");
-                holdingIdFound = href.substring(index).substring(1);
-                if (holdingIdFound.equalsIgnoreCase(holdingId)){
-                    xpath = XPath.newInstance("/response/holdings/institution/holding[@href='" + 
-                    		href + "']/item/itemData[@name='callNumber']");
-                    itemData = (Element) xpath.selectSingleNode(doc);
+                Element itemData = (Element) xpath.selectSingleNode(holding);
+                if (itemData != null) {
                     callNumber = itemData.getTextTrim();
                 }
             }
@@ -811,17 +891,17 @@ public class VoyagerLookupItemSetService implements LookupItemSetService {
         return location;
     }
 
-    private Map<String, Location> getLocationForItemIds(List<String> itemIds, Document doc) {
+    private Map<String, Location> getLocationForItemIds(List<String> itemIds,
+    		List<Element> holdings) {
 
-        List<Element> items, itemData, holdings = null;
+        List<Element> items, itemData;
         String itemId, href, tempLocation;
         Map<String, Location> tempLocations = new HashMap<String, Location>();
 
         int index;
-        if (doc.getRootElement().getChild("holdings").getChild("institution").getChildren() != null)
+        Set<String> itemIdSet = new HashSet<String>(itemIds);
+        if (holdings != null)
         {
-            holdings = doc.getRootElement().getChild("holdings").
-            		getChild("institution").getChildren("holding");
             for (Element holding : holdings) {
                 items = holding.getChildren("item");
                 for (Element item : items) {
@@ -832,7 +912,7 @@ public class VoyagerLookupItemSetService implements LookupItemSetService {
                     href = item.getAttributeValue("href");
                     index = href.lastIndexOf("/");
                     itemId = href.substring(index).substring(1);
-                    if (itemIds.contains(itemId)){
+                    if (itemIdSet.contains(itemId)){
                         itemData = item.getChildren("itemData");
                         for (Element id : itemData) {
                             if (id.getAttribute("name") != null){
@@ -898,29 +978,29 @@ public class VoyagerLookupItemSetService implements LookupItemSetService {
             }
             return tempLocations;
         } else {
-            log.error("No children of institution found");
+            log.error("No holdings found");
             return null;
         }
     }
 
-    private Map<String, String> getCirculationStatusForItemIds(List<String> itemIds, Document doc){
+    private Map<String, String> getCirculationStatusForItemIds(List<String> itemIds,
+    		List<Element> holdings){
 
         Map<String, String> statuses = new HashMap<String, String>();
-        List<Element> items, itemData, holdings = null;
+        List<Element> items, itemData;
         String itemId, href, status;
 
         int index;
-        if (doc.getRootElement().getChild("holdings").getChild("institution").getChildren() != null)
+        Set<String> itemIdSet = new HashSet<String>(itemIds);
+        if (holdings != null)
         {
-            holdings = doc.getRootElement().getChild("holdings").
-            		getChild("institution").getChildren("holding");
             for (Element holding : holdings) {
                 items = holding.getChildren("item");
                 for (Element item : items) {
                     href = item.getAttributeValue("href");
                     index = href.lastIndexOf("/");
                     itemId = href.substring(index).substring(1);
-                    if (itemIds.contains(itemId)){
+                    if (itemIdSet.contains(itemId)){
                         itemData = item.getChildren("itemData");
                         for (Element id : itemData) {
                             if (id.getAttribute("name") != null){
@@ -951,31 +1031,30 @@ public class VoyagerLookupItemSetService implements LookupItemSetService {
             }
             return statuses;
         } else {
-            log.error("No children of institution found");
+            log.error("No holdings found");
             return null;
         }
     }
 
     private Map<String, ItemDescription> getItemDescriptionForItemIds(List<String> itemIds, 
-    		Document doc){
+    		List<Element> holdings){
 
         Map<String, ItemDescription> itemDescriptions = new HashMap<String, ItemDescription>();
 
-        List<Element> items, itemData, holdings = null;
+        List<Element> items, itemData;
         String itemId, href, status;
 
         int index;
-        if (doc.getRootElement().getChild("holdings").getChild("institution").getChildren() != null)
+        Set<String> itemIdSet = new HashSet<String>(itemIds);
+        if (holdings != null)
         {
-            holdings = doc.getRootElement().getChild("holdings").
-            		getChild("institution").getChildren("holding");
             for (Element holding : holdings) {
                 items = holding.getChildren("item");
                 for (Element item : items) {
                     href = item.getAttributeValue("href");
                     index = href.lastIndexOf("/");
                     itemId = href.substring(index).substring(1);
-                    if (itemIds.contains(itemId)){
+                    if (itemIdSet.contains(itemId)){
                         itemData = item.getChildren("itemData");
                         ItemDescription itemDescription = new ItemDescription();
                         String infoString = "";
@@ -1017,12 +1096,12 @@ public class VoyagerLookupItemSetService implements LookupItemSetService {
             log.info("Returning item descriptions: " + itemDescriptions);
             return itemDescriptions;
         } else {
-            log.error("No children of institution found");
+            log.error("No holdings found");
             return null;
         }
     }
 
-    private Document getHoldingRecordsFromXml(BibliographicId bibliographicId) {
+    private Future<Document> getHoldingRecordsFromXml(BibliographicId bibliographicId) {
 
         String bibId = bibliographicId.getBibliographicRecordId().
         		getBibliographicRecordIdentifier();
@@ -1048,9 +1127,7 @@ public class VoyagerLookupItemSetService implements LookupItemSetService {
 
         String url = host + "/vxws/GetHoldingsService?bibId=" + bibId;
 
-        Document doc = voyagerSvcMgr.getWebServicesDoc(url);
-
-        return doc;
+        return voyagerSvcMgr.getWebServicesDocAsync(url);
     }
 
     private BibliographicDescription getBibliographicDescriptionForBibId(Document doc) {
@@ -2,14 +2,25 @@ package org.extensiblecatalog.ncip.v2.voyager;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.GregorianCalendar;
+import java.util.Collections;
 import java.util.List;
 import java.util.Properties;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.naming.NamingException;
 import javax.naming.directory.Attributes;
@@ -31,6 +42,7 @@ import org.extensiblecatalog.ncip.v2.service.RemoteServiceManager;
 import org.extensiblecatalog.ncip.v2.service.ToolkitException;
 import org.extensiblecatalog.ncip.v2.voyager.util.LDAPUtils;
 import org.extensiblecatalog.ncip.v2.voyager.util.VoyagerConfiguration;
+import org.extensiblecatalog.ncip.v2.voyager.util.VoyagerConnectionPool;
 import org.extensiblecatalog.ncip.v2.voyager.util.VoyagerConstants;
 
 import org.jdom.Document;
@@ -63,21 +75,127 @@ public class VoyagerRemoteServiceManager implements  RemoteServiceManager {
         }
     }
 
+    /** Pools of read connections to the Voyager databases, by lower-cased agency id */
+    private final ConcurrentHashMap<String, VoyagerConnectionPool> connectionPools =
+    		new ConcurrentHashMap<String, VoyagerConnectionPool>();
+
+    /** The query for the bib id of an item, by lower-cased agency id */
+    private final ConcurrentHashMap<String, String> bibIdForItemIdSql = new ConcurrentHashMap<String, String>();
+
+    /** The default number of vxws documents fetched at the same time */
+    private static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 8;
+
+    /** Threads fetching vxws documents at the same time, at most VoyagerMaxConcurrentRequests */
+    private final ThreadPoolExecutor fetchExecutor;
+
+    /**
+     * The managers whose pools and threads are shut down when the JVM exits. Held weakly, so that a manager that
+     * is no longer used (e.g. after a redeploy) can still be collected.
+     */
+    private static final Set<VoyagerRemoteServiceManager> liveManagers =
+    		Collections.newSetFromMap(new WeakHashMap<VoyagerRemoteServiceManager, Boolean>());
+
+    /** Whether the one shutdown hook for all managers has been registered */
+    private static boolean shutdownHookRegistered = false;
+
+    /** SAXBuilders are not thread safe, but reusing one keeps its parser */
+    private static final ThreadLocal<SAXBuilder> saxBuilder = new ThreadLocal<SAXBuilder>() {
+        @Override
+        protected SAXBuilder initialValue() {
+            return new SAXBuilder();
+        }
+    };
+
     public VoyagerRemoteServiceManager(Properties properties) {
-        client = new HttpClient(new MultiThreadedHttpConnectionManager());
+        int maxConcurrentRequests = DEFAULT_MAX_CONCURRENT_REQUESTS;
+        String maxConcurrentRequestsValue = voyagerConfig.getProperty(
+        		VoyagerConstants.CONFIG_VOYAGER_MAX_CONCURRENT_REQUESTS);
+        if (maxConcurrentRequestsValue != null) {
+            maxConcurrentRequests = Integer.parseInt(maxConcurrentRequestsValue.trim());
+        }
+
+        MultiThreadedHttpConnectionManager connectionManager = new MultiThreadedHttpConnectionManager();
+        // Leave room for the requests of other messages next to the ones fetched at the same time
+        connectionManager.getParams().setDefaultMaxConnectionsPerHost(2 * maxConcurrentRequests);
+        connectionManager.getParams().setMaxTotalConnections(Math.max(20, 4 * maxConcurrentRequests));
+        client = new HttpClient(connectionManager);
+
+        fetchExecutor = new ThreadPoolExecutor(maxConcurrentRequests, maxConcurrentRequests,
+        		60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger threadNumber = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "VoyagerFetch-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        fetchExecutor.allowCoreThreadTimeOut(true);
+
+        registerForShutdown(this);
     }
 
     /**
-     * Sets up and returns a connection to the voyager database whose location and
-     * driver are defined in the configuration file.
+     * Adds the manager to those shut down when the JVM exits, registering the shutdown hook the first time.
      */
-    public Connection openReadDbConnection(String patronAgencyId)
-    {
-        Connection conn;
+    private static synchronized void registerForShutdown(VoyagerRemoteServiceManager manager) {
+        liveManagers.add(manager);
+        if (!shutdownHookRegistered) {
+            shutdownHookRegistered = true;
+            Runtime.getRuntime().addShutdownHook(new Thread("VoyagerConnectionPoolShutdown") {
+                @Override
+                public void run() {
+                    List<VoyagerRemoteServiceManager> managers;
+                    synchronized (VoyagerRemoteServiceManager.class) {
+                        managers = new ArrayList<VoyagerRemoteServiceManager>(liveManagers);
+                        liveManagers.clear();
+                    }
+                    for (VoyagerRemoteServiceManager manager : managers) {
+                        manager.shutdown();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Shuts down the database connection pools and the threads fetching vxws documents.
+     */
+    public void shutdown() {
+        synchronized (VoyagerRemoteServiceManager.class) {
+            liveManagers.remove(this);
+        }
+        fetchExecutor.shutdownNow();
+        for (VoyagerConnectionPool pool : connectionPools.values()) {
+            pool.shutdown();
+        }
+        connectionPools.clear();
+    }
+
+    /**
+     * Returns the pool of read connections to the voyager database of the agency, setting it up from
+     * the configuration file the first time it is asked for.
+     */
+    public VoyagerConnectionPool getConnectionPool(String patronAgencyId) throws ClassNotFoundException {
+        String key = patronAgencyId.toLowerCase();
+        VoyagerConnectionPool pool = connectionPools.get(key);
+        if (pool == null) {
+            synchronized (connectionPools) {
+                pool = connectionPools.get(key);
+                if (pool == null) {
+                    pool = createConnectionPool(patronAgencyId);
+                    connectionPools.put(key, pool);
+                }
+            }
+        }
+        return pool;
+    }
+
+    private VoyagerConnectionPool createConnectionPool(String patronAgencyId) throws ClassNotFoundException {
         String url;
         String username;
         String password;
-        log.debug("Entering openReadDbConnection() with patronAgencyId: " + patronAgencyId);
         if (patronAgencyId.equalsIgnoreCase(
         		voyagerConfig.getProperty(VoyagerConstants.CONFIG_ILS_DEFAULT_AGENCY))){
             url = voyagerConfig.getProperty(VoyagerConstants.CONFIG_VOYAGER_DB_URL);
@@ -90,11 +208,41 @@ public class VoyagerRemoteServiceManager implements  RemoteServiceManager {
             username = voyagerConfig.getProperty(patronAgencyId + "username");
             password = voyagerConfig.getProperty(patronAgencyId + "password");
         }
-        log.debug("Using url: " + url + " username: " + username + " and password: " + password);
+        log.debug("Creating connection pool for agency " + patronAgencyId + " using url: " + url
+        		+ " username: " + username);
+        VoyagerConnectionPool pool = new VoyagerConnectionPool(patronAgencyId,
+        		voyagerConfig.getProperty(VoyagerConstants.CONFIG_VOYAGER_DB_DRIVER), url, username, password);
+        String poolSize = voyagerConfig.getProperty(VoyagerConstants.CONFIG_VOYAGER_DB_POOL_SIZE);
+        if (poolSize != null) {
+            pool.setMaxConnections(Integer.parseInt(poolSize.trim()));
+        }
+        String maxWait = voyagerConfig.getProperty(VoyagerConstants.CONFIG_VOYAGER_DB_POOL_MAX_WAIT);
+        if (maxWait != null) {
+            pool.setMaxWait(Long.parseLong(maxWait.trim()));
+        }
+        String statementCacheSize = voyagerConfig.getProperty(VoyagerConstants.CONFIG_VOYAGER_DB_STATEMENT_CACHE_SIZE);
+        if (statementCacheSize != null) {
+            pool.setMaxStatements(Integer.parseInt(statementCacheSize.trim()));
+        }
+        String validationQuery = voyagerConfig.getProperty(VoyagerConstants.CONFIG_VOYAGER_DB_VALIDATION_QUERY);
+        if (validationQuery != null) {
+            pool.setValidationQuery(validationQuery);
+        }
+        return pool;
+    }
+
+    /**
+     * Borrows a connection to the voyager database whose location and driver are
+     * defined in the configuration file; closing it returns it to the pool.
+     */
+    public Connection openReadDbConnection(String patronAgencyId)
+    {
+        Connection conn;
+        log.debug("Entering openReadDbConnection() with patronAgencyId: " + patronAgencyId);
         try {
-            Class.forName("oracle.jdbc.driver.OracleDriver");
-            conn = DriverManager.getConnection(url, username, password);
-            log.debug("Voyager DB read connection = " + conn);
+            VoyagerConnectionPool pool = getConnectionPool(patronAgencyId);
+            conn = pool.getConnection();
+            log.debug("Voyager DB read connection from pool " + pool);
         } catch (ClassNotFoundException ce) {
             log.error("An error occurred loading the jdbc driver.", ce);
             return null;
@@ -112,42 +260,30 @@ public class VoyagerRemoteServiceManager implements  RemoteServiceManager {
         String bibId = "";
         long startTime = System.nanoTime();
 
-        String url;
-        String username;
-        String password;
-        if (patronAgencyId.equalsIgnoreCase(
-        		voyagerConfig.getProperty(VoyagerConstants.CONFIG_ILS_DEFAULT_AGENCY))){
-            url = voyagerConfig.getProperty(VoyagerConstants.CONFIG_VOYAGER_DB_URL);
-            username = voyagerConfig.getProperty(
-            		VoyagerConstants.CONFIG_VOYAGER_DB_READ_ONLY_USERNAME);
-            password = voyagerConfig.getProperty(
-            		VoyagerConstants.CONFIG_VOYAGER_DB_READ_ONLY_PASSWORD);
-        } else {
-            url = voyagerConfig.getProperty(patronAgencyId + "database");
-            username = voyagerConfig.getProperty(patronAgencyId + "username");
-            password = voyagerConfig.getProperty(patronAgencyId + "password");
-        }
-
+        VoyagerConnectionPool pool;
         try {
-            Class.forName("oracle.jdbc.driver.OracleDriver");
+            pool = getConnectionPool(patronAgencyId);
         } catch (ClassNotFoundException ce) {
             log.error("An error occurred loading the jdbc driver.", ce);
             return null;
         }
 
-        String sql;
-        if (patronAgencyId.equalsIgnoreCase(
-        		voyagerConfig.getProperty(VoyagerConstants.CONFIG_ILS_DEFAULT_AGENCY))) {
-            String dbuser = voyagerConfig.getProperty(VoyagerConstants.CONFIG_VOYAGER_ORACLE_USER);
-            sql = "SELECT bib_id FROM " + dbuser + ".bib_item WHERE bib_item.item_id = ?";
-        }
-        else {
-            String dbuser = voyagerConfig.getProperty(patronAgencyId + "dbuser");
+        String sql = bibIdForItemIdSql.get(patronAgencyId.toLowerCase());
+        if (sql == null) {
+            String dbuser;
+            if (patronAgencyId.equalsIgnoreCase(
+            		voyagerConfig.getProperty(VoyagerConstants.CONFIG_ILS_DEFAULT_AGENCY))) {
+                dbuser = voyagerConfig.getProperty(VoyagerConstants.CONFIG_VOYAGER_ORACLE_USER);
+            }
+            else {
+                dbuser = voyagerConfig.getProperty(patronAgencyId + "dbuser");
+            }
             sql = "SELECT bib_id FROM " + dbuser + ".bib_item WHERE bib_item.item_id = ?";
+            bibIdForItemIdSql.put(patronAgencyId.toLowerCase(), sql);
         }
 
-        // Use java 7's new try-with-resources to get db connection and prepared statement
-        try (Connection conn = DriverManager.getConnection(url, username, password);
+        // Closing the pooled connection and statement returns them to the pool
+        try (Connection conn = pool.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)){
 
             pstmt.setString(1,itemId);
@@ -442,11 +578,10 @@ public class VoyagerRemoteServiceManager implements  RemoteServiceManager {
             		"An internal error occurred in the NCIP Toolkit.", e);
         }
 
-        SAXBuilder builder = new SAXBuilder();
         Document doc = null;
         try {
             // Build a JDOM Document from the response
-            doc = builder.build(response);
+            doc = saxBuilder.get().build(response);
         } catch (JDOMException e) {
             log.error("JDOMException parsing xml response");
         } catch (IOException e) {
@@ -462,6 +597,21 @@ public class VoyagerRemoteServiceManager implements  RemoteServiceManager {
         return voyagerConfig.getProperty(agencyId + "vxwsUrl");
     }
 
+    /**
+     * Issues the HTTP GET request of {@link #getWebServicesDoc(String)} on one of the
+     * fetch threads, so that several documents can be fetched at the same time
+     * @param url url to GET
+     * @return the XML Document from the vxws response, or null as for getWebServicesDoc
+     */
+    public Future<Document> getWebServicesDocAsync(final String url) {
+        return fetchExecutor.submit(new Callable<Document>() {
+            @Override
+            public Document call() {
+                return getWebServicesDoc(url);
+            }
+        });
+    }
+
     /**
      * Given a URL to a vxws service, issue an HTTP GET request to that URL
      * @param url url to GET
@@ -475,10 +625,8 @@ public class VoyagerRemoteServiceManager implements  RemoteServiceManager {
         InputStream response;
 
         try {
-            synchronized(client) {
-                getMethod = new GetMethod(url);
-                statusCode = client.executeMethod(getMethod);
-            }
+            getMethod = new GetMethod(url);
+            statusCode = client.executeMethod(getMethod);
 
             if (statusCode == 200) {
                 response = getMethod.getResponseBodyAsStream();
@@ -493,11 +641,10 @@ public class VoyagerRemoteServiceManager implements  RemoteServiceManager {
             return null;
         }
 
-        SAXBuilder builder = new SAXBuilder();
         Document doc = null;
         try {
             // Build a JDOM Document from the response
-            doc = builder.build(response);
+            doc = saxBuilder.get().build(response);
         } catch (JDOMException e) {
             log.error("JDOMException parsing xml response");
             return null;
@@ -535,11 +682,10 @@ public class VoyagerRemoteServiceManager implements  RemoteServiceManager {
             		"An internal error occurred in the NCIP Toolkit.", e);
         }
 
-    	SAXBuilder builder = new SAXBuilder();
         Document doc = null;
         try {
             // Build a JDOM Document from the response
-            doc = builder.build(response);
+            doc = saxBuilder.get().build(response);
         } catch (JDOMException e) {
             log.error("JDOMException parsing xml response");
         } catch (IOException e) {
@@ -582,11 +728,10 @@ public class VoyagerRemoteServiceManager implements  RemoteServiceManager {
             		"An internal error occurred in the NCIP Toolkit.", e);
         }
 
-        SAXBuilder builder = new SAXBuilder();
         Document doc = null;
         try {
             // Build a JDOM Document from the response
-            doc = builder.build(response);
+            doc = saxBuilder.get().build(response);
         } catch (JDOMException e) {
             log.error("JDOMException parsing xml response");
         } catch (IOException e) {
@@ -631,11 +776,10 @@ public class VoyagerRemoteServiceManager implements  RemoteServiceManager {
             		"An internal error occurred in the NCIP Toolkit.", e);
         }
 
-        SAXBuilder builder = new SAXBuilder();
         Document doc = null;
         try {
             // Build a JDOM Document from the response
-            doc = builder.build(response);
+            doc = saxBuilder.get().build(response);
         } catch (JDOMException e) {
             log.error("JDOMException parsing xml response");
         } catch (IOException e) {
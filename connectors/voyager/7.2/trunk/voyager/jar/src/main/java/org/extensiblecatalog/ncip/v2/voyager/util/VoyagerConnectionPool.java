@@ -0,0 +1,534 @@
+/**
+ * Copyright (c) 2012 eXtensible Catalog Organization
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the MIT/X11 license. The text of the license can be
+ * found at http://www.opensource.org/licenses/mit-license.php.
+ */
+
+package org.extensiblecatalog.ncip.v2.voyager.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Pool of read connections to one Voyager database.
+ *
+ * {@link #getConnection()} borrows an idle connection, opening a new one only if there is none and fewer than
+ * {@link #getMaxConnections()} are open; otherwise it waits up to {@link #getMaxWait()} for one to be returned.
+ * Closing the borrowed connection returns it to the pool. Each connection keeps up to
+ * {@link #getMaxStatements()} of its prepared statements open, so the same query is only parsed once per
+ * connection; closing such a statement just clears its parameters.
+ *
+ * A connection that has been idle for longer than {@link #getValidationInterval()} is checked with the
+ * validation query before it is handed out, and dropped if the database no longer answers.
+ *
+ * The driver and validation query are set per pool, so the pool works with any JDBC database, e.g. an embedded
+ * one standing in for Oracle.
+ */
+public class VoyagerConnectionPool {
+
+    static Logger log = Logger.getLogger(VoyagerConnectionPool.class);
+
+    public static final String DEFAULT_DRIVER = "oracle.jdbc.driver.OracleDriver";
+
+    public static final String DEFAULT_VALIDATION_QUERY = "SELECT 1 FROM DUAL";
+
+    public static final int DEFAULT_MAX_CONNECTIONS = 10;
+
+    public static final int DEFAULT_MAX_STATEMENTS = 50;
+
+    /**
+     * In milliseconds.
+     */
+    public static final long DEFAULT_MAX_WAIT = 30 * 1000L;
+
+    /**
+     * In milliseconds.
+     */
+    public static final long DEFAULT_VALIDATION_INTERVAL = 30 * 1000L;
+
+    private final String name;
+
+    private final String url;
+
+    private final String username;
+
+    private final String password;
+
+    private final LinkedList<PooledConnection> idleConnections = new LinkedList<PooledConnection>();
+
+    private int openConnections = 0;
+
+    private boolean closed = false;
+
+    private volatile int maxConnections = DEFAULT_MAX_CONNECTIONS;
+
+    private volatile int maxStatements = DEFAULT_MAX_STATEMENTS;
+
+    private volatile long maxWait = DEFAULT_MAX_WAIT;
+
+    private volatile long validationInterval = DEFAULT_VALIDATION_INTERVAL;
+
+    private volatile String validationQuery = DEFAULT_VALIDATION_QUERY;
+
+    // Metrics, guarded by this
+    private long connectionsOpened;
+    private long connectionsDropped;
+    private long borrowCount;
+    private long waitCount;
+    private long totalWaitTime;
+    private long longestWaitTime;
+    private long timeoutCount;
+    private long statementCacheHits;
+    private long statementCacheMisses;
+
+    /**
+     * @param name
+     *            the name of the pool used in log messages, e.g. the agency id
+     * @throws ClassNotFoundException
+     *             if the driver class cannot be loaded
+     */
+    public VoyagerConnectionPool(String name, String driverClassName, String url, String username, String password)
+            throws ClassNotFoundException {
+        this.name = name;
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        Class.forName(driverClassName != null ? driverClassName : DEFAULT_DRIVER);
+    }
+
+    /**
+     * Borrows a connection; close it to return it to the pool.
+     *
+     * @throws SQLException
+     *             if no connection is returned within the maximum wait, the pool has been shut down or a new
+     *             connection cannot be opened
+     */
+    public Connection getConnection() throws SQLException {
+
+        long startTime = System.currentTimeMillis();
+        while (true) {
+            PooledConnection pooled = takeIdleConnection(startTime);
+            if (pooled == null) {
+                // A slot has been reserved for this thread
+                boolean opened = false;
+                try {
+                    pooled = new PooledConnection(DriverManager.getConnection(url, username, password));
+                    opened = true;
+                } finally {
+                    if (!opened)
+                        closeSlot(false);
+                }
+                synchronized (this) {
+                    ++connectionsOpened;
+                }
+                log.debug("Opened connection " + connectionsOpened + " of pool " + name);
+            } else if (System.currentTimeMillis() - pooled.lastUsed > validationInterval && !pooled.validate()) {
+                log.warn("Dropping a connection of pool " + name + " which failed validation.");
+                pooled.closePhysical();
+                closeSlot(true);
+                continue;
+            }
+            recordBorrow(System.currentTimeMillis() - startTime);
+            return pooled.borrow();
+        }
+    }
+
+    /**
+     * Takes the most recently used idle connection. If there is none, waits until either a connection is
+     * returned or a slot is free, which is then reserved for the caller and null is returned.
+     */
+    private synchronized PooledConnection takeIdleConnection(long startTime) throws SQLException {
+
+        boolean waited = false;
+        while (true) {
+            if (closed)
+                throw new SQLException("The connection pool " + name + " has been shut down.");
+
+            if (!idleConnections.isEmpty())
+                return idleConnections.removeFirst();
+
+            if (openConnections < maxConnections) {
+                ++openConnections;
+                return null;
+            }
+
+            if (!waited) {
+                waited = true;
+                ++waitCount;
+            }
+            long timeout = startTime + maxWait - System.currentTimeMillis();
+            if (timeout <= 0) {
+                ++timeoutCount;
+                throw new SQLException("Timed out waiting for a connection of pool " + name + " - all "
+                    + maxConnections + " connections are in use.");
+            }
+
+            try {
+                wait(timeout);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for a connection of pool " + name + ".");
+            }
+        }
+    }
+
+    private synchronized void recordBorrow(long waitTime) {
+        ++borrowCount;
+        totalWaitTime += waitTime;
+        if (waitTime > longestWaitTime)
+            longestWaitTime = waitTime;
+    }
+
+    private synchronized void closeSlot(boolean dropped) {
+        --openConnections;
+        if (dropped)
+            ++connectionsDropped;
+        notifyAll();
+    }
+
+    private void giveBack(PooledConnection pooled) {
+
+        boolean reusable = !pooled.broken;
+        if (reusable) {
+            try {
+                if (!pooled.physical.getAutoCommit()) {
+                    pooled.physical.rollback();
+                    pooled.physical.setAutoCommit(true);
+                }
+            } catch (SQLException e) {
+                log.warn("Dropping a connection of pool " + name + " which could not be reset.", e);
+                reusable = false;
+            }
+        }
+
+        synchronized (this) {
+            if (reusable && !closed) {
+                pooled.lastUsed = System.currentTimeMillis();
+                idleConnections.addFirst(pooled);
+                notifyAll();
+                return;
+            }
+        }
+        pooled.closePhysical();
+        closeSlot(!closed);
+    }
+
+    /**
+     * Closes the idle connections and makes the pool refuse new borrows; borrowed connections are closed when
+     * they are returned.
+     */
+    public void shutdown() {
+        LinkedList<PooledConnection> toClose;
+        synchronized (this) {
+            closed = true;
+            toClose = new LinkedList<PooledConnection>(idleConnections);
+            openConnections -= idleConnections.size();
+            idleConnections.clear();
+            notifyAll();
+        }
+        for (PooledConnection pooled : toClose) {
+            pooled.closePhysical();
+        }
+        log.info("Shut down connection pool " + name + ": " + this);
+    }
+
+    /**
+     * A physical connection with its cache of prepared statements. Each borrow gets a new handle, so a handle
+     * that has been closed cannot reach the connection any more.
+     */
+    private class PooledConnection {
+
+        final Connection physical;
+
+        final LinkedHashMap<String, PreparedStatement> statements;
+
+        long lastUsed = System.currentTimeMillis();
+
+        volatile boolean broken = false;
+
+        PooledConnection(Connection physical) {
+            this.physical = physical;
+            this.statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                    if (size() > maxStatements) {
+                        closeQuietly(eldest.getValue());
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        Connection borrow() {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, new ConnectionHandle(this));
+        }
+
+        PreparedStatement prepareStatement(String sql) throws SQLException {
+            PreparedStatement statement = statements.get(sql);
+            boolean hit = statement != null;
+            synchronized (VoyagerConnectionPool.this) {
+                if (hit)
+                    ++statementCacheHits;
+                else
+                    ++statementCacheMisses;
+            }
+            if (!hit && maxStatements > 0) {
+                statement = physical.prepareStatement(sql);
+                statements.put(sql, statement);
+            } else if (!hit) {
+                return physical.prepareStatement(sql);
+            }
+            return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                new Class<?>[] { PreparedStatement.class }, new StatementHandle(this, statement));
+        }
+
+        boolean validate() {
+            Statement statement = null;
+            try {
+                statement = physical.createStatement();
+                ResultSet rs = statement.executeQuery(validationQuery);
+                rs.close();
+                return true;
+            } catch (SQLException e) {
+                log.debug("Validation of a connection of pool " + name + " failed.", e);
+                return false;
+            } finally {
+                closeQuietly(statement);
+            }
+        }
+
+        void closePhysical() {
+            for (Iterator<PreparedStatement> it = statements.values().iterator(); it.hasNext();) {
+                closeQuietly(it.next());
+                it.remove();
+            }
+            try {
+                physical.close();
+            } catch (SQLException e) {
+                log.debug("An error occurred closing a connection of pool " + name + ".", e);
+            }
+        }
+    }
+
+    private class ConnectionHandle implements InvocationHandler {
+
+        private PooledConnection pooled;
+
+        ConnectionHandle(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String methodName = method.getName();
+            if (methodName.equals("close")) {
+                if (pooled != null) {
+                    PooledConnection returned = pooled;
+                    pooled = null;
+                    giveBack(returned);
+                }
+                return null;
+            } else if (methodName.equals("isClosed")) {
+                return pooled == null || pooled.physical.isClosed();
+            } else if (methodName.equals("equals")) {
+                return proxy == args[0];
+            } else if (methodName.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            } else if (methodName.equals("toString")) {
+                return "Pooled connection of " + name + (pooled == null ? " (closed)" : "");
+            }
+
+            if (pooled == null)
+                throw new SQLException("The connection has already been returned to the pool " + name + ".");
+
+            if (methodName.equals("prepareStatement") && args.length == 1)
+                return pooled.prepareStatement((String) args[0]);
+
+            return invokeOn(pooled, pooled.physical, method, args);
+        }
+    }
+
+    private class StatementHandle implements InvocationHandler {
+
+        private final PooledConnection pooled;
+
+        private final PreparedStatement statement;
+
+        StatementHandle(PooledConnection pooled, PreparedStatement statement) {
+            this.pooled = pooled;
+            this.statement = statement;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String methodName = method.getName();
+            if (methodName.equals("close")) {
+                // The statement stays open in the cache; its result set is closed by the next execution
+                statement.clearParameters();
+                return null;
+            } else if (methodName.equals("equals")) {
+                return proxy == args[0];
+            } else if (methodName.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            }
+            return invokeOn(pooled, statement, method, args);
+        }
+    }
+
+    /**
+     * Calls the method on the physical connection or one of its statements, throwing the exception the method
+     * threw rather than the reflection wrapper, and marking the connection broken if the error means it was lost.
+     */
+    private static Object invokeOn(PooledConnection pooled, Object target, Method method, Object[] args)
+            throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                String sqlState = ((SQLException) cause).getSQLState();
+                // Class 08 - connection exception
+                if (sqlState != null && sqlState.startsWith("08"))
+                    pooled.broken = true;
+            }
+            throw cause;
+        }
+    }
+
+    private static void closeQuietly(Statement statement) {
+        if (statement != null) {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                log.debug("An error occurred closing a statement.", e);
+            }
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public synchronized void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+        notifyAll();
+    }
+
+    /**
+     * @return the number of prepared statements kept open on each connection
+     */
+    public int getMaxStatements() {
+        return maxStatements;
+    }
+
+    public void setMaxStatements(int maxStatements) {
+        this.maxStatements = maxStatements;
+    }
+
+    /**
+     * @return the time in milliseconds to wait for a connection when all of them are in use
+     */
+    public long getMaxWait() {
+        return maxWait;
+    }
+
+    public void setMaxWait(long maxWait) {
+        this.maxWait = maxWait;
+    }
+
+    /**
+     * @return the time in milliseconds a connection may be idle before it is validated again
+     */
+    public long getValidationInterval() {
+        return validationInterval;
+    }
+
+    public void setValidationInterval(long validationInterval) {
+        this.validationInterval = validationInterval;
+    }
+
+    public String getValidationQuery() {
+        return validationQuery;
+    }
+
+    public void setValidationQuery(String validationQuery) {
+        this.validationQuery = validationQuery;
+    }
+
+    public synchronized int getOpenConnections() {
+        return openConnections;
+    }
+
+    public synchronized int getIdleConnections() {
+        return idleConnections.size();
+    }
+
+    public synchronized int getActiveConnections() {
+        return openConnections - idleConnections.size();
+    }
+
+    public synchronized long getBorrowCount() {
+        return borrowCount;
+    }
+
+    /**
+     * @return the number of borrows which had to wait because all connections were in use
+     */
+    public synchronized long getWaitCount() {
+        return waitCount;
+    }
+
+    /**
+     * @return the average time in milliseconds a borrow took, including opening or validating the connection
+     */
+    public synchronized long getAverageWaitTime() {
+        return borrowCount == 0 ? 0 : totalWaitTime / borrowCount;
+    }
+
+    public synchronized long getLongestWaitTime() {
+        return longestWaitTime;
+    }
+
+    public synchronized long getTimeoutCount() {
+        return timeoutCount;
+    }
+
+    public synchronized long getStatementCacheHits() {
+        return statementCacheHits;
+    }
+
+    public synchronized long getStatementCacheMisses() {
+        return statementCacheMisses;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return name + " [open=" + openConnections + ", idle=" + idleConnections.size() + ", max=" + maxConnections
+            + ", opened=" + connectionsOpened + ", dropped=" + connectionsDropped + ", borrows=" + borrowCount
+            + ", waits=" + waitCount + ", avgWaitMs=" + getAverageWaitTime() + ", longestWaitMs="
+            + longestWaitTime + ", timeouts=" + timeoutCount + ", statementHits=" + statementCacheHits
+            + ", statementMisses=" + statementCacheMisses + "]";
+    }
+}
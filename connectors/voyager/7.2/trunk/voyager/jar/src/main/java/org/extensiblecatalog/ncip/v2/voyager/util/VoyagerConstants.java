@@ -46,6 +46,37 @@ public class VoyagerConstants {
     public static final String CONFIG_VOYAGER_DB_READ_ONLY_PASSWORD = "VoyagerDatabaseReadOnlyPassword";
 
     public static final String CONFIG_VOYAGER_ORACLE_USER = "VoyagerOracleUser";
+
+    /**
+     * Parameter for looking up the JDBC driver class of the Voyager
+     * databases, by default the Oracle driver
+     */
+    public static final String CONFIG_VOYAGER_DB_DRIVER = "VoyagerDatabaseDriver";
+
+    /**
+     * Parameter for looking up the maximum number of connections opened to
+     * each Voyager database
+     */
+    public static final String CONFIG_VOYAGER_DB_POOL_SIZE = "VoyagerDatabasePoolSize";
+
+    /**
+     * Parameter for looking up the number of milliseconds to wait for a
+     * database connection when all of them are in use
+     */
+    public static final String CONFIG_VOYAGER_DB_POOL_MAX_WAIT = "VoyagerDatabasePoolMaxWait";
+
+    /**
+     * Parameter for looking up the number of prepared statements kept open
+     * on each database connection
+     */
+    public static final String CONFIG_VOYAGER_DB_STATEMENT_CACHE_SIZE = "VoyagerDatabaseStatementCacheSize";
+
+    /**
+     * Parameter for looking up the query used to check that an idle database
+     * connection still works before it is used again
+     */
+    public static final String CONFIG_VOYAGER_DB_VALIDATION_QUERY = "VoyagerDatabaseValidationQuery";
+
     /**
      * Parameter for looking up the message returned by Voyager to indicate a
      * successful request
@@ -180,4 +211,10 @@ public class VoyagerConstants {
      * Parameter for specifying if multiple tomcat instances are used for vxws
      */
     public static final String CONFIG_VOYAGER_MULTIPLE_TOMCATS = "MultipleTomcats";
+
+    /**
+     * Parameter for specifying the maximum number of vxws requests made at the
+     * same time for the holdings of the bibs in one message
+     */
+    public static final String CONFIG_VOYAGER_MAX_CONCURRENT_REQUESTS = "VoyagerMaxConcurrentRequests";
 }
@@ -0,0 +1,130 @@
+package org.extensiblecatalog.ncip.v2.voyager.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+public class VoyagerConnectionPoolTest extends TestCase {
+
+    /**
+     * Opens connections whose prepared statements fail to execute with the SQLState given at the end of the URL,
+     * e.g. "jdbc:failing:08006".
+     */
+    public static class FailingDriver implements Driver {
+
+        static final AtomicInteger physicalCloses = new AtomicInteger();
+
+        static {
+            try {
+                DriverManager.registerDriver(new FailingDriver());
+            } catch (SQLException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        public Connection connect(String url, Properties info) throws SQLException {
+            if (!acceptsURL(url))
+                return null;
+            final String sqlState = url.substring("jdbc:failing:".length());
+            final InvocationHandler statementHandler = new InvocationHandler() {
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                    if (method.getName().equals("executeQuery"))
+                        throw new SQLException("Query failed", sqlState);
+                    return null;
+                }
+            };
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        String methodName = method.getName();
+                        if (methodName.equals("prepareStatement"))
+                            return Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                                new Class<?>[] { PreparedStatement.class }, statementHandler);
+                        if (methodName.equals("getAutoCommit") || methodName.equals("isClosed"))
+                            return Boolean.valueOf(methodName.equals("getAutoCommit"));
+                        if (methodName.equals("close"))
+                            physicalCloses.incrementAndGet();
+                        return null;
+                    }
+                });
+        }
+
+        public boolean acceptsURL(String url) {
+            return url.startsWith("jdbc:failing:");
+        }
+
+        public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+            return new DriverPropertyInfo[0];
+        }
+
+        public int getMajorVersion() {
+            return 1;
+        }
+
+        public int getMinorVersion() {
+            return 0;
+        }
+
+        public boolean jdbcCompliant() {
+            return false;
+        }
+
+        public java.util.logging.Logger getParentLogger() throws SQLFeatureNotSupportedException {
+            throw new SQLFeatureNotSupportedException();
+        }
+    }
+
+    public void testLostConnectionOnExecuteSurfacesAsSQLExceptionAndIsDropped() throws Exception {
+        VoyagerConnectionPool pool = new VoyagerConnectionPool("test", FailingDriver.class.getName(),
+            "jdbc:failing:08006", "user", "password");
+        int closesBefore = FailingDriver.physicalCloses.get();
+
+        Connection connection = pool.getConnection();
+        PreparedStatement statement = connection.prepareStatement("SELECT 1 FROM DUAL");
+        try {
+            statement.executeQuery();
+            fail("executeQuery should have thrown an SQLException");
+        } catch (SQLException e) {
+            assertEquals("08006", e.getSQLState());
+        } finally {
+            statement.close();
+            connection.close();
+        }
+
+        assertEquals(closesBefore + 1, FailingDriver.physicalCloses.get());
+        assertEquals(0, pool.getIdleConnections());
+        assertEquals(0, pool.getOpenConnections());
+        pool.shutdown();
+    }
+
+    public void testOtherErrorOnExecuteKeepsConnection() throws Exception {
+        VoyagerConnectionPool pool = new VoyagerConnectionPool("test", FailingDriver.class.getName(),
+            "jdbc:failing:42000", "user", "password");
+
+        Connection connection = pool.getConnection();
+        PreparedStatement statement = connection.prepareStatement("SELECT 1 FROM DUAL");
+        try {
+            statement.executeQuery();
+            fail("executeQuery should have thrown an SQLException");
+        } catch (SQLException e) {
+            assertEquals("42000", e.getSQLState());
+        } finally {
+            statement.close();
+            connection.close();
+        }
+
+        assertEquals(1, pool.getIdleConnections());
+        pool.shutdown();
+    }
+}
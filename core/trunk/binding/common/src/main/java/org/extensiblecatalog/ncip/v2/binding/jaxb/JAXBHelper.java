@@ -13,6 +13,11 @@ import org.dozer.MappingException;
 import org.extensiblecatalog.ncip.v2.service.*;
 
 import javax.xml.bind.JAXBElement;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayInputStream;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
@@ -23,6 +28,15 @@ public class JAXBHelper {
 
     private static final Logger LOG = Logger.getLogger(JAXBHelper.class);
 
+    protected static final XMLInputFactory XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+
+    static {
+
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+
+    }
+
     // TODO: Write JUnit tests that include a test for an Extension message like LookupItemSet.
     /**
      *
@@ -102,6 +116,54 @@ public class JAXBHelper {
 
     }
 
+    /**
+     * Read the name of the message in an NCIP document without unmarshalling it, i.e. the local name of the first
+     * child element of NCIPMessage, or of NCIPMessage/Ext for an extension message. Only the start of the document
+     * is parsed.
+     *
+     * @param msgBytes the document
+     * @return the message name, e.g. 'LookupUser', or null if the document doesn't start like an NCIP message
+     */
+    public static String peekMessageName(byte[] msgBytes) {
+
+        String msgName = null;
+        try {
+
+            XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(new ByteArrayInputStream(msgBytes));
+            try {
+
+                int depth = 0;
+                while ( msgName == null && reader.hasNext() ) {
+
+                    if ( reader.next() == XMLStreamConstants.START_ELEMENT ) {
+
+                        depth++;
+                        if ( depth > 1 && ! "Ext".equals(reader.getLocalName()) ) {
+
+                            msgName = reader.getLocalName();
+
+                        }
+
+                    }
+
+                }
+
+            } finally {
+
+                reader.close();
+
+            }
+
+        } catch (XMLStreamException e) {
+
+            LOG.debug("XMLStreamException reading the message name; the message will be treated as unnamed.", e);
+
+        }
+
+        return msgName;
+
+    }
+
     public static String getScheme(Object jaxbObject) {
 
         String result;
@@ -0,0 +1,165 @@
+/**
+ * Copyright (c) 2012 eXtensible Catalog Organization
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the MIT/X11 license. The text of the license can be
+ * found at http://www.opensource.org/licenses/mit-license.php.
+ */
+
+package org.extensiblecatalog.ncip.v2.binding.jaxb;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded pool of idle instances for each pool key, for objects that are expensive to create but not thread-safe
+ * (e.g. {@link javax.xml.bind.Marshaller}s). Callers {@link #borrow(String)} an instance, creating one themselves if
+ * none is idle, and hand it back with {@link #returnToPool(String, Object)} once they are done with it; instances
+ * that are not returned are simply garbage collected.
+ * @param <T> the type of the pooled instances
+ */
+public class KeyedPool<T> {
+
+    /**
+     * The maximum number of idle instances kept in each pool; if this is 0 no instances are pooled.
+     */
+    protected volatile int poolSize;
+
+    protected final ConcurrentMap<String /* Pool key */, BlockingQueue<T>> pools
+        = new ConcurrentHashMap<String, BlockingQueue<T>>();
+
+    protected final AtomicLong hits = new AtomicLong();
+    protected final AtomicLong misses = new AtomicLong();
+
+    public KeyedPool(int poolSize) {
+
+        this.poolSize = poolSize;
+
+    }
+
+    public int getPoolSize() {
+
+        return poolSize;
+
+    }
+
+    /**
+     * Set the maximum number of idle instances kept for each pool key. This affects pools created after it is
+     * called, so it should be set before first use.
+     * @param poolSize the maximum number of idle instances per pool; 0 disables pooling
+     */
+    public void setPoolSize(int poolSize) {
+
+        this.poolSize = poolSize;
+
+    }
+
+    /**
+     * @return the number of times {@link #borrow(String)} returned an idle instance
+     */
+    public long getHits() {
+
+        return hits.get();
+
+    }
+
+    /**
+     * @return the number of times {@link #borrow(String)} found no idle instance
+     */
+    public long getMisses() {
+
+        return misses.get();
+
+    }
+
+    /**
+     * @return the number of idle instances currently held across all pools
+     */
+    public int getIdleCount() {
+
+        int count = 0;
+        for ( BlockingQueue<T> pool : pools.values() ) {
+
+            count += pool.size();
+
+        }
+
+        return count;
+
+    }
+
+    /**
+     * Take an idle instance from the pool for this key. The caller has exclusive use of it until it is passed to
+     * {@link #returnToPool(String, Object)}.
+     * @param poolKey the pool key
+     * @return the instance, or null if none is idle, in which case the caller should create one
+     */
+    public T borrow(String poolKey) {
+
+        T instance = null;
+        BlockingQueue<T> pool = pools.get(poolKey);
+        if ( pool != null ) {
+
+            instance = pool.poll();
+
+        }
+
+        if ( instance != null ) {
+
+            hits.incrementAndGet();
+
+        } else {
+
+            misses.incrementAndGet();
+
+        }
+
+        return instance;
+
+    }
+
+    /**
+     * Put an instance back in the pool for this key so that it can be re-used. The caller must not use the instance
+     * after calling this. If the pool is full the instance is discarded.
+     * @param poolKey the key that was passed to {@link #borrow(String)}
+     * @param instance the instance; if null, nothing is done
+     */
+    public void returnToPool(String poolKey, T instance) {
+
+        int size = poolSize;
+        if ( instance != null && size > 0 ) {
+
+            BlockingQueue<T> pool = pools.get(poolKey);
+            if ( pool == null ) {
+
+                pool = new ArrayBlockingQueue<T>(size);
+                BlockingQueue<T> existingPool = pools.putIfAbsent(poolKey, pool);
+                if ( existingPool != null ) {
+
+                    pool = existingPool;
+
+                }
+
+            }
+
+            pool.offer(instance);
+
+        }
+
+    }
+
+    /**
+     * Discard all idle instances and reset the hit and miss counts.
+     */
+    public void clear() {
+
+        pools.clear();
+        hits.set(0);
+        misses.set(0);
+
+    }
+
+}
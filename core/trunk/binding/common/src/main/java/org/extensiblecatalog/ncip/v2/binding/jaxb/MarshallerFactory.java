@@ -15,23 +15,105 @@ import org.extensiblecatalog.ncip.v2.service.ServiceContext;
 import org.extensiblecatalog.ncip.v2.service.ToolkitException;
 import org.xml.sax.SAXException;
 
-import javax.xml.XMLConstants;
 import javax.xml.bind.*;
-import javax.xml.transform.stream.StreamSource;
+import javax.xml.bind.util.JAXBSource;
 import javax.xml.validation.Schema;
-import javax.xml.validation.SchemaFactory;
 import java.io.IOException;
-import java.net.MalformedURLException;
-import java.net.URISyntaxException;
-import java.net.URL;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Supplies {@link Marshaller}s and {@link Unmarshaller}s for {@link NCIPServiceContext}s.
+ * Marshallers and Unmarshallers are not thread-safe, but they are expensive to create, so this factory keeps a
+ * bounded pool of idle instances for each distinct configuration (i.e. canonical set of schema URLs, validation
+ * setting and namespaces). Callers borrow an instance with {@link #getMarshaller(ServiceContext)} or
+ * {@link #getUnmarshaller(ServiceContext)} and should hand it back with
+ * {@link #returnMarshaller(ServiceContext, Marshaller)} or {@link #returnUnmarshaller(ServiceContext, Unmarshaller)}
+ * when they are done with it; instances that are not returned are simply garbage collected.
+ * <p>
+ * Schemas are compiled by a {@link SchemaRegistry}. If a schema validation sample rate below 1.0 is configured,
+ * Marshallers and Unmarshallers don't validate; instead the translator passes each outgoing message to
+ * {@link #validateSample(ServiceContext, Object, String)}, which validates the configured fraction of them, and
+ * asks {@link #selectForValidation(ServiceContext, String)} before unmarshalling each incoming message whether to
+ * use a validating Unmarshaller (see {@link #getUnmarshaller(ServiceContext, boolean)}) for it. Sampled
+ * validations are recorded, by message name, in the {@link StatisticsBean} if one is set.
+ */
 public class MarshallerFactory {
 
     private static final Logger LOG = Logger.getLogger(MarshallerFactory.class);
 
-    protected final Map<String /* CanonicalSchemaURLsCSVList */, Schema> schemasByCanonicalURLsCSVList
-        = new HashMap<String, Schema>();
+    protected final ConcurrentMap<String /* Pool key */, JAXBContext> jaxbContextsByPoolKey
+        = new ConcurrentHashMap<String, JAXBContext>();
+
+    protected final KeyedPool<Marshaller> marshallerPool = new KeyedPool<Marshaller>(
+        Integer.parseInt(NCIP2TranslatorConfiguration.MARSHALLER_POOL_SIZE_DEFAULT));
+
+    protected final KeyedPool<Unmarshaller> unmarshallerPool = new KeyedPool<Unmarshaller>(
+        Integer.parseInt(NCIP2TranslatorConfiguration.MARSHALLER_POOL_SIZE_DEFAULT));
+
+    /**
+     * The pool key most recently built by {@link #createPoolKey(NCIPServiceContext)}. A service context is usually
+     * created for each message, but all the contexts from one configuration share its schema URL list and namespace
+     * array, so comparing those by identity lets the key be re-used without canonicalizing and sorting the schema
+     * URLs again. Those lists must therefore not be changed once they are in use.
+     */
+    protected volatile PoolKeyEntry lastPoolKey;
+
+    /**
+     * A pool key and the values from the service context that it was built from.
+     */
+    protected static final class PoolKeyEntry {
+
+        protected final List<String> schemaURLs;
+        protected final boolean validatesInline;
+        protected final String defaultNamespace;
+        protected final String[] namespaceURIs;
+        protected final String poolKey;
+
+        protected PoolKeyEntry(List<String> schemaURLs, boolean validatesInline, String defaultNamespace,
+                               String[] namespaceURIs, String poolKey) {
+
+            this.schemaURLs = schemaURLs;
+            this.validatesInline = validatesInline;
+            this.defaultNamespace = defaultNamespace;
+            this.namespaceURIs = namespaceURIs;
+            this.poolKey = poolKey;
+
+        }
+
+        protected boolean isFor(List<String> schemaURLs, boolean validatesInline, String defaultNamespace,
+                                String[] namespaceURIs) {
+
+            return this.schemaURLs == schemaURLs && this.validatesInline == validatesInline
+                && this.defaultNamespace == defaultNamespace && this.namespaceURIs == namespaceURIs;
+
+        }
+
+    }
+
+    protected SchemaRegistry schemaRegistry = new SchemaRegistry();
+
+    protected StatisticsBean statisticsBean;
+
+    /**
+     * The fraction of messages validated by {@link #validateSample(ServiceContext, Object, String)} for services
+     * without an entry in {@link #schemaValidationSampleRates}.
+     */
+    protected double schemaValidationSampleRate = Double.parseDouble(
+        NCIP2TranslatorConfiguration.SCHEMA_VALIDATION_SAMPLE_RATE_DEFAULT);
+
+    protected Map<String /* Service name */, Double /* Sample rate */> schemaValidationSampleRates
+        = new HashMap<String, Double>();
+
+    protected final ConcurrentMap<String /* Message name */, AtomicLong> validationSampleCounters
+        = new ConcurrentHashMap<String, AtomicLong>();
+
+    protected final AtomicLong sampleValidationCount = new AtomicLong();
+    protected final AtomicLong sampleValidationFailures = new AtomicLong();
+    protected final AtomicLong sampleValidationSkips = new AtomicLong();
+    protected final AtomicLong totalSampleValidationNanos = new AtomicLong();
 
     protected Map<String /* Known Alias */, String /* Canonical URL */> canonicalSchemaURLMap
         = new HashMap<String, String>();
@@ -43,7 +125,7 @@ public class MarshallerFactory {
 
     }
 
-    public MarshallerFactory(TranslatorConfiguration config) {
+    public MarshallerFactory(TranslatorConfiguration config) throws ToolkitException {
 
         NCIP2TranslatorConfiguration ncipConfig = (NCIP2TranslatorConfiguration)config;
 
@@ -60,6 +142,22 @@ public class MarshallerFactory {
             this.canonicalSchemaURLMap = canonicalSchemaURLMap;
 
         }
+
+        setPoolSize(ncipConfig.getMarshallerPoolSize());
+
+        this.schemaRegistry = new SchemaRegistry(
+            new SchemaCatalog(ncipConfig.getSchemaCatalogFiles(), ncipConfig.getCanonicalSchemaURLMap()),
+            ncipConfig.getResolveSchemasOffline());
+
+        this.schemaValidationSampleRate = ncipConfig.getSchemaValidationSampleRate();
+
+        Map<String, Double> schemaValidationSampleRates = ncipConfig.getSchemaValidationSampleRates();
+        if ( schemaValidationSampleRates != null ) {
+
+            this.schemaValidationSampleRates = schemaValidationSampleRates;
+
+        }
+
     }
 
     public void setSchemaURLsToPackageMap(Map<String, String> schemaURLsToPackageMap) {
@@ -71,6 +169,188 @@ public class MarshallerFactory {
     public void setCanonicalSchemaURLMap(Map<String, String> canonicalSchemaURLMap) {
 
         this.canonicalSchemaURLMap = canonicalSchemaURLMap;
+        // The pool key is built from the canonical schema URLs
+        this.lastPoolKey = null;
+
+    }
+
+    public SchemaRegistry getSchemaRegistry() {
+
+        return schemaRegistry;
+
+    }
+
+    public void setSchemaRegistry(SchemaRegistry schemaRegistry) {
+
+        this.schemaRegistry = schemaRegistry;
+        if ( statisticsBean != null ) {
+
+            schemaRegistry.setStatisticsBean(statisticsBean);
+
+        }
+
+    }
+
+    public StatisticsBean getStatisticsBean() {
+
+        return statisticsBean;
+
+    }
+
+    /**
+     * Set the {@link StatisticsBean} that sampled validations, and the {@link SchemaRegistry}'s schema
+     * compilations, are recorded in.
+     * @param statisticsBean the statistics bean
+     */
+    public void setStatisticsBean(StatisticsBean statisticsBean) {
+
+        this.statisticsBean = statisticsBean;
+        schemaRegistry.setStatisticsBean(statisticsBean);
+
+    }
+
+    public double getSchemaValidationSampleRate() {
+
+        return schemaValidationSampleRate;
+
+    }
+
+    /**
+     * Set the fraction of messages that are validated for services without their own rate. Changing this from or to
+     * 1.0 changes whether Marshallers and Unmarshallers validate, so it should be set before first use.
+     * @param schemaValidationSampleRate the fraction, from 0.0 to 1.0
+     */
+    public void setSchemaValidationSampleRate(double schemaValidationSampleRate) {
+
+        this.schemaValidationSampleRate = schemaValidationSampleRate;
+
+    }
+
+    public Map<String, Double> getSchemaValidationSampleRates() {
+
+        return schemaValidationSampleRates;
+
+    }
+
+    /**
+     * Set the fraction of messages that are validated for individual services, keyed by service name (e.g.
+     * 'LookupUser'); the rate applies to both the service's initiation and response messages. This should be set
+     * before first use.
+     * @param schemaValidationSampleRates the fractions, from 0.0 to 1.0
+     */
+    public void setSchemaValidationSampleRates(Map<String, Double> schemaValidationSampleRates) {
+
+        this.schemaValidationSampleRates = schemaValidationSampleRates;
+
+    }
+
+    /**
+     * @return the number of messages validated by {@link #validateSample(ServiceContext, Object, String)} or
+     * unmarshalled with a validating Unmarshaller after {@link #selectForValidation(ServiceContext, String)}
+     */
+    public long getSampleValidationCount() {
+
+        return sampleValidationCount.get();
+
+    }
+
+    /**
+     * @return the number of sampled messages that were found invalid
+     */
+    public long getSampleValidationFailures() {
+
+        return sampleValidationFailures.get();
+
+    }
+
+    /**
+     * @return the number of messages that were not validated because they were not in the sample
+     */
+    public long getSampleValidationSkips() {
+
+        return sampleValidationSkips.get();
+
+    }
+
+    /**
+     * @return the total time spent validating sampled messages, in nanoseconds; for incoming messages this is the
+     * time taken to unmarshal them with a validating Unmarshaller
+     */
+    public long getTotalSampleValidationNanos() {
+
+        return totalSampleValidationNanos.get();
+
+    }
+
+    public int getPoolSize() {
+
+        return marshallerPool.getPoolSize();
+
+    }
+
+    /**
+     * Set the maximum number of idle {@link Marshaller}s (and, separately, {@link Unmarshaller}s) kept for each
+     * configuration. This affects pools created after it is called, so it should be set before first use.
+     * @param poolSize the maximum number of idle instances per pool; 0 disables pooling
+     */
+    public void setPoolSize(int poolSize) {
+
+        marshallerPool.setPoolSize(poolSize);
+        unmarshallerPool.setPoolSize(poolSize);
+
+    }
+
+    /**
+     * @return the number of times {@link #getMarshaller(ServiceContext)} was satisfied from a pool
+     */
+    public long getMarshallerPoolHits() {
+
+        return marshallerPool.getHits();
+
+    }
+
+    /**
+     * @return the number of times {@link #getMarshaller(ServiceContext)} had to create a new Marshaller
+     */
+    public long getMarshallerPoolMisses() {
+
+        return marshallerPool.getMisses();
+
+    }
+
+    /**
+     * @return the number of times {@link #getUnmarshaller(ServiceContext)} was satisfied from a pool
+     */
+    public long getUnmarshallerPoolHits() {
+
+        return unmarshallerPool.getHits();
+
+    }
+
+    /**
+     * @return the number of times {@link #getUnmarshaller(ServiceContext)} had to create a new Unmarshaller
+     */
+    public long getUnmarshallerPoolMisses() {
+
+        return unmarshallerPool.getMisses();
+
+    }
+
+    /**
+     * @return the number of idle Marshallers currently held across all pools
+     */
+    public int getPooledMarshallerCount() {
+
+        return marshallerPool.getIdleCount();
+
+    }
+
+    /**
+     * @return the number of idle Unmarshallers currently held across all pools
+     */
+    public int getPooledUnmarshallerCount() {
+
+        return unmarshallerPool.getIdleCount();
 
     }
 
@@ -117,209 +397,527 @@ public class MarshallerFactory {
 
     }
 
-    // TODO: Pool marshallers (they're not threadsafe so can't share them).
+    /**
+     * Borrow a {@link Marshaller} for this service context, creating one if none is idle in the pool. The caller
+     * has exclusive use of it until it is passed to {@link #returnMarshaller(ServiceContext, Marshaller)}.
+     * @param serviceContext the service context, which must be an {@link NCIPServiceContext}
+     * @return the Marshaller
+     * @throws ToolkitException if the service context is not supported or the Marshaller can't be created
+     */
     public Marshaller getMarshaller(ServiceContext serviceContext) throws ToolkitException {
 
-        Marshaller marshaller;
-        if ( serviceContext instanceof NCIPServiceContext) {
+        NCIPServiceContext ncipServiceContext = castServiceContext(serviceContext);
+        String poolKey = createPoolKey(ncipServiceContext);
+
+        Marshaller marshaller = marshallerPool.borrow(poolKey);
+        if ( marshaller == null ) {
+
+            marshaller = createMarshaller(ncipServiceContext, poolKey);
+
+        }
+
+        return marshaller;
+
+    }
+
+    /**
+     * Return a {@link Marshaller} obtained from {@link #getMarshaller(ServiceContext)} so that it can be re-used.
+     * The caller must not use the Marshaller after calling this. If the pool is full the Marshaller is discarded.
+     * @param serviceContext the service context that was passed to {@link #getMarshaller(ServiceContext)}
+     * @param marshaller the Marshaller
+     */
+    public void returnMarshaller(ServiceContext serviceContext, Marshaller marshaller) {
+
+        if ( marshaller != null && marshallerPool.getPoolSize() > 0 && serviceContext instanceof NCIPServiceContext ) {
+
+            marshallerPool.returnToPool(createPoolKey((NCIPServiceContext)serviceContext), marshaller);
+
+        }
+
+    }
+
+    /**
+     * Borrow an {@link Unmarshaller} for this service context, creating one if none is idle in the pool. The caller
+     * has exclusive use of it until it is passed to {@link #returnUnmarshaller(ServiceContext, Unmarshaller)}.
+     * @param serviceContext the service context, which must be an {@link NCIPServiceContext}
+     * @return the Unmarshaller
+     * @throws ToolkitException if the service context is not supported or the Unmarshaller can't be created
+     */
+    public Unmarshaller getUnmarshaller(ServiceContext serviceContext) throws ToolkitException {
+
+        return getUnmarshaller(serviceContext, false);
+
+    }
+
+    /**
+     * Borrow an {@link Unmarshaller} for this service context, as {@link #getUnmarshaller(ServiceContext)} does.
+     * @param serviceContext the service context, which must be an {@link NCIPServiceContext}
+     * @param validate true for an Unmarshaller that validates against the schema even though the context samples
+     *                 messages for validation, i.e. for a message that {@link #selectForValidation(ServiceContext,
+     *                 String)} selected; such Unmarshallers are pooled separately and must be returned with
+     *                 {@link #returnUnmarshaller(ServiceContext, boolean, Unmarshaller)}
+     * @return the Unmarshaller
+     * @throws ToolkitException if the service context is not supported or the Unmarshaller can't be created
+     */
+    public Unmarshaller getUnmarshaller(ServiceContext serviceContext, boolean validate) throws ToolkitException {
+
+        NCIPServiceContext ncipServiceContext = castServiceContext(serviceContext);
+        String poolKey = createPoolKey(ncipServiceContext);
+
+        Unmarshaller unmarshaller = unmarshallerPool.borrow(
+            createUnmarshallerPoolKey(ncipServiceContext, poolKey, validate));
+        if ( unmarshaller == null ) {
+
+            unmarshaller = createUnmarshaller(ncipServiceContext, poolKey, validate);
+
+        }
+
+        return unmarshaller;
+
+    }
+
+    /**
+     * Return an {@link Unmarshaller} obtained from {@link #getUnmarshaller(ServiceContext)} so that it can be re-used.
+     * The caller must not use the Unmarshaller after calling this. If the pool is full the Unmarshaller is discarded.
+     * @param serviceContext the service context that was passed to {@link #getUnmarshaller(ServiceContext)}
+     * @param unmarshaller the Unmarshaller
+     */
+    public void returnUnmarshaller(ServiceContext serviceContext, Unmarshaller unmarshaller) {
+
+        returnUnmarshaller(serviceContext, false, unmarshaller);
+
+    }
+
+    /**
+     * Return an {@link Unmarshaller} obtained from {@link #getUnmarshaller(ServiceContext, boolean)}.
+     * @param serviceContext the service context that was passed to {@link #getUnmarshaller(ServiceContext, boolean)}
+     * @param validate the value that was passed to {@link #getUnmarshaller(ServiceContext, boolean)}
+     * @param unmarshaller the Unmarshaller
+     */
+    public void returnUnmarshaller(ServiceContext serviceContext, boolean validate, Unmarshaller unmarshaller) {
+
+        if ( unmarshaller != null && unmarshallerPool.getPoolSize() > 0
+            && serviceContext instanceof NCIPServiceContext ) {
 
             NCIPServiceContext ncipServiceContext = (NCIPServiceContext)serviceContext;
-            try {
+            unmarshallerPool.returnToPool(
+                createUnmarshallerPoolKey(ncipServiceContext, createPoolKey(ncipServiceContext), validate),
+                unmarshaller);
+
+        }
 
-                List<String> schemaURLsList = ncipServiceContext.getSchemaURLs();
-                marshaller = getJAXBContext(schemaURLsList).createMarshaller();
+    }
 
-                if ( ncipServiceContext.validateMessagesAgainstSchema() ) {
-                    Schema schema = getSchema(ncipServiceContext.getSchemaURLs());
-                    if ( schema != null ) {
+    /**
+     * Discard all idle Marshallers and Unmarshallers and reset the pool and sample validation metrics.
+     */
+    public void clearPools() {
 
-                        marshaller.setSchema(schema);
+        marshallerPool.clear();
+        unmarshallerPool.clear();
+        validationSampleCounters.clear();
+        sampleValidationCount.set(0);
+        sampleValidationFailures.set(0);
+        sampleValidationSkips.set(0);
+        totalSampleValidationNanos.set(0);
 
-                    }
-                }
+    }
 
-                PreferredMapper mapper = new PreferredMapper(ncipServiceContext);
-                marshaller.setProperty("com.sun.xml.bind.namespacePrefixMapper", mapper);
+    /**
+     * Build the JAXBContext and compile the Schema for this service context, so that the first message doesn't
+     * pay for them.
+     * @param serviceContext the service context, which must be an {@link NCIPServiceContext}
+     * @throws ToolkitException if the service context is not supported
+     */
+    public void prewarm(ServiceContext serviceContext) throws ToolkitException {
 
-            } catch (JAXBException e) {
+        NCIPServiceContext ncipServiceContext = castServiceContext(serviceContext);
+        getJAXBContext(ncipServiceContext, createPoolKey(ncipServiceContext));
+        if ( ncipServiceContext.validateMessagesAgainstSchema() ) {
 
-                throw new ToolkitException("JAXBException creating Marshaller.", e);
+            getSchema(ncipServiceContext.getSchemaURLs());
 
-            }
+        }
 
-        } else {
+    }
 
-            throw new ToolkitException("ServiceContext of '" + serviceContext.getClass().getName()
-                + "' not supported; must be an instance of NCIPServiceContext.");
+    /**
+     * Whether messages are validated while they are marshalled and unmarshalled for this service context, rather
+     * than sampled by {@link #validateSample(ServiceContext, Object, String)}.
+     * @param ncipServiceContext the service context
+     * @return true if the context validates messages and no sample rate below 1.0 is configured
+     */
+    public boolean validatesInline(NCIPServiceContext ncipServiceContext) {
+
+        return ncipServiceContext.validateMessagesAgainstSchema() && ! isSamplingValidation();
+
+    }
+
+    /**
+     * Whether the translator should pass messages for this service context to
+     * {@link #validateSample(ServiceContext, Object, String)}.
+     * @param serviceContext the service context
+     * @return true if the context validates messages and a sample rate below 1.0 is configured
+     */
+    public boolean validatesSamples(ServiceContext serviceContext) {
+
+        return serviceContext instanceof NCIPServiceContext
+            && ((NCIPServiceContext)serviceContext).validateMessagesAgainstSchema() && isSamplingValidation();
+
+    }
+
+    protected boolean isSamplingValidation() {
+
+        boolean isSampling = schemaValidationSampleRate < 1.0;
+        if ( ! isSampling && schemaValidationSampleRates != null ) {
+
+            for ( Double rate : schemaValidationSampleRates.values() ) {
+
+                if ( rate < 1.0 ) {
+
+                    isSampling = true;
+                    break;
+
+                }
+
+            }
 
         }
 
-        return marshaller;
+        return isSampling;
+
     }
 
-    // TODO: Pool unmarshallers (they're not threadsafe so can't share them).
-    public Unmarshaller getUnmarshaller(ServiceContext serviceContext) throws ToolkitException {
+    /**
+     * Validate the message against the schema if it falls in the sample for its service. Which messages are in the
+     * sample is deterministic, e.g. at a rate of 0.25 every fourth message for the service is validated.
+     * This does nothing unless {@link #validatesSamples(ServiceContext)} is true.
+     * @param serviceContext the service context, which must be an {@link NCIPServiceContext}
+     * @param jaxbMsg the JAXB message object, e.g. an unmarshalled initiation message or a response to be marshalled
+     * @param msgName the name of the message, e.g. 'LookupUser' or 'LookupUserResponse'
+     * @throws SAXException if the message is not valid against the schema
+     * @throws ToolkitException if the service context is not supported or the message can't be validated
+     */
+    public void validateSample(ServiceContext serviceContext, Object jaxbMsg, String msgName)
+        throws SAXException, ToolkitException {
 
-        Unmarshaller unmarshaller;
-        if ( serviceContext instanceof NCIPServiceContext) {
+        if ( selectForValidation(serviceContext, msgName) ) {
+
+            NCIPServiceContext ncipServiceContext = castServiceContext(serviceContext);
+            Schema schema = getSchema(ncipServiceContext.getSchemaURLs());
+            if ( schema != null ) {
+
+                long startTime = System.nanoTime();
+                boolean valid = false;
+                try {
+
+                    JAXBSource source = new JAXBSource(
+                        getJAXBContext(ncipServiceContext, createPoolKey(ncipServiceContext)), jaxbMsg);
+                    schema.newValidator().validate(source);
+                    valid = true;
 
-            try {
+                } catch (JAXBException e) {
 
-                NCIPServiceContext ncipServiceContext = (NCIPServiceContext)serviceContext;
-                unmarshaller = getJAXBContext(ncipServiceContext.getSchemaURLs()).createUnmarshaller();
+                    throw new ToolkitException("JAXBException validating the " + msgName + " message.", e);
 
-                if ( ncipServiceContext.validateMessagesAgainstSchema() ) {
-                    Schema schema = getSchema(ncipServiceContext.getSchemaURLs());
-                    if ( schema != null ) {
+                } catch (IOException e) {
 
-                        unmarshaller.setSchema(schema);
+                    throw new ToolkitException("IOException validating the " + msgName + " message.", e);
+
+                } finally {
+
+                    recordSampleValidation(msgName, startTime, valid);
 
-                    }
                 }
 
-            } catch (JAXBException e) {
+            }
+
+        }
+
+    }
+
+    /**
+     * Count this message and decide whether it is in the validation sample for its service. Incoming messages must
+     * be selected before they are unmarshalled, as an Unmarshaller that doesn't validate silently drops unknown or
+     * misplaced elements; a selected message is then unmarshalled with a validating Unmarshaller and the outcome
+     * passed to {@link #recordSampleValidation(String, long, boolean)}.
+     * @param serviceContext the service context
+     * @param msgName the name of the message, e.g. 'LookupUser' or 'LookupUserResponse'; may be null if it is not
+     *                known, in which case the default sample rate applies
+     * @return true if {@link #validatesSamples(ServiceContext)} is true and the message is in the sample
+     */
+    public boolean selectForValidation(ServiceContext serviceContext, String msgName) {
+
+        boolean selected = false;
+        if ( validatesSamples(serviceContext) ) {
+
+            selected = isInSample(msgName);
+            if ( ! selected ) {
 
-                throw new ToolkitException("JAXBException creating Unmarshaller.", e);
+                sampleValidationSkips.incrementAndGet();
 
             }
 
-        } else {
+        }
 
-            throw new ToolkitException("ServiceContext of '" + serviceContext.getClass().getName()
-                + "' not supported; must be an instance of NCIPServiceContext.");
+        return selected;
+
+    }
+
+    /**
+     * Record the validation of a message selected by {@link #selectForValidation(ServiceContext, String)}.
+     * @param msgName the name of the message, or null if it is not known
+     * @param startNanos the value of {@link System#nanoTime()} when validation started
+     * @param valid false if the message was found invalid
+     */
+    public void recordSampleValidation(String msgName, long startNanos, boolean valid) {
+
+        long elapsedNanos = System.nanoTime() - startNanos;
+        sampleValidationCount.incrementAndGet();
+        totalSampleValidationNanos.addAndGet(elapsedNanos);
+        if ( ! valid ) {
+
+            sampleValidationFailures.incrementAndGet();
 
         }
 
-        return unmarshaller;
+        if ( statisticsBean != null ) {
+
+            // Only the difference between the start and end times is recorded
+            statisticsBean.record(0, elapsedNanos / 1000000L, StatisticsBean.SCHEMA_SAMPLE_VALIDATION_LABELS,
+                msgName != null ? msgName : "Unknown Message");
+
+        }
 
     }
 
-    protected Schema getSchema(List<String> schemaURLs) {
+    /**
+     * Count this message and decide whether it is in the sample. The n'th message for a service is in the sample
+     * if floor(n * rate) increases, which spreads the sampled messages evenly without any locking.
+     */
+    protected boolean isInSample(String msgName) {
 
-        Schema schema = null;
+        double rate = getSampleRate(msgName);
+        boolean inSample;
+        if ( rate >= 1.0 ) {
 
-        if ( schemaURLs != null && ! schemaURLs.isEmpty() ) {
+            inSample = true;
 
-            List<String> canonicalSchemaURLsList = new ArrayList<String>(schemaURLs.size());
-            for ( String schemaURL : schemaURLs ) {
+        } else if ( rate <= 0.0 ) {
 
-                canonicalSchemaURLsList.add(canonicalizeSchemaURL(schemaURL));
+            inSample = false;
 
-            }
-            Collections.sort(canonicalSchemaURLsList);
+        } else {
 
-            String schemaURLsCSV = ToolkitHelper.concatenateStrings(canonicalSchemaURLsList, ",");
-            if ( schemasByCanonicalURLsCSVList.containsKey(schemaURLsCSV) ) {
+            String counterKey = msgName != null ? msgName : "";
+            AtomicLong counter = validationSampleCounters.get(counterKey);
+            if ( counter == null ) {
 
-                schema = schemasByCanonicalURLsCSVList.get(schemaURLsCSV);
+                counter = new AtomicLong();
+                AtomicLong existingCounter = validationSampleCounters.putIfAbsent(counterKey, counter);
+                if ( existingCounter != null ) {
 
-            } else {
+                    counter = existingCounter;
 
-                schema = loadSchema(schemaURLs);
-                schemasByCanonicalURLsCSVList.put(schemaURLsCSV, schema);
+                }
 
             }
 
+            long n = counter.getAndIncrement();
+            inSample = (long)Math.floor((n + 1) * rate) > (long)Math.floor(n * rate);
+
         }
 
-        return schema;
+        return inSample;
 
     }
 
-    protected String canonicalizeSchemaURL(String inSchemaURL) {
+    protected double getSampleRate(String msgName) {
 
-        String canonicalSchemaURL = inSchemaURL;
-        if ( canonicalSchemaURLMap.containsKey(inSchemaURL) ) {
+        Double rate = null;
+        if ( schemaValidationSampleRates != null && msgName != null ) {
 
-            canonicalSchemaURL = canonicalSchemaURLMap.get(inSchemaURL);
+            rate = schemaValidationSampleRates.get(msgName);
+            if ( rate == null && msgName.endsWith("Response") ) {
+
+                rate = schemaValidationSampleRates.get(msgName.substring(0, msgName.length() - "Response".length()));
+
+            }
 
         }
 
-        return canonicalSchemaURL;
+        return rate != null ? rate : schemaValidationSampleRate;
 
     }
 
+    protected NCIPServiceContext castServiceContext(ServiceContext serviceContext) throws ToolkitException {
 
-    protected String getPackageNameForSchemaURL(String schemaURL) {
+        if ( serviceContext instanceof NCIPServiceContext ) {
 
-        String canonicalSchemaURL = canonicalizeSchemaURL(schemaURL);
-        return schemaURLsToPackageMap.get(canonicalSchemaURL);
+            return (NCIPServiceContext)serviceContext;
+
+        } else {
+
+            throw new ToolkitException("ServiceContext of '"
+                + ( serviceContext == null ? "null" : serviceContext.getClass().getName() )
+                + "' not supported; must be an instance of NCIPServiceContext.");
+
+        }
 
     }
 
+    /**
+     * Create the key that identifies which pool a Marshaller or Unmarshaller for this service context belongs to.
+     * Everything that is set on an instance in {@link #createMarshaller(NCIPServiceContext, String)} and
+     * {@link #createUnmarshaller(NCIPServiceContext, String, boolean)} must be reflected in this key.
+     * @param ncipServiceContext the service context
+     * @return the key
+     */
+    protected String createPoolKey(NCIPServiceContext ncipServiceContext) {
 
-    protected static Schema loadSchema(List<String> schemaURLs) {
+        List<String> schemaURLs = ncipServiceContext.getSchemaURLs();
+        boolean validatesInline = validatesInline(ncipServiceContext);
+        String defaultNamespace = ncipServiceContext.getDefaultNamespace();
+        String[] namespaceURIs = ncipServiceContext.getNamespaceURIs();
 
-        Schema schema = null;
+        PoolKeyEntry entry = lastPoolKey;
+        if ( entry == null || ! entry.isFor(schemaURLs, validatesInline, defaultNamespace, namespaceURIs) ) {
 
-        if (schemaURLs != null && schemaURLs.size() > 0) {
+            StringBuilder sb = new StringBuilder();
+            sb.append(createCanonicalSchemaURLsCSV(schemaURLs));
+            sb.append('|').append(validatesInline);
+            sb.append('|').append(defaultNamespace);
+            if ( namespaceURIs != null ) {
 
-            int schemaCount = schemaURLs.size();
-            LOG.debug(schemaCount + " schema URLs were found for validating messages.");
-            StreamSource[] schemaSources = new StreamSource[schemaCount];
+                for ( String uri : namespaceURIs ) {
 
-            try {
+                    sb.append('|').append(uri);
 
-                int schemaIndex = 0;
-                for (String schemaURL : schemaURLs) {
+                }
+
+            }
+
+            entry = new PoolKeyEntry(schemaURLs, validatesInline, defaultNamespace, namespaceURIs, sb.toString());
+            lastPoolKey = entry;
+
+        }
 
-                    StreamSource streamSource;
-                    String systemId;
-                    if ( schemaURL.startsWith("http") ) {
+        return entry.poolKey;
 
-                        LOG.info("Loading schema '" + schemaURL + "' as a network resource.");
-                        URL url = new URL(schemaURL);
-                        streamSource = new StreamSource(url.openStream());
-                        systemId = url.toURI().toString();
+    }
 
-                    } else {
+    /**
+     * Validating Unmarshallers for sampled messages are pooled apart from those for the rest.
+     */
+    protected String createUnmarshallerPoolKey(NCIPServiceContext ncipServiceContext, String poolKey,
+                                               boolean validate) {
 
-                        LOG.info("Loading schema '" + schemaURL + "' as a resource via ClassLoader or as a file.");
-                        streamSource = new StreamSource(ToolkitHelper.getResourceOrFile(schemaURL));
-                        systemId = schemaURL;
+        return validate && ! validatesInline(ncipServiceContext) ? poolKey + "|sample" : poolKey;
 
-                    }
+    }
 
-                    LOG.info("Setting system id to '" + systemId + "'.");
-                    streamSource.setSystemId(systemId);
-                    schemaSources[schemaIndex++] = streamSource;
-                    LOG.info("Loaded schema '" + schemaURL + "'.");
+    protected String createCanonicalSchemaURLsCSV(List<String> schemaURLs) {
 
-                }
+        String schemaURLsCSV = "";
+        if ( schemaURLs != null && ! schemaURLs.isEmpty() ) {
 
-                SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+            List<String> canonicalSchemaURLsList = new ArrayList<String>(schemaURLs.size());
+            for ( String schemaURL : schemaURLs ) {
+
+                canonicalSchemaURLsList.add(canonicalizeSchemaURL(schemaURL));
+
+            }
+            Collections.sort(canonicalSchemaURLsList);
+
+            schemaURLsCSV = ToolkitHelper.concatenateStrings(canonicalSchemaURLsList, ",");
+
+        }
+
+        return schemaURLsCSV;
+
+    }
+
+    /**
+     * Get the JAXBContext for this service context, looking it up once per pool key so that repeat calls neither
+     * rebuild the package name list nor contend for the lock in {@link JAXBContextFactory}.
+     */
+    protected JAXBContext getJAXBContext(NCIPServiceContext ncipServiceContext, String poolKey) {
+
+        JAXBContext jaxbContext = jaxbContextsByPoolKey.get(poolKey);
+        if ( jaxbContext == null ) {
 
-                LOG.info("Setting schema sources.");
-                schema = schemaFactory.newSchema(schemaSources);
+            jaxbContext = getJAXBContext(ncipServiceContext.getSchemaURLs());
+            jaxbContextsByPoolKey.putIfAbsent(poolKey, jaxbContext);
 
-            } catch (SAXException e) {
+        }
 
-                LOG.warn("SAXException creating the Schema object for marshaling.", e);
+        return jaxbContext;
 
-            } catch (MalformedURLException e) {
+    }
 
-                LOG.warn("MalformedURLException creating the Schema object for marshaling.", e);
+    protected Marshaller createMarshaller(NCIPServiceContext ncipServiceContext, String poolKey)
+        throws ToolkitException {
 
-            } catch (URISyntaxException e) {
+        Marshaller marshaller;
+        try {
 
-                LOG.warn("URISyntaxException creating the Schema object for marshaling.", e);
+            marshaller = getJAXBContext(ncipServiceContext, poolKey).createMarshaller();
 
-            } catch (IOException e) {
+            if ( validatesInline(ncipServiceContext) ) {
+                Schema schema = getSchema(ncipServiceContext.getSchemaURLs());
+                if ( schema != null ) {
 
-                LOG.warn("IOException creating the Schema object for marshaling.", e);
+                    marshaller.setSchema(schema);
 
+                }
             }
 
+            PreferredMapper mapper = new PreferredMapper(ncipServiceContext);
+            marshaller.setProperty("com.sun.xml.bind.namespacePrefixMapper", mapper);
+
+        } catch (JAXBException e) {
 
-            if ( schema == null ) {
+            throw new ToolkitException("JAXBException creating Marshaller.", e);
 
-                LOG.warn("Schema is null; messages will not be validated against the schema.");
+        }
+
+        return marshaller;
+    }
+
+    protected Unmarshaller createUnmarshaller(NCIPServiceContext ncipServiceContext, String poolKey, boolean validate)
+        throws ToolkitException {
+
+        Unmarshaller unmarshaller;
+        try {
+
+            unmarshaller = getJAXBContext(ncipServiceContext, poolKey).createUnmarshaller();
 
+            if ( validate || validatesInline(ncipServiceContext) ) {
+                Schema schema = getSchema(ncipServiceContext.getSchemaURLs());
+                if ( schema != null ) {
+
+                    unmarshaller.setSchema(schema);
+
+                }
             }
 
-        } else {
+        } catch (JAXBException e) {
+
+            throw new ToolkitException("JAXBException creating Unmarshaller.", e);
+
+        }
+
+        return unmarshaller;
+
+    }
+
+    protected Schema getSchema(List<String> schemaURLs) {
+
+        Schema schema = null;
 
-            LOG.warn("supportedSchemaURLs is null or the list is empty; messages can not be validated against the schema.");
+        if ( schemaURLs != null && ! schemaURLs.isEmpty() ) {
+
+            schema = schemaRegistry.getSchema(createCanonicalSchemaURLsCSV(schemaURLs), schemaURLs);
 
         }
 
@@ -327,6 +925,28 @@ public class MarshallerFactory {
 
     }
 
+    protected String canonicalizeSchemaURL(String inSchemaURL) {
+
+        String canonicalSchemaURL = inSchemaURL;
+        if ( canonicalSchemaURLMap.containsKey(inSchemaURL) ) {
+
+            canonicalSchemaURL = canonicalSchemaURLMap.get(inSchemaURL);
+
+        }
+
+        return canonicalSchemaURL;
+
+    }
+
+
+    protected String getPackageNameForSchemaURL(String schemaURL) {
+
+        String canonicalSchemaURL = canonicalizeSchemaURL(schemaURL);
+        return schemaURLsToPackageMap.get(canonicalSchemaURL);
+
+    }
+
+
     public class PreferredMapper extends com.sun.xml.bind.marshaller.NamespacePrefixMapper {
 
         protected String[] namespaceURIs;
@@ -100,6 +100,8 @@ public class NamespaceFilter extends XMLFilterImpl {
 
     @Override
     public void startDocument() throws SAXException {
+        // The filter may be re-used for another document
+        this.addedNamespace = false;
         super.startDocument();
         if (addNamespace) {
             startControlledPrefixMapping();
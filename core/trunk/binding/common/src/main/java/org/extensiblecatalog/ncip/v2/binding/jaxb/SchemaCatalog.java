@@ -0,0 +1,310 @@
+/**
+ * Copyright (c) 2012 eXtensible Catalog Organization
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the MIT/X11 license. The text of the license can be
+ * found at http://www.opensource.org/licenses/mit-license.php.
+ */
+
+package org.extensiblecatalog.ncip.v2.binding.jaxb;
+
+import org.apache.log4j.Logger;
+import org.extensiblecatalog.ncip.v2.common.ToolkitHelper;
+import org.extensiblecatalog.ncip.v2.service.ToolkitException;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps schema URLs (and the namespaces of imported schemas) to local copies, so that schemas can be compiled without
+ * going to the network. Entries come from OASIS XML catalog files (only the 'system', 'systemSuffix' and 'uri'
+ * entries are supported) and from the canonical schema URL map, whose aliases are treated like 'system' entries.
+ * The local copies are loaded as resources via the ClassLoader or, failing that, as files; relative locations in a
+ * catalog file are resolved against the catalog file's own location.
+ * Instances are immutable once constructed and may be shared between threads.
+ */
+public class SchemaCatalog {
+
+    private static final Logger LOG = Logger.getLogger(SchemaCatalog.class);
+
+    public static final String OASIS_CATALOG_NS = "urn:oasis:names:tc:entity:xmlns:xml:catalog";
+
+    protected final Map<String /* System id or URI */, String /* Local location */> locationsById
+        = new HashMap<String, String>();
+
+    protected final Map<String /* System id suffix */, String /* Local location */> locationsBySuffix
+        = new HashMap<String, String>();
+
+    public SchemaCatalog() {
+
+    }
+
+    /**
+     * Construct a catalog from the catalog files and the canonical schema URL map.
+     * @param catalogFiles the names of the catalog resources or files; may be null
+     * @param canonicalSchemaURLMap aliases of schema URLs mapped to the canonical, i.e. local, schema URL; may be null
+     * @throws ToolkitException if a catalog file can't be found or parsed
+     */
+    public SchemaCatalog(List<String> catalogFiles, Map<String, String> canonicalSchemaURLMap)
+        throws ToolkitException {
+
+        if ( canonicalSchemaURLMap != null ) {
+
+            for ( Map.Entry<String, String> entry : canonicalSchemaURLMap.entrySet() ) {
+
+                if ( ! isNetworkURL(entry.getValue()) ) {
+
+                    locationsById.put(entry.getKey(), entry.getValue());
+
+                }
+
+            }
+
+        }
+
+        if ( catalogFiles != null ) {
+
+            for ( String catalogFile : catalogFiles ) {
+
+                loadCatalogFile(catalogFile);
+
+            }
+
+        }
+
+    }
+
+    /**
+     * @return the number of entries in this catalog
+     */
+    public int getEntryCount() {
+
+        return locationsById.size() + locationsBySuffix.size();
+
+    }
+
+    /**
+     * Find the local copy of a schema. An exact 'system' or 'uri' entry is used if there is one; otherwise the
+     * 'systemSuffix' entry with the longest matching suffix is used, as the OASIS catalog specification requires.
+     * @param systemIdOrURI the system id (i.e. URL) of the schema or, for an import without a schemaLocation,
+     * its namespace URI
+     * @return the location of the local copy, or null if there is no entry for it
+     */
+    public String resolve(String systemIdOrURI) {
+
+        String location = null;
+        if ( systemIdOrURI != null ) {
+
+            location = locationsById.get(systemIdOrURI);
+            if ( location == null ) {
+
+                int longestSuffixLength = -1;
+                for ( Map.Entry<String, String> entry : locationsBySuffix.entrySet() ) {
+
+                    String suffix = entry.getKey();
+                    if ( suffix.length() > longestSuffixLength && systemIdOrURI.endsWith(suffix) ) {
+
+                        location = entry.getValue();
+                        longestSuffixLength = suffix.length();
+
+                    }
+
+                }
+
+            }
+
+        }
+
+        return location;
+
+    }
+
+    /**
+     * Open a location returned by {@link #resolve(String)} or a local schema URL.
+     * @param location the location
+     * @return the stream, or null if the location can't be found
+     * @throws IOException if an absolute URL can't be opened
+     */
+    public static InputStream openLocation(String location) throws IOException {
+
+        InputStream inputStream;
+        if ( isAbsoluteURL(location) ) {
+
+            inputStream = new URL(location).openStream();
+
+        } else {
+
+            inputStream = ToolkitHelper.getResourceOrFile(location, false);
+
+        }
+
+        return inputStream;
+
+    }
+
+    /**
+     * Convert a local location to an absolute system id, so that the relative schemaLocations of any schemas it
+     * includes or imports can be resolved against it.
+     * @param location the location
+     * @return the system id, or the location itself if it can't be made absolute
+     */
+    public static String toSystemId(String location) {
+
+        String systemId = location;
+        if ( ! isAbsoluteURL(location) ) {
+
+            URL url = SchemaCatalog.class.getClassLoader().getResource(location);
+            if ( url != null ) {
+
+                systemId = url.toString();
+
+            } else {
+
+                File file = new File(location);
+                if ( file.exists() ) {
+
+                    systemId = file.toURI().toString();
+
+                }
+
+            }
+
+        }
+
+        return systemId;
+
+    }
+
+    public static boolean isNetworkURL(String url) {
+
+        return url != null && ( url.startsWith("http:") || url.startsWith("https:") || url.startsWith("ftp:") );
+
+    }
+
+    protected static boolean isAbsoluteURL(String location) {
+
+        // Require at least two characters before the colon so that Windows file names aren't taken as URLs
+        int colonIndex = location.indexOf(':');
+        return colonIndex > 1 && location.indexOf('/') > colonIndex;
+
+    }
+
+    protected void loadCatalogFile(String catalogFile) throws ToolkitException {
+
+        LOG.info("Loading schema catalog '" + catalogFile + "'.");
+        InputStream inputStream = ToolkitHelper.getResourceOrFile(catalogFile);
+        if ( inputStream == null ) {
+
+            throw new ToolkitException("Schema catalog '" + catalogFile + "' was not found as a resource or a file.");
+
+        }
+
+        Document document;
+        try {
+
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setNamespaceAware(true);
+            // Catalog files conventionally declare the OASIS DTD, which must not be fetched
+            factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+            document = factory.newDocumentBuilder().parse(inputStream);
+
+        } catch (ParserConfigurationException e) {
+
+            throw new ToolkitException("ParserConfigurationException parsing schema catalog '" + catalogFile + "'.", e);
+
+        } catch (SAXException e) {
+
+            throw new ToolkitException("SAXException parsing schema catalog '" + catalogFile + "'.", e);
+
+        } catch (IOException e) {
+
+            throw new ToolkitException("IOException reading schema catalog '" + catalogFile + "'.", e);
+
+        } finally {
+
+            try {
+
+                inputStream.close();
+
+            } catch (IOException e) {
+
+                LOG.debug("IOException closing schema catalog '" + catalogFile + "'; ignoring it.", e);
+
+            }
+
+        }
+
+        String catalogBase = catalogFile.replace('\\', '/');
+        catalogBase = catalogBase.substring(0, catalogBase.lastIndexOf('/') + 1);
+
+        NodeList nodes = document.getDocumentElement().getElementsByTagNameNS(OASIS_CATALOG_NS, "*");
+        for ( int nodeIndex = 0; nodeIndex < nodes.getLength(); nodeIndex++ ) {
+
+            Node node = nodes.item(nodeIndex);
+            Element element = (Element)node;
+            String entryType = element.getLocalName();
+            String location = resolveLocation(catalogBase, element.getAttribute("uri"));
+            if ( "system".equals(entryType) ) {
+
+                locationsById.put(element.getAttribute("systemId"), location);
+
+            } else if ( "uri".equals(entryType) ) {
+
+                locationsById.put(element.getAttribute("name"), location);
+
+            } else if ( "systemSuffix".equals(entryType) ) {
+
+                locationsBySuffix.put(element.getAttribute("systemIdSuffix"), location);
+
+            } else if ( ! "catalog".equals(entryType) && ! "group".equals(entryType) ) {
+
+                LOG.warn("Schema catalog '" + catalogFile + "' entry '" + entryType + "' is not supported; ignoring it.");
+
+            }
+
+        }
+
+    }
+
+    protected static String resolveLocation(String catalogBase, String uri) throws ToolkitException {
+
+        String location = uri;
+        if ( isAbsoluteURL(uri) ) {
+
+            try {
+
+                // Normalise the URL, e.g. remove any '..' segments
+                location = new URI(uri).normalize().toString();
+
+            } catch (URISyntaxException e) {
+
+                throw new ToolkitException("Schema catalog entry has an invalid uri '" + uri + "'.", e);
+
+            }
+
+        } else if ( ! uri.startsWith("/") ) {
+
+            location = catalogBase + uri;
+
+        }
+
+        return location;
+
+    }
+
+}
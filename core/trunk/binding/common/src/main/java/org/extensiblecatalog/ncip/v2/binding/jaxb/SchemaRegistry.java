@@ -0,0 +1,506 @@
+/**
+ * Copyright (c) 2012 eXtensible Catalog Organization
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the MIT/X11 license. The text of the license can be
+ * found at http://www.opensource.org/licenses/mit-license.php.
+ */
+
+package org.extensiblecatalog.ncip.v2.binding.jaxb;
+
+import org.apache.log4j.Logger;
+import org.extensiblecatalog.ncip.v2.common.StatisticsBean;
+import org.w3c.dom.ls.LSInput;
+import org.w3c.dom.ls.LSResourceResolver;
+import org.xml.sax.SAXException;
+
+import javax.xml.XMLConstants;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compiles {@link Schema}s and keeps them for re-use. Each distinct set of schema URLs is compiled exactly once,
+ * even when several threads ask for it at the same time; the others wait for that compilation rather than repeating
+ * it. The schema URLs, and the URLs of any schemas they include or import, are resolved through a
+ * {@link SchemaCatalog}; if {@link #setResolveOffline(boolean)} is true, those that the catalog can't resolve are
+ * not loaded from the network and the Schema fails to compile instead.
+ * Call {@link #getSchema(String, List)} at start-up to compile the schemas before the first message arrives.
+ * Compilations are recorded in the {@link StatisticsBean}, if one is set.
+ */
+public class SchemaRegistry {
+
+    private static final Logger LOG = Logger.getLogger(SchemaRegistry.class);
+
+    protected SchemaCatalog catalog = new SchemaCatalog();
+
+    protected boolean resolveOffline = false;
+
+    protected StatisticsBean statisticsBean;
+
+    protected final ConcurrentMap<String /* Schema key */, FutureTask<Schema>> schemasByKey
+        = new ConcurrentHashMap<String, FutureTask<Schema>>();
+
+    protected final AtomicLong compileCount = new AtomicLong();
+    protected final AtomicLong compileFailureCount = new AtomicLong();
+    protected final AtomicLong totalCompileNanos = new AtomicLong();
+    protected final AtomicLong lastCompileNanos = new AtomicLong();
+
+    public SchemaRegistry() {
+
+    }
+
+    public SchemaRegistry(SchemaCatalog catalog, boolean resolveOffline) {
+
+        this.catalog = catalog;
+        this.resolveOffline = resolveOffline;
+
+    }
+
+    public SchemaCatalog getCatalog() {
+
+        return catalog;
+
+    }
+
+    public void setCatalog(SchemaCatalog catalog) {
+
+        this.catalog = catalog;
+
+    }
+
+    public boolean getResolveOffline() {
+
+        return resolveOffline;
+
+    }
+
+    public void setResolveOffline(boolean resolveOffline) {
+
+        this.resolveOffline = resolveOffline;
+
+    }
+
+    public StatisticsBean getStatisticsBean() {
+
+        return statisticsBean;
+
+    }
+
+    public void setStatisticsBean(StatisticsBean statisticsBean) {
+
+        this.statisticsBean = statisticsBean;
+
+    }
+
+    /**
+     * @return the number of Schemas compiled, including those that failed to compile
+     */
+    public long getCompileCount() {
+
+        return compileCount.get();
+
+    }
+
+    /**
+     * @return the number of Schemas that failed to compile
+     */
+    public long getCompileFailureCount() {
+
+        return compileFailureCount.get();
+
+    }
+
+    /**
+     * @return the total time spent compiling Schemas, in nanoseconds
+     */
+    public long getTotalCompileNanos() {
+
+        return totalCompileNanos.get();
+
+    }
+
+    /**
+     * @return the time the most recent Schema compilation took, in nanoseconds
+     */
+    public long getLastCompileNanos() {
+
+        return lastCompileNanos.get();
+
+    }
+
+    /**
+     * @return the number of schema sets that have been compiled or are being compiled
+     */
+    public int getSchemaCount() {
+
+        return schemasByKey.size();
+
+    }
+
+    /**
+     * Get the Schema for these schema URLs, compiling it if this is the first request for the key.
+     * @param schemaKey the key identifying the set of schema URLs, e.g. their sorted, canonical URLs
+     * @param schemaURLs the schema URLs
+     * @return the Schema, or null if the schemas could not be compiled (which is also remembered)
+     */
+    public Schema getSchema(String schemaKey, final List<String> schemaURLs) {
+
+        FutureTask<Schema> schemaTask = schemasByKey.get(schemaKey);
+        if ( schemaTask == null ) {
+
+            FutureTask<Schema> newSchemaTask = new FutureTask<Schema>(new Callable<Schema>() {
+                public Schema call() {
+                    return compileSchema(schemaURLs);
+                }
+            });
+
+            schemaTask = schemasByKey.putIfAbsent(schemaKey, newSchemaTask);
+            if ( schemaTask == null ) {
+
+                schemaTask = newSchemaTask;
+                schemaTask.run();
+
+            }
+
+        }
+
+        Schema schema = null;
+        try {
+
+            schema = schemaTask.get();
+
+        } catch (InterruptedException e) {
+
+            LOG.warn("Interrupted waiting for the Schema for '" + schemaKey + "' to be compiled.");
+            Thread.currentThread().interrupt();
+
+        } catch (ExecutionException e) {
+
+            LOG.warn("Exception compiling the Schema for '" + schemaKey + "'.", e.getCause());
+
+        }
+
+        return schema;
+
+    }
+
+    /**
+     * Discard all Schemas and reset the metrics.
+     */
+    public void clear() {
+
+        schemasByKey.clear();
+        compileCount.set(0);
+        compileFailureCount.set(0);
+        totalCompileNanos.set(0);
+        lastCompileNanos.set(0);
+
+    }
+
+    protected Schema compileSchema(List<String> schemaURLs) {
+
+        Schema schema = null;
+
+        long startTime = System.nanoTime();
+
+        if ( schemaURLs != null && schemaURLs.size() > 0 ) {
+
+            int schemaCount = schemaURLs.size();
+            LOG.debug(schemaCount + " schema URLs were found for validating messages.");
+            StreamSource[] schemaSources = new StreamSource[schemaCount];
+
+            try {
+
+                int schemaIndex = 0;
+                for (String schemaURL : schemaURLs) {
+
+                    StreamSource streamSource;
+                    String systemId;
+                    String location = catalog.resolve(schemaURL);
+                    if ( location != null ) {
+
+                        LOG.info("Loading schema '" + schemaURL + "' from its local copy '" + location + "'.");
+                        streamSource = new StreamSource(SchemaCatalog.openLocation(location));
+                        systemId = SchemaCatalog.toSystemId(location);
+
+                    } else if ( SchemaCatalog.isNetworkURL(schemaURL) ) {
+
+                        if ( resolveOffline ) {
+
+                            throw new IOException("Schema '" + schemaURL + "' is not in the schema catalog and"
+                                + " resolving schemas offline is configured.");
+
+                        }
+
+                        LOG.info("Loading schema '" + schemaURL + "' as a network resource.");
+                        URL url = new URL(schemaURL);
+                        streamSource = new StreamSource(url.openStream());
+                        systemId = url.toURI().toString();
+
+                    } else {
+
+                        LOG.info("Loading schema '" + schemaURL + "' as a resource via ClassLoader or as a file.");
+                        streamSource = new StreamSource(SchemaCatalog.openLocation(schemaURL));
+                        systemId = SchemaCatalog.toSystemId(schemaURL);
+
+                    }
+
+                    LOG.info("Setting system id to '" + systemId + "'.");
+                    streamSource.setSystemId(systemId);
+                    schemaSources[schemaIndex++] = streamSource;
+                    LOG.info("Loaded schema '" + schemaURL + "'.");
+
+                }
+
+                // SchemaFactory is not thread-safe, so each compilation uses its own
+                SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+                schemaFactory.setResourceResolver(new CatalogResourceResolver());
+
+                LOG.info("Setting schema sources.");
+                schema = schemaFactory.newSchema(schemaSources);
+
+            } catch (SAXException e) {
+
+                LOG.warn("SAXException creating the Schema object for marshaling.", e);
+
+            } catch (URISyntaxException e) {
+
+                LOG.warn("URISyntaxException creating the Schema object for marshaling.", e);
+
+            } catch (IOException e) {
+
+                LOG.warn("IOException creating the Schema object for marshaling.", e);
+
+            } finally {
+
+                closeSources(schemaSources);
+
+            }
+
+            if ( schema == null ) {
+
+                LOG.warn("Schema is null; messages will not be validated against the schema.");
+                compileFailureCount.incrementAndGet();
+
+            }
+
+        } else {
+
+            LOG.warn("supportedSchemaURLs is null or the list is empty; messages can not be validated against the schema.");
+
+        }
+
+        long elapsedNanos = System.nanoTime() - startTime;
+        compileCount.incrementAndGet();
+        totalCompileNanos.addAndGet(elapsedNanos);
+        lastCompileNanos.set(elapsedNanos);
+        if ( statisticsBean != null ) {
+
+            // Only the difference between the start and end times is recorded
+            statisticsBean.record(0, elapsedNanos / 1000000L, StatisticsBean.SCHEMA_COMPILE_LABELS);
+
+        }
+
+        LOG.info("Compiling the Schema for " + schemaURLs + " took " + ( elapsedNanos / 1000000L ) + " ms.");
+
+        return schema;
+
+    }
+
+    protected static void closeSources(StreamSource[] schemaSources) {
+
+        for ( StreamSource streamSource : schemaSources ) {
+
+            if ( streamSource != null && streamSource.getInputStream() != null ) {
+
+                try {
+
+                    streamSource.getInputStream().close();
+
+                } catch (IOException e) {
+
+                    LOG.debug("IOException closing schema source '" + streamSource.getSystemId() + "'; ignoring it.", e);
+
+                }
+
+            }
+
+        }
+
+    }
+
+    /**
+     * Resolves the schemas that are included or imported by other schemas through the catalog.
+     */
+    protected class CatalogResourceResolver implements LSResourceResolver {
+
+        @Override
+        public LSInput resolveResource(String type, String namespaceURI, String publicId, String systemId,
+                                       String baseURI) {
+
+            String absoluteSystemId = systemId;
+            if ( systemId != null && baseURI != null ) {
+
+                try {
+
+                    absoluteSystemId = new URI(baseURI).resolve(new URI(systemId)).toString();
+
+                } catch (URISyntaxException e) {
+
+                    LOG.debug("URISyntaxException resolving '" + systemId + "' against '" + baseURI + "'.", e);
+
+                } catch (IllegalArgumentException e) {
+
+                    // E.g. the base is an opaque jar: URL, which the parser can resolve itself
+                    LOG.debug("Can't resolve '" + systemId + "' against '" + baseURI + "'.", e);
+
+                }
+
+            }
+
+            String location = catalog.resolve(absoluteSystemId);
+            if ( location == null && systemId != null ) {
+
+                location = catalog.resolve(systemId);
+
+            }
+
+            if ( location == null && systemId == null ) {
+
+                location = catalog.resolve(namespaceURI);
+
+            }
+
+            LSInput input = null;
+            if ( location != null ) {
+
+                LOG.debug("Resolved '" + absoluteSystemId + "' (namespace '" + namespaceURI + "') to '"
+                    + location + "'.");
+                try {
+
+                    input = new CatalogInput(publicId, SchemaCatalog.toSystemId(location), baseURI,
+                        SchemaCatalog.openLocation(location));
+
+                } catch (IOException e) {
+
+                    LOG.warn("IOException opening local schema '" + location + "'.", e);
+
+                }
+
+            } else if ( resolveOffline && SchemaCatalog.isNetworkURL(absoluteSystemId) ) {
+
+                // Returning an empty document makes the compilation fail rather than go to the network
+                LOG.warn("Schema '" + absoluteSystemId + "' is not in the schema catalog and resolving schemas"
+                    + " offline is configured; it will not be loaded.");
+                input = new CatalogInput(publicId, absoluteSystemId, baseURI, null);
+                input.setStringData("");
+
+            }
+
+            return input;
+
+        }
+
+    }
+
+    protected static class CatalogInput implements LSInput {
+
+        protected String publicId;
+        protected String systemId;
+        protected String baseURI;
+        protected InputStream byteStream;
+        protected Reader characterStream;
+        protected String stringData;
+        protected String encoding;
+        protected boolean certifiedText;
+
+        public CatalogInput(String publicId, String systemId, String baseURI, InputStream byteStream) {
+
+            this.publicId = publicId;
+            this.systemId = systemId;
+            this.baseURI = baseURI;
+            this.byteStream = byteStream;
+
+        }
+
+        public Reader getCharacterStream() {
+            return characterStream;
+        }
+
+        public void setCharacterStream(Reader characterStream) {
+            this.characterStream = characterStream;
+        }
+
+        public InputStream getByteStream() {
+            return byteStream;
+        }
+
+        public void setByteStream(InputStream byteStream) {
+            this.byteStream = byteStream;
+        }
+
+        public String getStringData() {
+            return stringData;
+        }
+
+        public void setStringData(String stringData) {
+            this.stringData = stringData;
+        }
+
+        public String getSystemId() {
+            return systemId;
+        }
+
+        public void setSystemId(String systemId) {
+            this.systemId = systemId;
+        }
+
+        public String getPublicId() {
+            return publicId;
+        }
+
+        public void setPublicId(String publicId) {
+            this.publicId = publicId;
+        }
+
+        public String getBaseURI() {
+            return baseURI;
+        }
+
+        public void setBaseURI(String baseURI) {
+            this.baseURI = baseURI;
+        }
+
+        public String getEncoding() {
+            return encoding;
+        }
+
+        public void setEncoding(String encoding) {
+            this.encoding = encoding;
+        }
+
+        public boolean getCertifiedText() {
+            return certifiedText;
+        }
+
+        public void setCertifiedText(boolean certifiedText) {
+            this.certifiedText = certifiedText;
+        }
+
+    }
+
+}
@@ -0,0 +1,276 @@
+/**
+ * Copyright (c) 2012 eXtensible Catalog Organization
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the MIT/X11 license. The text of the license can be
+ * found at http://www.opensource.org/licenses/mit-license.php.
+ */
+
+package org.extensiblecatalog.ncip.v2.binding.jaxb;
+
+import org.apache.log4j.Logger;
+import org.extensiblecatalog.ncip.v2.common.NCIPServiceContext;
+import org.extensiblecatalog.ncip.v2.common.NCIP2TranslatorConfiguration;
+import org.extensiblecatalog.ncip.v2.service.ToolkitException;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Supplies the {@link XMLReader}s that messages are parsed with for {@link NCIPServiceContext}s, configured with the
+ * context's parser features and, if the context adds the default namespace, wrapped in a {@link NamespaceFilter}.
+ * Looking up a {@link SAXParserFactory} and creating a parser is expensive, so this keeps one configured factory and a
+ * bounded pool of idle readers for each distinct configuration (i.e. set of parser features and namespace to add).
+ * Callers borrow a reader with {@link #getXMLReader(NCIPServiceContext)} and should hand it back with
+ * {@link #returnXMLReader(NCIPServiceContext, XMLReader)} once it has parsed a document; readers that are not
+ * returned, e.g. because parsing failed, are simply garbage collected.
+ */
+public class XMLReaderPool {
+
+    private static final Logger LOG = Logger.getLogger(XMLReaderPool.class);
+
+    protected final ConcurrentMap<String /* Pool key */, SAXParserFactory> parserFactoriesByPoolKey
+        = new ConcurrentHashMap<String, SAXParserFactory>();
+
+    protected final KeyedPool<XMLReader> readerPool = new KeyedPool<XMLReader>(
+        Integer.parseInt(NCIP2TranslatorConfiguration.MARSHALLER_POOL_SIZE_DEFAULT));
+
+    public XMLReaderPool() {
+
+    }
+
+    public int getPoolSize() {
+
+        return readerPool.getPoolSize();
+
+    }
+
+    /**
+     * Set the maximum number of idle {@link XMLReader}s kept for each configuration. This affects pools created after
+     * it is called, so it should be set before first use.
+     * @param poolSize the maximum number of idle readers per pool; 0 disables pooling
+     */
+    public void setPoolSize(int poolSize) {
+
+        readerPool.setPoolSize(poolSize);
+
+    }
+
+    /**
+     * @return the number of times {@link #getXMLReader(NCIPServiceContext)} was satisfied from a pool
+     */
+    public long getReaderPoolHits() {
+
+        return readerPool.getHits();
+
+    }
+
+    /**
+     * @return the number of times {@link #getXMLReader(NCIPServiceContext)} had to create a new XMLReader
+     */
+    public long getReaderPoolMisses() {
+
+        return readerPool.getMisses();
+
+    }
+
+    /**
+     * @return the number of idle XMLReaders currently held across all pools
+     */
+    public int getPooledReaderCount() {
+
+        return readerPool.getIdleCount();
+
+    }
+
+    /**
+     * Whether messages for this service context need to be parsed with a reader from this pool; if not, the
+     * {@link javax.xml.bind.Unmarshaller} can parse the stream itself.
+     * @param ncipServiceContext the service context
+     * @return true if the context adds the default namespace or sets parser features
+     */
+    public static boolean isRequired(NCIPServiceContext ncipServiceContext) {
+
+        Map<String, Boolean> parserFeatures = ncipServiceContext.getParserFeatures();
+        return ncipServiceContext.addDefaultNamespace() || ( parserFeatures != null && ! parserFeatures.isEmpty() );
+
+    }
+
+    /**
+     * Borrow an {@link XMLReader} for this service context, creating one if none is idle in the pool. The caller
+     * has exclusive use of it until it is passed to {@link #returnXMLReader(NCIPServiceContext, XMLReader)}.
+     * @param ncipServiceContext the service context
+     * @return the XMLReader
+     * @throws ToolkitException if a parser feature is not supported or the XMLReader can't be created
+     */
+    public XMLReader getXMLReader(NCIPServiceContext ncipServiceContext) throws ToolkitException {
+
+        String poolKey = createPoolKey(ncipServiceContext);
+
+        XMLReader reader = readerPool.borrow(poolKey);
+        if ( reader == null ) {
+
+            reader = createXMLReader(ncipServiceContext, poolKey);
+
+        }
+
+        return reader;
+
+    }
+
+    /**
+     * Return an {@link XMLReader} obtained from {@link #getXMLReader(NCIPServiceContext)} so that it can be re-used.
+     * The caller must not use the XMLReader after calling this. If the pool is full the XMLReader is discarded.
+     * @param ncipServiceContext the service context that was passed to {@link #getXMLReader(NCIPServiceContext)}
+     * @param reader the XMLReader
+     */
+    public void returnXMLReader(NCIPServiceContext ncipServiceContext, XMLReader reader) {
+
+        if ( reader != null && readerPool.getPoolSize() > 0 ) {
+
+            // Don't hold on to the handlers of the last document
+            reader.setContentHandler(null);
+            reader.setErrorHandler(null);
+
+            readerPool.returnToPool(createPoolKey(ncipServiceContext), reader);
+
+        }
+
+    }
+
+    /**
+     * Discard all idle XMLReaders and configured factories and reset the pool metrics.
+     */
+    public void clearPools() {
+
+        readerPool.clear();
+        parserFactoriesByPoolKey.clear();
+
+    }
+
+    /**
+     * Create the key that identifies which pool an XMLReader for this service context belongs to.
+     * Everything that is set on a reader in {@link #createXMLReader(NCIPServiceContext, String)} must be reflected
+     * in this key.
+     * @param ncipServiceContext the service context
+     * @return the key
+     */
+    protected String createPoolKey(NCIPServiceContext ncipServiceContext) {
+
+        StringBuilder sb = new StringBuilder();
+        if ( ncipServiceContext.addDefaultNamespace() ) {
+
+            sb.append(ncipServiceContext.getDefaultNamespace());
+
+        }
+
+        Map<String, Boolean> parserFeatures = ncipServiceContext.getParserFeatures();
+        if ( parserFeatures != null ) {
+
+            for ( Map.Entry<String, Boolean> entry : new TreeMap<String, Boolean>(parserFeatures).entrySet() ) {
+
+                sb.append('|').append(entry.getKey()).append('=').append(entry.getValue());
+
+            }
+
+        }
+
+        return sb.toString();
+
+    }
+
+    /**
+     * Get the SAXParserFactory for this service context, configuring it once per pool key.
+     */
+    protected SAXParserFactory getParserFactory(NCIPServiceContext ncipServiceContext, String poolKey)
+        throws ToolkitException {
+
+        SAXParserFactory parserFactory = parserFactoriesByPoolKey.get(poolKey);
+        if ( parserFactory == null ) {
+
+            parserFactory = SAXParserFactory.newInstance();
+            // JAXB needs the namespaces reported, which is the default for XMLReaderFactory but not SAXParserFactory
+            parserFactory.setNamespaceAware(true);
+
+            Map<String, Boolean> parserFeatures = ncipServiceContext.getParserFeatures();
+            if ( parserFeatures != null ) {
+
+                try {
+
+                    for ( Map.Entry<String, Boolean> entry : parserFeatures.entrySet() ) {
+
+                        // "http://apache.org/xml/features/nonvalidating/load-external-dtd"
+                        LOG.debug("Setting feature " + entry.getKey() + " to " + entry.getValue());
+                        parserFactory.setFeature(entry.getKey(), entry.getValue());
+
+                    }
+
+                } catch (ParserConfigurationException e) {
+
+                    throw new ToolkitException("ParserConfigurationException setting parser features.", e);
+
+                } catch (SAXException e) {
+
+                    throw new ToolkitException("SAXException setting parser features.", e);
+
+                }
+
+            }
+
+            SAXParserFactory existingParserFactory = parserFactoriesByPoolKey.putIfAbsent(poolKey, parserFactory);
+            if ( existingParserFactory != null ) {
+
+                parserFactory = existingParserFactory;
+
+            }
+
+        }
+
+        return parserFactory;
+
+    }
+
+    protected XMLReader createXMLReader(NCIPServiceContext ncipServiceContext, String poolKey)
+        throws ToolkitException {
+
+        SAXParserFactory parserFactory = getParserFactory(ncipServiceContext, poolKey);
+
+        XMLReader reader;
+        try {
+
+            // SAXParserFactory is not guaranteed to be thread-safe
+            synchronized (parserFactory) {
+
+                reader = parserFactory.newSAXParser().getXMLReader();
+
+            }
+
+        } catch (ParserConfigurationException e) {
+
+            throw new ToolkitException("ParserConfigurationException creating XMLReader.", e);
+
+        } catch (SAXException e) {
+
+            throw new ToolkitException("SAXException creating XMLReader.", e);
+
+        }
+
+        if ( ncipServiceContext.addDefaultNamespace() ) {
+
+            NamespaceFilter inFilter = new NamespaceFilter(ncipServiceContext.getDefaultNamespace(), true);
+            inFilter.setParent(reader);
+            reader = inFilter;
+
+        }
+
+        return reader;
+
+    }
+
+}
@@ -24,6 +24,7 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.math.BigDecimal;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * JAXB uses a "catch-all" approach for certain content models occurring in NCIP (e.g. this one:
@@ -58,9 +59,11 @@ public abstract class BaseContentConverter<JAXBSVPCLASS, EXTCLASS>
     protected final String jaxbPackageNameWithPeriod;
     protected final String svcPackageNameWithPeriod;
 
-    protected final Map<String, Method> objectFactoryMethodsByName = new HashMap<String, Method>();
+    // These are concurrent because a generated mapper (see BaseGeneratedMapper) shares one converter instance
+    // between threads, rather than creating a new one for each conversion as Dozer does.
+    protected final Map<String, Method> objectFactoryMethodsByName = new ConcurrentHashMap<String, Method>();
 
-    protected final Map<String, Constructor> defaultCtorsByClassName = new HashMap<String, Constructor>();
+    protected final Map<String, Constructor> defaultCtorsByClassName = new ConcurrentHashMap<String, Constructor>();
 
     protected Map<String, JAXBSVPCLASS> svpAgencyElementTypeFields;
     protected Map<String, JAXBSVPCLASS> svpItemElementTypeFields;
@@ -571,7 +574,11 @@ public abstract class BaseContentConverter<JAXBSVPCLASS, EXTCLASS>
         if ( method == null) {
 
             method = ReflectionHelper.findMethod(getObjectFactory().getClass(), methodName, srcObjClass);
-            objectFactoryMethodsByName.put(methodName, method);
+            if ( method != null ) {
+
+                objectFactoryMethodsByName.put(methodName, method);
+
+            }
 
         }
 
@@ -0,0 +1,589 @@
+/**
+ * Copyright (c) 2013 eXtensible Catalog Organization
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the MIT/X11 license. The text of the license can be
+ * found at http://www.opensource.org/licenses/mit-license.php.
+ */
+
+package org.extensiblecatalog.ncip.v2.binding.jaxb.dozer;
+
+import org.dozer.ConfigurableCustomConverter;
+import org.dozer.CustomConverter;
+import org.dozer.DozerBeanMapper;
+import org.dozer.Mapper;
+import org.dozer.MapperAware;
+import org.dozer.MappingException;
+import org.dozer.converters.DateFormatContainer;
+import org.dozer.converters.PrimitiveOrWrapperConverter;
+import org.dozer.factory.DestBeanCreator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Base class for the mappers generated at build time from a binding's Dozer mapping file by the binding-mappergen
+ * module's MapperGenerator. The generated sub-class holds one method per mapped pair of classes, which copies the
+ * fields with direct getter and setter calls in the same order and with the same semantics as Dozer would; this
+ * class provides the parts of Dozer's field handling that can only be decided at run-time (global custom converter
+ * lookup, primitive conversion, lists and nested objects).
+ * <p/>
+ * Pairs of classes the generator could not prove it handles the same way as Dozer (e.g. because of super-class
+ * mappings) are delegated to the fallback {@link DozerBeanMapper}, which is initialized lazily by Dozer the first
+ * time it's used.
+ * <p/>
+ * Unlike Dozer, which creates a new custom converter for every conversion, the generated mapper creates each
+ * converter once; converters that implement {@link MapperAware} are given this mapper, so that their nested
+ * mappings also avoid Dozer. Dozer also keeps track of the objects already mapped during a call so that a source
+ * object referenced from several fields is mapped to a single destination object; the generated mapper maps it
+ * each time it's referenced, which produces equal objects (and the same XML).
+ */
+public abstract class BaseGeneratedMapper implements Mapper {
+
+    /**
+     * Cache value used to record that no global custom converter applies to a pair of classes.
+     */
+    private static final Object NO_CONVERTER = new Object();
+
+    private static final PrimitiveOrWrapperConverter PRIMITIVE_CONVERTER = new PrimitiveOrWrapperConverter();
+
+    protected final DozerBeanMapper fallbackMapper;
+
+    /**
+     * The global (i.e. class-level) custom converters, in the order they appear in the mapping file.
+     */
+    private final List<GlobalConverter> globalConverters = new CopyOnWriteArrayList<GlobalConverter>();
+
+    /**
+     * The global custom converter (or {@link #NO_CONVERTER}) for a destination and source class.
+     */
+    private final ConcurrentMap<Class<?>, ConcurrentMap<Class<?>, Object>> convertersByDestAndSrcClass
+        = new ConcurrentHashMap<Class<?>, ConcurrentMap<Class<?>, Object>>();
+
+    /**
+     * Construct an instance that delegates the mappings it was not generated for to the supplied Dozer mapper;
+     * that mapper must be configured with the same mapping file the sub-class was generated from.
+     * @param fallbackMapper the {@link DozerBeanMapper} to use for pairs of classes with no generated mapping
+     */
+    protected BaseGeneratedMapper(DozerBeanMapper fallbackMapper) {
+
+        this.fallbackMapper = fallbackMapper;
+
+    }
+
+    public DozerBeanMapper getFallbackMapper() {
+        return fallbackMapper;
+    }
+
+    /**
+     * Return the index of the generated mapping for the source and destination class, or -1 if there is none.
+     */
+    protected abstract int getMappingIndex(Class<?> srcClass, Class<?> destClass);
+
+    /**
+     * Create an instance of the destination class of the generated mapping.
+     */
+    protected abstract Object createDestination(int mappingIndex);
+
+    /**
+     * Map the fields of the source object to the destination object using the generated mapping.
+     */
+    protected abstract void mapFields(int mappingIndex, Object src, Object dest);
+
+    @Override
+    public <T> T map(Object source, Class<T> destinationClass) throws MappingException {
+
+        if ( source == null ) {
+
+            throw new MappingException("Source object must not be null");
+
+        }
+
+        if ( destinationClass == null ) {
+
+            throw new MappingException("Destination class must not be null");
+
+        }
+
+        Class<?> srcClass = source.getClass();
+        CustomConverter converter = findConverter(srcClass, destinationClass);
+        if ( converter != null ) {
+
+            return (T)converter.convert(null, source, destinationClass, srcClass);
+
+        }
+
+        int mappingIndex = getMappingIndex(srcClass, destinationClass);
+        if ( mappingIndex < 0 ) {
+
+            return fallbackMapper.map(source, destinationClass);
+
+        }
+
+        Object dest = createDestination(mappingIndex);
+        mapFields(mappingIndex, source, dest);
+        return (T)dest;
+
+    }
+
+    @Override
+    public void map(Object source, Object destination) throws MappingException {
+
+        if ( source == null ) {
+
+            throw new MappingException("Source object must not be null");
+
+        }
+
+        if ( destination == null ) {
+
+            throw new MappingException("Destination object must not be null");
+
+        }
+
+        mapInto(source, destination);
+
+    }
+
+    /**
+     * Mapping ids are not used in the toolkit's mapping files, so these are always handled by the fallback mapper.
+     */
+    @Override
+    public <T> T map(Object source, Class<T> destinationClass, String mapId) throws MappingException {
+
+        return fallbackMapper.map(source, destinationClass, mapId);
+
+    }
+
+    @Override
+    public void map(Object source, Object destination, String mapId) throws MappingException {
+
+        fallbackMapper.map(source, destination, mapId);
+
+    }
+
+    /**
+     * Add an entry to a generated mapper's index of mappings.
+     */
+    protected static void addMappingIndex(Map<Class<?>, Map<Class<?>, Integer>> mappingIndexes, Class<?> srcClass,
+                                          Class<?> destClass, int mappingIndex) {
+
+        Map<Class<?>, Integer> indexesByDestClass = mappingIndexes.get(srcClass);
+        if ( indexesByDestClass == null ) {
+
+            indexesByDestClass = new HashMap<Class<?>, Integer>();
+            mappingIndexes.put(srcClass, indexesByDestClass);
+
+        }
+
+        indexesByDestClass.put(destClass, mappingIndex);
+
+    }
+
+    /**
+     * Look up an entry in a generated mapper's index of mappings.
+     * @return the index of the mapping, or -1 if there is none
+     */
+    protected static int lookupMappingIndex(Map<Class<?>, Map<Class<?>, Integer>> mappingIndexes,
+                                            Class<?> srcClass, Class<?> destClass) {
+
+        Map<Class<?>, Integer> indexesByDestClass = mappingIndexes.get(srcClass);
+        Integer mappingIndex = indexesByDestClass != null ? indexesByDestClass.get(destClass) : null;
+        return mappingIndex != null ? mappingIndex : -1;
+
+    }
+
+    /**
+     * Register a global custom converter; the generated constructor calls this for each converter in the
+     * mapping file, in the order they appear there.
+     */
+    protected void addConverter(Class<?> classA, Class<?> classB, CustomConverter converter) {
+
+        globalConverters.add(new GlobalConverter(classA, classB, initConverter(converter, null)));
+        convertersByDestAndSrcClass.clear();
+
+    }
+
+    /**
+     * Prepare a converter instance for use by this mapper.
+     * @param converter the converter
+     * @param parameter the custom-converter-param from the mapping file, or null if there is none
+     * @return the converter
+     */
+    protected CustomConverter initConverter(CustomConverter converter, String parameter) {
+
+        if ( converter instanceof MapperAware ) {
+
+            ((MapperAware)converter).setMapper(this);
+
+        }
+
+        if ( parameter != null && converter instanceof ConfigurableCustomConverter ) {
+
+            ((ConfigurableCustomConverter)converter).setParameter(parameter);
+
+        }
+
+        return converter;
+
+    }
+
+    /**
+     * Find the global custom converter for the source and destination classes, following Dozer's rules: the first
+     * converter (in mapping-file order) whose class-a and class-b are assignable from the destination and source
+     * classes, in either order.
+     * @return the converter, or null if there is none
+     */
+    protected CustomConverter findConverter(Class<?> srcClass, Class<?> destClass) {
+
+        ConcurrentMap<Class<?>, Object> convertersBySrcClass = convertersByDestAndSrcClass.get(destClass);
+        if ( convertersBySrcClass == null ) {
+
+            convertersBySrcClass = new ConcurrentHashMap<Class<?>, Object>();
+            ConcurrentMap<Class<?>, Object> existing = convertersByDestAndSrcClass.putIfAbsent(
+                destClass, convertersBySrcClass);
+            if ( existing != null ) {
+
+                convertersBySrcClass = existing;
+
+            }
+
+        }
+
+        Object converter = convertersBySrcClass.get(srcClass);
+        if ( converter == null ) {
+
+            converter = NO_CONVERTER;
+            Class<?> src = wrap(srcClass);
+            Class<?> dest = wrap(destClass);
+            for ( GlobalConverter globalConverter : globalConverters ) {
+
+                if ( globalConverter.matches(src, dest) ) {
+
+                    converter = globalConverter.converter;
+                    break;
+
+                }
+
+            }
+
+            convertersBySrcClass.put(srcClass, converter);
+
+        }
+
+        return converter == NO_CONVERTER ? null : (CustomConverter)converter;
+
+    }
+
+    /**
+     * Map the source object into an existing destination object.
+     */
+    protected void mapInto(Object src, Object dest) {
+
+        Class<?> srcClass = src.getClass();
+        Class<?> destClass = dest.getClass();
+        CustomConverter converter = findConverter(srcClass, destClass);
+        if ( converter != null ) {
+
+            converter.convert(dest, src, destClass, srcClass);
+
+        } else {
+
+            int mappingIndex = getMappingIndex(srcClass, destClass);
+            if ( mappingIndex >= 0 ) {
+
+                mapFields(mappingIndex, src, dest);
+
+            } else {
+
+                fallbackMapper.map(src, dest);
+
+            }
+
+        }
+
+    }
+
+    /**
+     * Map a non-null field value using a field-level custom converter.
+     * @param converter the converter
+     * @param value the source field's value
+     * @param destType the destination field's type
+     * @param existing the destination field's current value
+     * @return the converted value
+     */
+    protected Object convertField(CustomConverter converter, Object value, Class<?> destType, Object existing) {
+
+        return converter.convert(existingValue(existing, destType), value, destType, value.getClass());
+
+    }
+
+    /**
+     * Map a null field value for a mapping that maps nulls; only a global custom converter can produce a non-null
+     * value in that case.
+     * @param srcType the source field's type
+     * @param destType the destination field's type
+     * @param existing the destination field's current value
+     * @return the converted value, which may be null
+     */
+    protected Object mapNullValue(Class<?> srcType, Class<?> destType, Object existing) {
+
+        CustomConverter converter = findConverter(srcType, destType);
+        if ( converter != null ) {
+
+            return converter.convert(existingValue(existing, destType), null, destType, srcType);
+
+        }
+
+        return null;
+
+    }
+
+    /**
+     * Map a non-null field value which has no field-level custom converter.
+     * @param value the source field's value
+     * @param destType the destination field's type
+     * @param destHint the destination hint from the mapping file, or null if there is none
+     * @param elementType for a list, the type of the destination's elements if known, otherwise null
+     * @param existing the destination field's current value
+     * @return the mapped value
+     */
+    protected Object mapValue(Object value, Class<?> destType, Class<?> destHint, Class<?> elementType,
+                              Object existing) {
+
+        Class<?> srcClass = value.getClass();
+        CustomConverter converter = findConverter(srcClass, destType);
+        if ( converter != null ) {
+
+            return converter.convert(existingValue(existing, destType), value, destType, srcClass);
+
+        }
+
+        if ( Map.class.isAssignableFrom(srcClass) && Map.class.isAssignableFrom(destType) ) {
+
+            throw new MappingException("Generated mapper does not support mapping " + srcClass.getName()
+                + " to " + destType.getName() + ".");
+
+        }
+
+        if ( PRIMITIVE_CONVERTER.accepts(srcClass) || PRIMITIVE_CONVERTER.accepts(destType) ) {
+
+            return PRIMITIVE_CONVERTER.convert(value, destHint != null ? destHint : destType,
+                new DateFormatContainer(null));
+
+        }
+
+        if ( isCollection(srcClass) && isCollection(destType) ) {
+
+            if ( value instanceof Collection && ( List.class.isAssignableFrom(destType)
+                || Collection.class.equals(destType) ) ) {
+
+                return mapList((Collection<?>)value, destHint != null ? destHint : elementType, existing);
+
+            }
+
+            throw new MappingException("Generated mapper does not support mapping " + srcClass.getName()
+                + " to " + destType.getName() + ".");
+
+        }
+
+        if ( value instanceof Enum && destType.isEnum() ) {
+
+            return Enum.valueOf((Class<Enum>)destType, ((Enum)value).name());
+
+        }
+
+        return mapObject(value, destType, destHint, existingValue(existing, destType));
+
+    }
+
+    /**
+     * Map the elements of a collection into the existing destination list, or a new one if there is none.
+     * @param values the source collection
+     * @param elementType the destination element type, or null to use each element's own class
+     * @param existing the destination field's current value
+     * @return the destination list
+     */
+    protected List<Object> mapList(Collection<?> values, Class<?> elementType, Object existing) {
+
+        List<Object> result;
+        if ( existing instanceof List ) {
+
+            result = (List<Object>)existing;
+
+        } else if ( existing instanceof Object[] ) {
+
+            result = new ArrayList<Object>(Arrays.asList((Object[])existing));
+
+        } else {
+
+            result = new ArrayList<Object>(values.size());
+
+        }
+
+        Class<?> destEntryType = elementType;
+        for ( Object value : values ) {
+
+            if ( value == null ) {
+
+                // Dozer would look for a global converter for the source field's declared type (i.e. a List);
+                // none of the toolkit's converters apply to that, so the null element is simply copied.
+                result.add(null);
+
+            } else {
+
+                if ( destEntryType == null ) {
+
+                    destEntryType = value.getClass();
+
+                }
+
+                result.add(mapValue(value, destEntryType, elementType, null, null));
+
+            }
+
+        }
+
+        return result;
+
+    }
+
+    /**
+     * Map a non-null value to a (non-primitive, non-collection) object, reusing the existing destination object
+     * if there is one.
+     */
+    protected Object mapObject(Object value, Class<?> destType, Class<?> destHint, Object existing) {
+
+        if ( existing != null ) {
+
+            mapInto(value, existing);
+            return existing;
+
+        }
+
+        Class<?> targetClass = destHint != null ? destHint : destType;
+        int mappingIndex = getMappingIndex(value.getClass(), targetClass);
+        if ( mappingIndex >= 0 ) {
+
+            Object dest = createDestination(mappingIndex);
+            mapFields(mappingIndex, value, dest);
+            return dest;
+
+        }
+
+        if ( findConverter(value.getClass(), targetClass) != null ) {
+
+            // Dozer creates the destination object and then calls the converter with it, ignoring its result.
+            Object dest = DestBeanCreator.create(targetClass);
+            mapInto(value, dest);
+            return dest;
+
+        }
+
+        return fallbackMapper.map(value, targetClass);
+
+    }
+
+    /**
+     * Returns the destination field's current value, unless that is a collection and the destination type isn't,
+     * in which case an element of the collection is being mapped and there is no existing value.
+     */
+    protected static Object existingValue(Object existing, Class<?> destType) {
+
+        if ( existing != null && isContainer(existing.getClass()) && ! isContainer(destType) ) {
+
+            return null;
+
+        }
+
+        return existing;
+
+    }
+
+    /**
+     * Thrown when a mapped value can't be written because the destination property has no setter.
+     */
+    protected static MappingException noWriteMethod(Object dest, String propertyName) {
+
+        return new MappingException("No write method found for field (" + propertyName + ") in class ("
+            + dest.getClass() + ")");
+
+    }
+
+    protected static boolean isCollection(Class<?> aClass) {
+
+        return Collection.class.isAssignableFrom(aClass) || aClass.isArray();
+
+    }
+
+    /**
+     * Whether the class is one that Dozer treats as holding the elements being mapped rather than being the
+     * destination of the mapping (a list, set, map or array).
+     */
+    protected static boolean isContainer(Class<?> aClass) {
+
+        return List.class.isAssignableFrom(aClass) || Set.class.isAssignableFrom(aClass)
+            || Map.class.isAssignableFrom(aClass) || aClass.isArray();
+
+    }
+
+    protected static Class<?> wrap(Class<?> aClass) {
+
+        if ( aClass.isPrimitive() ) {
+
+            if ( aClass == Boolean.TYPE ) {
+                return Boolean.class;
+            } else if ( aClass == Integer.TYPE ) {
+                return Integer.class;
+            } else if ( aClass == Long.TYPE ) {
+                return Long.class;
+            } else if ( aClass == Double.TYPE ) {
+                return Double.class;
+            } else if ( aClass == Float.TYPE ) {
+                return Float.class;
+            } else if ( aClass == Short.TYPE ) {
+                return Short.class;
+            } else if ( aClass == Byte.TYPE ) {
+                return Byte.class;
+            } else if ( aClass == Character.TYPE ) {
+                return Character.class;
+            }
+
+        }
+
+        return aClass;
+
+    }
+
+    private static final class GlobalConverter {
+
+        final Class<?> classA;
+        final Class<?> classB;
+        final CustomConverter converter;
+
+        GlobalConverter(Class<?> classA, Class<?> classB, CustomConverter converter) {
+
+            this.classA = classA;
+            this.classB = classB;
+            this.converter = converter;
+
+        }
+
+        boolean matches(Class<?> src, Class<?> dest) {
+
+            return ( classA.isAssignableFrom(dest) && classB.isAssignableFrom(src) )
+                || ( classA.isAssignableFrom(src) && classB.isAssignableFrom(dest) );
+
+        }
+
+    }
+
+}
@@ -11,41 +11,49 @@ package org.extensiblecatalog.ncip.v2.binding.jaxb.dozer;
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
 import org.dozer.DozerBeanMapper;
+import org.dozer.Mapper;
 import org.extensiblecatalog.ncip.v2.binding.jaxb.JAXBHelper;
 import org.extensiblecatalog.ncip.v2.binding.jaxb.MarshallerFactory;
-import org.extensiblecatalog.ncip.v2.binding.jaxb.NamespaceFilter;
+import org.extensiblecatalog.ncip.v2.binding.jaxb.XMLReaderPool;
 import org.extensiblecatalog.ncip.v2.common.*;
 import org.extensiblecatalog.ncip.v2.service.*;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.XMLReader;
-import org.xml.sax.helpers.XMLReaderFactory;
 
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
 import javax.xml.bind.Unmarshaller;
 import javax.xml.bind.UnmarshallerHandler;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.parsers.SAXParser;
-import javax.xml.parsers.SAXParserFactory;
-import javax.xml.transform.sax.SAXSource;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.lang.reflect.InvocationTargetException;
-import java.util.Map;
 import java.util.Properties;
 
 // TODO: Provide a  BaseTranslator that this extends, so that ctors illustrate what's expected (e.g. not initializing in default ctor).
-public abstract class BaseJAXBDozerTranslator<M> implements Translator {
+public abstract class BaseJAXBDozerTranslator<M> implements StreamingTranslator {
 
     private static final Logger LOG = Logger.getLogger(BaseJAXBDozerTranslator.class);
 
     protected DozerBeanMapper mapper;
 
+    /**
+     * The mapper generated at build time from the mapping files (see {@link BaseGeneratedMapper}), or null to map
+     * with {@link #mapper}.
+     */
+    protected Mapper generatedMapper;
+
     protected MarshallerFactory marshallerFactory;
 
+    /**
+     * The XMLReaders that messages are parsed with when the service context adds the default namespace or sets
+     * parser features.
+     */
+    protected XMLReaderPool xmlReaderPool = new XMLReaderPool();
+
     /**
      * The {@link StatisticsBean} instance used to report performance data.
      */
@@ -93,10 +101,61 @@ public abstract class BaseJAXBDozerTranslator<M> implements Translator {
 
         this.marshallerFactory = new MarshallerFactory(config);
 
+        this.marshallerFactory.setStatisticsBean(this.statisticsBean);
+
+        this.xmlReaderPool.setPoolSize(jaxbDozerNCIP2Config.getMarshallerPoolSize());
+
         this.mapper = new DozerBeanMapper();
 
         this.mapper.setMappingFiles(jaxbDozerNCIP2Config.getMappingFiles());
 
+        String generatedMapperClassName = jaxbDozerNCIP2Config.getGeneratedMapperClassName();
+        if ( generatedMapperClassName != null ) {
+
+            this.generatedMapper = createGeneratedMapper(generatedMapperClassName, this.mapper);
+
+        }
+
+    }
+
+    /**
+     * Construct the generated mapper, which falls back to the supplied Dozer mapper for the mappings it doesn't
+     * handle.
+     * @param className the name of the generated mapper class, which must have a public constructor taking a
+     * {@link DozerBeanMapper}
+     * @param fallbackMapper the Dozer mapper
+     * @return the mapper
+     * @throws ToolkitException if the class can't be loaded or constructed
+     */
+    protected static Mapper createGeneratedMapper(String className, DozerBeanMapper fallbackMapper)
+        throws ToolkitException {
+
+        try {
+
+            return (Mapper)Class.forName(className).getConstructor(DozerBeanMapper.class).newInstance(fallbackMapper);
+
+        } catch (ClassNotFoundException e) {
+
+            throw new ToolkitException(e);
+
+        } catch (NoSuchMethodException e) {
+
+            throw new ToolkitException(e);
+
+        } catch (InstantiationException e) {
+
+            throw new ToolkitException(e);
+
+        } catch (IllegalAccessException e) {
+
+            throw new ToolkitException(e);
+
+        } catch (InvocationTargetException e) {
+
+            throw new ToolkitException(e);
+
+        }
+
     }
 
     public DozerBeanMapper getMapper() {
@@ -111,12 +170,33 @@ public abstract class BaseJAXBDozerTranslator<M> implements Translator {
         this.mapper = mapper;
     }
 
+    public Mapper getGeneratedMapper() {
+        return generatedMapper;
+    }
+
+    /** If you inject a generated mapper, it should use the same mapping files as the Dozer mapper.
+     * @param generatedMapper the generated {@link org.dozer.Mapper} to use, or null to use the Dozer mapper
+     */
+    public void setGeneratedMapper(Mapper generatedMapper) {
+        this.generatedMapper = generatedMapper;
+    }
+
+    /**
+     * @return the mapper to translate messages with: the generated mapper if there is one, otherwise Dozer
+     */
+    protected Mapper getMessageMapper() {
+        return generatedMapper != null ? generatedMapper : mapper;
+    }
+
     public MarshallerFactory getMarshallerFactory() {
         return marshallerFactory;
     }
 
     public void setMarshallerFactory(MarshallerFactory marshallerFactory) {
         this.marshallerFactory = marshallerFactory;
+        if ( statisticsBean != null ) {
+            marshallerFactory.setStatisticsBean(statisticsBean);
+        }
     }
 
     public StatisticsBean getStatisticsBean() {
@@ -125,6 +205,9 @@ public abstract class BaseJAXBDozerTranslator<M> implements Translator {
 
     public void setStatisticsBean(StatisticsBean statisticsBean) {
         this.statisticsBean = statisticsBean;
+        if ( marshallerFactory != null ) {
+            marshallerFactory.setStatisticsBean(statisticsBean);
+        }
     }
 
     public boolean getLogMessages() {
@@ -143,6 +226,17 @@ public abstract class BaseJAXBDozerTranslator<M> implements Translator {
         this.messagesLoggingLevel = messagesLoggingLevel;
     }
 
+    /**
+     * Build the JAXBContext and compile the Schema for this service context before the first message arrives.
+     * @param serviceContext the service context, e.g. the service validator's initial service context
+     * @throws ToolkitException if the service context is not supported
+     */
+    public void prewarm(ServiceContext serviceContext) throws ToolkitException {
+
+        marshallerFactory.prewarm(serviceContext);
+
+    }
+
     @Override
     public NCIPInitiationData createInitiationData(ServiceContext serviceContext, InputStream inputStream)
         throws ServiceException, ValidationException {
@@ -168,7 +262,7 @@ public abstract class BaseJAXBDozerTranslator<M> implements Translator {
 
             long initTranslateStartTime = System.currentTimeMillis();
 
-            NCIPMessage svcMessage = mapper.map(initiationMsg, NCIPMessage.class);
+            NCIPMessage svcMessage = getMessageMapper().map(initiationMsg, NCIPMessage.class);
 
             long initTranslateEndTime = System.currentTimeMillis();
 
@@ -225,7 +319,7 @@ public abstract class BaseJAXBDozerTranslator<M> implements Translator {
 
             long respTranslateStartTime = System.currentTimeMillis();
 
-            NCIPMessage svcMessage = mapper.map(responseMsg, NCIPMessage.class);
+            NCIPMessage svcMessage = getMessageMapper().map(responseMsg, NCIPMessage.class);
 
             long respTranslateEndTime = System.currentTimeMillis();
 
@@ -262,42 +356,31 @@ public abstract class BaseJAXBDozerTranslator<M> implements Translator {
         ServiceContext serviceContext, NCIPInitiationData initiationData)
         throws ServiceException, ValidationException {
 
-        try {
-
-            String msgName = ServiceHelper.getMessageName(initiationData);
-
-            // Create a service.NCIPMessage object and put the initiationData object in it
-            NCIPMessage svcNCIPMessage = new NCIPMessage();
-            ReflectionHelper.setField(svcNCIPMessage, initiationData, msgName);
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        writeInitiationMessage(serviceContext, initiationData, byteArrayOutputStream);
+        return new ByteArrayInputStream(byteArrayOutputStream.toByteArray());
 
-            serviceContext.validateBeforeMarshalling(svcNCIPMessage);
+    }
 
-            // Map from the service.NCIPMessage object to the binding.jaxb.NCIPMessage object
-            long initTranslateStartTime = System.currentTimeMillis();
+    @Override
+    public void writeInitiationMessage(ServiceContext serviceContext, NCIPInitiationData initiationData,
+                                       OutputStream outputStream)
+        throws ServiceException, ValidationException {
 
-            M ncipMsg = mapMessage(svcNCIPMessage, mapper);
+        try {
 
-            long initTranslateEndTime = System.currentTimeMillis();
-            statisticsBean.record(initTranslateStartTime, initTranslateEndTime,
-                StatisticsBean.RESPONDER_CREATE_MESSAGE_LABELS, msgName);
+            String msgName = ServiceHelper.getMessageName(initiationData);
 
+            M ncipMsg = createInitiationMessage(serviceContext, initiationData);
 
             long initMarshalStartTime = System.currentTimeMillis();
 
-            ByteArrayInputStream initMsgStream = createMsgStream(serviceContext, ncipMsg);
+            writeMsg(serviceContext, ncipMsg, outputStream);
 
             long initMarshalEndTime = System.currentTimeMillis();
             statisticsBean.record(initMarshalStartTime, initMarshalEndTime,
                 StatisticsBean.RESPONDER_MARSHAL_MESSAGE_LABELS, msgName);
 
-            if (logMessages) {
-
-                initMsgStream = LoggingHelper.copyAndLogStream(LOG, messagesLoggingLevel, initMsgStream);
-
-            }
-
-            return initMsgStream;
-
         } catch (InvocationTargetException e) {
 
             throw new ServiceException(ServiceError.INVALID_MESSAGE_FORMAT,
@@ -322,42 +405,31 @@ public abstract class BaseJAXBDozerTranslator<M> implements Translator {
         ServiceContext serviceContext, NCIPResponseData responseData)
         throws ServiceException, ValidationException {
 
-        try {
-
-            String msgName = ServiceHelper.getMessageName(responseData);
-
-            // Create a service.NCIPMessage object and put the responseData object in it
-            NCIPMessage svcNCIPMessage = new NCIPMessage();
-            ReflectionHelper.setField(svcNCIPMessage, responseData, msgName);
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        writeResponseMessage(serviceContext, responseData, byteArrayOutputStream);
+        return new ByteArrayInputStream(byteArrayOutputStream.toByteArray());
 
-            serviceContext.validateBeforeMarshalling(svcNCIPMessage);
+    }
 
-            // Map from the service.NCIPMessage object to the binding.jaxb.NCIPMessage object
-            long respTranslateStartTime = System.currentTimeMillis();
+    @Override
+    public void writeResponseMessage(ServiceContext serviceContext, NCIPResponseData responseData,
+                                     OutputStream outputStream)
+        throws ServiceException, ValidationException {
 
-            M ncipMsg = mapMessage(svcNCIPMessage, mapper);
+        try {
 
-            long respTranslateEndTime = System.currentTimeMillis();
-            statisticsBean.record(respTranslateStartTime, respTranslateEndTime,
-                StatisticsBean.RESPONDER_CREATE_MESSAGE_LABELS, msgName);
+            String msgName = ServiceHelper.getMessageName(responseData);
 
+            M ncipMsg = createResponseMessage(serviceContext, responseData);
 
             long respMarshalStartTime = System.currentTimeMillis();
 
-            ByteArrayInputStream respMsgStream = createMsgStream(serviceContext, ncipMsg);
+            writeMsg(serviceContext, ncipMsg, outputStream);
 
             long respMarshalEndTime = System.currentTimeMillis();
             statisticsBean.record(respMarshalStartTime, respMarshalEndTime,
                 StatisticsBean.RESPONDER_MARSHAL_MESSAGE_LABELS, msgName);
 
-            if (logMessages) {
-
-                respMsgStream = LoggingHelper.copyAndLogStream(LOG, messagesLoggingLevel, respMsgStream);
-
-            }
-
-            return respMsgStream;
-
         } catch (InvocationTargetException e) {
 
             throw new ServiceException(ServiceError.INVALID_MESSAGE_FORMAT,
@@ -377,27 +449,98 @@ public abstract class BaseJAXBDozerTranslator<M> implements Translator {
 
     }
 
+    /**
+     * Create the binding's NCIPMessage object for the initiation data; sub-classes may override this to adjust
+     * the message before it is marshalled.
+     */
+    protected M createInitiationMessage(ServiceContext serviceContext, NCIPInitiationData initiationData)
+        throws ToolkitException, InvocationTargetException, IllegalAccessException, ValidationException {
+
+        String msgName = ServiceHelper.getMessageName(initiationData);
+
+        // Create a service.NCIPMessage object and put the initiationData object in it
+        NCIPMessage svcNCIPMessage = new NCIPMessage();
+        ReflectionHelper.setField(svcNCIPMessage, initiationData, msgName);
+
+        serviceContext.validateBeforeMarshalling(svcNCIPMessage);
+
+        // Map from the service.NCIPMessage object to the binding.jaxb.NCIPMessage object
+        long initTranslateStartTime = System.currentTimeMillis();
+
+        M ncipMsg = mapMessage(svcNCIPMessage, getMessageMapper());
+
+        long initTranslateEndTime = System.currentTimeMillis();
+        statisticsBean.record(initTranslateStartTime, initTranslateEndTime,
+            StatisticsBean.RESPONDER_CREATE_MESSAGE_LABELS, msgName);
+
+        return ncipMsg;
+
+    }
+
+    /**
+     * Create the binding's NCIPMessage object for the response data; sub-classes may override this to adjust
+     * the message before it is marshalled.
+     */
+    protected M createResponseMessage(ServiceContext serviceContext, NCIPResponseData responseData)
+        throws ToolkitException, InvocationTargetException, IllegalAccessException, ValidationException {
+
+        String msgName = ServiceHelper.getMessageName(responseData);
+
+        // Create a service.NCIPMessage object and put the responseData object in it
+        NCIPMessage svcNCIPMessage = new NCIPMessage();
+        ReflectionHelper.setField(svcNCIPMessage, responseData, msgName);
+
+        serviceContext.validateBeforeMarshalling(svcNCIPMessage);
+
+        // Map from the service.NCIPMessage object to the binding.jaxb.NCIPMessage object
+        long respTranslateStartTime = System.currentTimeMillis();
+
+        M ncipMsg = mapMessage(svcNCIPMessage, getMessageMapper());
+
+        long respTranslateEndTime = System.currentTimeMillis();
+        statisticsBean.record(respTranslateStartTime, respTranslateEndTime,
+            StatisticsBean.RESPONDER_CREATE_MESSAGE_LABELS, msgName);
+
+        return ncipMsg;
+
+    }
+
     protected ByteArrayInputStream createMsgStream(ServiceContext serviceContext, M ncipMsg)
         throws ServiceException {
 
-        NCIPServiceContext ncipServiceContext = (NCIPServiceContext)serviceContext;
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        writeMsg(serviceContext, ncipMsg, byteArrayOutputStream);
+        return new ByteArrayInputStream(byteArrayOutputStream.toByteArray());
+
+    }
+
+    /**
+     * Marshal the message to the output stream. If messages are being logged, the message is marshalled to a
+     * buffer first so that it can be logged before it is written to the output stream.
+     */
+    protected void writeMsg(ServiceContext serviceContext, M ncipMsg, OutputStream outputStream)
+        throws ServiceException {
+
+        validateSample(serviceContext, ncipMsg);
 
         try {
 
             Marshaller marshaller = marshallerFactory.getMarshaller(serviceContext);
 
-            ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream(0);
-
             try {
 
-                if ( ncipServiceContext.addDefaultNamespace() ) {
+                // TODO: Figure out how to add the default namespace when NCIPServiceContext.addDefaultNamespace() is true
+                if ( logMessages && LOG.isEnabledFor(messagesLoggingLevel) ) {
 
-                    // TODO: Figure out how to add the default namespace; the following is ignoring that
-                    marshaller.marshal(ncipMsg, byteArrayOutputStream);
+                    ByteArrayOutputStream loggingBuffer = new ByteArrayOutputStream();
+                    marshaller.marshal(ncipMsg, loggingBuffer);
+                    LoggingHelper.copyAndLogStream(LOG, messagesLoggingLevel,
+                        new ByteArrayInputStream(loggingBuffer.toByteArray()));
+                    loggingBuffer.writeTo(outputStream);
 
                 } else {
 
-                    marshaller.marshal(ncipMsg, byteArrayOutputStream);
+                    marshaller.marshal(ncipMsg, outputStream);
 
                 }
 
@@ -406,13 +549,16 @@ public abstract class BaseJAXBDozerTranslator<M> implements Translator {
                 throw new ServiceException(ServiceError.INVALID_MESSAGE_FORMAT,
                     "JAXBException marshalling the message.", e);
 
-            }
+            } catch (IOException e) {
 
-            byte[] bytes = byteArrayOutputStream.toByteArray();
+                throw new ServiceException(ServiceError.RUNTIME_ERROR,
+                    "IOException writing the marshalled message.", e);
+
+            } finally {
 
-            ByteArrayInputStream resultStream = new ByteArrayInputStream(bytes);
+                marshallerFactory.returnMarshaller(serviceContext, marshaller);
 
-            return resultStream;
+            }
 
         } catch (ToolkitException e) {
 
@@ -423,74 +569,163 @@ public abstract class BaseJAXBDozerTranslator<M> implements Translator {
 
     }
 
+    /**
+     * Validate an outgoing message against the schema if the {@link MarshallerFactory} samples messages for
+     * validation (rather than validating them while marshalling and unmarshalling) and this one is in the sample.
+     */
+    protected void validateSample(ServiceContext serviceContext, M ncipMsg) throws ServiceException {
+
+        if ( marshallerFactory.validatesSamples(serviceContext) ) {
+
+            try {
+
+                marshallerFactory.validateSample(serviceContext, ncipMsg, JAXBHelper.getMessageName(ncipMsg));
+
+            } catch (SAXException e) {
+
+                throw new ServiceException(ServiceError.INVALID_MESSAGE_FORMAT,
+                    "Message is not valid against the schema.", e);
+
+            } catch (InvocationTargetException e) {
+
+                throw new ServiceException(ServiceError.INVALID_MESSAGE_FORMAT,
+                    "InvocationTargetException getting the message name.", e);
+
+            } catch (IllegalAccessException e) {
+
+                throw new ServiceException(ServiceError.INVALID_MESSAGE_FORMAT,
+                    "IllegalAccessException getting the message name.", e);
+
+            } catch (ToolkitException e) {
+
+                throw new ServiceException(ServiceError.RUNTIME_ERROR,
+                    "ToolkitException validating the message against the schema.", e);
+
+            }
+
+        }
+
+    }
+
+    /**
+     * Unmarshal an incoming message. If the {@link MarshallerFactory} samples messages for validation, whether this
+     * one is in the sample is decided before it is unmarshalled, because an Unmarshaller that doesn't validate
+     * drops unknown or misplaced elements; a sampled message is unmarshalled with a validating Unmarshaller.
+     */
     protected M createNCIPMessage(ServiceContext serviceContext, InputStream inputStream)
         throws ServiceException {
 
-        try {
+        boolean validate = false;
+        String msgName = null;
+        if ( marshallerFactory.validatesSamples(serviceContext) ) {
 
-            Unmarshaller unmarshaller = marshallerFactory.getUnmarshaller(serviceContext);
+            // The message is buffered so that its name, and so its service's sample rate, can be read first
+            byte[] msgBytes = readMessage(inputStream);
+            msgName = JAXBHelper.peekMessageName(msgBytes);
+            validate = marshallerFactory.selectForValidation(serviceContext, msgName);
+            inputStream = new ByteArrayInputStream(msgBytes);
 
-            NCIPServiceContext ncipServiceContext = (NCIPServiceContext)serviceContext;
+        }
+
+        M ncipMessage;
+        if ( validate ) {
 
+            long startTime = System.nanoTime();
+            boolean valid = false;
             try {
 
-                // TODO: Reorganize this if/else so that addDefaultNamespace and parserFeatures aren't exclusive
-                if ( ncipServiceContext.addDefaultNamespace() ) {
+                ncipMessage = unmarshalNCIPMessage(serviceContext, inputStream, true);
+                valid = true;
 
-                    XMLReader reader = XMLReaderFactory.createXMLReader();
+            } finally {
 
-                    NamespaceFilter inFilter = new NamespaceFilter(
-                            ((NCIPServiceContext)serviceContext).getDefaultNamespace(), true);
+                marshallerFactory.recordSampleValidation(msgName, startTime, valid);
 
-                    inFilter.setParent(reader);
+            }
 
-                    SAXSource saxSource = new SAXSource(inFilter, new InputSource(inputStream));
+        } else {
 
-                    return (M) unmarshaller.unmarshal(saxSource);
+            ncipMessage = unmarshalNCIPMessage(serviceContext, inputStream, false);
 
-                } else {
+        }
 
-                    // TODO: This may need to wrap the inputStream in an InputReader or InputSource to control encoding
+        return ncipMessage;
 
-                    Map<String, Boolean> parserFeatures = ncipServiceContext.getParserFeatures();
-                    if ( parserFeatures != null && ! parserFeatures.isEmpty() ) {
+    }
 
-                        SAXParserFactory parserFactory = SAXParserFactory.newInstance();
-                        try {
+    protected static byte[] readMessage(InputStream inputStream) throws ServiceException {
 
-                            for ( Map.Entry<String, Boolean> entry : parserFeatures.entrySet() ) {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        try {
 
-                                // "http://apache.org/xml/features/nonvalidating/load-external-dtd"
-                                LOG.debug("Setting feature " + entry.getKey() + " to " + entry.getValue());
-                                parserFactory.setFeature(entry.getKey(), entry.getValue());
+            byte[] buffer = new byte[8192];
+            int count;
+            while ( ( count = inputStream.read(buffer) ) != -1 ) {
 
-                            }
+                byteArrayOutputStream.write(buffer, 0, count);
 
-                            SAXParser saxParser = parserFactory.newSAXParser();
-                            XMLReader xmlReader = saxParser.getXMLReader();
-                            UnmarshallerHandler uh = unmarshaller.getUnmarshallerHandler();
-                            xmlReader.setContentHandler(uh);
-                            xmlReader.parse(new InputSource(inputStream));
+            }
 
-                            return (M) uh.getResult();
+        } catch (IOException e) {
 
-                        } catch (IOException e) {
+            throw new ServiceException(ServiceError.RUNTIME_ERROR, "IOException reading the message.", e);
 
-                            throw new ServiceException(ServiceError.INVALID_MESSAGE_FORMAT,
-                                "Exception creating NCIPMessage object from InputStream.", e);
+        }
 
-                        } catch (ParserConfigurationException e) {
+        return byteArrayOutputStream.toByteArray();
 
-                            throw new ServiceException(ServiceError.INVALID_MESSAGE_FORMAT,
-                                "Exception creating NCIPMessage object from InputStream.", e);
+    }
 
-                        }
+    protected M unmarshalNCIPMessage(ServiceContext serviceContext, InputStream inputStream)
+        throws ServiceException {
 
-                      } else {
+        return unmarshalNCIPMessage(serviceContext, inputStream, false);
 
-                            return (M) unmarshaller.unmarshal(inputStream);
+    }
 
-                      }
+    /**
+     * @param validate true to unmarshal with a validating Unmarshaller, as for a message in the validation sample
+     */
+    protected M unmarshalNCIPMessage(ServiceContext serviceContext, InputStream inputStream, boolean validate)
+        throws ServiceException {
+
+        try {
+
+            Unmarshaller unmarshaller = marshallerFactory.getUnmarshaller(serviceContext, validate);
+
+            NCIPServiceContext ncipServiceContext = (NCIPServiceContext)serviceContext;
+
+            try {
+
+                // TODO: This may need to wrap the inputStream in an InputReader or InputSource to control encoding
+
+                if ( XMLReaderPool.isRequired(ncipServiceContext) ) {
+
+                    // The reader applies both the parser features and, via a NamespaceFilter, the default namespace
+                    XMLReader xmlReader = xmlReaderPool.getXMLReader(ncipServiceContext);
+                    try {
+
+                        UnmarshallerHandler uh = unmarshaller.getUnmarshallerHandler();
+                        xmlReader.setContentHandler(uh);
+                        xmlReader.parse(new InputSource(inputStream));
+
+                        M ncipMessage = (M) uh.getResult();
+
+                        // Only a reader that parsed the whole document is known to be fit for re-use
+                        xmlReaderPool.returnXMLReader(ncipServiceContext, xmlReader);
+
+                        return ncipMessage;
+
+                    } catch (IOException e) {
+
+                        throw new ServiceException(ServiceError.INVALID_MESSAGE_FORMAT,
+                            "Exception creating NCIPMessage object from InputStream.", e);
+
+                    }
+
+                } else {
+
+                    return (M) unmarshaller.unmarshal(inputStream);
 
                 }
 
@@ -501,9 +736,14 @@ public abstract class BaseJAXBDozerTranslator<M> implements Translator {
 
             } catch (SAXException e) {
 
-                throw new ServiceException(ServiceError.RUNTIME_ERROR,
+                // A validating Unmarshaller reports schema errors to the XMLReader as SAXExceptions
+                throw new ServiceException(validate ? ServiceError.INVALID_MESSAGE_FORMAT : ServiceError.RUNTIME_ERROR,
                     "Exception creating NCIPMessage object from InputStream.", e);
 
+            } finally {
+
+                marshallerFactory.returnUnmarshaller(serviceContext, validate, unmarshaller);
+
             }
 
         } catch (ToolkitException e) {
@@ -515,6 +755,6 @@ public abstract class BaseJAXBDozerTranslator<M> implements Translator {
 
     }
 
-    protected abstract M mapMessage(Object svcMsg, DozerBeanMapper mapper);
+    protected abstract M mapMessage(Object svcMsg, Mapper mapper);
 
 }
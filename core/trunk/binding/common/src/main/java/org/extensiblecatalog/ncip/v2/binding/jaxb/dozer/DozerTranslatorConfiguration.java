@@ -19,4 +19,12 @@ public interface DozerTranslatorConfiguration extends TranslatorConfiguration {
     List<String> getMappingFiles();
     void setMappingFiles(List<String> mappingFileNamesList);
 
+    final String GENERATED_MAPPER_CLASS_NAME_KEY = "DozerTranslatorConfiguration.GeneratedMapperClassName";
+    // By default the translator maps with Dozer; set this to the binding's generated mapper (e.g.
+    // "org.extensiblecatalog.ncip.v2.binding.ncipv2_02.jaxb.dozer.NCIPv2_02GeneratedMapper") to map without
+    // reflection. The generated mapper must have been generated from the same mapping file(s).
+    final String GENERATED_MAPPER_CLASS_NAME_DEFAULT = null;
+    String getGeneratedMapperClassName();
+    void setGeneratedMapperClassName(String generatedMapperClassName);
+
 }
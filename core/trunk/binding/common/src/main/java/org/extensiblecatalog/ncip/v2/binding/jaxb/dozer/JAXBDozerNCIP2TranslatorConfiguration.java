@@ -26,6 +26,8 @@ public class JAXBDozerNCIP2TranslatorConfiguration extends DefaultNCIP2Translato
 
     protected List<String> mappingFileNamesList;
 
+    protected String generatedMapperClassName = DozerTranslatorConfiguration.GENERATED_MAPPER_CLASS_NAME_DEFAULT;
+
     public JAXBDozerNCIP2TranslatorConfiguration() throws ToolkitException {
 
         this(null, null);
@@ -66,6 +68,16 @@ public class JAXBDozerNCIP2TranslatorConfiguration extends DefaultNCIP2Translato
 
             }
 
+            String generatedMapperClassNameString = this.properties.getProperty(
+                DozerTranslatorConfiguration.GENERATED_MAPPER_CLASS_NAME_KEY,
+                DozerTranslatorConfiguration.GENERATED_MAPPER_CLASS_NAME_DEFAULT);
+
+            if ( generatedMapperClassNameString != null && generatedMapperClassNameString.trim().length() > 0 ) {
+
+                this.generatedMapperClassName = generatedMapperClassNameString.trim();
+
+            }
+
         }
 
     }
@@ -83,4 +95,18 @@ public class JAXBDozerNCIP2TranslatorConfiguration extends DefaultNCIP2Translato
         this.mappingFileNamesList = mappingFileNamesList;
 
     }
+
+    @Override
+    public String getGeneratedMapperClassName() {
+
+        return generatedMapperClassName;
+
+    }
+
+    @Override
+    public void setGeneratedMapperClassName(final String generatedMapperClassName) {
+
+        this.generatedMapperClassName = generatedMapperClassName;
+
+    }
 }
@@ -0,0 +1,49 @@
+package org.extensiblecatalog.ncip.v2.binding.jaxb;
+
+import junit.framework.Assert;
+import org.junit.Test;
+
+public class TestKeyedPool {
+
+    @Test
+    public void testBorrowAndReturn() {
+        KeyedPool<StringBuilder> pool = new KeyedPool<StringBuilder>(2);
+        Assert.assertNull(pool.borrow("a"));
+        Assert.assertEquals(0, pool.getHits());
+        Assert.assertEquals(1, pool.getMisses());
+
+        StringBuilder first = new StringBuilder();
+        StringBuilder second = new StringBuilder();
+        StringBuilder third = new StringBuilder();
+        pool.returnToPool("a", first);
+        pool.returnToPool("a", second);
+        // The pool is full, so this one is discarded
+        pool.returnToPool("a", third);
+        pool.returnToPool("a", null);
+        Assert.assertEquals(2, pool.getIdleCount());
+
+        // Each key has its own pool
+        Assert.assertNull(pool.borrow("b"));
+        Assert.assertSame(first, pool.borrow("a"));
+        Assert.assertSame(second, pool.borrow("a"));
+        Assert.assertNull(pool.borrow("a"));
+        Assert.assertEquals(2, pool.getHits());
+        Assert.assertEquals(3, pool.getMisses());
+
+        pool.returnToPool("a", first);
+        pool.clear();
+        Assert.assertEquals(0, pool.getIdleCount());
+        Assert.assertEquals(0, pool.getHits());
+        Assert.assertEquals(0, pool.getMisses());
+    }
+
+    @Test
+    public void testZeroPoolSize() {
+        KeyedPool<StringBuilder> pool = new KeyedPool<StringBuilder>(0);
+        pool.returnToPool("a", new StringBuilder());
+        Assert.assertEquals(0, pool.getIdleCount());
+        Assert.assertNull(pool.borrow("a"));
+        Assert.assertEquals(1, pool.getMisses());
+    }
+
+}
@@ -0,0 +1,87 @@
+package org.extensiblecatalog.ncip.v2.binding.jaxb;
+
+import junit.framework.Assert;
+import org.extensiblecatalog.ncip.v2.common.NCIPServiceContext;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class TestMarshallerFactorySampling {
+
+    protected static String sampleSequence(MarshallerFactory factory, String msgName, int count) {
+        StringBuilder sb = new StringBuilder();
+        for ( int i = 0; i < count; i++ ) {
+            sb.append(factory.isInSample(msgName) ? 'V' : '-');
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void testSampleSequence() throws Exception {
+        MarshallerFactory factory = new MarshallerFactory();
+
+        // The n'th message is sampled when floor(n * rate) increases
+        factory.setSchemaValidationSampleRate(0.25);
+        Assert.assertEquals("---V---V---V", sampleSequence(factory, "LookupUser", 12));
+        factory.setSchemaValidationSampleRate(0.4);
+        Assert.assertEquals("--V-V--V-V", sampleSequence(factory, "LookupItem", 10));
+        factory.setSchemaValidationSampleRate(0.0);
+        Assert.assertEquals("----", sampleSequence(factory, "CheckOutItem", 4));
+        factory.setSchemaValidationSampleRate(1.0);
+        Assert.assertEquals("VVVV", sampleSequence(factory, "CheckInItem", 4));
+    }
+
+    @Test
+    public void testServiceRates() throws Exception {
+        MarshallerFactory factory = new MarshallerFactory();
+        factory.setSchemaValidationSampleRate(0.0);
+        Map<String, Double> rates = new HashMap<String, Double>();
+        rates.put("LookupUser", 0.5);
+        rates.put("LookupItemResponse", 1.0);
+        factory.setSchemaValidationSampleRates(rates);
+
+        // Each message has its own sequence, and a response uses its service's rate unless it has its own
+        Assert.assertEquals("-V-V", sampleSequence(factory, "LookupUser", 4));
+        Assert.assertEquals("-V-V", sampleSequence(factory, "LookupUserResponse", 4));
+        Assert.assertEquals("VVVV", sampleSequence(factory, "LookupItemResponse", 4));
+        Assert.assertEquals("----", sampleSequence(factory, "LookupItem", 4));
+        // A message whose name isn't known uses the default rate
+        Assert.assertEquals("----", sampleSequence(factory, null, 4));
+    }
+
+    protected static NCIPServiceContext createServiceContext(final List<String> urls, final String[] namespaces) {
+        return new NCIPServiceContext() {
+            {
+                schemaURLs = urls;
+                namespaceURIs = namespaces;
+                defaultNamespace = "http://example.org/ns";
+            }
+        };
+    }
+
+    @Test
+    public void testPoolKeyIsReused() throws Exception {
+        MarshallerFactory factory = new MarshallerFactory();
+        List<String> schemaURLs = Arrays.asList("http://example.org/b.xsd", "http://example.org/a.xsd");
+        String[] namespaceURIs = {"http://example.org/ns"};
+
+        // Contexts from the same configuration share its lists, so they share the key
+        String poolKey = factory.createPoolKey(createServiceContext(schemaURLs, namespaceURIs));
+        Assert.assertEquals("http://example.org/a.xsd,http://example.org/b.xsd|true|http://example.org/ns"
+            + "|http://example.org/ns", poolKey);
+        Assert.assertSame(poolKey, factory.createPoolKey(createServiceContext(schemaURLs, namespaceURIs)));
+
+        // The key is rebuilt when the context's lists or the validation setting differ
+        String otherPoolKey = factory.createPoolKey(createServiceContext(
+            Arrays.asList("http://example.org/a.xsd"), namespaceURIs));
+        Assert.assertEquals("http://example.org/a.xsd|true|http://example.org/ns|http://example.org/ns",
+            otherPoolKey);
+        factory.setSchemaValidationSampleRate(0.5);
+        Assert.assertEquals("http://example.org/a.xsd,http://example.org/b.xsd|false|http://example.org/ns"
+            + "|http://example.org/ns", factory.createPoolKey(createServiceContext(schemaURLs, namespaceURIs)));
+    }
+
+}
@@ -0,0 +1,85 @@
+package org.extensiblecatalog.ncip.v2.binding.jaxb;
+
+import junit.framework.Assert;
+import org.extensiblecatalog.ncip.v2.service.ToolkitException;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+public class TestSchemaCatalog {
+
+    protected static File writeFile(File file, String content) throws IOException {
+        file.getParentFile().mkdirs();
+        Writer writer = new FileWriter(file);
+        try {
+            writer.write(content);
+        } finally {
+            writer.close();
+        }
+        return file;
+    }
+
+    protected static File createTempDir() throws IOException {
+        File dir = File.createTempFile("schemacatalog", "");
+        dir.delete();
+        dir.mkdirs();
+        dir.deleteOnExit();
+        return dir;
+    }
+
+    @Test
+    public void testCatalogEntries() throws Exception {
+        File dir = createTempDir();
+        File catalogFile = writeFile(new File(dir, "catalog.xml"),
+            "<?xml version=\"1.0\"?>\n"
+            + "<!DOCTYPE catalog PUBLIC \"-//OASIS//DTD Entity Resolution XML Catalog V1.0//EN\"\n"
+            + "  \"http://www.oasis-open.org/committees/entity/release/1.0/catalog.dtd\">\n"
+            + "<catalog xmlns=\"urn:oasis:names:tc:entity:xmlns:xml:catalog\">\n"
+            + "  <system systemId=\"http://example.org/schemas/ncip.xsd\" uri=\"xsd/ncip.xsd\"/>\n"
+            + "  <uri name=\"http://example.org/ns/ext\" uri=\"/opt/schemas/ext.xsd\"/>\n"
+            + "  <systemSuffix systemIdSuffix=\"xml.xsd\" uri=\"file:/opt/schemas/other/../xml.xsd\"/>\n"
+            + "  <systemSuffix systemIdSuffix=\"/2001/xml.xsd\" uri=\"xsd/w3c-xml.xsd\"/>\n"
+            + "  <group>\n"
+            + "    <systemSuffix systemIdSuffix=\"/xlink.xsd\" uri=\"xsd/xlink.xsd\"/>\n"
+            + "  </group>\n"
+            + "</catalog>\n");
+
+        Map<String, String> canonicalSchemaURLMap = new HashMap<String, String>();
+        canonicalSchemaURLMap.put("http://example.org/alias.xsd", "ncip_v2_02.xsd");
+        // An alias for a network URL is not a local copy
+        canonicalSchemaURLMap.put("ncip.xsd", "http://example.org/schemas/ncip.xsd");
+
+        SchemaCatalog catalog = new SchemaCatalog(Collections.singletonList(catalogFile.getPath()),
+            canonicalSchemaURLMap);
+        String catalogBase = catalogFile.getPath().replace('\\', '/');
+        catalogBase = catalogBase.substring(0, catalogBase.lastIndexOf('/') + 1);
+
+        // 'system' entries, with the location relative to the catalog file
+        Assert.assertEquals(catalogBase + "xsd/ncip.xsd", catalog.resolve("http://example.org/schemas/ncip.xsd"));
+        // 'uri' entries, with an absolute path
+        Assert.assertEquals("/opt/schemas/ext.xsd", catalog.resolve("http://example.org/ns/ext"));
+        // 'systemSuffix' entries, choosing the longest matching suffix whatever the order of the entries
+        Assert.assertEquals(catalogBase + "xsd/w3c-xml.xsd", catalog.resolve("http://www.w3.org/2001/xml.xsd"));
+        Assert.assertEquals("file:/opt/schemas/xml.xsd", catalog.resolve("http://example.org/xml.xsd"));
+        Assert.assertEquals(catalogBase + "xsd/xlink.xsd", catalog.resolve("http://www.w3.org/1999/xlink.xsd"));
+        // The canonical schema URL map
+        Assert.assertEquals("ncip_v2_02.xsd", catalog.resolve("http://example.org/alias.xsd"));
+        Assert.assertNull(catalog.resolve("ncip.xsd"));
+
+        Assert.assertNull(catalog.resolve("http://example.org/unknown.xsd"));
+        Assert.assertNull(catalog.resolve(null));
+        Assert.assertEquals(6, catalog.getEntryCount());
+    }
+
+    @Test(expected = ToolkitException.class)
+    public void testMissingCatalogFile() throws Exception {
+        new SchemaCatalog(Collections.singletonList("no-such-catalog.xml"), null);
+    }
+
+}
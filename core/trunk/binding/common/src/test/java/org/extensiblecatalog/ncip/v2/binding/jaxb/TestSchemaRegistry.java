@@ -0,0 +1,107 @@
+package org.extensiblecatalog.ncip.v2.binding.jaxb;
+
+import junit.framework.Assert;
+import org.junit.Test;
+
+import javax.xml.validation.Schema;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestSchemaRegistry {
+
+    protected static final String OTHER_NS = "http://example.org/ns/other";
+
+    protected static final String OTHER_URL = "http://example.invalid/schemas/other.xsd";
+
+    protected static File writeSchemas(File dir) throws Exception {
+        TestSchemaCatalog.writeFile(new File(dir, "other.xsd"),
+            "<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\" targetNamespace=\"" + OTHER_NS + "\">\n"
+            + "  <xs:element name=\"Other\" type=\"xs:string\"/>\n"
+            + "</xs:schema>\n");
+        return TestSchemaCatalog.writeFile(new File(dir, "main.xsd"),
+            "<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\" xmlns:o=\"" + OTHER_NS + "\"\n"
+            + "    targetNamespace=\"http://example.org/ns/main\">\n"
+            + "  <xs:import namespace=\"" + OTHER_NS + "\" schemaLocation=\"" + OTHER_URL + "\"/>\n"
+            + "  <xs:element name=\"Main\">\n"
+            + "    <xs:complexType><xs:sequence><xs:element ref=\"o:Other\"/></xs:sequence></xs:complexType>\n"
+            + "  </xs:element>\n"
+            + "</xs:schema>\n");
+    }
+
+    @Test
+    public void testOfflineRefusesUncataloguedImport() throws Exception {
+        File dir = TestSchemaCatalog.createTempDir();
+        List<String> schemaURLs = Collections.singletonList(writeSchemas(dir).getPath());
+
+        SchemaRegistry offlineRegistry = new SchemaRegistry(new SchemaCatalog(), true);
+        Assert.assertNull(offlineRegistry.getSchema("main", schemaURLs));
+        Assert.assertEquals(1, offlineRegistry.getCompileFailureCount());
+
+        // Once the import is catalogued it is loaded from the local copy
+        File catalogFile = TestSchemaCatalog.writeFile(new File(dir, "catalog.xml"),
+            "<catalog xmlns=\"urn:oasis:names:tc:entity:xmlns:xml:catalog\">\n"
+            + "  <system systemId=\"" + OTHER_URL + "\" uri=\"other.xsd\"/>\n"
+            + "</catalog>\n");
+        SchemaRegistry catalogRegistry = new SchemaRegistry(
+            new SchemaCatalog(Collections.singletonList(catalogFile.getPath()), null), true);
+        Assert.assertNotNull(catalogRegistry.getSchema("main", schemaURLs));
+        Assert.assertEquals(0, catalogRegistry.getCompileFailureCount());
+    }
+
+    @Test
+    public void testConcurrentCallersCompileOnce() throws Exception {
+        File dir = TestSchemaCatalog.createTempDir();
+        writeSchemas(dir);
+        final List<String> schemaURLs = Collections.singletonList(new File(dir, "other.xsd").getPath());
+        final AtomicInteger compilations = new AtomicInteger();
+        final SchemaRegistry registry = new SchemaRegistry() {
+            @Override
+            protected Schema compileSchema(List<String> schemaURLs) {
+                compilations.incrementAndGet();
+                try {
+                    // Give the other callers time to arrive while this is compiling
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.compileSchema(schemaURLs);
+            }
+        };
+
+        int callers = 8;
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        List<Future<Schema>> futures = new ArrayList<Future<Schema>>();
+        try {
+            for ( int i = 0; i < callers; i++ ) {
+                futures.add(executor.submit(new Callable<Schema>() {
+                    public Schema call() throws Exception {
+                        start.await();
+                        return registry.getSchema("other", schemaURLs);
+                    }
+                }));
+            }
+            start.countDown();
+            Schema schema = futures.get(0).get();
+            Assert.assertNotNull(schema);
+            for ( Future<Schema> future : futures ) {
+                Assert.assertSame(schema, future.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Assert.assertEquals(1, compilations.get());
+        Assert.assertEquals(1, registry.getCompileCount());
+        Assert.assertEquals(1, registry.getSchemaCount());
+    }
+
+}
@@ -8,7 +8,7 @@
 
 package org.extensiblecatalog.ncip.v2.binding.ilsdiv1_0_bc.jaxb.dozer;
 
-import org.dozer.DozerBeanMapper;
+import org.dozer.Mapper;
 import org.extensiblecatalog.ncip.v2.binding.jaxb.dozer.BaseJAXBDozerTranslator;
 import org.extensiblecatalog.ncip.v2.binding.ilsdiv1_0_bc.jaxb.elements.NCIPMessage;
 import org.extensiblecatalog.ncip.v2.common.TranslatorConfiguration;
@@ -35,7 +35,7 @@ public class ILSDIv1_0_bc_JAXBDozerTranslator extends BaseJAXBDozerTranslator<NC
     }
 
     @Override
-    protected NCIPMessage mapMessage(Object svcMsg, DozerBeanMapper mapper) {
+    protected NCIPMessage mapMessage(Object svcMsg, Mapper mapper) {
         return mapper.map(svcMsg, NCIPMessage.class);
     }
 }
@@ -8,11 +8,10 @@
 
 package org.extensiblecatalog.ncip.v2.binding.ilsdiv1_1.jaxb.dozer;
 
-import org.dozer.DozerBeanMapper;
+import org.dozer.Mapper;
 import org.extensiblecatalog.ncip.v2.binding.jaxb.JAXBHelper;
 import org.extensiblecatalog.ncip.v2.binding.jaxb.dozer.BaseJAXBDozerTranslator;
 
-import java.io.ByteArrayInputStream;
 import org.extensiblecatalog.ncip.v2.common.LoggingHelper;
 import org.extensiblecatalog.ncip.v2.common.StatisticsBean;
 import org.extensiblecatalog.ncip.v2.common.TranslatorConfiguration;
@@ -56,7 +55,7 @@ public class ILSDIv1_1_JAXBDozerTranslator extends BaseJAXBDozerTranslator<org.e
     }
 
     @Override
-    protected org.extensiblecatalog.ncip.v2.binding.ilsdiv1_1.jaxb.elements.NCIPMessage mapMessage(Object svcMsg, DozerBeanMapper mapper) {
+    protected org.extensiblecatalog.ncip.v2.binding.ilsdiv1_1.jaxb.elements.NCIPMessage mapMessage(Object svcMsg, Mapper mapper) {
         return mapper.map(svcMsg, org.extensiblecatalog.ncip.v2.binding.ilsdiv1_1.jaxb.elements.NCIPMessage.class);
     }
     
@@ -96,62 +95,24 @@ public class ILSDIv1_1_JAXBDozerTranslator extends BaseJAXBDozerTranslator<org.e
 
     }
     
+    /**
+     * Sets the version attribute of the response message, defaulting to NCIP version 2.02.
+     */
     @Override
-    public ByteArrayInputStream createResponseMessageStream(
+    protected org.extensiblecatalog.ncip.v2.binding.ilsdiv1_1.jaxb.elements.NCIPMessage createResponseMessage(
         ServiceContext serviceContext, NCIPResponseData responseData)
-        throws ServiceException, ValidationException {
-
-        try {
-
-            String msgName = ServiceHelper.getMessageName(responseData);
-
-            // Create a service.NCIPMessage object and put the responseData object in it
-            NCIPMessage svcNCIPMessage = new NCIPMessage();
-            ReflectionHelper.setField(svcNCIPMessage, responseData, msgName);
+        throws ToolkitException, InvocationTargetException, IllegalAccessException, ValidationException {
 
-            serviceContext.validateBeforeMarshalling(svcNCIPMessage);
+        org.extensiblecatalog.ncip.v2.binding.ilsdiv1_1.jaxb.elements.NCIPMessage ncipMsg
+            = super.createResponseMessage(serviceContext, responseData);
 
-            // Map from the service.NCIPMessage object to the binding.jaxb.NCIPMessage object
-            long respTranslateStartTime = System.currentTimeMillis();
+        String messageVersion = responseData.getVersion();
+        if (messageVersion == null)
+        	messageVersion = NCIP_VERSION_V2_02;
 
-            org.extensiblecatalog.ncip.v2.binding.ilsdiv1_1.jaxb.elements.NCIPMessage ncipMsg = mapMessage(svcNCIPMessage, mapper);
+        ncipMsg.setVersion(messageVersion);
 
-            long respTranslateEndTime = System.currentTimeMillis();
-            statisticsBean.record(respTranslateStartTime, respTranslateEndTime,
-                StatisticsBean.RESPONDER_CREATE_MESSAGE_LABELS, msgName);
-
-            String messageVersion = responseData.getVersion();
-            if (messageVersion == null)
-            	messageVersion = NCIP_VERSION_V2_02;
-            
-            ncipMsg.setVersion(messageVersion);
-
-            long respMarshalStartTime = System.currentTimeMillis();
-
-            ByteArrayInputStream respMsgStream = createMsgStream(serviceContext, ncipMsg);
-
-            long respMarshalEndTime = System.currentTimeMillis();
-            statisticsBean.record(respMarshalStartTime, respMarshalEndTime,
-                StatisticsBean.RESPONDER_MARSHAL_MESSAGE_LABELS, msgName);
-
-            return respMsgStream;
-
-        } catch (InvocationTargetException e) {
+        return ncipMsg;
 
-            throw new ServiceException(ServiceError.INVALID_MESSAGE_FORMAT,
-                "InvocationTargetException creating the NCIPMessage from the NCIPResponseData object.", e);
-
-        } catch (IllegalAccessException e) {
-
-            throw new ServiceException(ServiceError.INVALID_MESSAGE_FORMAT,
-                "IllegalAccessException creating the NCIPMessage from the NCIPResponseData object.", e);
-
-        } catch (ToolkitException e) {
-
-            throw new ServiceException(ServiceError.INVALID_MESSAGE_FORMAT,
-                "ToolkitException creating the NCIPMessage from the NCIPResponseData object.", e);
-
-        }
-
-    }    
+    }
 }
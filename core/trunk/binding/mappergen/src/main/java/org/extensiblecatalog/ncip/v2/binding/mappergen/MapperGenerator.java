@@ -0,0 +1,1245 @@
+/**
+ * Copyright (c) 2013 eXtensible Catalog Organization
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the MIT/X11 license. The text of the license can be
+ * found at http://www.opensource.org/licenses/mit-license.php.
+ */
+
+package org.extensiblecatalog.ncip.v2.binding.mappergen;
+
+import java.beans.BeanInfo;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generates the source of a sub-class of BaseGeneratedMapper (in the binding-jar module) from a Dozer mapping
+ * file and the compiled JAXB and service classes. The generated class maps each pair of classes it can prove it
+ * handles exactly as Dozer 5.3 would with direct getter and setter calls, and leaves all other pairs to Dozer.
+ * <p/>
+ * The rules applied here mirror Dozer's: each mapping element is bi-directional and wildcard (i.e. after the
+ * explicit fields, every other property with a setter on the destination and a getter on the source is mapped, in
+ * property-name order); pairs of classes with no mapping element get a default mapping that maps nulls; the global
+ * custom converters are checked, in the order they appear in the mapping file, before any other mapping of a value.
+ * <p/>
+ * This is run by the exec-maven-plugin during each binding module's compile phase, with these arguments:
+ * <ol>
+ * <li>the mapping file</li>
+ * <li>the directory holding the compiled JAXB classes</li>
+ * <li>the directory to write the generated source to</li>
+ * <li>the fully-qualified name of the class to generate</li>
+ * </ol>
+ */
+public class MapperGenerator {
+
+    protected static final String BASE_CLASS_NAME
+        = "org.extensiblecatalog.ncip.v2.binding.jaxb.dozer.BaseGeneratedMapper";
+
+    /**
+     * Classes which Dozer copies by reference or converts with its primitive converter, and which are final, so
+     * that a value of the declared type can be assigned directly.
+     */
+    protected static final Set<Class<?>> IMMUTABLE_CLASSES = new HashSet<Class<?>>(Arrays.<Class<?>>asList(
+        String.class, Boolean.class, Integer.class, Long.class, Short.class, Byte.class, Character.class,
+        Double.class, Float.class));
+
+    /**
+     * Classes handled by Dozer's PrimitiveOrWrapperConverter (or sub-classes of these).
+     */
+    protected static final List<Class<?>> PRIMITIVE_CONVERTER_CLASSES = Arrays.<Class<?>>asList(
+        String.class, Boolean.class, Number.class, Character.class, Date.class, Calendar.class, Class.class,
+        BigDecimal.class, BigInteger.class, Enum.class);
+
+    protected static class Pair {
+
+        final Class<?> src;
+        final Class<?> dest;
+
+        Pair(Class<?> src, Class<?> dest) {
+
+            this.src = src;
+            this.dest = dest;
+
+        }
+
+        @Override
+        public boolean equals(Object o) {
+
+            return o instanceof Pair && ((Pair)o).src == src && ((Pair)o).dest == dest;
+
+        }
+
+        @Override
+        public int hashCode() {
+
+            return src.hashCode() * 31 + dest.hashCode();
+
+        }
+
+        @Override
+        public String toString() {
+
+            return src.getName() + " -> " + dest.getName();
+
+        }
+
+    }
+
+    /**
+     * One direction of a mapping element (or a default mapping).
+     */
+    protected static class ClassMap {
+
+        final Pair pair;
+        final boolean mapNull;
+        final List<FieldMap> fields = new ArrayList<FieldMap>();
+
+        ClassMap(Pair pair, boolean mapNull) {
+
+            this.pair = pair;
+            this.mapNull = mapNull;
+
+        }
+
+        boolean isFieldMapped(String name) {
+
+            for ( FieldMap field : fields ) {
+
+                String alternateName = Character.toLowerCase(field.destName.charAt(0)) + field.destName.substring(1);
+                if ( field.destName.equals(name) || alternateName.equals(name) || field.srcName.equals(name) ) {
+
+                    return true;
+
+                }
+
+            }
+
+            return false;
+
+        }
+
+    }
+
+    protected static class FieldMap {
+
+        final String srcName;
+        final String destName;
+        final String srcHint;
+        final String destHint;
+        final String converter;
+        final String converterParam;
+
+        FieldMap(String srcName, String destName, String srcHint, String destHint, String converter,
+                 String converterParam) {
+
+            this.srcName = srcName;
+            this.destName = destName;
+            this.srcHint = srcHint;
+            this.destHint = destHint;
+            this.converter = converter;
+            this.converterParam = converterParam;
+
+        }
+
+    }
+
+    /**
+     * Thrown when a pair of classes must be left to Dozer.
+     */
+    protected static class FallbackException extends Exception {
+
+        FallbackException(String message) {
+
+            super(message);
+
+        }
+
+    }
+
+    protected final MappingFile mappingFile;
+    protected final ClassLoader classLoader;
+    protected final List<Class<?>[]> converterClasses = new ArrayList<Class<?>[]>();
+    protected final Map<Pair, ClassMap> explicitMaps = new LinkedHashMap<Pair, ClassMap>();
+    protected final Set<Pair> queuedPairs = new HashSet<Pair>();
+    protected final LinkedList<Pair> worklist = new LinkedList<Pair>();
+    protected final Map<Pair, List<String>> generatedMethods = new LinkedHashMap<Pair, List<String>>();
+    protected final Map<Pair, String> fallbacks = new LinkedHashMap<Pair, String>();
+    /**
+     * Field names of the converter instances, keyed by converter class name and parameter.
+     */
+    protected final Map<String, String> converterFields = new LinkedHashMap<String, String>();
+    protected final Map<String, String[]> converterFieldInits = new LinkedHashMap<String, String[]>();
+
+    public MapperGenerator(MappingFile mappingFile, ClassLoader classLoader) throws ClassNotFoundException {
+
+        this.mappingFile = mappingFile;
+        this.classLoader = classLoader;
+
+        for ( MappingFile.Converter converter : mappingFile.getConverters() ) {
+
+            converterClasses.add(new Class<?>[] { loadClass(converter.classA), loadClass(converter.classB) });
+
+        }
+
+        for ( MappingFile.Mapping mapping : mappingFile.getMappings() ) {
+
+            Class<?> classA = loadClass(mapping.classA);
+            Class<?> classB = loadClass(mapping.classB);
+            ClassMap aToB = new ClassMap(new Pair(classA, classB), mapping.mapNull);
+            ClassMap bToA = new ClassMap(new Pair(classB, classA), mapping.mapNull);
+            for ( MappingFile.Field field : mapping.fields ) {
+
+                aToB.fields.add(new FieldMap(field.a, field.b, field.aHint, field.bHint, field.customConverter,
+                    field.customConverterParam));
+                bToA.fields.add(new FieldMap(field.b, field.a, field.bHint, field.aHint, field.customConverter,
+                    field.customConverterParam));
+
+            }
+
+            addExplicitMap(aToB);
+            addExplicitMap(bToA);
+
+        }
+
+    }
+
+    public static void main(String[] args) throws Exception {
+
+        if ( args.length != 4 ) {
+
+            throw new IllegalArgumentException("Usage: MapperGenerator <mapping file> <JAXB classes directory>"
+                + " <output directory> <generated class name>");
+
+        }
+
+        File mappingFileName = new File(args[0]);
+        File classesDir = new File(args[1]);
+        File outputDir = new File(args[2]);
+        String className = args[3];
+
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        MapperGenerator generator = new MapperGenerator(new MappingFile(mappingFileName), classLoader);
+        generator.addPairsByName(classesDir);
+        generator.generate();
+
+        File outputFile = new File(outputDir, className.replace('.', File.separatorChar) + ".java");
+        if ( ! outputFile.getParentFile().isDirectory() && ! outputFile.getParentFile().mkdirs() ) {
+
+            throw new IOException("Could not create directory " + outputFile.getParentFile());
+
+        }
+
+        PrintWriter writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(outputFile), "UTF-8"));
+        try {
+
+            generator.write(writer, className, mappingFileName.getName());
+
+        } finally {
+
+            writer.close();
+
+        }
+
+        System.out.println("Generated " + outputFile + " with " + generator.generatedMethods.size()
+            + " mappings; " + generator.fallbacks.size() + " pairs of classes are left to Dozer.");
+        for ( Map.Entry<Pair, String> entry : generator.fallbacks.entrySet() ) {
+
+            System.out.println("  " + entry.getKey() + ": " + entry.getValue());
+
+        }
+
+    }
+
+    /**
+     * Queue the mapping-file's pairs and, in both directions, each pair of service and JAXB classes that have the
+     * same simple name (which the content converters map with Dozer's default mappings).
+     * @param classesDir the directory holding the compiled JAXB classes
+     */
+    public void addPairsByName(File classesDir) throws ClassNotFoundException {
+
+        Set<String> jaxbPackages = new LinkedHashSet<String>();
+        Set<String> servicePackages = new LinkedHashSet<String>();
+        for ( MappingFile.Mapping mapping : mappingFile.getMappings() ) {
+
+            servicePackages.add(packageName(mapping.classA));
+            jaxbPackages.add(packageName(mapping.classB));
+
+        }
+
+        for ( String jaxbPackage : jaxbPackages ) {
+
+            File packageDir = new File(classesDir, jaxbPackage.replace('.', File.separatorChar));
+            String[] fileNames = packageDir.list();
+            if ( fileNames == null ) {
+
+                continue;
+
+            }
+
+            Arrays.sort(fileNames);
+            for ( String fileName : fileNames ) {
+
+                if ( ! fileName.endsWith(".class") || fileName.indexOf('$') >= 0 ) {
+
+                    continue;
+
+                }
+
+                String simpleName = fileName.substring(0, fileName.length() - ".class".length());
+                Class<?> jaxbClass = loadClass(jaxbPackage + "." + simpleName);
+                for ( String servicePackage : servicePackages ) {
+
+                    Class<?> serviceClass;
+                    try {
+
+                        serviceClass = Class.forName(servicePackage + "." + simpleName, false, classLoader);
+
+                    } catch (ClassNotFoundException e) {
+
+                        continue;
+
+                    }
+
+                    queue(new Pair(serviceClass, jaxbClass));
+                    queue(new Pair(jaxbClass, serviceClass));
+
+                }
+
+            }
+
+        }
+
+    }
+
+    /**
+     * Generate the mapping methods for the queued pairs and any pairs reachable from their fields.
+     */
+    public void generate() throws ClassNotFoundException, IntrospectionException {
+
+        for ( Pair pair : explicitMaps.keySet() ) {
+
+            queue(pair);
+
+        }
+
+        while ( ! worklist.isEmpty() ) {
+
+            Pair pair = worklist.removeFirst();
+            if ( ! isBean(pair.src) || ! isBean(pair.dest) || converterMatches(pair.src, pair.dest) ) {
+
+                // A converter, Dozer's primitive conversion or Dozer itself handles this pair.
+                if ( explicitMaps.containsKey(pair) ) {
+
+                    fallbacks.put(pair, "not a mappable pair of beans");
+
+                }
+
+                continue;
+
+            }
+
+            try {
+
+                ClassMap classMap = getClassMap(pair);
+                List<Pair> nestedPairs = new ArrayList<Pair>();
+                List<String> lines = generateMethod(classMap, nestedPairs);
+                generatedMethods.put(pair, lines);
+                for ( Pair nestedPair : nestedPairs ) {
+
+                    queue(nestedPair);
+
+                }
+
+            } catch (FallbackException e) {
+
+                fallbacks.put(pair, e.getMessage());
+
+            }
+
+        }
+
+    }
+
+    protected void queue(Pair pair) {
+
+        if ( queuedPairs.add(pair) ) {
+
+            worklist.add(pair);
+
+        }
+
+    }
+
+    protected void addExplicitMap(ClassMap classMap) {
+
+        if ( explicitMaps.put(classMap.pair, classMap) != null ) {
+
+            throw new IllegalArgumentException("Duplicate mapping for " + classMap.pair);
+
+        }
+
+    }
+
+    /**
+     * Return the mapping element for the pair, or a default mapping, with the wildcard fields added.
+     */
+    protected ClassMap getClassMap(Pair pair) throws IntrospectionException, FallbackException {
+
+        ClassMap explicitMap = explicitMaps.get(pair);
+        ClassMap classMap;
+        if ( explicitMap != null ) {
+
+            classMap = new ClassMap(pair, explicitMap.mapNull);
+            classMap.fields.addAll(explicitMap.fields);
+
+        } else {
+
+            checkInterfaceMappings(pair);
+            classMap = new ClassMap(pair, true);
+
+        }
+
+        checkSuperTypeMappings(pair);
+
+        for ( PropertyDescriptor destProperty : getPropertyDescriptors(pair.dest) ) {
+
+            String name = destProperty.getName();
+            if ( "class".equals(name) || classMap.isFieldMapped(name) || destProperty.getWriteMethod() == null ) {
+
+                continue;
+
+            }
+
+            PropertyDescriptor srcProperty = findPropertyDescriptor(pair.src, name);
+            if ( srcProperty == null || srcProperty.getReadMethod() == null ) {
+
+                continue;
+
+            }
+
+            classMap.fields.add(new FieldMap(name, name, null, null, null, null));
+
+        }
+
+        return classMap;
+
+    }
+
+    /**
+     * Dozer uses a mapping element whose classes are interfaces (or an abstract destination class) for pairs of
+     * classes that implement them.
+     */
+    protected void checkInterfaceMappings(Pair pair) throws FallbackException {
+
+        for ( Pair mapped : explicitMaps.keySet() ) {
+
+            boolean srcMatches = mapped.src.isInterface() && mapped.src.isAssignableFrom(pair.src);
+            boolean destMatches = ( mapped.dest.isInterface() && mapped.dest.isAssignableFrom(pair.dest) )
+                || pair.dest == mapped.dest;
+            boolean abstractDestMatches = ( ( pair.dest.isAssignableFrom(mapped.dest) && isAbstract(pair.dest) )
+                || ( mapped.dest.isInterface() && mapped.dest.isAssignableFrom(pair.dest) ) )
+                && pair.src == mapped.src;
+            if ( ( srcMatches && destMatches ) || abstractDestMatches ) {
+
+                throw new FallbackException("interface mapping " + mapped);
+
+            }
+
+        }
+
+    }
+
+    /**
+     * Dozer also applies the mappings of the classes' super-types (including the default mappings it creates at
+     * run-time), so a pair is left to Dozer if any super-type pair is mapped or might be.
+     */
+    protected void checkSuperTypeMappings(Pair pair) throws FallbackException {
+
+        for ( Class<?> src : getSuperTypes(pair.src) ) {
+
+            for ( Class<?> dest : getSuperTypes(pair.dest) ) {
+
+                if ( src == pair.src && dest == pair.dest ) {
+
+                    continue;
+
+                }
+
+                Pair superPair = new Pair(src, dest);
+                if ( explicitMaps.containsKey(superPair) ) {
+
+                    throw new FallbackException("super-type mapping " + superPair);
+
+                }
+
+                if ( ! src.isInterface() && ! dest.isInterface() && ! isAbstract(src) ) {
+
+                    throw new FallbackException("possible super-type mapping " + superPair);
+
+                }
+
+            }
+
+        }
+
+    }
+
+    /**
+     * Generate the lines of the mapping method's body, and collect the pairs of classes it maps nested objects
+     * with.
+     */
+    protected List<String> generateMethod(ClassMap classMap, List<Pair> nestedPairs)
+        throws ClassNotFoundException, IntrospectionException, FallbackException {
+
+        Pair pair = classMap.pair;
+        checkVisible(pair.src);
+        checkVisible(pair.dest);
+        try {
+
+            pair.dest.getConstructor();
+
+        } catch (NoSuchMethodException e) {
+
+            throw new FallbackException("no public no-arg constructor");
+
+        }
+
+        List<String> lines = new ArrayList<String>();
+        for ( FieldMap field : classMap.fields ) {
+
+            List<PropertyDescriptor> srcPath = resolvePath(pair.src, field.srcName, false);
+            List<PropertyDescriptor> destPath = resolvePath(pair.dest, field.destName, true);
+            PropertyDescriptor srcProperty = srcPath.get(srcPath.size() - 1);
+            PropertyDescriptor destProperty = destPath.get(destPath.size() - 1);
+            boolean deep = destPath.size() > 1;
+            if ( deep && ( classMap.mapNull || destProperty.getWriteMethod() == null ) ) {
+
+                throw new FallbackException("unsupported deep field " + field.destName);
+
+            }
+
+            if ( field.srcHint != null && field.destHint != null ) {
+
+                throw new FallbackException("source and destination hints on " + field.srcName);
+
+            }
+
+            Method getter = srcProperty.getReadMethod();
+            Method setter = destProperty.getWriteMethod();
+            Class<?> srcType = srcProperty.getPropertyType();
+            Class<?> destType = destProperty.getPropertyType();
+            for ( Class<?> type : new Class<?>[] { srcType, destType } ) {
+
+                if ( type.isArray() || Map.class.isAssignableFrom(type) || Set.class.isAssignableFrom(type)
+                    || type == Object.class ) {
+
+                    throw new FallbackException("unsupported field type " + type.getName());
+
+                }
+
+            }
+
+            lines.add("");
+            lines.add("// " + field.srcName + " -> " + field.destName);
+            addRead(lines, "value", "src", srcPath);
+            String existing;
+            if ( deep ) {
+
+                addRead(lines, "existing", "dest", destPath);
+                existing = "existing";
+
+            } else {
+
+                existing = "dest." + destProperty.getReadMethod().getName() + "()";
+
+            }
+
+            String destClassLiteral = typeName(destType) + ".class";
+
+            if ( field.converter != null ) {
+
+                String converterField = getConverterField(field.converter, field.converterParam);
+                if ( classMap.mapNull ) {
+
+                    // Dozer passes nulls to field-level converters when mapping nulls; no mapping in the toolkit's
+                    // files does that, so it's not worth generating.
+                    throw new FallbackException("field-level converter in a mapping that maps nulls");
+
+                }
+
+                lines.add("if ( value != null ) {");
+                lines.add("    result = convertField(" + converterField + ", value, " + destClassLiteral + ", "
+                    + existing + ");");
+                addWrite(lines, "    ", "result", false, destPath, existing);
+                lines.add("}");
+
+            } else if ( isDirectlyAssignable(srcType, destType) && field.destHint == null && ! deep ) {
+
+                if ( classMap.mapNull && ! destType.isPrimitive() ) {
+
+                    addWrite(lines, "", "value", true, destPath, existing);
+
+                } else {
+
+                    lines.add("if ( value != null ) {");
+                    addWrite(lines, "    ", "value", false, destPath, existing);
+                    lines.add("}");
+
+                }
+
+            } else {
+
+                Class<?> destHint = null;
+                if ( field.destHint != null ) {
+
+                    try {
+
+                        destHint = loadClass(field.destHint);
+
+                    } catch (ClassNotFoundException e) {
+
+                        // Dozer only loads the hint when the field is mapped, and fails then.
+                        throw new FallbackException("hint class " + field.destHint + " not found");
+
+                    }
+
+                }
+
+                Class<?> elementType = null;
+                if ( Collection.class.isAssignableFrom(destType) ) {
+
+                    elementType = getElementType(setter);
+                    Class<?> srcElementType = Collection.class.isAssignableFrom(srcType)
+                        ? getElementType(getter) : null;
+                    Class<?> destElementType = destHint != null ? destHint : elementType;
+                    if ( srcElementType != null ) {
+
+                        nestedPairs.add(new Pair(srcElementType, destElementType != null
+                            ? destElementType : srcElementType));
+
+                    }
+
+                } else if ( ! Collection.class.isAssignableFrom(srcType) ) {
+
+                    nestedPairs.add(new Pair(srcType, destHint != null ? destHint : destType));
+
+                }
+
+                String mapValue = "mapValue(value, " + destClassLiteral + ", "
+                    + ( destHint != null ? typeName(destHint) + ".class" : "null" ) + ", "
+                    + ( elementType != null ? typeName(elementType) + ".class" : "null" ) + ", " + existing + ")";
+                if ( classMap.mapNull ) {
+
+                    lines.add("result = value != null");
+                    lines.add("    ? " + mapValue);
+                    lines.add("    : mapNullValue(" + typeName(srcType) + ".class, " + destClassLiteral + ", "
+                        + existing + ");");
+                    addWrite(lines, "", "result", ! destType.isPrimitive(), destPath, existing);
+
+                } else {
+
+                    lines.add("if ( value != null ) {");
+                    lines.add("    result = " + mapValue + ";");
+                    addWrite(lines, "    ", "result", false, destPath, existing);
+                    lines.add("}");
+
+                }
+
+            }
+
+        }
+
+        return lines;
+
+    }
+
+    /**
+     * Resolve a (possibly deep, i.e. dotted) field name to the properties along its path, checking that the
+     * generated code can read each of them and, for the destination, create and set the intermediate objects.
+     */
+    protected List<PropertyDescriptor> resolvePath(Class<?> aClass, String fieldName, boolean isDest)
+        throws IntrospectionException, FallbackException {
+
+        if ( fieldName.indexOf('[') >= 0 ) {
+
+            throw new FallbackException("indexed field " + fieldName);
+
+        }
+
+        List<PropertyDescriptor> path = new ArrayList<PropertyDescriptor>();
+        String[] names = fieldName.split("\\.");
+        Class<?> currentClass = aClass;
+        for ( int i = 0; i < names.length; i++ ) {
+
+            PropertyDescriptor property = findPropertyDescriptor(currentClass, names[i]);
+            if ( property == null || property.getReadMethod() == null ) {
+
+                throw new FallbackException("no read method for " + fieldName + " in " + aClass.getName());
+
+            }
+
+            checkVisible(property.getReadMethod());
+            if ( isDest && property.getWriteMethod() != null ) {
+
+                checkVisible(property.getWriteMethod());
+
+            }
+
+            if ( i < names.length - 1 ) {
+
+                currentClass = property.getPropertyType();
+                if ( ! isBean(currentClass) || ( isDest && property.getWriteMethod() == null ) ) {
+
+                    throw new FallbackException("unsupported deep field " + fieldName);
+
+                }
+
+                if ( isDest ) {
+
+                    checkVisible(currentClass);
+                    try {
+
+                        currentClass.getConstructor();
+
+                    } catch (NoSuchMethodException e) {
+
+                        throw new FallbackException("unsupported deep field " + fieldName);
+
+                    }
+
+                }
+
+            }
+
+            path.add(property);
+
+        }
+
+        return path;
+
+    }
+
+    /**
+     * Add the statements that read the property at the end of the path into the variable, which is set to null if
+     * any property along the way is null.
+     */
+    protected void addRead(List<String> lines, String variable, String bean, List<PropertyDescriptor> path) {
+
+        lines.add(variable + " = " + bean + "." + path.get(0).getReadMethod().getName() + "();");
+        for ( int i = 1; i < path.size(); i++ ) {
+
+            lines.add("if ( " + variable + " != null ) {");
+            lines.add("    " + variable + " = ((" + typeName(path.get(i - 1).getPropertyType()) + ")" + variable
+                + ")." + path.get(i).getReadMethod().getName() + "();");
+            lines.add("}");
+
+        }
+
+    }
+
+    /**
+     * Add the statements that write the value to the destination property, skipping the write when the
+     * destination already holds the same object (as Dozer does). For a deep field the intermediate objects are
+     * created if they're null, and the value is always written (as Dozer does).
+     * @param mapNull whether null values are written
+     */
+    protected void addWrite(List<String> lines, String indent, String variable, boolean mapNull,
+                            List<PropertyDescriptor> destPath, String existing) {
+
+        PropertyDescriptor destProperty = destPath.get(destPath.size() - 1);
+        Class<?> destType = destProperty.getPropertyType();
+        Method setter = destProperty.getWriteMethod();
+        String condition;
+        if ( destType.isPrimitive() || destPath.size() > 1 ) {
+
+            condition = variable + " != null";
+
+        } else if ( mapNull ) {
+
+            condition = variable + " != " + existing;
+
+        } else {
+
+            condition = variable + " != null && " + variable + " != " + existing;
+
+        }
+
+        lines.add(indent + "if ( " + condition + " ) {");
+        String parent = "dest";
+        for ( int i = 0; i < destPath.size() - 1; i++ ) {
+
+            PropertyDescriptor property = destPath.get(i);
+            String type = typeName(property.getPropertyType());
+            String child = "parent" + i;
+            String getter = property.getReadMethod().getName() + "()";
+            lines.add(indent + "    " + type + " " + child + " = " + parent + "." + getter + ";");
+            lines.add(indent + "    if ( " + child + " == null ) {");
+            lines.add(indent + "        " + parent + "." + property.getWriteMethod().getName() + "(new " + type
+                + "());");
+            lines.add(indent + "        " + child + " = " + parent + "." + getter + ";");
+            lines.add(indent + "    }");
+            parent = child;
+
+        }
+
+        if ( setter != null ) {
+
+            lines.add(indent + "    " + parent + "." + setter.getName() + "((" + typeName(wrap(destType)) + ")"
+                + variable + ");");
+
+        } else {
+
+            lines.add(indent + "    throw noWriteMethod(dest, \"" + destProperty.getName() + "\");");
+
+        }
+
+        lines.add(indent + "}");
+
+    }
+
+    /**
+     * Whether Dozer would copy a value of the source type to the destination type unchanged: both are the same
+     * final, immutable type (allowing for primitives) and no global converter applies.
+     */
+    protected boolean isDirectlyAssignable(Class<?> srcType, Class<?> destType) {
+
+        Class<?> src = wrap(srcType);
+        return IMMUTABLE_CLASSES.contains(src) && src == wrap(destType) && ! converterMatches(src, src);
+
+    }
+
+    protected String getConverterField(String converterClassName, String param) throws ClassNotFoundException,
+        FallbackException {
+
+        String key = converterClassName + "|" + param;
+        String fieldName = converterFields.get(key);
+        if ( fieldName == null ) {
+
+            Class<?> converterClass = loadClass(converterClassName);
+            try {
+
+                converterClass.getConstructor();
+
+            } catch (NoSuchMethodException e) {
+
+                throw new FallbackException("converter " + converterClassName + " has no public no-arg constructor");
+
+            }
+
+            fieldName = "converter" + converterFields.size();
+            converterFields.put(key, fieldName);
+            converterFieldInits.put(fieldName, new String[] { typeName(converterClass), param });
+
+        }
+
+        return fieldName;
+
+    }
+
+    /**
+     * Write the generated class.
+     */
+    public void write(PrintWriter out, String className, String mappingFileName) {
+
+        int lastDot = className.lastIndexOf('.');
+        String packageName = className.substring(0, lastDot);
+        String simpleName = className.substring(lastDot + 1);
+        List<Pair> pairs = new ArrayList<Pair>(generatedMethods.keySet());
+
+        out.println("// Generated by " + MapperGenerator.class.getName() + " from " + mappingFileName
+            + "; do not edit.");
+        out.println();
+        out.println("package " + packageName + ";");
+        out.println();
+        out.println("import org.dozer.CustomConverter;");
+        out.println("import org.dozer.DozerBeanMapper;");
+        out.println();
+        out.println("import java.util.HashMap;");
+        out.println("import java.util.Map;");
+        out.println();
+        out.println("/**");
+        out.println(" * Maps between the service and JAXB classes as configured in " + mappingFileName + ".");
+        out.println(" */");
+        out.println("@SuppressWarnings(\"unchecked\")");
+        out.println("public class " + simpleName + " extends " + BASE_CLASS_NAME + " {");
+        out.println();
+        out.println("    private static final Map<Class<?>, Map<Class<?>, Integer>> MAPPING_INDEXES");
+        out.println("        = new HashMap<Class<?>, Map<Class<?>, Integer>>();");
+        out.println();
+        out.println("    static {");
+        out.println();
+        for ( int i = 0; i < pairs.size(); i++ ) {
+
+            out.println("        addMappingIndex(MAPPING_INDEXES, " + typeName(pairs.get(i).src) + ".class, "
+                + typeName(pairs.get(i).dest) + ".class, " + i + ");");
+
+        }
+
+        out.println();
+        out.println("    }");
+        out.println();
+        for ( String fieldName : converterFieldInits.keySet() ) {
+
+            out.println("    private final CustomConverter " + fieldName + ";");
+
+        }
+
+        out.println();
+        out.println("    public " + simpleName + "(DozerBeanMapper fallbackMapper) {");
+        out.println();
+        out.println("        super(fallbackMapper);");
+        out.println();
+        Map<String, String> globalConverters = new HashMap<String, String>();
+        for ( MappingFile.Converter converter : mappingFile.getConverters() ) {
+
+            String variable = globalConverters.get(converter.type);
+            if ( variable == null ) {
+
+                variable = "globalConverter" + globalConverters.size();
+                globalConverters.put(converter.type, variable);
+                out.println("        CustomConverter " + variable + " = new " + converter.type.replace('$', '.')
+                    + "();");
+
+            }
+
+            out.println("        addConverter(" + converter.classA.replace('$', '.') + ".class, "
+                + converter.classB.replace('$', '.') + ".class, " + variable + ");");
+
+        }
+
+        out.println();
+        for ( Map.Entry<String, String[]> entry : converterFieldInits.entrySet() ) {
+
+            String param = entry.getValue()[1];
+            out.println("        " + entry.getKey() + " = initConverter(new " + entry.getValue()[0] + "(), "
+                + ( param != null ? quote(param) : "null" ) + ");");
+
+        }
+
+        out.println();
+        out.println("    }");
+        out.println();
+        out.println("    @Override");
+        out.println("    protected int getMappingIndex(Class<?> srcClass, Class<?> destClass) {");
+        out.println("        return lookupMappingIndex(MAPPING_INDEXES, srcClass, destClass);");
+        out.println("    }");
+        out.println();
+        out.println("    @Override");
+        out.println("    protected Object createDestination(int mappingIndex) {");
+        out.println();
+        out.println("        switch ( mappingIndex ) {");
+        for ( int i = 0; i < pairs.size(); i++ ) {
+
+            out.println("            case " + i + ": return new " + typeName(pairs.get(i).dest) + "();");
+
+        }
+
+        out.println("            default: throw new IllegalArgumentException(\"No mapping \" + mappingIndex);");
+        out.println("        }");
+        out.println();
+        out.println("    }");
+        out.println();
+        out.println("    @Override");
+        out.println("    protected void mapFields(int mappingIndex, Object src, Object dest) {");
+        out.println();
+        out.println("        switch ( mappingIndex ) {");
+        for ( int i = 0; i < pairs.size(); i++ ) {
+
+            out.println("            case " + i + ": map" + i + "((" + typeName(pairs.get(i).src) + ")src, ("
+                + typeName(pairs.get(i).dest) + ")dest); break;");
+
+        }
+
+        out.println("            default: throw new IllegalArgumentException(\"No mapping \" + mappingIndex);");
+        out.println("        }");
+        out.println();
+        out.println("    }");
+        for ( int i = 0; i < pairs.size(); i++ ) {
+
+            Pair pair = pairs.get(i);
+            List<String> lines = generatedMethods.get(pair);
+            out.println();
+            out.println("    /**");
+            out.println("     * " + typeName(pair.src) + " -> " + typeName(pair.dest));
+            out.println("     */");
+            out.println("    private void map" + i + "(" + typeName(pair.src) + " src, " + typeName(pair.dest)
+                + " dest) {");
+            if ( lines.size() > 0 ) {
+
+                out.println();
+                out.println("        Object value;");
+                out.println("        Object result;");
+                for ( String line : lines ) {
+
+                    if ( line.startsWith("existing = ") ) {
+
+                        out.println("        Object existing;");
+                        break;
+
+                    }
+
+                }
+
+                for ( String line : lines ) {
+
+                    out.println(line.length() > 0 ? "        " + line : "");
+
+                }
+
+                out.println();
+
+            }
+
+            out.println("    }");
+
+        }
+
+        out.println();
+        out.println("}");
+
+    }
+
+    protected boolean converterMatches(Class<?> srcClass, Class<?> destClass) {
+
+        Class<?> src = wrap(srcClass);
+        Class<?> dest = wrap(destClass);
+        for ( Class<?>[] classes : converterClasses ) {
+
+            if ( ( classes[0].isAssignableFrom(dest) && classes[1].isAssignableFrom(src) )
+                || ( classes[0].isAssignableFrom(src) && classes[1].isAssignableFrom(dest) ) ) {
+
+                return true;
+
+            }
+
+        }
+
+        return false;
+
+    }
+
+    /**
+     * Whether the class is one that Dozer maps field by field (as opposed to converting or copying it) and that
+     * can be the exact run-time class of a value.
+     */
+    protected static boolean isBean(Class<?> aClass) {
+
+        if ( aClass == null || aClass.isPrimitive() || aClass.isArray() || aClass.isEnum() || aClass.isInterface()
+            || isAbstract(aClass) || Collection.class.isAssignableFrom(aClass) || Map.class.isAssignableFrom(aClass)
+            || aClass.getName().startsWith("java.") || aClass.getName().startsWith("javax.") ) {
+
+            return false;
+
+        }
+
+        for ( Class<?> primitiveClass : PRIMITIVE_CONVERTER_CLASSES ) {
+
+            if ( primitiveClass.isAssignableFrom(aClass) ) {
+
+                return false;
+
+            }
+
+        }
+
+        return true;
+
+    }
+
+    protected static void checkVisible(Class<?> aClass) throws FallbackException {
+
+        for ( Class<?> c = aClass; c != null; c = c.getEnclosingClass() ) {
+
+            if ( ! Modifier.isPublic(c.getModifiers()) ) {
+
+                throw new FallbackException(aClass.getName() + " is not public");
+
+            }
+
+        }
+
+    }
+
+    protected static void checkVisible(Method method) throws FallbackException {
+
+        checkVisible(method.getDeclaringClass());
+
+    }
+
+    protected static boolean isAbstract(Class<?> aClass) {
+
+        return Modifier.isAbstract(aClass.getModifiers());
+
+    }
+
+    /**
+     * The class's super-classes and interfaces (excluding Object), and the class itself.
+     */
+    protected static Set<Class<?>> getSuperTypes(Class<?> aClass) {
+
+        Set<Class<?>> result = new LinkedHashSet<Class<?>>();
+        LinkedList<Class<?>> toVisit = new LinkedList<Class<?>>();
+        toVisit.add(aClass);
+        while ( ! toVisit.isEmpty() ) {
+
+            Class<?> c = toVisit.removeFirst();
+            if ( c != null && c != Object.class && result.add(c) ) {
+
+                toVisit.add(c.getSuperclass());
+                toVisit.addAll(Arrays.asList(c.getInterfaces()));
+
+            }
+
+        }
+
+        return result;
+
+    }
+
+    /**
+     * Return the element type of the list parameter (for a setter) or return type (for a getter), or null if
+     * it's not known.
+     */
+    protected static Class<?> getElementType(Method method) throws FallbackException {
+
+        if ( method == null ) {
+
+            return null;
+
+        }
+
+        Type type = method.getParameterTypes().length == 1 ? method.getGenericParameterTypes()[0]
+            : method.getGenericReturnType();
+        if ( type instanceof ParameterizedType ) {
+
+            Type[] arguments = ((ParameterizedType)type).getActualTypeArguments();
+            if ( arguments.length == 1 && arguments[0] instanceof Class ) {
+
+                Class<?> elementType = (Class<?>)arguments[0];
+                if ( Collection.class.isAssignableFrom(elementType) || Map.class.isAssignableFrom(elementType) ) {
+
+                    throw new FallbackException("list of collections in " + method);
+
+                }
+
+                return elementType;
+
+            }
+
+            throw new FallbackException("unsupported element type in " + method);
+
+        }
+
+        return null;
+
+    }
+
+    protected static PropertyDescriptor[] getPropertyDescriptors(Class<?> aClass) throws IntrospectionException {
+
+        BeanInfo beanInfo = Introspector.getBeanInfo(aClass);
+        return beanInfo.getPropertyDescriptors();
+
+    }
+
+    /**
+     * Find the property as Dozer does: the property with this name, or else the last one whose name matches it
+     * ignoring case.
+     */
+    protected static PropertyDescriptor findPropertyDescriptor(Class<?> aClass, String name)
+        throws IntrospectionException {
+
+        PropertyDescriptor result = null;
+        for ( PropertyDescriptor descriptor : getPropertyDescriptors(aClass) ) {
+
+            if ( name.equals(descriptor.getName()) ) {
+
+                return descriptor;
+
+            }
+
+            if ( name.equalsIgnoreCase(descriptor.getName()) ) {
+
+                result = descriptor;
+
+            }
+
+        }
+
+        return result;
+
+    }
+
+    protected static Class<?> wrap(Class<?> aClass) {
+
+        if ( aClass == Boolean.TYPE ) {
+            return Boolean.class;
+        } else if ( aClass == Integer.TYPE ) {
+            return Integer.class;
+        } else if ( aClass == Long.TYPE ) {
+            return Long.class;
+        } else if ( aClass == Double.TYPE ) {
+            return Double.class;
+        } else if ( aClass == Float.TYPE ) {
+            return Float.class;
+        } else if ( aClass == Short.TYPE ) {
+            return Short.class;
+        } else if ( aClass == Byte.TYPE ) {
+            return Byte.class;
+        } else if ( aClass == Character.TYPE ) {
+            return Character.class;
+        }
+
+        return aClass;
+
+    }
+
+    protected static String typeName(Class<?> aClass) {
+
+        return aClass.getCanonicalName();
+
+    }
+
+    protected static String packageName(String className) {
+
+        return className.substring(0, className.lastIndexOf('.'));
+
+    }
+
+    protected static String quote(String s) {
+
+        return "\"" + s.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+
+    }
+
+    protected Class<?> loadClass(String className) throws ClassNotFoundException {
+
+        return Class.forName(className, false, classLoader);
+
+    }
+
+}
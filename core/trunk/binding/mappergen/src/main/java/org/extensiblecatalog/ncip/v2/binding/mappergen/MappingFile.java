@@ -0,0 +1,360 @@
+/**
+ * Copyright (c) 2013 eXtensible Catalog Organization
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the MIT/X11 license. The text of the license can be
+ * found at http://www.opensource.org/licenses/mit-license.php.
+ */
+
+package org.extensiblecatalog.ncip.v2.binding.mappergen;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The parts of a Dozer mapping file that the toolkit's bindings use. Parsing fails on any element or attribute
+ * outside that subset, so that the generated mapper can't silently diverge from Dozer if a mapping file starts
+ * using other Dozer features.
+ */
+public class MappingFile {
+
+    /**
+     * A global custom converter from the mapping file's configuration element.
+     */
+    public static class Converter {
+
+        public final String type;
+        public final String classA;
+        public final String classB;
+
+        public Converter(String type, String classA, String classB) {
+
+            this.type = type;
+            this.classA = classA;
+            this.classB = classB;
+
+        }
+
+    }
+
+    /**
+     * A field element of a class mapping.
+     */
+    public static class Field {
+
+        public final String a;
+        public final String b;
+        public final String aHint;
+        public final String bHint;
+        public final String customConverter;
+        public final String customConverterParam;
+
+        public Field(String a, String b, String aHint, String bHint, String customConverter,
+                     String customConverterParam) {
+
+            this.a = a;
+            this.b = b;
+            this.aHint = aHint;
+            this.bHint = bHint;
+            this.customConverter = customConverter;
+            this.customConverterParam = customConverterParam;
+
+        }
+
+    }
+
+    /**
+     * A mapping element, i.e. a (bi-directional) class mapping.
+     */
+    public static class Mapping {
+
+        public final String classA;
+        public final String classB;
+        public final boolean mapNull;
+        public final List<Field> fields;
+
+        public Mapping(String classA, String classB, boolean mapNull, List<Field> fields) {
+
+            this.classA = classA;
+            this.classB = classB;
+            this.mapNull = mapNull;
+            this.fields = fields;
+
+        }
+
+    }
+
+    protected final List<Converter> converters = new ArrayList<Converter>();
+    protected final List<Mapping> mappings = new ArrayList<Mapping>();
+
+    public MappingFile(File file) throws IOException {
+
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        // Don't fetch Dozer's DTD/XSD.
+        factory.setValidating(false);
+        factory.setNamespaceAware(true);
+        try {
+
+            factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+
+        } catch (ParserConfigurationException e) {
+
+            // Ignore - the parser doesn't load external DTDs when not validating.
+
+        }
+
+        Document doc;
+        try {
+
+            DocumentBuilder builder = factory.newDocumentBuilder();
+            doc = builder.parse(file);
+
+        } catch (ParserConfigurationException e) {
+
+            throw new IOException("Exception creating parser for " + file + ": " + e);
+
+        } catch (SAXException e) {
+
+            throw new IOException("Exception parsing " + file + ": " + e);
+
+        }
+
+        Element root = doc.getDocumentElement();
+        checkName(root, "mappings");
+        for ( Element child : childElements(root) ) {
+
+            if ( "configuration".equals(localName(child)) ) {
+
+                parseConfiguration(child);
+
+            } else if ( "mapping".equals(localName(child)) ) {
+
+                mappings.add(parseMapping(child));
+
+            } else {
+
+                throw unsupported(child);
+
+            }
+
+        }
+
+    }
+
+    public List<Converter> getConverters() {
+        return converters;
+    }
+
+    public List<Mapping> getMappings() {
+        return mappings;
+    }
+
+    protected void parseConfiguration(Element configuration) {
+
+        checkAttributes(configuration);
+        for ( Element child : childElements(configuration) ) {
+
+            checkName(child, "custom-converters");
+            checkAttributes(child);
+            for ( Element converter : childElements(child) ) {
+
+                checkName(converter, "converter");
+                checkAttributes(converter, "type");
+                List<Element> classes = childElements(converter);
+                if ( classes.size() != 2 ) {
+
+                    throw new IllegalArgumentException("Expected class-a and class-b in converter "
+                        + converter.getAttribute("type"));
+
+                }
+
+                converters.add(new Converter(converter.getAttribute("type"), classText(classes.get(0), "class-a"),
+                    classText(classes.get(1), "class-b")));
+
+            }
+
+        }
+
+    }
+
+    protected Mapping parseMapping(Element mapping) {
+
+        checkAttributes(mapping, "map-null");
+        // Dozer's default for map-null is true.
+        boolean mapNull = ! "false".equals(mapping.getAttribute("map-null"));
+        String classA = null;
+        String classB = null;
+        List<Field> fields = new ArrayList<Field>();
+        for ( Element child : childElements(mapping) ) {
+
+            String name = localName(child);
+            if ( "class-a".equals(name) && classA == null ) {
+
+                classA = classText(child, name);
+
+            } else if ( "class-b".equals(name) && classB == null ) {
+
+                classB = classText(child, name);
+
+            } else if ( "field".equals(name) ) {
+
+                fields.add(parseField(child));
+
+            } else {
+
+                throw unsupported(child);
+
+            }
+
+        }
+
+        if ( classA == null || classB == null ) {
+
+            throw new IllegalArgumentException("Mapping is missing class-a or class-b.");
+
+        }
+
+        return new Mapping(classA, classB, mapNull, fields);
+
+    }
+
+    protected Field parseField(Element field) {
+
+        checkAttributes(field, "custom-converter", "custom-converter-param");
+        String a = null;
+        String b = null;
+        String aHint = null;
+        String bHint = null;
+        for ( Element child : childElements(field) ) {
+
+            checkAttributes(child);
+            String name = localName(child);
+            String text = child.getTextContent().trim();
+            if ( "a".equals(name) ) {
+
+                a = text;
+
+            } else if ( "b".equals(name) ) {
+
+                b = text;
+
+            } else if ( "a-hint".equals(name) ) {
+
+                aHint = text;
+
+            } else if ( "b-hint".equals(name) ) {
+
+                bHint = text;
+
+            } else {
+
+                throw unsupported(child);
+
+            }
+
+        }
+
+        if ( a == null || b == null ) {
+
+            throw new IllegalArgumentException("Field is missing a or b.");
+
+        }
+
+        return new Field(a, b, aHint, bHint, attributeOrNull(field, "custom-converter"),
+            attributeOrNull(field, "custom-converter-param"));
+
+    }
+
+    protected static String classText(Element element, String expectedName) {
+
+        checkName(element, expectedName);
+        checkAttributes(element);
+        return element.getTextContent().trim();
+
+    }
+
+    protected static String attributeOrNull(Element element, String name) {
+
+        return element.hasAttribute(name) ? element.getAttribute(name) : null;
+
+    }
+
+    protected static void checkName(Element element, String expectedName) {
+
+        if ( ! expectedName.equals(localName(element)) ) {
+
+            throw unsupported(element);
+
+        }
+
+    }
+
+    protected static void checkAttributes(Element element, String... allowedNames) {
+
+        NamedNodeMap attributes = element.getAttributes();
+        for ( int i = 0; i < attributes.getLength(); i++ ) {
+
+            Node attribute = attributes.item(i);
+            String name = attribute.getLocalName() != null ? attribute.getLocalName() : attribute.getNodeName();
+            boolean allowed = name.startsWith("xmlns") || "schemaLocation".equals(name);
+            for ( String allowedName : allowedNames ) {
+
+                allowed |= allowedName.equals(name);
+
+            }
+
+            if ( ! allowed ) {
+
+                throw new IllegalArgumentException("Attribute '" + name + "' of element '" + localName(element)
+                    + "' is not supported by the mapper generator.");
+
+            }
+
+        }
+
+    }
+
+    protected static IllegalArgumentException unsupported(Element element) {
+
+        return new IllegalArgumentException("Element '" + localName(element)
+            + "' is not supported by the mapper generator.");
+
+    }
+
+    protected static String localName(Element element) {
+
+        return element.getLocalName() != null ? element.getLocalName() : element.getNodeName();
+
+    }
+
+    protected static List<Element> childElements(Element parent) {
+
+        List<Element> elements = new ArrayList<Element>();
+        NodeList children = parent.getChildNodes();
+        for ( int i = 0; i < children.getLength(); i++ ) {
+
+            if ( children.item(i) instanceof Element ) {
+
+                elements.add((Element)children.item(i));
+
+            }
+
+        }
+
+        return elements;
+
+    }
+
+}
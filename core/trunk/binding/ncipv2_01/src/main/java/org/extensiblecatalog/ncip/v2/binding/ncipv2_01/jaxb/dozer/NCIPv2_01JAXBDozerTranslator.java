@@ -8,7 +8,7 @@
 
 package org.extensiblecatalog.ncip.v2.binding.ncipv2_01.jaxb.dozer;
 
-import org.dozer.DozerBeanMapper;
+import org.dozer.Mapper;
 import org.extensiblecatalog.ncip.v2.binding.jaxb.dozer.BaseJAXBDozerTranslator;
 import org.extensiblecatalog.ncip.v2.binding.ncipv2_01.jaxb.elements.NCIPMessage;
 import org.extensiblecatalog.ncip.v2.common.TranslatorConfiguration;
@@ -46,7 +46,7 @@ public class NCIPv2_01JAXBDozerTranslator extends BaseJAXBDozerTranslator<NCIPMe
     }
 
     @Override
-    protected NCIPMessage mapMessage(Object svcMsg, DozerBeanMapper mapper) {
+    protected NCIPMessage mapMessage(Object svcMsg, Mapper mapper) {
         return mapper.map(svcMsg, NCIPMessage.class);
     }
 }
@@ -0,0 +1,106 @@
+package org.extensiblecatalog.ncip.v2.binding.ncipv2_01.jaxb;
+
+import junit.framework.Assert;
+import org.extensiblecatalog.ncip.v2.binding.ncipv2_01.jaxb.dozer.NCIPv2_01GeneratedMapper;
+import org.extensiblecatalog.ncip.v2.binding.ncipv2_01.jaxb.dozer.NCIPv2_01JAXBDozerTranslator;
+import org.extensiblecatalog.ncip.v2.common.*;
+import org.extensiblecatalog.ncip.v2.service.*;
+import org.junit.Test;
+
+import java.io.*;
+
+/**
+ * Checks that the build-time generated mapper produces the same results as Dozer for each of the sample messages,
+ * in both directions.
+ */
+public class TestNCIPv2_01GeneratedMapper {
+
+    @Test
+    public void testSampleFiles() throws Exception {
+
+        TranslatorConfiguration config = TranslatorConfigurationFactory.buildConfiguration();
+        NCIPv2_01JAXBDozerTranslator dozerTranslator = new NCIPv2_01JAXBDozerTranslator(config);
+        NCIPv2_01JAXBDozerTranslator generatedTranslator = new NCIPv2_01JAXBDozerTranslator(config);
+        generatedTranslator.setGeneratedMapper(new NCIPv2_01GeneratedMapper(generatedTranslator.getMapper()));
+
+        ServiceValidator serviceValidator = ServiceValidatorFactory.buildServiceValidator();
+
+        File[] files = new File("src/test/data/sampleMessages").listFiles();
+        Assert.assertNotNull("No files were found in src/test/data/sampleMessages.", files);
+
+        int count = 0;
+        for (File file : files) {
+
+            if (!file.getName().endsWith(".xml")) {
+                continue;
+            }
+
+            byte[] bytes = readBytes(file);
+            ServiceContext serviceContext = serviceValidator.getInitialServiceContext();
+            if (file.getName().contains("Response")) {
+
+                NCIPResponseData dozerData = dozerTranslator.createResponseData(serviceContext,
+                    new ByteArrayInputStream(bytes));
+                NCIPResponseData generatedData = generatedTranslator.createResponseData(serviceContext,
+                    new ByteArrayInputStream(bytes));
+
+                Assert.assertEquals("JAXB to service mapping differs for " + file.getName() + ".",
+                    toString(dozerTranslator.createResponseMessageStream(serviceContext, dozerData)),
+                    toString(dozerTranslator.createResponseMessageStream(serviceContext, generatedData)));
+                Assert.assertEquals("Service to JAXB mapping differs for " + file.getName() + ".",
+                    toString(dozerTranslator.createResponseMessageStream(serviceContext, dozerData)),
+                    toString(generatedTranslator.createResponseMessageStream(serviceContext, dozerData)));
+
+            } else {
+
+                NCIPInitiationData dozerData = dozerTranslator.createInitiationData(serviceContext,
+                    new ByteArrayInputStream(bytes));
+                NCIPInitiationData generatedData = generatedTranslator.createInitiationData(serviceContext,
+                    new ByteArrayInputStream(bytes));
+
+                Assert.assertEquals("JAXB to service mapping differs for " + file.getName() + ".",
+                    toString(dozerTranslator.createInitiationMessageStream(serviceContext, dozerData)),
+                    toString(dozerTranslator.createInitiationMessageStream(serviceContext, generatedData)));
+                Assert.assertEquals("Service to JAXB mapping differs for " + file.getName() + ".",
+                    toString(dozerTranslator.createInitiationMessageStream(serviceContext, dozerData)),
+                    toString(generatedTranslator.createInitiationMessageStream(serviceContext, dozerData)));
+
+            }
+            count++;
+
+        }
+
+        Assert.assertTrue("No sample messages were tested.", count > 0);
+
+    }
+
+    protected static byte[] readBytes(File file) throws IOException {
+
+        InputStream inputStream = new FileInputStream(file);
+        try {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int length;
+            while ((length = inputStream.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, length);
+            }
+            return outputStream.toByteArray();
+        } finally {
+            inputStream.close();
+        }
+
+    }
+
+    protected static String toString(InputStream inputStream) throws IOException {
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int length;
+        while ((length = inputStream.read(buffer)) != -1) {
+            outputStream.write(buffer, 0, length);
+        }
+        return outputStream.toString("UTF-8");
+
+    }
+
+}
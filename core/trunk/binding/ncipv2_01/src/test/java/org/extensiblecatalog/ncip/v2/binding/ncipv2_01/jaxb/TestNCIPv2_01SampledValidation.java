@@ -0,0 +1,68 @@
+package org.extensiblecatalog.ncip.v2.binding.ncipv2_01.jaxb;
+
+import junit.framework.Assert;
+import org.extensiblecatalog.ncip.v2.binding.jaxb.MarshallerFactory;
+import org.extensiblecatalog.ncip.v2.binding.ncipv2_01.jaxb.dozer.NCIPv2_01JAXBDozerTranslator;
+import org.extensiblecatalog.ncip.v2.common.*;
+import org.extensiblecatalog.ncip.v2.service.*;
+import org.junit.Test;
+
+import java.io.*;
+import java.util.Collections;
+
+/**
+ * Checks that incoming messages selected for sampled schema validation are validated as they were received, not
+ * after lenient unmarshalling has dropped what the schema doesn't allow.
+ */
+public class TestNCIPv2_01SampledValidation {
+
+    @Test
+    public void testSampledMessageIsValidatedBeforeUnmarshalling() throws Exception {
+
+        TranslatorConfiguration config = TranslatorConfigurationFactory.buildConfiguration();
+        NCIPv2_01JAXBDozerTranslator translator = new NCIPv2_01JAXBDozerTranslator(config);
+        MarshallerFactory marshallerFactory = translator.getMarshallerFactory();
+        marshallerFactory.setSchemaValidationSampleRate(0.0);
+        marshallerFactory.setSchemaValidationSampleRates(Collections.singletonMap("LookupItem", 1.0));
+        StatisticsBean statisticsBean = translator.getStatisticsBean();
+        statisticsBean.clear();
+
+        ServiceContext serviceContext = ServiceValidatorFactory.buildServiceValidator().getInitialServiceContext();
+        String lookupItem = TestNCIPv2_01GeneratedMapper.toString(
+            new FileInputStream("src/test/data/sampleMessages/LookupItemSample1.xml"));
+
+        translator.createInitiationData(serviceContext, new ByteArrayInputStream(lookupItem.getBytes("UTF-8")));
+        Assert.assertEquals(1, marshallerFactory.getSampleValidationCount());
+        Assert.assertEquals(0, marshallerFactory.getSampleValidationFailures());
+
+        // An element the schema doesn't allow, which an Unmarshaller that doesn't validate would drop
+        String invalidLookupItem = lookupItem.replace("<ns1:ItemId>", "<ns1:Unknown>x</ns1:Unknown><ns1:ItemId>");
+        try {
+
+            translator.createInitiationData(serviceContext,
+                new ByteArrayInputStream(invalidLookupItem.getBytes("UTF-8")));
+            Assert.fail("Expected a ServiceException for the invalid LookupItem message.");
+
+        } catch (ServiceException e) {
+
+            Assert.assertEquals(ServiceError.INVALID_MESSAGE_FORMAT, e.getError());
+
+        }
+        Assert.assertEquals(2, marshallerFactory.getSampleValidationCount());
+        Assert.assertEquals(1, marshallerFactory.getSampleValidationFailures());
+
+        // Other services are not in the sample
+        String checkOutItem = TestNCIPv2_01GeneratedMapper.toString(
+            new FileInputStream("src/test/data/sampleMessages/CheckOutItemSample1.xml"));
+        translator.createInitiationData(serviceContext, new ByteArrayInputStream(checkOutItem.getBytes("UTF-8")));
+        Assert.assertEquals(2, marshallerFactory.getSampleValidationCount());
+        Assert.assertEquals(1, marshallerFactory.getSampleValidationSkips());
+
+        // The validations, and the compilation of the schema for the first of them, are in the statistics
+        Assert.assertEquals(2, statisticsBean.getStatsRecords().get("9 Validate Sampled Message LookupItem").getCount());
+        Assert.assertEquals(1, statisticsBean.getStatsRecords().get("8 Compile Schema").getCount());
+        statisticsBean.clear();
+
+    }
+
+}
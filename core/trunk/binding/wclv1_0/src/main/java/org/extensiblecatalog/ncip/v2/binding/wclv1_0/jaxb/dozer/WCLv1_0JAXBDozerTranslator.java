@@ -8,7 +8,7 @@
 
 package org.extensiblecatalog.ncip.v2.binding.wclv1_0.jaxb.dozer;
 
-import org.dozer.DozerBeanMapper;
+import org.dozer.Mapper;
 import org.extensiblecatalog.ncip.v2.binding.wclv1_0.jaxb.elements.NCIPMessage;
 import org.extensiblecatalog.ncip.v2.binding.jaxb.dozer.BaseJAXBDozerTranslator;
 import org.extensiblecatalog.ncip.v2.common.TranslatorConfiguration;
@@ -46,7 +46,7 @@ public class WCLv1_0JAXBDozerTranslator extends BaseJAXBDozerTranslator<NCIPMess
     }
 
     @Override
-    protected NCIPMessage mapMessage(Object svcMsg, DozerBeanMapper mapper) {
+    protected NCIPMessage mapMessage(Object svcMsg, Mapper mapper) {
         return mapper.map(svcMsg, NCIPMessage.class);
     }
 }
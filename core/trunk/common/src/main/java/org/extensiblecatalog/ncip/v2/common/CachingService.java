@@ -0,0 +1,175 @@
+/**
+ * Copyright (c) 2013 eXtensible Catalog Organization
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the MIT/X11 license. The text of the license can be
+ * found at http://www.opensource.org/licenses/mit-license.php.
+ */
+
+package org.extensiblecatalog.ncip.v2.common;
+
+import org.apache.log4j.Logger;
+import org.extensiblecatalog.ncip.v2.service.*;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Wraps an {@link NCIPService} to use a {@link ResponseCache}. A caching service (one with a time-to-live greater
+ * than zero) answers from the cache when it holds a response for an identical initiation message, and otherwise
+ * calls the wrapped service and caches its response unless that reports a problem or carries a NextItemToken.
+ * Initiation messages that carry a NextItemToken are always passed to the wrapped service. An invalidating service (one
+ * with a time-to-live of zero), e.g. CheckOutItem, calls the wrapped service and then removes the cached responses
+ * that mention the items or bibliographic records in its initiation or response data.
+ */
+public class CachingService implements NCIPService<NCIPInitiationData, NCIPResponseData> {
+
+    private static final Logger LOG = Logger.getLogger(CachingService.class);
+
+    protected final NCIPService<NCIPInitiationData, NCIPResponseData> service;
+
+    protected final ResponseCache responseCache;
+
+    protected final long timeToLive;
+
+    /**
+     * @param service       the service to wrap
+     * @param responseCache the cache, which is normally shared by all the services of a {@link MessageHandler}
+     * @param timeToLive    the time in milliseconds for which responses are cached; 0 for a service whose responses
+     *                      are not cached but which invalidates cached responses
+     */
+    public CachingService(NCIPService<NCIPInitiationData, NCIPResponseData> service, ResponseCache responseCache,
+                          long timeToLive) {
+
+        this.service = service;
+        this.responseCache = responseCache;
+        this.timeToLive = timeToLive;
+
+    }
+
+    public NCIPService<NCIPInitiationData, NCIPResponseData> getService() {
+
+        return service;
+
+    }
+
+    public long getTimeToLive() {
+
+        return timeToLive;
+
+    }
+
+    @Override
+    public NCIPResponseData performService(NCIPInitiationData initiationData, ServiceContext serviceContext,
+                                           RemoteServiceManager serviceManager)
+        throws ServiceException, ValidationException {
+
+        return timeToLive > 0
+            ? performCachingService(initiationData, serviceContext, serviceManager)
+            : performInvalidatingService(initiationData, serviceContext, serviceManager);
+
+    }
+
+    protected NCIPResponseData performCachingService(NCIPInitiationData initiationData, ServiceContext serviceContext,
+                                                     RemoteServiceManager serviceManager)
+        throws ServiceException, ValidationException {
+
+        if ( ResponseCache.carriesNextItemToken(initiationData) ) {
+
+            // The token may only be valid once, so the next page must always come from the connector
+            return service.performService(initiationData, serviceContext, serviceManager);
+
+        }
+
+        String key = null;
+        try {
+
+            key = ResponseCache.createKey(initiationData);
+
+        } catch (ToolkitException e) {
+
+            LOG.warn("Exception creating the response cache key; the response will not be cached.", e);
+
+        }
+
+        NCIPResponseData responseData = key != null ? responseCache.get(key) : null;
+        if ( responseData == null ) {
+
+            long generation = responseCache.getGeneration();
+            responseData = service.performService(initiationData, serviceContext, serviceManager);
+            if ( key != null && responseData != null && ! hasProblems(responseData)
+                && ! ResponseCache.carriesNextItemToken(responseData) ) {
+
+                try {
+
+                    Set<String> ids = ResponseCache.collectIds(initiationData, responseData);
+                    responseCache.put(key, responseData, ids, timeToLive, generation);
+
+                } catch (ToolkitException e) {
+
+                    LOG.warn("Exception collecting the identifiers in the response; it will not be cached.", e);
+
+                }
+
+            }
+
+        } else {
+
+            LOG.debug("Returning cached response for " + ServiceHelper.getServiceName(initiationData) + ".");
+
+        }
+
+        return responseData;
+
+    }
+
+    protected NCIPResponseData performInvalidatingService(NCIPInitiationData initiationData,
+                                                          ServiceContext serviceContext,
+                                                          RemoteServiceManager serviceManager)
+        throws ServiceException, ValidationException {
+
+        NCIPResponseData responseData = null;
+        try {
+
+            responseData = service.performService(initiationData, serviceContext, serviceManager);
+
+        } finally {
+
+            // Invalidate even if the service failed, as the ILS may have been changed before the failure
+            Set<String> ids;
+            try {
+
+                ids = ResponseCache.collectIds(initiationData, responseData);
+
+            } catch (ToolkitException e) {
+
+                LOG.warn("Exception collecting the identifiers in the " + ServiceHelper.getServiceName(initiationData)
+                    + " message; invalidating all cached responses.", e);
+                ids = Collections.emptySet();
+
+            }
+
+            responseCache.invalidate(ids);
+
+        }
+
+        return responseData;
+
+    }
+
+    protected static boolean hasProblems(NCIPResponseData responseData) {
+
+        List<Problem> problems = responseData.getProblems();
+        return responseData instanceof ProblemResponseData || ( problems != null && ! problems.isEmpty() );
+
+    }
+
+    @Override
+    public String toString() {
+
+        return getClass().getSimpleName() + "(" + service + ")";
+
+    }
+
+}
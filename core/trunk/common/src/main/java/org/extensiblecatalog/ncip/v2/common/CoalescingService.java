@@ -0,0 +1,284 @@
+/**
+ * Copyright (c) 2013 eXtensible Catalog Organization
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the MIT/X11 license. The text of the license can be
+ * found at http://www.opensource.org/licenses/mit-license.php.
+ */
+
+package org.extensiblecatalog.ncip.v2.common;
+
+import org.apache.log4j.Logger;
+import org.extensiblecatalog.ncip.v2.service.*;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Wraps an {@link NCIPService} so that concurrent calls with identical initiation messages share one call to the
+ * wrapped service ("single flight"). The first caller calls the service; callers that arrive while it is in flight
+ * wait for its result and each get their own deep copy of the response data (see {@link NCIPDataCopier}), or the
+ * same exception. If any caller shared the call, the first caller gets a copy too, so the response that is copied
+ * is never returned to a caller that might modify it. Calls are matched on the key from {@link ResponseCache#createKey(NCIPInitiationData)}; nothing is
+ * kept once the call completes, so, unlike a {@link CachingService}, this never returns a response that was created
+ * before the request arrived.
+ * <p/>
+ * Connectors may honour each NextItemToken only once, so LookupItemSet requests that page through results (those
+ * with a MaximumItemsCount or NextItemToken) are never coalesced, and a caller that joined a call whose response
+ * carries a NextItemToken makes a call of its own rather than get a copy of that token.
+ */
+public class CoalescingService implements NCIPService<NCIPInitiationData, NCIPResponseData> {
+
+    private static final Logger LOG = Logger.getLogger(CoalescingService.class);
+
+    protected final NCIPService<NCIPInitiationData, NCIPResponseData> service;
+
+    /**
+     * A call to the wrapped service that other callers can join until it is closed.
+     */
+    protected static class Flight extends FutureTask<NCIPResponseData> {
+
+        protected int followers = 0;
+        protected boolean closed = false;
+
+        protected Flight(Callable<NCIPResponseData> callable) {
+
+            super(callable);
+
+        }
+
+        /**
+         * @return true if the caller may share this call's result, or false if it completed and was closed
+         */
+        protected synchronized boolean join() {
+
+            if ( ! closed ) {
+
+                followers++;
+
+            }
+
+            return ! closed;
+
+        }
+
+        /**
+         * @return the number of callers that joined this call
+         */
+        protected synchronized int close() {
+
+            closed = true;
+            return followers;
+
+        }
+
+    }
+
+    protected final ConcurrentMap<String /* Key */, Flight> callsInFlight = new ConcurrentHashMap<String, Flight>();
+
+    protected final AtomicLong executedCalls = new AtomicLong();
+    protected final AtomicLong coalescedCalls = new AtomicLong();
+
+    /**
+     * @param service the service to wrap
+     */
+    public CoalescingService(NCIPService<NCIPInitiationData, NCIPResponseData> service) {
+
+        this.service = service;
+
+    }
+
+    public NCIPService<NCIPInitiationData, NCIPResponseData> getService() {
+
+        return service;
+
+    }
+
+    /**
+     * @return the number of calls that were passed to the wrapped service
+     */
+    public long getExecutedCalls() {
+
+        return executedCalls.get();
+
+    }
+
+    /**
+     * @return the number of calls that shared the result of a call already in flight
+     */
+    public long getCoalescedCalls() {
+
+        return coalescedCalls.get();
+
+    }
+
+    /**
+     * @return the number of calls to the wrapped service currently in flight
+     */
+    public int getCallsInFlight() {
+
+        return callsInFlight.size();
+
+    }
+
+    @Override
+    public NCIPResponseData performService(final NCIPInitiationData initiationData,
+                                           final ServiceContext serviceContext,
+                                           final RemoteServiceManager serviceManager)
+        throws ServiceException, ValidationException {
+
+        if ( isPagedRequest(initiationData) ) {
+
+            executedCalls.incrementAndGet();
+            return service.performService(initiationData, serviceContext, serviceManager);
+
+        }
+
+        String key;
+        try {
+
+            key = ResponseCache.createKey(initiationData);
+
+        } catch (ToolkitException e) {
+
+            LOG.warn("Exception creating the key for the initiation message; it will not be coalesced.", e);
+            executedCalls.incrementAndGet();
+            return service.performService(initiationData, serviceContext, serviceManager);
+
+        }
+
+        Flight newCall = new Flight(new Callable<NCIPResponseData>() {
+            public NCIPResponseData call() throws ServiceException, ValidationException {
+                return service.performService(initiationData, serviceContext, serviceManager);
+            }
+        });
+
+        while ( true ) {
+
+            Flight callInFlight = callsInFlight.putIfAbsent(key, newCall);
+            if ( callInFlight == null ) {
+
+                executedCalls.incrementAndGet();
+                int followers;
+                try {
+
+                    newCall.run();
+
+                } finally {
+
+                    callsInFlight.remove(key, newCall);
+                    followers = newCall.close();
+
+                }
+
+                NCIPResponseData responseData = getResult(newCall);
+                return followers > 0 ? copy(responseData) : responseData;
+
+            } else if ( callInFlight.join() ) {
+
+                coalescedCalls.incrementAndGet();
+                LOG.debug("Sharing the in-flight call for " + ServiceHelper.getServiceName(initiationData) + ".");
+                NCIPResponseData responseData = getResult(callInFlight);
+                if ( ResponseCache.carriesNextItemToken(responseData) ) {
+
+                    // The token belongs to the caller that made the call
+                    coalescedCalls.decrementAndGet();
+                    executedCalls.incrementAndGet();
+                    return service.performService(initiationData, serviceContext, serviceManager);
+
+                }
+
+                return copy(responseData);
+
+            }
+
+            // The call completed before this could join it, so make a call of its own
+
+        }
+
+    }
+
+    /**
+     * @return true if the initiation data is a LookupItemSet request with a MaximumItemsCount or NextItemToken
+     */
+    protected static boolean isPagedRequest(NCIPInitiationData initiationData) {
+
+        if ( initiationData instanceof LookupItemSetInitiationData ) {
+
+            LookupItemSetInitiationData lookupItemSet = (LookupItemSetInitiationData)initiationData;
+            return lookupItemSet.getMaximumItemsCount() != null || lookupItemSet.getNextItemToken() != null;
+
+        }
+
+        return false;
+
+    }
+
+    protected static NCIPResponseData copy(NCIPResponseData responseData) throws ServiceException {
+
+        try {
+
+            return NCIPDataCopier.deepCopy(responseData);
+
+        } catch (ToolkitException e) {
+
+            throw new ServiceException(ServiceError.RUNTIME_ERROR, "Exception copying the shared response.", e);
+
+        }
+
+    }
+
+    protected static NCIPResponseData getResult(FutureTask<NCIPResponseData> call)
+        throws ServiceException, ValidationException {
+
+        try {
+
+            return call.get();
+
+        } catch (InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+            throw new ServiceException(ServiceError.RUNTIME_ERROR,
+                "Interrupted waiting for the result of an identical request.", e);
+
+        } catch (ExecutionException e) {
+
+            Throwable cause = e.getCause();
+            if ( cause instanceof ServiceException ) {
+
+                throw (ServiceException)cause;
+
+            } else if ( cause instanceof ValidationException ) {
+
+                throw (ValidationException)cause;
+
+            } else if ( cause instanceof RuntimeException ) {
+
+                throw (RuntimeException)cause;
+
+            } else if ( cause instanceof Error ) {
+
+                throw (Error)cause;
+
+            } else {
+
+                throw new ServiceException(ServiceError.RUNTIME_ERROR, cause);
+
+            }
+
+        }
+
+    }
+
+    @Override
+    public String toString() {
+
+        return getClass().getSimpleName() + "(" + service + ")";
+
+    }
+
+}
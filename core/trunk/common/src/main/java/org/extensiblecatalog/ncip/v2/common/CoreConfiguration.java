@@ -62,6 +62,30 @@ public interface CoreConfiguration extends ToolkitConfiguration {
     final String CORE_INCLUDE_STACK_TRACES_IN_PROBLEM_RESPONSES_KEY = "CoreConfiguration.IncludeStackTracesInProblemResponses";
     final String CORE_INCLUDE_STACK_TRACES_IN_PROBLEM_RESPONSES_DEFAULT = "False";
 
+    final String CORE_SET_CONTENT_LENGTH_IN_RESPONSES_KEY = "CoreConfiguration.SetContentLengthInResponses";
+    final String CORE_SET_CONTENT_LENGTH_IN_RESPONSES_DEFAULT = "True";
+
+    /**
+     * The number of requests the responder will process at once; requests beyond this wait (see
+     * {@link #CORE_MAX_QUEUED_REQUESTS_KEY}) or are answered with a Temporary Processing Failure Problem.
+     * The default, 0, puts no limit on the number of requests.
+     */
+    final String CORE_MAX_CONCURRENT_REQUESTS_KEY = "CoreConfiguration.MaxConcurrentRequests";
+    final String CORE_MAX_CONCURRENT_REQUESTS_DEFAULT = "0";
+
+    /**
+     * The number of requests that may wait for one of the {@link #CORE_MAX_CONCURRENT_REQUESTS_KEY} slots;
+     * requests arriving when this many are already waiting are rejected immediately.
+     */
+    final String CORE_MAX_QUEUED_REQUESTS_KEY = "CoreConfiguration.MaxQueuedRequests";
+    final String CORE_MAX_QUEUED_REQUESTS_DEFAULT = "50";
+
+    /**
+     * The longest time, in milliseconds, a request waits for a slot before it is rejected.
+     */
+    final String CORE_MAX_QUEUE_WAIT_MILLIS_KEY = "CoreConfiguration.MaxQueueWaitMillis";
+    final String CORE_MAX_QUEUE_WAIT_MILLIS_DEFAULT = "5000";
+
     final String CORE_SCHEME_VALUE_PAIR_CLASSES_LIST_KEY = "CoreConfiguration.SVPClasses";
     final String CORE_SCHEME_VALUE_PAIR_CLASSES_LIST_DEFAULT = Version1AcceptItemProcessingError.class.getName() + ","
             + Version1AgencyAddressRoleType.class.getName() + ","
@@ -184,5 +208,36 @@ public interface CoreConfiguration extends ToolkitConfiguration {
 
     void setIncludeStackTracesInProblemResponses(boolean setting);
 
+    /**
+     * Whether or not the responder sets the Content-Length header of responses. Doing so requires that the response
+     * message be buffered in full before any of it is sent; if this is false the message is written directly to
+     * the network as it is marshalled (using chunked transfer-encoding).
+     */
+    boolean getSetContentLengthInResponses();
+
+    void setSetContentLengthInResponses(boolean setting);
+
+    /**
+     * The number of requests the responder processes at once; 0 means there is no limit.
+     */
+    int getMaxConcurrentRequests();
+
+    void setMaxConcurrentRequests(int maxConcurrentRequests);
+
+    /**
+     * The number of requests that may wait for a free slot when {@link #getMaxConcurrentRequests()} are
+     * already being processed.
+     */
+    int getMaxQueuedRequests();
+
+    void setMaxQueuedRequests(int maxQueuedRequests);
+
+    /**
+     * The longest time, in milliseconds, that a request waits for a free slot before it is rejected.
+     */
+    long getMaxQueueWaitMillis();
+
+    void setMaxQueueWaitMillis(long maxQueueWaitMillis);
+
 
 }
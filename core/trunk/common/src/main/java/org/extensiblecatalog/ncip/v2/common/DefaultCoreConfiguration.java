@@ -31,6 +31,19 @@ public class DefaultCoreConfiguration extends BaseToolkitConfiguration implement
     protected boolean includeStackTracesInProblemResponses
         = Boolean.parseBoolean(CoreConfiguration.CORE_INCLUDE_STACK_TRACES_IN_PROBLEM_RESPONSES_DEFAULT);
 
+    /** Whether or not to set the Content-Length header in response messages. */
+    protected boolean setContentLengthInResponses
+        = Boolean.parseBoolean(CoreConfiguration.CORE_SET_CONTENT_LENGTH_IN_RESPONSES_DEFAULT);
+
+    /** The number of requests processed at once; 0 means no limit. */
+    protected int maxConcurrentRequests = Integer.parseInt(CoreConfiguration.CORE_MAX_CONCURRENT_REQUESTS_DEFAULT);
+
+    /** The number of requests that may wait for a free slot. */
+    protected int maxQueuedRequests = Integer.parseInt(CoreConfiguration.CORE_MAX_QUEUED_REQUESTS_DEFAULT);
+
+    /** The longest time, in milliseconds, a request waits for a free slot. */
+    protected long maxQueueWaitMillis = Long.parseLong(CoreConfiguration.CORE_MAX_QUEUE_WAIT_MILLIS_DEFAULT);
+
     /**
      * Create an instance of the configuration without initializing the properties; this is intended
      * for Spring or other dependency-injection usage.
@@ -72,6 +85,28 @@ public class DefaultCoreConfiguration extends BaseToolkitConfiguration implement
 
             }
 
+            String contentLengthPropertyString = this.properties.getProperty(
+                CoreConfiguration.CORE_SET_CONTENT_LENGTH_IN_RESPONSES_KEY,
+                CoreConfiguration.CORE_SET_CONTENT_LENGTH_IN_RESPONSES_DEFAULT);
+
+            if ( contentLengthPropertyString != null ) {
+
+                this.setContentLengthInResponses = Boolean.parseBoolean(contentLengthPropertyString);
+
+            }
+
+            this.maxConcurrentRequests = (int)parseNonNegative(CoreConfiguration.CORE_MAX_CONCURRENT_REQUESTS_KEY,
+                this.properties.getProperty(CoreConfiguration.CORE_MAX_CONCURRENT_REQUESTS_KEY,
+                    CoreConfiguration.CORE_MAX_CONCURRENT_REQUESTS_DEFAULT), Integer.MAX_VALUE);
+
+            this.maxQueuedRequests = (int)parseNonNegative(CoreConfiguration.CORE_MAX_QUEUED_REQUESTS_KEY,
+                this.properties.getProperty(CoreConfiguration.CORE_MAX_QUEUED_REQUESTS_KEY,
+                    CoreConfiguration.CORE_MAX_QUEUED_REQUESTS_DEFAULT), Integer.MAX_VALUE);
+
+            this.maxQueueWaitMillis = parseNonNegative(CoreConfiguration.CORE_MAX_QUEUE_WAIT_MILLIS_KEY,
+                this.properties.getProperty(CoreConfiguration.CORE_MAX_QUEUE_WAIT_MILLIS_KEY,
+                    CoreConfiguration.CORE_MAX_QUEUE_WAIT_MILLIS_DEFAULT), Long.MAX_VALUE);
+
             String svpClassNamesCSV = this.properties.getProperty(
                 CoreConfiguration.CORE_SCHEME_VALUE_PAIR_CLASSES_LIST_KEY,
                 CoreConfiguration.CORE_SCHEME_VALUE_PAIR_CLASSES_LIST_DEFAULT);
@@ -253,4 +288,77 @@ public class DefaultCoreConfiguration extends BaseToolkitConfiguration implement
 
     }
 
+    public boolean getSetContentLengthInResponses() {
+
+        return setContentLengthInResponses;
+
+    }
+
+    public void setSetContentLengthInResponses(boolean setting) {
+
+        this.setContentLengthInResponses = setting;
+
+    }
+
+    public int getMaxConcurrentRequests() {
+
+        return maxConcurrentRequests;
+
+    }
+
+    public void setMaxConcurrentRequests(int maxConcurrentRequests) {
+
+        this.maxConcurrentRequests = maxConcurrentRequests;
+
+    }
+
+    public int getMaxQueuedRequests() {
+
+        return maxQueuedRequests;
+
+    }
+
+    public void setMaxQueuedRequests(int maxQueuedRequests) {
+
+        this.maxQueuedRequests = maxQueuedRequests;
+
+    }
+
+    public long getMaxQueueWaitMillis() {
+
+        return maxQueueWaitMillis;
+
+    }
+
+    public void setMaxQueueWaitMillis(long maxQueueWaitMillis) {
+
+        this.maxQueueWaitMillis = maxQueueWaitMillis;
+
+    }
+
+    protected static long parseNonNegative(String key, String valueString, long maxValue) throws ToolkitException {
+
+        long value;
+        try {
+
+            value = Long.parseLong(valueString.trim());
+
+        } catch (NumberFormatException e) {
+
+            throw new ToolkitException(key + " has invalid format: '" + valueString
+                + "'; it must be a whole number from 0 to " + maxValue + ".", e);
+
+        }
+
+        if ( value < 0 || value > maxValue ) {
+
+            throw new ToolkitException(key + " has invalid value: '" + valueString
+                + "'; it must be a whole number from 0 to " + maxValue + ".");
+
+        }
+
+        return value;
+
+    }
+
 }
@@ -23,6 +23,18 @@ public class DefaultNCIP2TranslatorConfiguration extends DefaultTranslatorConfig
 
     protected Map<String, String> canonicalSchemaURLMap;
 
+    protected int marshallerPoolSize = Integer.parseInt(NCIP2TranslatorConfiguration.MARSHALLER_POOL_SIZE_DEFAULT);
+
+    protected List<String> schemaCatalogFiles;
+
+    protected boolean resolveSchemasOffline = Boolean.parseBoolean(
+        NCIP2TranslatorConfiguration.RESOLVE_SCHEMAS_OFFLINE_DEFAULT);
+
+    protected double schemaValidationSampleRate = Double.parseDouble(
+        NCIP2TranslatorConfiguration.SCHEMA_VALIDATION_SAMPLE_RATE_DEFAULT);
+
+    protected Map<String, Double> schemaValidationSampleRates;
+
     public DefaultNCIP2TranslatorConfiguration() throws ToolkitException {
 
         this(null, null);
@@ -107,8 +119,117 @@ public class DefaultNCIP2TranslatorConfiguration extends DefaultTranslatorConfig
                 }
 
             }
+
+            String marshallerPoolSizeString = this.properties.getProperty(
+                NCIP2TranslatorConfiguration.MARSHALLER_POOL_SIZE_KEY,
+                NCIP2TranslatorConfiguration.MARSHALLER_POOL_SIZE_DEFAULT);
+
+            if ( marshallerPoolSizeString != null ) {
+
+                try {
+
+                    marshallerPoolSize = Integer.parseInt(marshallerPoolSizeString.trim());
+
+                } catch (NumberFormatException e) {
+
+                    throw new ToolkitException(NCIP2TranslatorConfiguration.MARSHALLER_POOL_SIZE_KEY
+                        + " has invalid format: '" + marshallerPoolSizeString + "'; it must be an integer. E.g. '"
+                        + NCIP2TranslatorConfiguration.MARSHALLER_POOL_SIZE_DEFAULT + "'.", e);
+
+                }
+
+            }
+
+            String schemaCatalogFilesString = this.properties.getProperty(
+                NCIP2TranslatorConfiguration.SCHEMA_CATALOG_FILES_KEY,
+                NCIP2TranslatorConfiguration.SCHEMA_CATALOG_FILES_DEFAULT);
+
+            if ( schemaCatalogFilesString != null && ! schemaCatalogFilesString.trim().isEmpty() ) {
+
+                schemaCatalogFiles = new ArrayList<String>();
+                for ( String schemaCatalogFile : schemaCatalogFilesString.split(",") ) {
+
+                    schemaCatalogFiles.add(schemaCatalogFile.trim());
+
+                }
+
+            }
+
+            String resolveSchemasOfflineString = this.properties.getProperty(
+                NCIP2TranslatorConfiguration.RESOLVE_SCHEMAS_OFFLINE_KEY,
+                NCIP2TranslatorConfiguration.RESOLVE_SCHEMAS_OFFLINE_DEFAULT);
+
+            if ( resolveSchemasOfflineString != null ) {
+
+                resolveSchemasOffline = Boolean.parseBoolean(resolveSchemasOfflineString.trim());
+
+            }
+
+            String sampleRateString = this.properties.getProperty(
+                NCIP2TranslatorConfiguration.SCHEMA_VALIDATION_SAMPLE_RATE_KEY,
+                NCIP2TranslatorConfiguration.SCHEMA_VALIDATION_SAMPLE_RATE_DEFAULT);
+
+            if ( sampleRateString != null ) {
+
+                schemaValidationSampleRate = parseSampleRate(NCIP2TranslatorConfiguration.SCHEMA_VALIDATION_SAMPLE_RATE_KEY,
+                    sampleRateString);
+
+            }
+
+            String sampleRatesString = this.properties.getProperty(
+                NCIP2TranslatorConfiguration.SCHEMA_VALIDATION_SAMPLE_RATES_KEY,
+                NCIP2TranslatorConfiguration.SCHEMA_VALIDATION_SAMPLE_RATES_DEFAULT);
+
+            if ( sampleRatesString != null && ! sampleRatesString.trim().isEmpty() ) {
+
+                schemaValidationSampleRates = new HashMap<String, Double>();
+                for ( String serviceAndRateString : sampleRatesString.split(",") ) {
+
+                    String[] serviceAndRate = serviceAndRateString.split("=");
+                    if ( serviceAndRate.length == 2 ) {
+
+                        schemaValidationSampleRates.put(serviceAndRate[0].trim(), parseSampleRate(
+                            NCIP2TranslatorConfiguration.SCHEMA_VALIDATION_SAMPLE_RATES_KEY, serviceAndRate[1]));
+
+                    } else {
+
+                        throw new ToolkitException(NCIP2TranslatorConfiguration.SCHEMA_VALIDATION_SAMPLE_RATES_KEY
+                            + " has invalid format: '" + sampleRatesString + "';"
+                            + " format should be 'serviceName1=rate1,serviceName2=rate2'. E.g. 'LookupItemSet=0.05'.");
+
+                    }
+
+                }
+
+            }
+
+        }
+
+    }
+
+    protected static double parseSampleRate(String key, String rateString) throws ToolkitException {
+
+        double rate;
+        try {
+
+            rate = Double.parseDouble(rateString.trim());
+
+        } catch (NumberFormatException e) {
+
+            throw new ToolkitException(key + " has invalid format: '" + rateString
+                + "'; it must be a number from 0.0 to 1.0. E.g. '0.1'.", e);
+
         }
 
+        if ( rate < 0.0 || rate > 1.0 ) {
+
+            throw new ToolkitException(key + " has invalid value: '" + rateString
+                + "'; it must be a number from 0.0 to 1.0. E.g. '0.1'.");
+
+        }
+
+        return rate;
+
     }
 
     @Override
@@ -137,4 +258,74 @@ public class DefaultNCIP2TranslatorConfiguration extends DefaultTranslatorConfig
         this.canonicalSchemaURLMap = aliasToCanonicalSchemaURLMap;
     }
 
+    @Override
+    public int getMarshallerPoolSize() {
+
+        return marshallerPoolSize;
+
+    }
+
+    @Override
+    public void setMarshallerPoolSize(int marshallerPoolSize) {
+
+        this.marshallerPoolSize = marshallerPoolSize;
+
+    }
+
+    @Override
+    public List<String> getSchemaCatalogFiles() {
+
+        return schemaCatalogFiles;
+
+    }
+
+    @Override
+    public void setSchemaCatalogFiles(List<String> schemaCatalogFiles) {
+
+        this.schemaCatalogFiles = schemaCatalogFiles;
+
+    }
+
+    @Override
+    public boolean getResolveSchemasOffline() {
+
+        return resolveSchemasOffline;
+
+    }
+
+    @Override
+    public void setResolveSchemasOffline(boolean resolveSchemasOffline) {
+
+        this.resolveSchemasOffline = resolveSchemasOffline;
+
+    }
+
+    @Override
+    public double getSchemaValidationSampleRate() {
+
+        return schemaValidationSampleRate;
+
+    }
+
+    @Override
+    public void setSchemaValidationSampleRate(double schemaValidationSampleRate) {
+
+        this.schemaValidationSampleRate = schemaValidationSampleRate;
+
+    }
+
+    @Override
+    public Map<String, Double> getSchemaValidationSampleRates() {
+
+        return schemaValidationSampleRates;
+
+    }
+
+    @Override
+    public void setSchemaValidationSampleRates(Map<String, Double> schemaValidationSampleRates) {
+
+        this.schemaValidationSampleRates = schemaValidationSampleRates;
+
+    }
+
 }
@@ -0,0 +1,209 @@
+/**
+ * Copyright (c) 2013 eXtensible Catalog Organization
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the MIT/X11 license. The text of the license can be
+ * found at http://www.opensource.org/licenses/mit-license.php.
+ */
+
+package org.extensiblecatalog.ncip.v2.common;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of non-negative intervals (e.g. milliseconds) in the style of an HDR histogram: intervals
+ * below 64 are counted exactly, larger intervals are counted in 32 buckets per power of two, so any reported
+ * percentile is within about 3% of the true value. The count and total are striped across threads so that
+ * concurrent callers recording the same statistic don't contend on a single counter.
+ */
+public class LatencyHistogram {
+
+    protected static final int SUB_BUCKET_BITS = 5;
+    protected static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    /** Intervals below this are each counted in their own bucket. */
+    protected static final int LINEAR_LIMIT = SUB_BUCKET_COUNT * 2;
+    protected static final int LINEAR_LIMIT_EXPONENT = 6;
+    protected static final int MAX_EXPONENT = 36;
+    /** The last bucket is an overflow bucket for intervals of 2^MAX_EXPONENT or more. */
+    protected static final int BUCKET_COUNT
+        = LINEAR_LIMIT + ( MAX_EXPONENT - LINEAR_LIMIT_EXPONENT ) * SUB_BUCKET_COUNT + 1;
+
+    /** The number of stripes for the count and total; a power of two. */
+    protected static final int STRIPE_COUNT = stripeCountFor(Runtime.getRuntime().availableProcessors());
+    /** Stripes are spaced this many longs apart so that they fall in separate cache lines. */
+    protected static final int STRIPE_SPACING = 8;
+
+    protected final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    protected final AtomicLongArray stripedCounts = new AtomicLongArray(STRIPE_COUNT * STRIPE_SPACING);
+    protected final AtomicLongArray stripedTotals = new AtomicLongArray(STRIPE_COUNT * STRIPE_SPACING);
+    protected final AtomicLong max = new AtomicLong();
+
+    /**
+     * Record an interval; negative intervals are recorded as 0.
+     * @param interval the interval
+     */
+    public void record(long interval) {
+
+        long value = Math.max(interval, 0);
+
+        int stripeIndex = ( (int)Thread.currentThread().getId() & ( STRIPE_COUNT - 1 ) ) * STRIPE_SPACING;
+        stripedCounts.incrementAndGet(stripeIndex);
+        stripedTotals.addAndGet(stripeIndex, value);
+        buckets.incrementAndGet(bucketIndex(value));
+
+        long currentMax = max.get();
+        while ( value > currentMax && ! max.compareAndSet(currentMax, value) ) {
+
+            currentMax = max.get();
+
+        }
+
+    }
+
+    /**
+     * @return the number of intervals recorded
+     */
+    public long getCount() {
+
+        return sumStripes(stripedCounts);
+
+    }
+
+    /**
+     * @return the sum of all intervals recorded
+     */
+    public long getTotal() {
+
+        return sumStripes(stripedTotals);
+
+    }
+
+    /**
+     * @return the largest interval recorded
+     */
+    public long getMax() {
+
+        return max.get();
+
+    }
+
+    /**
+     * Return the value at or below which the given percentage of the recorded intervals fall. The value is the
+     * highest value counted in the same bucket, but is never more than {@link #getMax()}.
+     * @param percentile the percentile, from 0 to 100
+     * @return the value at that percentile, or 0 if nothing has been recorded
+     */
+    public long getPercentile(double percentile) {
+
+        long[] snapshot = new long[BUCKET_COUNT];
+        long count = 0;
+        for ( int i = 0; i < BUCKET_COUNT; i++ ) {
+
+            snapshot[i] = buckets.get(i);
+            count += snapshot[i];
+
+        }
+
+        long result = 0;
+        if ( count > 0 ) {
+
+            double boundedPercentile = Math.min(Math.max(percentile, 0.0), 100.0);
+            long target = Math.max((long)Math.ceil(boundedPercentile / 100.0 * count), 1);
+            long cumulativeCount = 0;
+            for ( int i = 0; i < BUCKET_COUNT; i++ ) {
+
+                cumulativeCount += snapshot[i];
+                if ( cumulativeCount >= target ) {
+
+                    result = Math.min(highestValueInBucket(i), getMax());
+                    break;
+
+                }
+
+            }
+
+        }
+
+        return result;
+
+    }
+
+    protected static int bucketIndex(long value) {
+
+        int index;
+        if ( value < LINEAR_LIMIT ) {
+
+            index = (int)value;
+
+        } else {
+
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            if ( exponent >= MAX_EXPONENT ) {
+
+                index = BUCKET_COUNT - 1;
+
+            } else {
+
+                int subBucket = (int)( value >>> ( exponent - SUB_BUCKET_BITS ) ) - SUB_BUCKET_COUNT;
+                index = LINEAR_LIMIT + ( exponent - LINEAR_LIMIT_EXPONENT ) * SUB_BUCKET_COUNT + subBucket;
+
+            }
+
+        }
+
+        return index;
+
+    }
+
+    protected static long highestValueInBucket(int index) {
+
+        long value;
+        if ( index < LINEAR_LIMIT ) {
+
+            value = index;
+
+        } else if ( index == BUCKET_COUNT - 1 ) {
+
+            value = Long.MAX_VALUE;
+
+        } else {
+
+            int exponent = ( index - LINEAR_LIMIT ) / SUB_BUCKET_COUNT + LINEAR_LIMIT_EXPONENT;
+            int subBucket = ( index - LINEAR_LIMIT ) % SUB_BUCKET_COUNT;
+            int shift = exponent - SUB_BUCKET_BITS;
+            value = ( ( (long)( SUB_BUCKET_COUNT + subBucket ) + 1 ) << shift ) - 1;
+
+        }
+
+        return value;
+
+    }
+
+    protected static long sumStripes(AtomicLongArray stripes) {
+
+        long sum = 0;
+        for ( int i = 0; i < stripes.length(); i += STRIPE_SPACING ) {
+
+            sum += stripes.get(i);
+
+        }
+
+        return sum;
+
+    }
+
+    protected static int stripeCountFor(int processors) {
+
+        int count = 1;
+        while ( count < processors * 2 && count < 64 ) {
+
+            count <<= 1;
+
+        }
+
+        return count;
+
+    }
+
+}
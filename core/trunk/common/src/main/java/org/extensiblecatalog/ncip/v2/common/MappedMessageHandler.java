@@ -36,6 +36,16 @@ public class MappedMessageHandler implements MessageHandler {
      */
     protected RemoteServiceManager serviceManager;
 
+    /**
+     * The cache of lookup service responses, or null if no responses are cached.
+     */
+    protected ResponseCache responseCache;
+
+    /**
+     * The services whose concurrent, identical calls are coalesced, keyed by service name.
+     */
+    protected Map<String, CoalescingService> coalescingServices = new HashMap<String, CoalescingService>();
+
     /**
      * Create an instance of the message handler without initializing properties; this is intended
      * for Spring or other dependency-injection usage.
@@ -213,6 +223,9 @@ public class MappedMessageHandler implements MessageHandler {
             }
         }
         LOG.debug("Finished with properties.");
+        // Coalesce inside the cache, so that only cache misses are coalesced
+        configureCoalescing(properties);
+        configureResponseCache(properties);
         if ( LOG.isDebugEnabled() ) {
 
             LOG.debug("Service map for " + this + ":");
@@ -239,6 +252,181 @@ public class MappedMessageHandler implements MessageHandler {
         this.serviceManager = serviceManager;
     }
 
+    /**
+     * Wrap the services listed in {@link MessageHandlerConfiguration#COALESCED_SERVICES_KEY} in
+     * {@link CoalescingService}s.
+     * @param properties the configuration properties
+     * @throws ToolkitException if one of the services is unknown
+     */
+    protected void configureCoalescing(Properties properties) throws ToolkitException {
+
+        String coalescedServicesString = properties.getProperty(MessageHandlerConfiguration.COALESCED_SERVICES_KEY,
+            MessageHandlerConfiguration.COALESCED_SERVICES_DEFAULT);
+
+        if ( coalescedServicesString != null ) {
+
+            for ( String serviceName : coalescedServicesString.split(",") ) {
+
+                serviceName = serviceName.trim();
+                if ( ! serviceName.isEmpty() ) {
+
+                    String initDataClassName = getInitiationDataClassName(serviceName);
+                    NCIPService<NCIPInitiationData, NCIPResponseData> service = supportedServices.get(initDataClassName);
+                    if ( service != null ) {
+
+                        LOG.debug("Wrapping " + service + " in a CoalescingService.");
+                        CoalescingService coalescingService = new CoalescingService(service);
+                        supportedServices.put(initDataClassName, coalescingService);
+                        coalescingServices.put(serviceName, coalescingService);
+
+                    } else {
+
+                        LOG.debug("Service '" + serviceName + "' is configured to be coalesced but is not supported.");
+
+                    }
+
+                }
+
+            }
+
+        }
+
+    }
+
+    /**
+     * Wrap the services listed in {@link MessageHandlerConfiguration#RESPONSE_CACHE_SERVICES_KEY} and
+     * {@link MessageHandlerConfiguration#RESPONSE_CACHE_INVALIDATING_SERVICES_KEY} in {@link CachingService}s that
+     * share one {@link ResponseCache}.
+     * @param properties the configuration properties
+     * @throws ToolkitException if one of the properties has an invalid format
+     */
+    protected void configureResponseCache(Properties properties) throws ToolkitException {
+
+        String cacheServicesString = properties.getProperty(MessageHandlerConfiguration.RESPONSE_CACHE_SERVICES_KEY,
+            MessageHandlerConfiguration.RESPONSE_CACHE_SERVICES_DEFAULT);
+
+        if ( cacheServicesString != null && ! cacheServicesString.trim().isEmpty() ) {
+
+            long defaultTimeToLive = parseLong(properties, MessageHandlerConfiguration.RESPONSE_CACHE_TIME_TO_LIVE_KEY,
+                MessageHandlerConfiguration.RESPONSE_CACHE_TIME_TO_LIVE_DEFAULT);
+            int maxSize = (int)parseLong(properties, MessageHandlerConfiguration.RESPONSE_CACHE_MAX_SIZE_KEY,
+                MessageHandlerConfiguration.RESPONSE_CACHE_MAX_SIZE_DEFAULT);
+            responseCache = new ResponseCache(maxSize);
+
+            for ( String serviceAndTimeToLiveString : cacheServicesString.split(",") ) {
+
+                String[] serviceAndTimeToLive = serviceAndTimeToLiveString.split("=");
+                long timeToLive = defaultTimeToLive;
+                if ( serviceAndTimeToLive.length == 2 ) {
+
+                    timeToLive = parseLong(MessageHandlerConfiguration.RESPONSE_CACHE_SERVICES_KEY,
+                        serviceAndTimeToLive[1]);
+
+                } else if ( serviceAndTimeToLive.length != 1 ) {
+
+                    throw new ToolkitException(MessageHandlerConfiguration.RESPONSE_CACHE_SERVICES_KEY
+                        + " has invalid format: '" + cacheServicesString + "';"
+                        + " format should be 'serviceName1[=timeToLive1],serviceName2[=timeToLive2]'."
+                        + " E.g. 'LookupItem,LookupAgency=3600000'.");
+
+                }
+
+                if ( timeToLive > 0 ) {
+
+                    wrapService(serviceAndTimeToLive[0].trim(), timeToLive);
+
+                }
+
+            }
+
+            String invalidatingServicesString = properties.getProperty(
+                MessageHandlerConfiguration.RESPONSE_CACHE_INVALIDATING_SERVICES_KEY,
+                MessageHandlerConfiguration.RESPONSE_CACHE_INVALIDATING_SERVICES_DEFAULT);
+            if ( invalidatingServicesString != null ) {
+
+                for ( String serviceName : invalidatingServicesString.split(",") ) {
+
+                    if ( ! serviceName.trim().isEmpty() ) {
+
+                        wrapService(serviceName.trim(), 0);
+
+                    }
+
+                }
+
+            }
+
+        }
+
+    }
+
+    protected static String getInitiationDataClassName(String serviceName) throws ToolkitException {
+
+        try {
+
+            return ServiceHelper.constructInitiationDataClass(serviceName).getName();
+
+        } catch (ClassNotFoundException e) {
+
+            throw new ToolkitException("Unknown service '" + serviceName + "' in the message handler configuration.", e);
+
+        }
+
+    }
+
+    protected void wrapService(String serviceName, long timeToLive) throws ToolkitException {
+
+        String initDataClassName = getInitiationDataClassName(serviceName);
+
+        NCIPService<NCIPInitiationData, NCIPResponseData> service = supportedServices.get(initDataClassName);
+        if ( service != null ) {
+
+            LOG.debug("Wrapping " + service + " in a CachingService with time-to-live " + timeToLive + ".");
+            supportedServices.put(initDataClassName, new CachingService(service, responseCache, timeToLive));
+
+        } else {
+
+            LOG.debug("Service '" + serviceName + "' is configured for the response cache but is not supported.");
+
+        }
+
+    }
+
+    protected static long parseLong(Properties properties, String key, String defaultValue) throws ToolkitException {
+
+        return parseLong(key, properties.getProperty(key, defaultValue));
+
+    }
+
+    protected static long parseLong(String key, String value) throws ToolkitException {
+
+        try {
+
+            return Long.parseLong(value.trim());
+
+        } catch (NumberFormatException e) {
+
+            throw new ToolkitException(key + " has invalid format: '" + value + "'; it must be a whole number.", e);
+
+        }
+
+    }
+
+    /**
+     * @return the cache of lookup service responses, e.g. to read its metrics, or null if no responses are cached
+     */
+    public ResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    /**
+     * @return the services whose concurrent, identical calls are coalesced, keyed by service name, e.g. to read
+     * their executed and coalesced call counts
+     */
+    public Map<String, CoalescingService> getCoalescingServices() {
+        return coalescingServices;
+    }
+
     public void setRemoteServiceManager(RemoteServiceManager serviceManager) {
         this.serviceManager = serviceManager;
     }
@@ -38,4 +38,29 @@ public interface MessageHandlerConfiguration extends ToolkitConfiguration {
     final String MESSAGE_HANDLER_CLASS_NAME_KEY = "MessageHandlerConfiguration.ClassName";
     final String MESSAGE_HANDLER_CLASS_NAME_DEFAULT = MappedMessageHandler.class.getName();
 
+    // Comma-separated list of the services whose responses MappedMessageHandler caches, each optionally with its own
+    // time-to-live in milliseconds, e.g. 'LookupItem,LookupItemSet=30000,LookupAgency=3600000'. By default no
+    // responses are cached.
+    final String RESPONSE_CACHE_SERVICES_KEY = "MessageHandlerConfiguration.ResponseCacheServices";
+    final String RESPONSE_CACHE_SERVICES_DEFAULT = null;
+
+    // The time-to-live in milliseconds of cached responses for services listed without one.
+    final String RESPONSE_CACHE_TIME_TO_LIVE_KEY = "MessageHandlerConfiguration.ResponseCacheTimeToLive";
+    final String RESPONSE_CACHE_TIME_TO_LIVE_DEFAULT = "60000";
+
+    // The maximum number of cached responses, across all services.
+    final String RESPONSE_CACHE_MAX_SIZE_KEY = "MessageHandlerConfiguration.ResponseCacheMaxSize";
+    final String RESPONSE_CACHE_MAX_SIZE_DEFAULT = Integer.toString(ResponseCache.DEFAULT_MAX_SIZE);
+
+    // Comma-separated list of the services that evict the cached responses mentioning the items or bibliographic
+    // records they act on.
+    final String RESPONSE_CACHE_INVALIDATING_SERVICES_KEY = "MessageHandlerConfiguration.ResponseCacheInvalidatingServices";
+    final String RESPONSE_CACHE_INVALIDATING_SERVICES_DEFAULT
+        = "CheckOutItem,CheckInItem,RenewItem,RequestItem,CancelRequestItem";
+
+    // Comma-separated list of the services for which MappedMessageHandler makes concurrent, identical initiation
+    // messages share one call to the service, e.g. 'LookupItem,LookupItemSet'. By default no calls are shared.
+    final String COALESCED_SERVICES_KEY = "MessageHandlerConfiguration.CoalescedServices";
+    final String COALESCED_SERVICES_DEFAULT = null;
+
 }
@@ -27,9 +27,46 @@ public interface NCIP2TranslatorConfiguration extends TranslatorConfiguration {
     final String CANONICAL_SCHEMA_URL_MAP_KEY = "NCIP2TranslatorConfiguration.CanonicalSchemaURLMap";
     final String CANONICAL_SCHEMA_URL_MAP_DEFAULT = null;
 
+    // The maximum number of idle Marshallers (and, separately, Unmarshallers) the MarshallerFactory keeps for
+    // re-use for each distinct set of schema URLs. Setting this to 0 disables pooling.
+    final String MARSHALLER_POOL_SIZE_KEY = "NCIP2TranslatorConfiguration.MarshallerPoolSize";
+    final String MARSHALLER_POOL_SIZE_DEFAULT = "32";
+
+    // Comma-separated list of OASIS XML catalog files (resources or files) used to resolve schema URLs, including
+    // those of imported and included schemas, to local copies. Only 'system', 'systemSuffix' and 'uri' entries
+    // are supported.
+    final String SCHEMA_CATALOG_FILES_KEY = "NCIP2TranslatorConfiguration.SchemaCatalogFiles";
+    final String SCHEMA_CATALOG_FILES_DEFAULT = null;
+
+    // If true, schemas that can't be resolved to a local copy are not loaded from the network, so the Schema
+    // can't be compiled (and messages are not validated) instead.
+    final String RESOLVE_SCHEMAS_OFFLINE_KEY = "NCIP2TranslatorConfiguration.ResolveSchemasOffline";
+    final String RESOLVE_SCHEMAS_OFFLINE_DEFAULT = "false";
+
+    // The fraction (0.0 to 1.0) of messages validated against the schema when
+    // NCIPServiceValidatorConfiguration.ValidateMessagesAgainstSchema is true. At less than 1.0 messages are
+    // validated after unmarshalling (or before marshalling) rather than while being parsed (or written).
+    final String SCHEMA_VALIDATION_SAMPLE_RATE_KEY = "NCIP2TranslatorConfiguration.SchemaValidationSampleRate";
+    final String SCHEMA_VALIDATION_SAMPLE_RATE_DEFAULT = "1.0";
+
+    // Overrides of the SchemaValidationSampleRate for individual services, e.g. 'LookupItemSet=0.05,LookupUser=0.5';
+    // a rate for a service applies to both its initiation and response messages.
+    final String SCHEMA_VALIDATION_SAMPLE_RATES_KEY = "NCIP2TranslatorConfiguration.SchemaValidationSampleRates";
+    final String SCHEMA_VALIDATION_SAMPLE_RATES_DEFAULT = null;
+
     Map<String, String> getSchemaURLsToPackageMap();
     void setSchemaURLsToPackageMap(Map<String, String> schemaURLsToPackageMap);
     Map<String, String> getCanonicalSchemaURLMap();
     void setCanonicalSchemaURLMap(Map<String, String> aliasToCanonicalSchemaURLMap);
+    int getMarshallerPoolSize();
+    void setMarshallerPoolSize(int marshallerPoolSize);
+    List<String> getSchemaCatalogFiles();
+    void setSchemaCatalogFiles(List<String> schemaCatalogFiles);
+    boolean getResolveSchemasOffline();
+    void setResolveSchemasOffline(boolean resolveSchemasOffline);
+    double getSchemaValidationSampleRate();
+    void setSchemaValidationSampleRate(double schemaValidationSampleRate);
+    Map<String, Double> getSchemaValidationSampleRates();
+    void setSchemaValidationSampleRates(Map<String, Double> schemaValidationSampleRates);
 
 }
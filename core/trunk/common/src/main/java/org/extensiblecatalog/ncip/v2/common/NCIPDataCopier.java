@@ -0,0 +1,230 @@
+/**
+ * Copyright (c) 2013 eXtensible Catalog Organization
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the MIT/X11 license. The text of the license can be
+ * found at http://www.opensource.org/licenses/mit-license.php.
+ */
+
+package org.extensiblecatalog.ncip.v2.common;
+
+import org.extensiblecatalog.ncip.v2.service.SchemeValuePair;
+import org.extensiblecatalog.ncip.v2.service.ToolkitException;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Makes deep copies of initiation and response data objects, so that callers that share one response (see
+ * {@link CoalescingService}) can each modify their own copy.
+ * <p/>
+ * Objects are copied field by field via their no-argument constructor. Immutable values (Strings, numbers, enums and
+ * so on) and {@link SchemeValuePair}s, which are canonical instances that are compared by identity, are shared
+ * rather than copied. An object that is referenced more than once is copied once, so the copy has the same shape.
+ */
+public class NCIPDataCopier {
+
+    /** The instance fields of each class that has been copied. */
+    protected static final ConcurrentMap<Class, List<Field>> FIELDS_BY_CLASS = new ConcurrentHashMap<Class, List<Field>>();
+
+    /**
+     * @param obj the object to copy
+     * @param <T> the type of the object
+     * @return the copy
+     * @throws ToolkitException if the object or something it refers to can't be copied
+     */
+    @SuppressWarnings(value={"unchecked"}) // Because copy returns an object of the same class as its argument.
+    public static <T> T deepCopy(T obj) throws ToolkitException {
+
+        return (T)copy(obj, new IdentityHashMap<Object, Object>());
+
+    }
+
+    @SuppressWarnings(value={"unchecked"}) // Because the collection and map copies are raw types.
+    protected static Object copy(Object obj, Map<Object, Object> copies) throws ToolkitException {
+
+        if ( obj == null || isShared(obj) ) {
+
+            return obj;
+
+        }
+
+        Object copy = copies.get(obj);
+        if ( copy != null ) {
+
+            return copy;
+
+        }
+
+        if ( obj instanceof Date ) {
+
+            copy = ((Date)obj).clone();
+            copies.put(obj, copy);
+
+        } else if ( obj instanceof Calendar ) {
+
+            copy = ((Calendar)obj).clone();
+            copies.put(obj, copy);
+
+        } else if ( obj instanceof Collection ) {
+
+            Collection collectionCopy = (Collection)newInstance(obj.getClass(), ArrayList.class);
+            copies.put(obj, collectionCopy);
+            for ( Object element : (Collection)obj ) {
+
+                collectionCopy.add(copy(element, copies));
+
+            }
+
+            copy = collectionCopy;
+
+        } else if ( obj instanceof Map ) {
+
+            Map mapCopy = (Map)newInstance(obj.getClass(), HashMap.class);
+            copies.put(obj, mapCopy);
+            for ( Object entryObj : ((Map)obj).entrySet() ) {
+
+                Map.Entry entry = (Map.Entry)entryObj;
+                mapCopy.put(copy(entry.getKey(), copies), copy(entry.getValue(), copies));
+
+            }
+
+            copy = mapCopy;
+
+        } else if ( obj.getClass().isArray() ) {
+
+            int length = Array.getLength(obj);
+            copy = Array.newInstance(obj.getClass().getComponentType(), length);
+            copies.put(obj, copy);
+            for ( int index = 0; index < length; index++ ) {
+
+                Array.set(copy, index, copy(Array.get(obj, index), copies));
+
+            }
+
+        } else {
+
+            copy = newInstance(obj.getClass(), null);
+            copies.put(obj, copy);
+            for ( Field field : getFields(obj.getClass()) ) {
+
+                try {
+
+                    field.set(copy, copy(field.get(obj), copies));
+
+                } catch (IllegalAccessException e) {
+
+                    throw new ToolkitException("IllegalAccessException copying field '" + field.getName()
+                        + "' of " + obj.getClass().getName() + ".", e);
+
+                }
+
+            }
+
+        }
+
+        return copy;
+
+    }
+
+    protected static boolean isShared(Object obj) {
+
+        return obj instanceof String || obj instanceof Number || obj instanceof Boolean || obj instanceof Character
+            || obj instanceof Enum || obj instanceof Class || obj instanceof SchemeValuePair;
+
+    }
+
+    /**
+     * Create an instance of the class via its no-argument constructor, or of the fallback class if there is one
+     * and the class has no such constructor (e.g. an unmodifiable collection).
+     */
+    protected static Object newInstance(Class<?> clazz, Class<?> fallbackClass) throws ToolkitException {
+
+        try {
+
+            Constructor<?> ctor;
+            try {
+
+                ctor = clazz.getDeclaredConstructor();
+
+            } catch (NoSuchMethodException e) {
+
+                if ( fallbackClass != null ) {
+
+                    ctor = fallbackClass.getDeclaredConstructor();
+
+                } else {
+
+                    throw new ToolkitException("Can't copy " + clazz.getName()
+                        + " because it has no no-argument constructor.", e);
+
+                }
+
+            }
+
+            ctor.setAccessible(true);
+            return ctor.newInstance();
+
+        } catch (NoSuchMethodException e) {
+
+            throw new ToolkitException("NoSuchMethodException copying " + clazz.getName() + ".", e);
+
+        } catch (InstantiationException e) {
+
+            throw new ToolkitException("InstantiationException copying " + clazz.getName() + ".", e);
+
+        } catch (IllegalAccessException e) {
+
+            throw new ToolkitException("IllegalAccessException copying " + clazz.getName() + ".", e);
+
+        } catch (InvocationTargetException e) {
+
+            throw new ToolkitException("InvocationTargetException copying " + clazz.getName() + ".", e);
+
+        }
+
+    }
+
+    protected static List<Field> getFields(Class<?> clazz) {
+
+        List<Field> fields = FIELDS_BY_CLASS.get(clazz);
+        if ( fields == null ) {
+
+            fields = new ArrayList<Field>();
+            for ( Class<?> c = clazz; c != null && c != Object.class; c = c.getSuperclass() ) {
+
+                for ( Field field : c.getDeclaredFields() ) {
+
+                    if ( ! Modifier.isStatic(field.getModifiers()) ) {
+
+                        field.setAccessible(true);
+                        fields.add(field);
+
+                    }
+
+                }
+
+            }
+
+            FIELDS_BY_CLASS.putIfAbsent(clazz, fields);
+
+        }
+
+        return fields;
+
+    }
+
+}
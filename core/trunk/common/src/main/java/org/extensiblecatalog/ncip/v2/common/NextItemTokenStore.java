@@ -0,0 +1,250 @@
+/**
+ * Copyright (c) 2013 eXtensible Catalog Organization
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the MIT/X11 license. The text of the license can be
+ * found at http://www.opensource.org/licenses/mit-license.php.
+ */
+
+package org.extensiblecatalog.ncip.v2.common;
+
+import java.security.SecureRandom;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Holds the state behind the NextItemTokens that connectors return from LookupItemSet, so that the next
+ * LookupItemSet message can resume where the previous response stopped. The store is safe for concurrent use.
+ * <p/>
+ * Tokens expire after the time-to-live; an expired token is no longer returned, but is remembered for one more
+ * time-to-live so that {@link #isExpired(String)} can tell a client that its token expired rather than that it was
+ * never issued. The store also holds at most maxSize tokens; when that is exceeded the oldest tokens are evicted
+ * first, whether or not they have expired. Eviction is done as tokens are added, and costs (amortized) constant time
+ * per token because tokens are evicted in the order they were added.
+ * <p/>
+ * Keys are made of a sequence number, which makes them unique within this store, and a random part, which makes
+ * them unique across restarts and hard to guess.
+ *
+ * @param <T> the type of the token state
+ */
+public class NextItemTokenStore<T> {
+
+    /** The default time-to-live of tokens: one hour. */
+    public static final long DEFAULT_TIME_TO_LIVE = 60 * 60 * 1000L;
+
+    /** The default maximum number of tokens held. */
+    public static final int DEFAULT_MAX_SIZE = 10000;
+
+    protected static class Entry<T> {
+
+        protected final String key;
+        protected final T token;
+        protected final long timeCreated;
+
+        protected Entry(String key, T token, long timeCreated) {
+
+            this.key = key;
+            this.token = token;
+            this.timeCreated = timeCreated;
+
+        }
+
+    }
+
+    protected final ConcurrentMap<String, Entry<T>> entries = new ConcurrentHashMap<String, Entry<T>>();
+    /** Entries in the order they were added; may also hold entries already removed from {@link #entries}. */
+    protected final Queue<Entry<T>> entriesByAge = new ConcurrentLinkedQueue<Entry<T>>();
+    /** The number of entries in {@link #entries}, which ConcurrentHashMap does not count in constant time. */
+    protected final AtomicInteger size = new AtomicInteger();
+    protected final AtomicLong sequence = new AtomicLong();
+    protected final Random random = new SecureRandom();
+
+    protected volatile long timeToLive;
+    protected volatile int maxSize;
+
+    public NextItemTokenStore() {
+
+        this(DEFAULT_TIME_TO_LIVE, DEFAULT_MAX_SIZE);
+
+    }
+
+    /**
+     * @param timeToLive the time in milliseconds after which tokens expire
+     * @param maxSize    the maximum number of tokens held
+     */
+    public NextItemTokenStore(long timeToLive, int maxSize) {
+
+        this.timeToLive = timeToLive;
+        this.maxSize = maxSize;
+
+    }
+
+    public long getTimeToLive() {
+
+        return timeToLive;
+
+    }
+
+    /**
+     * @param timeToLive the time in milliseconds after which tokens expire; applies to tokens already held, too
+     */
+    public void setTimeToLive(long timeToLive) {
+
+        this.timeToLive = timeToLive;
+
+    }
+
+    public int getMaxSize() {
+
+        return maxSize;
+
+    }
+
+    public void setMaxSize(int maxSize) {
+
+        this.maxSize = maxSize;
+
+    }
+
+    /**
+     * Add a token, evicting old tokens as needed.
+     *
+     * @param token the token state
+     * @return the new key that the token is stored under, to be returned to the client as the NextItemToken
+     */
+    public String add(T token) {
+
+        long now = currentTimeMillis();
+        Entry<T> entry;
+        do {
+
+            entry = new Entry<T>(newKey(), token, now);
+
+        } while ( entries.putIfAbsent(entry.key, entry) != null );
+
+        size.incrementAndGet();
+        entriesByAge.add(entry);
+        evict(now);
+        return entry.key;
+
+    }
+
+    /**
+     * @param key the NextItemToken
+     * @return the token stored under the key, or null if there is none or it has expired
+     */
+    public T get(String key) {
+
+        Entry<T> entry = key != null ? entries.get(key) : null;
+        return entry != null && ! isExpired(entry, currentTimeMillis()) ? entry.token : null;
+
+    }
+
+    /**
+     * Remove the token stored under the key, e.g. once it has been used; expired tokens are left to be evicted, so
+     * that {@link #isExpired(String)} continues to report them.
+     *
+     * @param key the NextItemToken
+     * @return the token that was stored under the key, or null if there was none or it has expired
+     */
+    public T remove(String key) {
+
+        Entry<T> entry = key != null ? entries.get(key) : null;
+        if ( entry != null && ! isExpired(entry, currentTimeMillis()) && entries.remove(key, entry) ) {
+
+            size.decrementAndGet();
+            return entry.token;
+
+        }
+
+        return null;
+
+    }
+
+    /**
+     * @param key the NextItemToken
+     * @return true if a token was stored under the key and has expired, but has not been evicted yet
+     */
+    public boolean isExpired(String key) {
+
+        Entry<T> entry = key != null ? entries.get(key) : null;
+        return entry != null && isExpired(entry, currentTimeMillis());
+
+    }
+
+    /**
+     * @return the number of tokens held, including expired tokens that have not been evicted yet
+     */
+    public int size() {
+
+        return size.get();
+
+    }
+
+    public void clear() {
+
+        Entry<T> entry;
+        while ( ( entry = entriesByAge.poll() ) != null ) {
+
+            if ( entries.remove(entry.key, entry) ) {
+
+                size.decrementAndGet();
+
+            }
+
+        }
+
+    }
+
+    /**
+     * Evict the oldest entries while there are more than maxSize of them or they expired more than a time-to-live
+     * ago; entries already removed are dropped from the queue as they reach its head.
+     */
+    protected void evict(long now) {
+
+        Entry<T> eldest;
+        while ( ( eldest = entriesByAge.peek() ) != null ) {
+
+            boolean removed = entries.get(eldest.key) != eldest;
+            if ( removed || size.get() > maxSize || now - eldest.timeCreated > 2 * timeToLive ) {
+
+                if ( entriesByAge.remove(eldest) && entries.remove(eldest.key, eldest) ) {
+
+                    size.decrementAndGet();
+
+                }
+
+            } else {
+
+                break;
+
+            }
+
+        }
+
+    }
+
+    protected boolean isExpired(Entry<T> entry, long now) {
+
+        return now - entry.timeCreated > timeToLive;
+
+    }
+
+    protected String newKey() {
+
+        return Long.toString(sequence.incrementAndGet(), 36) + "-" + Long.toString(random.nextLong() & Long.MAX_VALUE, 36);
+
+    }
+
+    protected long currentTimeMillis() {
+
+        return System.currentTimeMillis();
+
+    }
+
+}
@@ -0,0 +1,218 @@
+/**
+ * Copyright (c) 2010 eXtensible Catalog Organization
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the MIT/X11 license. The text of the license can be
+ * found at http://www.opensource.org/licenses/mit-license.php.
+ */
+
+package org.extensiblecatalog.ncip.v2.common;
+
+import org.apache.log4j.Logger;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Limits the number of requests processed at once. A request that arrives when all slots are busy waits for one,
+ * but only if fewer than the maximum number of requests are already waiting and only for up to the maximum wait
+ * time; otherwise it is rejected at once so the caller can answer it cheaply instead of letting work pile up
+ * behind a slow back-end. Time spent waiting, the number waiting and the rejections are recorded in the
+ * {@link StatisticsBean}.
+ */
+public class RequestAdmissionGate {
+
+    private static final Logger LOG = Logger.getLogger(RequestAdmissionGate.class);
+
+    /**
+     * The outcome of {@link #enter()}.
+     */
+    public enum Admission {
+
+        ADMITTED("Admitted"),
+        QUEUE_FULL("Queue Full"),
+        TIMED_OUT("Wait Timed Out");
+
+        private final String label;
+
+        Admission(String label) {
+
+            this.label = label;
+
+        }
+
+        @Override
+        public String toString() {
+
+            return label;
+
+        }
+
+    }
+
+    protected final int maxConcurrentRequests;
+    protected final int maxQueuedRequests;
+    protected final long maxQueueWaitMillis;
+    protected final StatisticsBean statisticsBean;
+
+    protected final Semaphore slots;
+
+    /**
+     * The number of requests waiting for a slot.
+     */
+    protected final AtomicInteger waiting = new AtomicInteger();
+
+    public RequestAdmissionGate(int maxConcurrentRequests, int maxQueuedRequests, long maxQueueWaitMillis,
+                                StatisticsBean statisticsBean) {
+
+        if ( maxConcurrentRequests <= 0 ) {
+
+            throw new IllegalArgumentException("maxConcurrentRequests must be greater than 0; it was "
+                + maxConcurrentRequests + ".");
+
+        }
+
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        this.maxQueuedRequests = maxQueuedRequests;
+        this.maxQueueWaitMillis = maxQueueWaitMillis;
+        this.statisticsBean = statisticsBean;
+        // Fair, so that waiting requests get slots in the order they arrived.
+        this.slots = new Semaphore(maxConcurrentRequests, true);
+
+    }
+
+    /**
+     * Build a gate from the configuration, or return null if the configuration puts no limit on the number of
+     * requests processed at once.
+     */
+    public static RequestAdmissionGate buildRequestAdmissionGate(CoreConfiguration coreConfig,
+                                                                 StatisticsBean statisticsBean) {
+
+        RequestAdmissionGate gate = null;
+        if ( coreConfig.getMaxConcurrentRequests() > 0 ) {
+
+            gate = new RequestAdmissionGate(coreConfig.getMaxConcurrentRequests(), coreConfig.getMaxQueuedRequests(),
+                coreConfig.getMaxQueueWaitMillis(), statisticsBean);
+
+        }
+
+        return gate;
+
+    }
+
+    /**
+     * Take a slot, waiting for one if necessary. If this returns {@link Admission#ADMITTED} the caller must call
+     * {@link #exit()} when it has finished with the request; otherwise the request was rejected and the caller
+     * must not call {@link #exit()}.
+     */
+    public Admission enter() {
+
+        // A timed tryAcquire, unlike tryAcquire(), honours the fairness setting, so a new arrival can't take a slot
+        // freed for a request that is already waiting.
+        try {
+
+            if ( slots.tryAcquire(0, TimeUnit.MILLISECONDS) ) {
+
+                return Admission.ADMITTED;
+
+            }
+
+        } catch (InterruptedException e) {
+
+            // Keep the interrupt, so the wait below ends at once and the rejection is recorded there
+            Thread.currentThread().interrupt();
+
+        }
+
+        long startTime = System.currentTimeMillis();
+        Admission admission;
+        if ( waiting.incrementAndGet() > maxQueuedRequests ) {
+
+            admission = Admission.QUEUE_FULL;
+
+        } else {
+
+            statisticsBean.queueEntered();
+            try {
+
+                admission = slots.tryAcquire(maxQueueWaitMillis, TimeUnit.MILLISECONDS)
+                    ? Admission.ADMITTED : Admission.TIMED_OUT;
+
+            } catch (InterruptedException e) {
+
+                Thread.currentThread().interrupt();
+                admission = Admission.TIMED_OUT;
+
+            } finally {
+
+                statisticsBean.queueLeft();
+
+            }
+
+        }
+
+        waiting.decrementAndGet();
+
+        long endTime = System.currentTimeMillis();
+        if ( admission == Admission.ADMITTED ) {
+
+            statisticsBean.record(startTime, endTime, StatisticsBean.RESPONDER_ADMISSION_WAIT_LABELS);
+
+        } else {
+
+            statisticsBean.record(startTime, endTime, StatisticsBean.RESPONDER_REJECTED_LABELS, admission);
+            if ( LOG.isDebugEnabled() ) {
+                LOG.debug("Rejected request: " + admission + " after " + (endTime - startTime) + " milliseconds.");
+            }
+
+        }
+
+        return admission;
+
+    }
+
+    /**
+     * Release the slot taken by a successful call to {@link #enter()}.
+     */
+    public void exit() {
+
+        slots.release();
+
+    }
+
+    /**
+     * Returns the text for the ProblemDetail of the response to a request rejected with the given admission.
+     */
+    public String getProblemDetail(Admission admission) {
+
+        String detail;
+        if ( admission == Admission.QUEUE_FULL ) {
+
+            detail = "The responder is busy: " + maxConcurrentRequests + " requests are being processed and "
+                + maxQueuedRequests + " are waiting. Retry the request later.";
+
+        } else {
+
+            detail = "The responder is busy: no request slot became free within " + maxQueueWaitMillis
+                + " milliseconds. Retry the request later.";
+
+        }
+
+        return detail;
+
+    }
+
+    public int getWaitingCount() {
+
+        return waiting.get();
+
+    }
+
+    public int getAvailableSlots() {
+
+        return slots.availablePermits();
+
+    }
+
+}
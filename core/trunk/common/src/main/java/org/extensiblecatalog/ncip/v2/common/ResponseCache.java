@@ -0,0 +1,777 @@
+/**
+ * Copyright (c) 2013 eXtensible Catalog Organization
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the MIT/X11 license. The text of the license can be
+ * found at http://www.opensource.org/licenses/mit-license.php.
+ */
+
+package org.extensiblecatalog.ncip.v2.common;
+
+import org.extensiblecatalog.ncip.v2.service.BibliographicItemId;
+import org.extensiblecatalog.ncip.v2.service.BibliographicRecordId;
+import org.extensiblecatalog.ncip.v2.service.ItemId;
+import org.extensiblecatalog.ncip.v2.service.LookupItemSetInitiationData;
+import org.extensiblecatalog.ncip.v2.service.LookupItemSetResponseData;
+import org.extensiblecatalog.ncip.v2.service.NCIPInitiationData;
+import org.extensiblecatalog.ncip.v2.service.NCIPResponseData;
+import org.extensiblecatalog.ncip.v2.service.ToolkitException;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Holds the responses of lookup services so that identical initiation messages that arrive close together can be
+ * answered without calling the ILS again. The store is safe for concurrent use.
+ * <p/>
+ * Responses are keyed on a normalized form of the initiation data (see {@link #createKey(NCIPInitiationData)}), and
+ * are indexed by the item and bibliographic identifiers in the initiation and response data so that services which
+ * change an item can evict the responses that mention it (see {@link #invalidate(Collection)}). Entries expire after
+ * their time-to-live, and the store holds at most maxSize entries; when that is exceeded the oldest entries are
+ * evicted first. As in {@link NextItemTokenStore}, eviction is done as entries are added. Entries are queued by
+ * time-to-live, so each queue is in expiry order and an expired entry is never held behind a longer-lived one.
+ * <p/>
+ * Messages that carry a NextItemToken must not be cached, as connectors may only honour each token once; see
+ * {@link #carriesNextItemToken(Object)}.
+ * <p/>
+ * Cached responses are returned to every caller with the same key, so they must not be modified.
+ */
+public class ResponseCache {
+
+    /** The default maximum number of responses held. */
+    public static final int DEFAULT_MAX_SIZE = 10000;
+
+    /** The maximum depth of nested objects in initiation or response data that is examined. */
+    protected static final int MAX_DEPTH = 64;
+
+    protected static class Entry {
+
+        protected final String key;
+        protected final NCIPResponseData response;
+        protected final Set<String> ids;
+        protected final long timeToLive;
+        protected final long expiryTime;
+        /** The order in which entries were added, across all time-to-live values. */
+        protected final long sequence;
+
+        protected Entry(String key, NCIPResponseData response, Set<String> ids, long timeToLive, long expiryTime,
+                        long sequence) {
+
+            this.key = key;
+            this.response = response;
+            this.ids = ids;
+            this.timeToLive = timeToLive;
+            this.expiryTime = expiryTime;
+            this.sequence = sequence;
+
+        }
+
+    }
+
+    /** The instance fields of each class that has been normalized, sorted by name. */
+    protected static final ConcurrentMap<Class, Field[]> FIELDS_BY_CLASS = new ConcurrentHashMap<Class, Field[]>();
+
+    protected final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+    /**
+     * For each time-to-live, the entries with it in the order they were added. An entry is removed from its queue
+     * when it is evicted, replaced or invalidated.
+     */
+    protected final ConcurrentMap<Long, Queue<Entry>> entriesByTimeToLive
+        = new ConcurrentHashMap<Long, Queue<Entry>>();
+    protected final AtomicLong nextSequence = new AtomicLong();
+    /**
+     * The keys of the entries that mention each item or bibliographic identifier. Each set is guarded by its own
+     * lock, and is only added to while it is still in this map.
+     */
+    protected final ConcurrentMap<String, Set<String>> keysById = new ConcurrentHashMap<String, Set<String>>();
+    /** The number of entries in {@link #entries}, which ConcurrentHashMap does not count in constant time. */
+    protected final AtomicInteger size = new AtomicInteger();
+    /** Incremented by every invalidation; see {@link #getGeneration()}. */
+    protected final AtomicLong generation = new AtomicLong();
+
+    protected final AtomicLong hits = new AtomicLong();
+    protected final AtomicLong misses = new AtomicLong();
+    protected final AtomicLong evictions = new AtomicLong();
+    protected final AtomicLong invalidations = new AtomicLong();
+
+    protected volatile int maxSize;
+
+    public ResponseCache() {
+
+        this(DEFAULT_MAX_SIZE);
+
+    }
+
+    /**
+     * @param maxSize the maximum number of responses held
+     */
+    public ResponseCache(int maxSize) {
+
+        this.maxSize = maxSize;
+
+    }
+
+    public int getMaxSize() {
+
+        return maxSize;
+
+    }
+
+    public void setMaxSize(int maxSize) {
+
+        this.maxSize = maxSize;
+
+    }
+
+    /**
+     * @return the number of times {@link #get(String)} returned a response
+     */
+    public long getHits() {
+
+        return hits.get();
+
+    }
+
+    /**
+     * @return the number of times {@link #get(String)} found no response, or only an expired one
+     */
+    public long getMisses() {
+
+        return misses.get();
+
+    }
+
+    /**
+     * @return the number of responses evicted because they expired or the cache was full
+     */
+    public long getEvictions() {
+
+        return evictions.get();
+
+    }
+
+    /**
+     * @return the number of responses removed by {@link #invalidate(Collection)}
+     */
+    public long getInvalidations() {
+
+        return invalidations.get();
+
+    }
+
+    /**
+     * A counter that changes whenever responses are invalidated. Read it before calling the service whose response
+     * is to be cached and pass it to {@link #put(String, NCIPResponseData, Set, long, long)}, so that a response
+     * that was read from the ILS before a change to it is not cached after the change.
+     *
+     * @return the current generation
+     */
+    public long getGeneration() {
+
+        return generation.get();
+
+    }
+
+    /**
+     * @param key the key created by {@link #createKey(NCIPInitiationData)}
+     * @return the response stored under the key, or null if there is none or it has expired
+     */
+    public NCIPResponseData get(String key) {
+
+        Entry entry = key != null ? entries.get(key) : null;
+        if ( entry != null && entry.expiryTime > currentTimeMillis() ) {
+
+            hits.incrementAndGet();
+            return entry.response;
+
+        }
+
+        misses.incrementAndGet();
+        return null;
+
+    }
+
+    /**
+     * Store a response, evicting old responses as needed. Nothing is stored if responses were invalidated since
+     * the generation was read.
+     *
+     * @param key        the key created by {@link #createKey(NCIPInitiationData)}
+     * @param response   the response
+     * @param ids        the item and bibliographic identifiers the response is about, from {@link #collectIds(Object...)}
+     * @param timeToLive the time in milliseconds after which the response expires
+     * @param generation the value {@link #getGeneration()} returned before the response was created
+     * @return true if the response was stored
+     */
+    public boolean put(String key, NCIPResponseData response, Set<String> ids, long timeToLive, long generation) {
+
+        long now = currentTimeMillis();
+        Entry entry = new Entry(key, response, ids, timeToLive, now + timeToLive, nextSequence.incrementAndGet());
+        for ( String id : ids ) {
+
+            index(id, key);
+
+        }
+
+        Entry replaced = entries.put(key, entry);
+        if ( replaced == null ) {
+
+            size.incrementAndGet();
+
+        } else {
+
+            dequeue(replaced);
+
+        }
+
+        // The entry is indexed and stored before the generation is checked, so an invalidation that races with
+        // this either finds the entry or changes the generation first
+        if ( this.generation.get() != generation ) {
+
+            remove(entry);
+            return false;
+
+        }
+
+        Queue<Entry> queue = getQueue(timeToLive);
+        queue.add(entry);
+        // The entry may have been replaced or invalidated before it was queued, in which case it was not dequeued
+        if ( entries.get(key) != entry ) {
+
+            queue.remove(entry);
+
+        }
+
+        evict(now);
+        return true;
+
+    }
+
+    /**
+     * Remove the responses that mention any of the identifiers, e.g. after an item was checked out.
+     *
+     * @param ids the item and bibliographic identifiers, from {@link #collectIds(Object...)}; if this is empty
+     *            every response is removed, as it is not known which ones are affected
+     */
+    public void invalidate(Collection<String> ids) {
+
+        generation.incrementAndGet();
+        if ( ids.isEmpty() ) {
+
+            for ( Entry entry : entries.values() ) {
+
+                if ( remove(entry) ) {
+
+                    dequeue(entry);
+                    invalidations.incrementAndGet();
+
+                }
+
+            }
+
+        } else {
+
+            for ( String id : ids ) {
+
+                Set<String> keys = keysById.remove(id);
+                if ( keys != null ) {
+
+                    List<String> keysToRemove;
+                    synchronized (keys) {
+
+                        keysToRemove = new ArrayList<String>(keys);
+
+                    }
+
+                    for ( String key : keysToRemove ) {
+
+                        Entry entry = entries.get(key);
+                        if ( entry != null && remove(entry) ) {
+
+                            dequeue(entry);
+                            invalidations.incrementAndGet();
+
+                        }
+
+                    }
+
+                }
+
+            }
+
+        }
+
+    }
+
+    /**
+     * @return the number of responses held, including expired responses that have not been evicted yet
+     */
+    public int size() {
+
+        return size.get();
+
+    }
+
+    /**
+     * Remove all responses and reset the metrics.
+     */
+    public void clear() {
+
+        generation.incrementAndGet();
+        for ( Queue<Entry> queue : entriesByTimeToLive.values() ) {
+
+            Entry entry;
+            while ( ( entry = queue.poll() ) != null ) {
+
+                remove(entry);
+
+            }
+
+        }
+
+        keysById.clear();
+        hits.set(0);
+        misses.set(0);
+        evictions.set(0);
+        invalidations.set(0);
+
+    }
+
+    /**
+     * Evict the expired entries at the head of each queue, then the oldest entries across all the queues while
+     * there are more than maxSize of them. Entries already removed by another thread are dropped from the queues.
+     */
+    protected void evict(long now) {
+
+        for ( Queue<Entry> queue : entriesByTimeToLive.values() ) {
+
+            Entry eldest;
+            while ( ( eldest = queue.peek() ) != null ) {
+
+                if ( entries.get(eldest.key) != eldest || eldest.expiryTime <= now ) {
+
+                    if ( queue.remove(eldest) && remove(eldest) ) {
+
+                        evictions.incrementAndGet();
+
+                    }
+
+                } else {
+
+                    break;
+
+                }
+
+            }
+
+        }
+
+        while ( size.get() > maxSize ) {
+
+            Queue<Entry> eldestQueue = null;
+            Entry eldest = null;
+            for ( Queue<Entry> queue : entriesByTimeToLive.values() ) {
+
+                Entry head = queue.peek();
+                if ( head != null && ( eldest == null || head.sequence < eldest.sequence ) ) {
+
+                    eldestQueue = queue;
+                    eldest = head;
+
+                }
+
+            }
+
+            if ( eldest == null ) {
+
+                break;
+
+            }
+
+            if ( eldestQueue.remove(eldest) && remove(eldest) ) {
+
+                evictions.incrementAndGet();
+
+            }
+
+        }
+
+    }
+
+    protected Queue<Entry> getQueue(long timeToLive) {
+
+        Queue<Entry> queue = entriesByTimeToLive.get(timeToLive);
+        if ( queue == null ) {
+
+            queue = new ConcurrentLinkedQueue<Entry>();
+            Queue<Entry> existingQueue = entriesByTimeToLive.putIfAbsent(timeToLive, queue);
+            if ( existingQueue != null ) {
+
+                queue = existingQueue;
+
+            }
+
+        }
+
+        return queue;
+
+    }
+
+    /**
+     * Remove an entry that was replaced or invalidated from its queue. This walks the queue, but replacement and
+     * invalidation are rare next to lookups.
+     */
+    protected void dequeue(Entry entry) {
+
+        Queue<Entry> queue = entriesByTimeToLive.get(entry.timeToLive);
+        if ( queue != null ) {
+
+            queue.remove(entry);
+
+        }
+
+    }
+
+    protected void index(String id, String key) {
+
+        while ( true ) {
+
+            Set<String> keys = keysById.get(id);
+            if ( keys == null ) {
+
+                keys = new HashSet<String>();
+                Set<String> existingKeys = keysById.putIfAbsent(id, keys);
+                if ( existingKeys != null ) {
+
+                    keys = existingKeys;
+
+                }
+
+            }
+
+            synchronized (keys) {
+
+                // Retry if the set was removed from the map since it was looked up
+                if ( keysById.get(id) == keys ) {
+
+                    keys.add(key);
+                    return;
+
+                }
+
+            }
+
+        }
+
+    }
+
+    protected boolean remove(Entry entry) {
+
+        if ( entries.remove(entry.key, entry) ) {
+
+            size.decrementAndGet();
+            for ( String id : entry.ids ) {
+
+                Set<String> keys = keysById.get(id);
+                if ( keys != null ) {
+
+                    synchronized (keys) {
+
+                        // Another entry with the same key may have replaced this one and still need the index
+                        if ( ! entries.containsKey(entry.key) ) {
+
+                            keys.remove(entry.key);
+
+                        }
+
+                        if ( keys.isEmpty() ) {
+
+                            keysById.remove(id, keys);
+
+                        }
+
+                    }
+
+                }
+
+            }
+
+            return true;
+
+        }
+
+        return false;
+
+    }
+
+    protected long currentTimeMillis() {
+
+        return System.currentTimeMillis();
+
+    }
+
+    /**
+     * Create the key for an initiation message: its class and the values of all its fields, recursively, with
+     * fields in name order. Two messages with equal content have the same key whichever order their elements were
+     * set in, and the key contains no object identities.
+     *
+     * @param initiationData the initiation data
+     * @return the key
+     * @throws ToolkitException if the initiation data can't be read or is nested too deeply
+     */
+    public static String createKey(NCIPInitiationData initiationData) throws ToolkitException {
+
+        StringBuilder sb = new StringBuilder();
+        normalize(initiationData, sb, null, 0);
+        return sb.toString();
+
+    }
+
+    /**
+     * @param data initiation or response data
+     * @return true if the data is a LookupItemSet message with a NextItemToken
+     */
+    public static boolean carriesNextItemToken(Object data) {
+
+        String nextItemToken = null;
+        if ( data instanceof LookupItemSetInitiationData ) {
+
+            nextItemToken = ((LookupItemSetInitiationData)data).getNextItemToken();
+
+        } else if ( data instanceof LookupItemSetResponseData ) {
+
+            nextItemToken = ((LookupItemSetResponseData)data).getNextItemToken();
+
+        }
+
+        return nextItemToken != null;
+
+    }
+
+    /**
+     * Collect the item identifiers and bibliographic item and record identifiers in the data.
+     *
+     * @param data initiation or response data
+     * @return the identifiers
+     * @throws ToolkitException if the data can't be read or is nested too deeply
+     */
+    public static Set<String> collectIds(Object... data) throws ToolkitException {
+
+        Set<String> ids = new HashSet<String>();
+        for ( Object obj : data ) {
+
+            normalize(obj, null, ids, 0);
+
+        }
+
+        return ids;
+
+    }
+
+    /**
+     * Append the normalized form of the object to sb (if it is not null), and add any item or bibliographic
+     * identifiers in it to ids (if that is not null).
+     */
+    protected static void normalize(Object obj, StringBuilder sb, Set<String> ids, int depth)
+        throws ToolkitException {
+
+        if ( depth > MAX_DEPTH ) {
+
+            throw new ToolkitException("Data is nested more than " + MAX_DEPTH + " levels deep.");
+
+        }
+
+        if ( obj == null ) {
+
+            append(sb, "null");
+
+        } else if ( obj instanceof String ) {
+
+            // Length-prefix strings so that values can't be confused with the punctuation around them
+            String s = (String)obj;
+            append(sb, s.length() + ":" + s);
+
+        } else if ( obj instanceof Number || obj instanceof Boolean || obj instanceof Character
+            || obj instanceof Enum ) {
+
+            append(sb, obj.toString());
+
+        } else if ( obj instanceof Date ) {
+
+            append(sb, Long.toString(((Date)obj).getTime()));
+
+        } else if ( obj instanceof Calendar ) {
+
+            append(sb, Long.toString(((Calendar)obj).getTimeInMillis()));
+
+        } else if ( obj instanceof Collection ) {
+
+            append(sb, "[");
+            for ( Object element : (Collection)obj ) {
+
+                normalize(element, sb, ids, depth + 1);
+                append(sb, ",");
+
+            }
+
+            append(sb, "]");
+
+        } else if ( obj instanceof Map ) {
+
+            // Sort the entries so that the key does not depend on the map's iteration order
+            List<String> normalizedEntries = new ArrayList<String>();
+            for ( Object mapEntryObj : ((Map)obj).entrySet() ) {
+
+                Map.Entry mapEntry = (Map.Entry)mapEntryObj;
+                StringBuilder entrySB = sb != null ? new StringBuilder() : null;
+                normalize(mapEntry.getKey(), entrySB, ids, depth + 1);
+                append(entrySB, "=");
+                normalize(mapEntry.getValue(), entrySB, ids, depth + 1);
+                if ( entrySB != null ) {
+
+                    normalizedEntries.add(entrySB.toString());
+
+                }
+
+            }
+
+            Collections.sort(normalizedEntries);
+            append(sb, normalizedEntries.toString());
+
+        } else if ( obj.getClass().isArray() ) {
+
+            append(sb, "[");
+            for ( int index = 0; index < Array.getLength(obj); index++ ) {
+
+                normalize(Array.get(obj, index), sb, ids, depth + 1);
+                append(sb, ",");
+
+            }
+
+            append(sb, "]");
+
+        } else {
+
+            if ( ids != null ) {
+
+                addId(obj, ids);
+
+            }
+
+            append(sb, obj.getClass().getName());
+            append(sb, "{");
+            for ( Field field : getFields(obj.getClass()) ) {
+
+                append(sb, field.getName());
+                append(sb, "=");
+                try {
+
+                    normalize(field.get(obj), sb, ids, depth + 1);
+
+                } catch (IllegalAccessException e) {
+
+                    throw new ToolkitException("IllegalAccessException reading field '" + field.getName()
+                        + "' of " + obj.getClass().getName() + ".", e);
+
+                }
+
+                append(sb, ";");
+
+            }
+
+            append(sb, "}");
+
+        }
+
+    }
+
+    protected static void append(StringBuilder sb, String s) {
+
+        if ( sb != null ) {
+
+            sb.append(s);
+
+        }
+
+    }
+
+    protected static void addId(Object obj, Set<String> ids) {
+
+        String id = null;
+        if ( obj instanceof ItemId ) {
+
+            id = ((ItemId)obj).getItemIdentifierValue();
+
+        } else if ( obj instanceof BibliographicItemId ) {
+
+            id = ((BibliographicItemId)obj).getBibliographicItemIdentifier();
+
+        } else if ( obj instanceof BibliographicRecordId ) {
+
+            id = ((BibliographicRecordId)obj).getBibliographicRecordIdentifier();
+
+        }
+
+        if ( id != null && ! id.trim().isEmpty() ) {
+
+            ids.add(id.trim());
+
+        }
+
+    }
+
+    protected static Field[] getFields(Class<?> clazz) {
+
+        Field[] fields = FIELDS_BY_CLASS.get(clazz);
+        if ( fields == null ) {
+
+            List<Field> fieldList = new ArrayList<Field>();
+            for ( Class<?> c = clazz; c != null && c != Object.class; c = c.getSuperclass() ) {
+
+                for ( Field field : c.getDeclaredFields() ) {
+
+                    if ( ! Modifier.isStatic(field.getModifiers()) && ! field.isSynthetic() ) {
+
+                        field.setAccessible(true);
+                        fieldList.add(field);
+
+                    }
+
+                }
+
+            }
+
+            fields = fieldList.toArray(new Field[fieldList.size()]);
+            Arrays.sort(fields, new Comparator<Field>() {
+                public int compare(Field f1, Field f2) {
+                    int result = f1.getName().compareTo(f2.getName());
+                    return result != 0 ? result : f1.getDeclaringClass().getName().compareTo(
+                        f2.getDeclaringClass().getName());
+                }
+            });
+            FIELDS_BY_CLASS.putIfAbsent(clazz, fields);
+
+        }
+
+        return fields;
+
+    }
+
+}
@@ -11,10 +11,21 @@ package org.extensiblecatalog.ncip.v2.common;
 import org.apache.log4j.Logger;
 
 import java.text.DecimalFormat;
+import java.util.Arrays;
 import java.util.Map;
 import java.util.Properties;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Collects counts, totals and latency histograms of timed intervals, keyed by a list of labels (e.g. the phase of
+ * processing and the service name). Recording is lock-free: each distinct list of labels maps to a
+ * {@link StatsRecord} whose counters are updated atomically, and the report key for a list of labels is built
+ * only the first time that list is seen. Records are created, and cleared, under a lock so the maps of them
+ * always agree.
+ */
 public class StatisticsBean implements ToolkitComponent {
 
     private static final Logger LOG = Logger.getLogger(StatisticsBean.class);
@@ -28,6 +39,12 @@ public class StatisticsBean implements ToolkitComponent {
     public static final String[] RESPONDER_CREATE_MESSAGE_LABELS = {"4", "Create Message From Data"};
     public static final String[] RESPONDER_MARSHAL_MESSAGE_LABELS = {"5", "Marshal Message"};
     public static final String[] RESPONDER_TOTAL_LABELS = {"6", "Total"};
+    // Time spent waiting for a free request slot, and requests rejected (by reason) rather than processed.
+    public static final String[] RESPONDER_ADMISSION_WAIT_LABELS = {"0", "Admission Wait"};
+    public static final String[] RESPONDER_REJECTED_LABELS = {"7", "Rejected"};
+    // Schema compilations, and messages validated against the schema when only a sample of them is validated.
+    public static final String[] SCHEMA_COMPILE_LABELS = {"8", "Compile Schema"};
+    public static final String[] SCHEMA_SAMPLE_VALIDATION_LABELS = {"9", "Validate Sampled Message"};
 
     public static final String[] INITIATOR_CREATE_MESSAGE_LABELS = {"1", "Create Message From Data"};
     public static final String[] INITIATOR_MARSHAL_MESSAGE_LABELS = {"2", "Marshal Message"};
@@ -36,13 +53,17 @@ public class StatisticsBean implements ToolkitComponent {
     public static final String[] INITIATOR_CREATE_DATA_LABELS = {"5", "Create Data From Message"};
     public static final String[] INITIATOR_TOTAL_LABELS = {"6", "Total"};
 
-    protected int maxLabels = 0;
+    /** The percentiles reported by {@link #createCSVReport()}. */
+    public static final double[] REPORTED_PERCENTILES = {50.0, 95.0, 99.0};
+
+    protected volatile int maxLabels = 0;
 
     public class StatsRecord {
 
         protected Object[] labels;
-        protected long count;
-        protected long totalIntervals;
+        protected String key;
+        protected int labelCount;
+        protected final LatencyHistogram histogram = new LatencyHistogram();
 
         /**
          * Makes a copy of the labels array.
@@ -52,11 +73,23 @@ public class StatisticsBean implements ToolkitComponent {
          */
         public StatsRecord(Object[] labels, long startTime, long endTime) {
 
+            this(labels);
+            add(startTime, endTime);
+
+        }
+
+        /**
+         * Makes a copy of the labels array; the record starts with no intervals.
+         * @param labels
+         */
+        public StatsRecord(Object[] labels) {
+
             // System.arraycopy does a shallow copy, but that's ideal for a one-dimensional array of Strings
             // because Strings are idempotent (i.e. they never change).
             this.labels = new Object[labels.length];
             System.arraycopy(labels, 0, this.labels, 0, labels.length);
-            add(startTime, endTime);
+            this.key = createKey(this.labels);
+            this.labelCount = countLabels(this.labels);
 
         }
 
@@ -69,14 +102,23 @@ public class StatisticsBean implements ToolkitComponent {
             return this.labels;
         }
 
-        // TODO: Rather than always have to call back to this class to count the labels, why not just translate the object array into a String[] in the ctor?
         /**
-         * Return a cCount the number of labels
+         * Returns the key (see {@link StatisticsBean#createKey(Object[])}) for this record's labels.
+         * @return
+         */
+        public String getKey() {
+
+            return this.key;
+
+        }
+
+        /**
+         * Return the count of the labels, counting the members of nested arrays individually.
          * @return
          */
         public long getLabelCount() {
 
-            return countLabels(this.labels);
+            return this.labelCount;
 
         }
 
@@ -86,7 +128,7 @@ public class StatisticsBean implements ToolkitComponent {
          */
         public long getCount() {
 
-            return this.count;
+            return histogram.getCount();
 
         }
 
@@ -96,7 +138,28 @@ public class StatisticsBean implements ToolkitComponent {
          */
         public long getTotalIntervals() {
 
-            return this.totalIntervals;
+            return histogram.getTotal();
+
+        }
+
+        /**
+         * Returns the longest interval in the record.
+         * @return
+         */
+        public long getMaxInterval() {
+
+            return histogram.getMax();
+
+        }
+
+        /**
+         * Returns the interval at the given percentile (0 to 100) of the intervals in the record.
+         * @param percentile
+         * @return
+         */
+        public long getPercentileInterval(double percentile) {
+
+            return histogram.getPercentile(percentile);
 
         }
 
@@ -107,16 +170,95 @@ public class StatisticsBean implements ToolkitComponent {
          */
         public final void add(long startTime, long endTime) {
 
-            this.count++;
-            this.totalIntervals += Math.max(endTime - startTime, 0);
+            histogram.record(endTime - startTime);
 
         }
 
     }
 
-    private static Map<String, StatsRecord> statisticsMap = new TreeMap<String, StatsRecord>();
+    /**
+     * Wraps an array of labels so it can be used as a map key, comparing (and hashing) nested arrays by content.
+     */
+    protected static final class LabelsKey {
+
+        protected final Object[] labels;
+        protected final int hashCode;
+
+        protected LabelsKey(Object[] labels) {
+
+            this.labels = labels;
+            this.hashCode = Arrays.deepHashCode(labels);
+
+        }
+
+        @Override
+        public int hashCode() {
+
+            return hashCode;
+
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+
+            return obj instanceof LabelsKey && Arrays.deepEquals(labels, ((LabelsKey)obj).labels);
+
+        }
+
+    }
+
+    /**
+     * The statistics records, by their key (see {@link #createKey(Object[])}).
+     */
+    private static final ConcurrentMap<String, StatsRecord> statisticsMap = new ConcurrentHashMap<String, StatsRecord>();
+    /**
+     * The same statistics records, by their labels; this lets {@link #record(long, long, Object...)} find the
+     * record without building the key.
+     */
+    private static final ConcurrentMap<LabelsKey, StatsRecord> statisticsByLabels
+        = new ConcurrentHashMap<LabelsKey, StatsRecord>();
+    /**
+     * The same statistics records, by the constant labels array (e.g. {@link #RESPONDER_PERFORM_SERVICE_LABELS})
+     * passed as the first label and then by the one label, if any, that follows it; this lets the usual calls to
+     * {@link #record(long, long, Object...)} find the record without allocating a {@link LabelsKey} or hashing the
+     * constant array's contents. Arrays don't override equals or hashCode, so the constants are found by identity.
+     */
+    private static final Map<Object, ConcurrentMap<Object, StatsRecord>> statisticsByConstantLabels
+        = new ConcurrentHashMap<Object, ConcurrentMap<Object, StatsRecord>>();
+    /**
+     * Stands in for the following label in {@link #statisticsByConstantLabels} when there is none.
+     */
+    private static final Object NO_LABEL = new Object();
+    /**
+     * Guards the creation of records and {@link #clear()}; the maps are static, so this lock is too.
+     */
+    private static final Object createLock = new Object();
     private static final String separator = " ";
 
+    /**
+     * The number of requests currently waiting for a free request slot, and the most that have waited at once
+     * since the statistics were last cleared.
+     */
+    private static final AtomicInteger queueDepth = new AtomicInteger();
+    private static final AtomicInteger maxQueueDepth = new AtomicInteger();
+
+    static {
+
+        Object[][] constantLabels = {
+            RESPONDER_UNMARSHAL_MESSAGE_LABELS, RESPONDER_CREATE_DATA_LABELS, RESPONDER_PERFORM_SERVICE_LABELS,
+            RESPONDER_CREATE_MESSAGE_LABELS, RESPONDER_MARSHAL_MESSAGE_LABELS, RESPONDER_TOTAL_LABELS,
+            RESPONDER_ADMISSION_WAIT_LABELS, RESPONDER_REJECTED_LABELS, SCHEMA_COMPILE_LABELS,
+            SCHEMA_SAMPLE_VALIDATION_LABELS, INITIATOR_CREATE_MESSAGE_LABELS, INITIATOR_MARSHAL_MESSAGE_LABELS,
+            INITIATOR_SEND_MESSAGE_LABELS, INITIATOR_UNMARSHAL_MESSAGE_LABELS, INITIATOR_CREATE_DATA_LABELS,
+            INITIATOR_TOTAL_LABELS };
+        for ( Object[] labels : constantLabels ) {
+
+            statisticsByConstantLabels.put(labels, new ConcurrentHashMap<Object, StatsRecord>());
+
+        }
+
+    }
+
     public StatisticsBean() {
 
         // Do nothing
@@ -135,24 +277,100 @@ public class StatisticsBean implements ToolkitComponent {
 
     }
 
-    public synchronized void record(long startTime, long endTime, Object ... labels) {
+    public void record(long startTime, long endTime, Object ... labels) {
 
-        String key = createKey(labels);
-        LOG.debug(key + ": " + ( endTime - startTime) + " milliseconds.");
+        StatsRecord statsRecord = findStatsRecord(labels);
+        if ( statsRecord == null ) {
 
-        maxLabels = Math.max(maxLabels, countLabels(labels));
+            statsRecord = getOrCreateStatsRecord(labels);
 
-        StatsRecord statsRecord = statisticsMap.get(key);
-        if ( statsRecord != null ) {
+        }
 
-            statsRecord.add(startTime, endTime);
+        statsRecord.add(startTime, endTime);
 
-        } else {
+        if ( LOG.isDebugEnabled() ) {
+
+            LOG.debug(statsRecord.getKey() + ": " + ( endTime - startTime) + " milliseconds.");
+
+        }
+
+    }
+
+    /**
+     * Find the existing record for the labels without taking the lock.
+     * @param labels
+     * @return the record, or null if there is none yet
+     */
+    protected StatsRecord findStatsRecord(Object[] labels) {
+
+        Map<Object, StatsRecord> byFollowingLabel = getRecordsByFollowingLabel(labels);
+        if ( byFollowingLabel != null ) {
+
+            return byFollowingLabel.get(getFollowingLabel(labels));
+
+        }
+
+        return statisticsByLabels.get(new LabelsKey(labels));
+
+    }
+
+    protected StatsRecord getOrCreateStatsRecord(Object[] labels) {
+
+        synchronized ( createLock ) {
+
+            StatsRecord statsRecord = statisticsByLabels.get(new LabelsKey(labels));
+            if ( statsRecord == null ) {
+
+                StatsRecord newRecord = new StatsRecord(labels);
+                statsRecord = statisticsMap.get(newRecord.getKey());
+                if ( statsRecord == null ) {
+
+                    statsRecord = newRecord;
+                    statisticsMap.put(newRecord.getKey(), newRecord);
+
+                }
+
+                // Key by the record's own copy of the labels, so later changes by the caller to its array don't
+                // matter.
+                statisticsByLabels.put(new LabelsKey(newRecord.getLabels()), statsRecord);
+                maxLabels = Math.max(maxLabels, newRecord.labelCount);
+
+            }
 
-            statisticsMap.put(key, new StatsRecord(labels, startTime, endTime));
+            Map<Object, StatsRecord> byFollowingLabel = getRecordsByFollowingLabel(labels);
+            if ( byFollowingLabel != null ) {
+
+                byFollowingLabel.put(getFollowingLabel(labels), statsRecord);
+
+            }
+
+            return statsRecord;
+
+        }
+
+    }
+
+    /**
+     * Returns the map in {@link #statisticsByConstantLabels} for the labels, or null if they don't start with one of
+     * the constant labels arrays followed by at most one label that isn't null or an array.
+     */
+    private static Map<Object, StatsRecord> getRecordsByFollowingLabel(Object[] labels) {
+
+        if ( labels.length == 0 || labels.length > 2 || labels[0] == null
+            || ( labels.length == 2 && ( labels[1] == null || labels[1].getClass().isArray() ) ) ) {
+
+            return null;
 
         }
 
+        return statisticsByConstantLabels.get(labels[0]);
+
+    }
+
+    private static Object getFollowingLabel(Object[] labels) {
+
+        return labels.length == 2 ? labels[1] : NO_LABEL;
+
     }
 
     public int countLabels(Object[] labelArray) {
@@ -230,23 +448,72 @@ public class StatisticsBean implements ToolkitComponent {
 
     }
 
-    public synchronized long getMaxLabels() {
+    public long getMaxLabels() {
 
         return maxLabels;
 
     }
 
-    public synchronized Map<String, StatsRecord> getStatsRecords() {
+    /**
+     * Returns a snapshot of the statistics records, sorted by key. The records themselves continue to be updated.
+     * @return
+     */
+    public Map<String, StatsRecord> getStatsRecords() {
 
         return new TreeMap<String, StatsRecord>(statisticsMap);
 
     }
 
-    public synchronized void clear() {
+    /**
+     * Count a request that has started waiting for a free request slot.
+     */
+    public void queueEntered() {
+
+        int depth = queueDepth.incrementAndGet();
+        int max = maxQueueDepth.get();
+        while ( depth > max && ! maxQueueDepth.compareAndSet(max, depth) ) {
+            max = maxQueueDepth.get();
+        }
+
+    }
+
+    /**
+     * Count a request that has stopped waiting, whether or not it got a request slot.
+     */
+    public void queueLeft() {
+
+        queueDepth.decrementAndGet();
+
+    }
+
+    public int getQueueDepth() {
+
+        return queueDepth.get();
+
+    }
+
+    public int getMaxQueueDepth() {
+
+        return maxQueueDepth.get();
+
+    }
+
+    public void clear() {
+
+        synchronized ( createLock ) {
+
+            statisticsByLabels.clear();
+            for ( Map<Object, StatsRecord> byFollowingLabel : statisticsByConstantLabels.values() ) {
+
+                byFollowingLabel.clear();
+
+            }
+            statisticsMap.clear();
+            maxLabels = 0;
+            maxQueueDepth.set(queueDepth.get());
+
+        }
 
-        statisticsMap.clear();
-        maxLabels = 0;
-        
     }
 
     public String createCSVReport() {
@@ -259,7 +526,13 @@ public class StatisticsBean implements ToolkitComponent {
 
             statsReport.append("Type").append(",");
         }
-        statsReport.append("Count, Total ms.,Average ms.").append(System.getProperty("line.separator"));
+        statsReport.append("Count, Total ms.,Average ms.");
+        for ( double percentile : REPORTED_PERCENTILES ) {
+
+            statsReport.append(",p").append((int)percentile).append(" ms.");
+
+        }
+        statsReport.append(",Max ms.").append(System.getProperty("line.separator"));
 
         // Body of report
         for ( Map.Entry<String, StatisticsBean.StatsRecord> statRecord : getStatsRecords().entrySet() ) {
@@ -276,15 +549,30 @@ public class StatisticsBean implements ToolkitComponent {
 
             }
 
-            float floatAvg = ((float)statRecord.getValue().getTotalIntervals()) / ((float)statRecord.getValue().getCount());
+            long count = statRecord.getValue().getCount();
+            long totalIntervals = statRecord.getValue().getTotalIntervals();
+            float floatAvg = count == 0 ? 0.0f : ((float)totalIntervals) / ((float)count);
+
+            statsReport.append(count).append(",")
+                .append(totalIntervals).append(",")
+                .append(formatter.format(floatAvg));
+            for ( double percentile : REPORTED_PERCENTILES ) {
 
-            statsReport.append(statRecord.getValue().getCount()).append(",")
-                .append(statRecord.getValue().getTotalIntervals()).append(",")
-                .append(formatter.format(floatAvg))
+                statsReport.append(",").append(statRecord.getValue().getPercentileInterval(percentile));
+
+            }
+            statsReport.append(",").append(statRecord.getValue().getMaxInterval())
                 .append(System.getProperty("line.separator"));
 
         }
 
+        if ( getMaxQueueDepth() > 0 ) {
+
+            statsReport.append("Queue depth,").append(getQueueDepth()).append(",Max queue depth,")
+                .append(getMaxQueueDepth()).append(System.getProperty("line.separator"));
+
+        }
+
         return statsReport.toString();
 
     }
@@ -0,0 +1,51 @@
+/**
+ * Copyright (c) 2013 eXtensible Catalog Organization
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the MIT/X11 license. The text of the license can be
+ * found at http://www.opensource.org/licenses/mit-license.php.
+ */
+
+package org.extensiblecatalog.ncip.v2.common;
+
+import org.extensiblecatalog.ncip.v2.service.*;
+
+import java.io.OutputStream;
+
+/**
+ * A {@link Translator} that can write NCIP messages directly to an {@link OutputStream} (e.g. the servlet's
+ * response stream), rather than returning them as a fully-buffered stream that the caller must then copy.
+ */
+public interface StreamingTranslator extends Translator {
+
+    /**
+     * Write the initiation message for the initiation data to the output stream; the output stream is not
+     * flushed or closed.
+     * This method must call {@link ServiceContext#validateBeforeMarshalling}.
+     * Always pass the same instance of ServiceContext to the {@link Translator} for a given invocation of a service.
+     * @param serviceContext
+     * @param initiationData
+     * @param outputStream
+     * @throws ServiceException
+     * @throws ValidationException
+     */
+    void writeInitiationMessage(ServiceContext serviceContext, NCIPInitiationData initiationData,
+                                OutputStream outputStream)
+        throws ServiceException, ValidationException;
+
+    /**
+     * Write the response message for the response data to the output stream; the output stream is not
+     * flushed or closed.
+     * This method must call {@link ServiceContext#validateBeforeMarshalling}.
+     * Always pass the same instance of ServiceContext to the {@link Translator} for a given invocation of a service.
+     * @param serviceContext
+     * @param responseData
+     * @param outputStream
+     * @throws ServiceException
+     * @throws ValidationException
+     */
+    void writeResponseMessage(ServiceContext serviceContext, NCIPResponseData responseData,
+                              OutputStream outputStream)
+        throws ServiceException, ValidationException;
+
+}
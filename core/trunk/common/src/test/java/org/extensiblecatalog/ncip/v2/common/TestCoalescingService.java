@@ -0,0 +1,236 @@
+package org.extensiblecatalog.ncip.v2.common;
+
+import org.extensiblecatalog.ncip.v2.service.*;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestCoalescingService {
+
+    protected static final int CALLERS = 8;
+
+    protected static class BlockingService implements NCIPService<NCIPInitiationData, NCIPResponseData> {
+
+        protected final AtomicInteger calls = new AtomicInteger();
+        protected final CountDownLatch release = new CountDownLatch(1);
+        protected boolean fail = false;
+
+        @Override
+        public NCIPResponseData performService(NCIPInitiationData initiationData, ServiceContext serviceContext,
+                                               RemoteServiceManager serviceManager) throws ServiceException {
+            calls.incrementAndGet();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new ServiceException(ServiceError.RUNTIME_ERROR, e);
+            }
+            if ( fail ) {
+                throw new ServiceException(ServiceError.RUNTIME_ERROR, "Backend failed.");
+            }
+            LookupItemResponseData responseData = new LookupItemResponseData();
+            ItemId itemId = new ItemId();
+            itemId.setItemIdentifierValue(((LookupItemInitiationData)initiationData).getItemId().getItemIdentifierValue());
+            itemId.setItemIdentifierType(Version1ItemIdentifierType.BARCODE);
+            responseData.setItemId(itemId);
+            return responseData;
+        }
+
+    }
+
+    /**
+     * Returns a LookupItemSet response with a new NextItemToken on each call.
+     */
+    protected static class PagingService implements NCIPService<NCIPInitiationData, NCIPResponseData> {
+
+        protected final AtomicInteger calls = new AtomicInteger();
+        protected final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public NCIPResponseData performService(NCIPInitiationData initiationData, ServiceContext serviceContext,
+                                               RemoteServiceManager serviceManager) throws ServiceException {
+            int call = calls.incrementAndGet();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new ServiceException(ServiceError.RUNTIME_ERROR, e);
+            }
+            LookupItemSetResponseData responseData = new LookupItemSetResponseData();
+            responseData.setNextItemToken("token" + call);
+            return responseData;
+        }
+
+    }
+
+    protected static LookupItemInitiationData createLookupItem(String itemIdValue) {
+        LookupItemInitiationData initData = new LookupItemInitiationData();
+        ItemId itemId = new ItemId();
+        itemId.setItemIdentifierValue(itemIdValue);
+        initData.setItemId(itemId);
+        return initData;
+    }
+
+    protected static List<Future<NCIPResponseData>> submitCallers(ExecutorService executor,
+                                                                  final CoalescingService service) {
+        List<Future<NCIPResponseData>> futures = new ArrayList<Future<NCIPResponseData>>();
+        for ( int i = 0; i < CALLERS; i++ ) {
+            futures.add(executor.submit(new Callable<NCIPResponseData>() {
+                public NCIPResponseData call() throws Exception {
+                    return service.performService(createLookupItem("i1"), null, null);
+                }
+            }));
+        }
+        return futures;
+    }
+
+    protected static List<Future<NCIPResponseData>> submitLookupItemSetCallers(
+        ExecutorService executor, final CoalescingService service, final BigDecimal maximumItemsCount) {
+        List<Future<NCIPResponseData>> futures = new ArrayList<Future<NCIPResponseData>>();
+        for ( int i = 0; i < CALLERS; i++ ) {
+            futures.add(executor.submit(new Callable<NCIPResponseData>() {
+                public NCIPResponseData call() throws Exception {
+                    LookupItemSetInitiationData initData = new LookupItemSetInitiationData();
+                    initData.setMaximumItemsCount(maximumItemsCount);
+                    return service.performService(initData, null, null);
+                }
+            }));
+        }
+        return futures;
+    }
+
+    protected static void awaitCallers(CoalescingService service) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while ( service.getExecutedCalls() + service.getCoalescedCalls() < CALLERS
+            && System.currentTimeMillis() < deadline ) {
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    public void testIdenticalCallsShareOneCall() throws Exception {
+        BlockingService backend = new BlockingService();
+        CoalescingService service = new CoalescingService(backend);
+        ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+        try {
+            List<Future<NCIPResponseData>> futures = submitCallers(executor, service);
+            awaitCallers(service);
+            backend.release.countDown();
+
+            Map<Object, Object> responses = new IdentityHashMap<Object, Object>();
+            for ( Future<NCIPResponseData> future : futures ) {
+                LookupItemResponseData responseData = (LookupItemResponseData)future.get();
+                assertEquals("i1", responseData.getItemId().getItemIdentifierValue());
+                assertSame(Version1ItemIdentifierType.BARCODE, responseData.getItemId().getItemIdentifierType());
+                responses.put(responseData, responseData);
+                responses.put(responseData.getItemId(), responseData);
+            }
+            // Each caller has its own copy
+            assertEquals(2 * CALLERS, responses.size());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, backend.calls.get());
+        assertEquals(1, service.getExecutedCalls());
+        assertEquals(CALLERS - 1, service.getCoalescedCalls());
+        assertEquals(0, service.getCallsInFlight());
+    }
+
+    @Test
+    public void testFailureIsShared() throws Exception {
+        BlockingService backend = new BlockingService();
+        backend.fail = true;
+        CoalescingService service = new CoalescingService(backend);
+        ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+        try {
+            List<Future<NCIPResponseData>> futures = submitCallers(executor, service);
+            awaitCallers(service);
+            backend.release.countDown();
+            for ( Future<NCIPResponseData> future : futures ) {
+                try {
+                    future.get();
+                    fail("Expected a ServiceException.");
+                } catch (java.util.concurrent.ExecutionException e) {
+                    assertTrue(e.getCause() instanceof ServiceException);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, backend.calls.get());
+    }
+
+    @Test
+    public void testPagedRequestsAreNotShared() throws Exception {
+        PagingService backend = new PagingService();
+        CoalescingService service = new CoalescingService(backend);
+        ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+        try {
+            List<Future<NCIPResponseData>> futures = submitLookupItemSetCallers(executor, service, BigDecimal.TEN);
+            awaitCallers(service);
+            backend.release.countDown();
+            for ( Future<NCIPResponseData> future : futures ) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(CALLERS, backend.calls.get());
+        assertEquals(0, service.getCoalescedCalls());
+    }
+
+    @Test
+    public void testNextItemTokensAreNotShared() throws Exception {
+        PagingService backend = new PagingService();
+        CoalescingService service = new CoalescingService(backend);
+        ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+        Set<String> tokens = new HashSet<String>();
+        try {
+            // No MaximumItemsCount, so the calls are coalesced until their response turns out to carry a token
+            List<Future<NCIPResponseData>> futures = submitLookupItemSetCallers(executor, service, null);
+            awaitCallers(service);
+            backend.release.countDown();
+            for ( Future<NCIPResponseData> future : futures ) {
+                tokens.add(((LookupItemSetResponseData)future.get()).getNextItemToken());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        // Each caller got its own token
+        assertEquals(CALLERS, tokens.size());
+        assertEquals(CALLERS, backend.calls.get());
+        assertEquals(CALLERS, service.getExecutedCalls());
+        assertEquals(0, service.getCoalescedCalls());
+    }
+
+    @Test
+    public void testSequentialCallsAreNotShared() throws Exception {
+        BlockingService backend = new BlockingService();
+        backend.release.countDown();
+        CoalescingService service = new CoalescingService(backend);
+        NCIPResponseData first = service.performService(createLookupItem("i1"), null, null);
+        NCIPResponseData second = service.performService(createLookupItem("i1"), null, null);
+        assertNotSame(first, second);
+        assertEquals(2, backend.calls.get());
+        assertEquals(0, service.getCoalescedCalls());
+    }
+
+}
@@ -0,0 +1,93 @@
+package org.extensiblecatalog.ncip.v2.common;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestNextItemTokenStore {
+
+    protected static class ClockedStore extends NextItemTokenStore<String> {
+
+        protected long now = 0;
+
+        protected ClockedStore(long timeToLive, int maxSize) {
+            super(timeToLive, maxSize);
+        }
+
+        @Override
+        protected long currentTimeMillis() {
+            return now;
+        }
+
+    }
+
+    @Test
+    public void testAddGetRemove() {
+        ClockedStore store = new ClockedStore(1000, 100);
+        Set<String> keys = new HashSet<String>();
+        for ( int i = 0; i < 50; i++ ) {
+            assertTrue(keys.add(store.add("token" + i)));
+        }
+        assertEquals(50, store.size());
+
+        String key = store.add("last");
+        assertEquals("last", store.get(key));
+        assertEquals("last", store.remove(key));
+        assertNull(store.get(key));
+        assertNull(store.remove(key));
+        assertFalse(store.isExpired(key));
+        assertNull(store.get("unknown"));
+        assertNull(store.get(null));
+    }
+
+    @Test
+    public void testExpiry() {
+        ClockedStore store = new ClockedStore(1000, 100);
+        String key = store.add("token");
+
+        store.now = 1000;
+        assertEquals("token", store.get(key));
+
+        store.now = 1001;
+        assertNull(store.get(key));
+        assertNull(store.remove(key));
+        assertTrue(store.isExpired(key));
+
+        // Expired tokens are remembered for one more time-to-live, then evicted as tokens are added
+        store.now = 2000;
+        store.add("other");
+        assertTrue(store.isExpired(key));
+        store.now = 2001;
+        store.add("another");
+        assertFalse(store.isExpired(key));
+        assertEquals(2, store.size());
+    }
+
+    @Test
+    public void testMaxSize() {
+        ClockedStore store = new ClockedStore(1000, 10);
+        String first = store.add("first");
+        String second = store.add("second");
+        store.remove(second);
+        for ( int i = 0; i < 9; i++ ) {
+            store.add("token" + i);
+        }
+        assertEquals(10, store.size());
+        assertEquals("first", store.get(first));
+
+        store.add("one too many");
+        assertEquals(10, store.size());
+        assertNull(store.get(first));
+        assertFalse(store.isExpired(first));
+
+        store.clear();
+        assertEquals(0, store.size());
+    }
+
+}
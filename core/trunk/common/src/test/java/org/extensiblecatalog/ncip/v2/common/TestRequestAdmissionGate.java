@@ -0,0 +1,125 @@
+package org.extensiblecatalog.ncip.v2.common;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestRequestAdmissionGate {
+
+    @Test
+    public void testRejectsWhenQueueIsFull() {
+        StatisticsBean statisticsBean = new StatisticsBean();
+        statisticsBean.clear();
+        RequestAdmissionGate gate = new RequestAdmissionGate(1, 0, 1000, statisticsBean);
+
+        assertEquals(RequestAdmissionGate.Admission.ADMITTED, gate.enter());
+        assertEquals(RequestAdmissionGate.Admission.QUEUE_FULL, gate.enter());
+        gate.exit();
+        assertEquals(RequestAdmissionGate.Admission.ADMITTED, gate.enter());
+        gate.exit();
+
+        assertEquals(1, gate.getAvailableSlots());
+        assertEquals(0, gate.getWaitingCount());
+        StatisticsBean.StatsRecord rejected = statisticsBean.getStatsRecords().get("7 Rejected Queue Full");
+        assertNotNull(rejected);
+        assertEquals(1, rejected.getCount());
+        statisticsBean.clear();
+    }
+
+    @Test
+    public void testRejectsWhenWaitTimesOut() {
+        StatisticsBean statisticsBean = new StatisticsBean();
+        statisticsBean.clear();
+        RequestAdmissionGate gate = new RequestAdmissionGate(1, 5, 20, statisticsBean);
+
+        assertEquals(RequestAdmissionGate.Admission.ADMITTED, gate.enter());
+        assertEquals(RequestAdmissionGate.Admission.TIMED_OUT, gate.enter());
+        gate.exit();
+
+        assertEquals(1, statisticsBean.getMaxQueueDepth());
+        assertEquals(0, statisticsBean.getQueueDepth());
+        StatisticsBean.StatsRecord rejected = statisticsBean.getStatsRecords().get("7 Rejected Wait Timed Out");
+        assertNotNull(rejected);
+        assertTrue(rejected.getMaxInterval() >= 20);
+        statisticsBean.clear();
+    }
+
+    @Test
+    public void testWaitingRequestIsAdmittedWhenSlotIsFreed() throws Exception {
+        StatisticsBean statisticsBean = new StatisticsBean();
+        statisticsBean.clear();
+        final RequestAdmissionGate gate = new RequestAdmissionGate(1, 1, 10000, statisticsBean);
+        assertEquals(RequestAdmissionGate.Admission.ADMITTED, gate.enter());
+
+        final AtomicReference<RequestAdmissionGate.Admission> waiterAdmission
+            = new AtomicReference<RequestAdmissionGate.Admission>();
+        final CountDownLatch done = new CountDownLatch(1);
+        Thread waiter = new Thread() {
+            public void run() {
+                waiterAdmission.set(gate.enter());
+                done.countDown();
+            }
+        };
+        waiter.start();
+        while ( gate.getWaitingCount() == 0 ) {
+            Thread.sleep(1);
+        }
+        // The one queue place is taken, so a third request is turned away at once.
+        assertEquals(RequestAdmissionGate.Admission.QUEUE_FULL, gate.enter());
+
+        gate.exit();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(RequestAdmissionGate.Admission.ADMITTED, waiterAdmission.get());
+        gate.exit();
+        assertEquals(1, gate.getAvailableSlots());
+        assertNotNull(statisticsBean.getStatsRecords().get("0 Admission Wait"));
+        statisticsBean.clear();
+    }
+
+    @Test
+    public void testNewArrivalDoesNotTakeSlotFromWaitingRequest() throws Exception {
+        StatisticsBean statisticsBean = new StatisticsBean();
+        statisticsBean.clear();
+        final RequestAdmissionGate gate = new RequestAdmissionGate(1, 1, 1000, statisticsBean);
+        assertEquals(RequestAdmissionGate.Admission.ADMITTED, gate.enter());
+
+        final AtomicReference<RequestAdmissionGate.Admission> waiterAdmission
+            = new AtomicReference<RequestAdmissionGate.Admission>();
+        Thread waiter = new Thread() {
+            public void run() {
+                waiterAdmission.set(gate.enter());
+            }
+        };
+        waiter.start();
+        while ( ! gate.slots.hasQueuedThreads() ) {
+            Thread.sleep(1);
+        }
+
+        // The freed slot belongs to the waiting request, so a request arriving now must not get it. It is turned
+        // away at once if the waiter is still queued, or after waiting behind it if the waiter has already left.
+        gate.exit();
+        assertTrue(gate.enter() != RequestAdmissionGate.Admission.ADMITTED);
+
+        waiter.join(10000);
+        assertEquals(RequestAdmissionGate.Admission.ADMITTED, waiterAdmission.get());
+        gate.exit();
+        assertEquals(1, gate.getAvailableSlots());
+        statisticsBean.clear();
+    }
+
+    @Test
+    public void testNoGateWhenUnlimited() throws Exception {
+        DefaultCoreConfiguration coreConfig = new DefaultCoreConfiguration();
+        assertNull(RequestAdmissionGate.buildRequestAdmissionGate(coreConfig, new StatisticsBean()));
+        coreConfig.setMaxConcurrentRequests(4);
+        assertNotNull(RequestAdmissionGate.buildRequestAdmissionGate(coreConfig, new StatisticsBean()));
+    }
+
+}
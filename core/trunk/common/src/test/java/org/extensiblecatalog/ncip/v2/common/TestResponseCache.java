@@ -0,0 +1,251 @@
+package org.extensiblecatalog.ncip.v2.common;
+
+import org.extensiblecatalog.ncip.v2.service.*;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Queue;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestResponseCache {
+
+    protected static class ClockedCache extends ResponseCache {
+
+        protected long now = 0;
+
+        protected ClockedCache(int maxSize) {
+            super(maxSize);
+        }
+
+        @Override
+        protected long currentTimeMillis() {
+            return now;
+        }
+
+    }
+
+    protected static class CountingService implements NCIPService<NCIPInitiationData, NCIPResponseData> {
+
+        protected int calls = 0;
+        protected boolean returnProblem = false;
+
+        @Override
+        public NCIPResponseData performService(NCIPInitiationData initiationData, ServiceContext serviceContext,
+                                               RemoteServiceManager serviceManager) {
+            calls++;
+            if ( returnProblem ) {
+                return new ProblemResponseData();
+            }
+            LookupItemResponseData responseData = new LookupItemResponseData();
+            if ( initiationData instanceof LookupItemInitiationData ) {
+                responseData.setItemId(((LookupItemInitiationData)initiationData).getItemId());
+            }
+            return responseData;
+        }
+
+    }
+
+    protected static ItemId createItemId(String value) {
+        ItemId itemId = new ItemId();
+        itemId.setItemIdentifierValue(value);
+        return itemId;
+    }
+
+    protected static LookupItemInitiationData createLookupItem(String itemIdValue, boolean locationDesired) {
+        LookupItemInitiationData initData = new LookupItemInitiationData();
+        initData.setItemId(createItemId(itemIdValue));
+        initData.setLocationDesired(locationDesired);
+        return initData;
+    }
+
+    @Test
+    public void testCreateKey() throws ToolkitException {
+        assertEquals(ResponseCache.createKey(createLookupItem("i1", true)),
+            ResponseCache.createKey(createLookupItem("i1", true)));
+        assertFalse(ResponseCache.createKey(createLookupItem("i1", true)).equals(
+            ResponseCache.createKey(createLookupItem("i2", true))));
+        assertFalse(ResponseCache.createKey(createLookupItem("i1", true)).equals(
+            ResponseCache.createKey(createLookupItem("i1", false))));
+    }
+
+    @Test
+    public void testCollectIds() throws ToolkitException {
+        LookupItemResponseData responseData = new LookupItemResponseData();
+        responseData.setItemId(createItemId(" i2 "));
+        Set<String> ids = ResponseCache.collectIds(createLookupItem("i1", true), responseData, null);
+        assertEquals(2, ids.size());
+        assertTrue(ids.contains("i1"));
+        assertTrue(ids.contains("i2"));
+    }
+
+    @Test
+    public void testHitsAndExpiry() throws Exception {
+        ClockedCache cache = new ClockedCache(100);
+        CountingService service = new CountingService();
+        CachingService cachingService = new CachingService(service, cache, 1000);
+
+        NCIPResponseData first = cachingService.performService(createLookupItem("i1", true), null, null);
+        assertSame(first, cachingService.performService(createLookupItem("i1", true), null, null));
+        assertEquals(1, service.calls);
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        cachingService.performService(createLookupItem("i2", true), null, null);
+        assertEquals(2, service.calls);
+
+        cache.now = 1000;
+        assertNotSame(first, cachingService.performService(createLookupItem("i1", true), null, null));
+        assertEquals(3, service.calls);
+    }
+
+    @Test
+    public void testProblemsAreNotCached() throws Exception {
+        ClockedCache cache = new ClockedCache(100);
+        CountingService service = new CountingService();
+        service.returnProblem = true;
+        CachingService cachingService = new CachingService(service, cache, 1000);
+
+        cachingService.performService(createLookupItem("i1", true), null, null);
+        cachingService.performService(createLookupItem("i1", true), null, null);
+        assertEquals(2, service.calls);
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testNextItemTokensAreNotCached() throws Exception {
+        ClockedCache cache = new ClockedCache(100);
+        final int[] calls = new int[1];
+        CachingService cachingService = new CachingService(new NCIPService<NCIPInitiationData, NCIPResponseData>() {
+            @Override
+            public NCIPResponseData performService(NCIPInitiationData initiationData, ServiceContext serviceContext,
+                                                   RemoteServiceManager serviceManager) {
+                calls[0]++;
+                LookupItemSetResponseData responseData = new LookupItemSetResponseData();
+                responseData.setNextItemToken("token" + calls[0]);
+                return responseData;
+            }
+        }, cache, 1000);
+
+        // A response with a token is not cached
+        LookupItemSetInitiationData firstPage = new LookupItemSetInitiationData();
+        cachingService.performService(firstPage, null, null);
+        cachingService.performService(firstPage, null, null);
+        assertEquals(2, calls[0]);
+        assertEquals(0, cache.size());
+        assertEquals(2, cache.getMisses());
+
+        // Nor is a request with a token, nor is the cache consulted for it
+        LookupItemSetInitiationData nextPage = new LookupItemSetInitiationData();
+        nextPage.setNextItemToken("token1");
+        cachingService.performService(nextPage, null, null);
+        cachingService.performService(nextPage, null, null);
+        assertEquals(4, calls[0]);
+        assertEquals(0, cache.size());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void testInvalidation() throws Exception {
+        ClockedCache cache = new ClockedCache(100);
+        CountingService service = new CountingService();
+        CachingService cachingService = new CachingService(service, cache, 1000);
+        CachingService checkOutService = new CachingService(new CountingService(), cache, 0);
+
+        cachingService.performService(createLookupItem("i1", true), null, null);
+        cachingService.performService(createLookupItem("i2", true), null, null);
+        assertEquals(2, cache.size());
+
+        CheckOutItemInitiationData checkOut = new CheckOutItemInitiationData();
+        checkOut.setItemId(createItemId("i1"));
+        checkOutService.performService(checkOut, null, null);
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getInvalidations());
+
+        cachingService.performService(createLookupItem("i1", true), null, null);
+        cachingService.performService(createLookupItem("i2", true), null, null);
+        assertEquals(3, service.calls);
+
+        // A write whose items can't be determined invalidates everything
+        cache.invalidate(Collections.<String>emptySet());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testStaleResponseIsNotCached() throws ToolkitException {
+        ClockedCache cache = new ClockedCache(100);
+        long generation = cache.getGeneration();
+        cache.invalidate(Collections.singleton("i1"));
+        assertFalse(cache.put("key", new LookupItemResponseData(), Collections.singleton("i1"), 1000, generation));
+        assertNull(cache.get("key"));
+        assertEquals(0, cache.size());
+    }
+
+    protected static int queuedEntries(ResponseCache cache) {
+        int count = 0;
+        for ( Queue<ResponseCache.Entry> queue : cache.entriesByTimeToLive.values() ) {
+            count += queue.size();
+        }
+        return count;
+    }
+
+    @Test
+    public void testMixedTimeToLive() throws ToolkitException {
+        ClockedCache cache = new ClockedCache(100);
+        cache.put("long", new LookupItemResponseData(), Collections.singleton("l"), 1000000, cache.getGeneration());
+
+        // Short-lived entries expire and are evicted even though a long-lived entry was added before them
+        for ( int i = 0; i < 50; i++ ) {
+            cache.now = i * 100;
+            cache.put("short" + i, new LookupItemResponseData(), Collections.singleton("s" + i), 10,
+                cache.getGeneration());
+        }
+        assertEquals(2, cache.size());
+        assertEquals(2, queuedEntries(cache));
+        assertEquals(49, cache.getEvictions());
+        assertTrue(cache.get("long") != null);
+
+        // Replaced and invalidated entries leave their queues at once
+        for ( int i = 0; i < 50; i++ ) {
+            cache.put("replaced", new LookupItemResponseData(), Collections.singleton("r"), 1000000,
+                cache.getGeneration());
+        }
+        assertEquals(3, cache.size());
+        assertEquals(3, queuedEntries(cache));
+        cache.invalidate(Collections.singleton("r"));
+        assertEquals(2, cache.size());
+        assertEquals(2, queuedEntries(cache));
+
+        // When the cache is full, the oldest entry goes first whatever its time-to-live
+        cache.setMaxSize(2);
+        cache.put("medium", new LookupItemResponseData(), Collections.singleton("m"), 5000, cache.getGeneration());
+        assertEquals(2, cache.size());
+        assertNull(cache.get("long"));
+        assertTrue(cache.get("medium") != null);
+    }
+
+    @Test
+    public void testMaxSize() throws ToolkitException {
+        ClockedCache cache = new ClockedCache(10);
+        for ( int i = 0; i < 15; i++ ) {
+            cache.put("key" + i, new LookupItemResponseData(), Collections.singleton("i" + i), 1000,
+                cache.getGeneration());
+        }
+        assertEquals(10, cache.size());
+        assertEquals(5, cache.getEvictions());
+        assertNull(cache.get("key4"));
+        assertTrue(cache.get("key5") != null);
+
+        // Evicted entries are no longer indexed
+        cache.invalidate(Collections.singleton("i0"));
+        assertEquals(0, cache.getInvalidations());
+        assertEquals(10, cache.size());
+    }
+
+}
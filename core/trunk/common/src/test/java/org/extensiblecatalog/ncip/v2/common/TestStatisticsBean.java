@@ -0,0 +1,126 @@
+package org.extensiblecatalog.ncip.v2.common;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestStatisticsBean {
+
+    @Test
+    public void testRecordAndPercentiles() {
+        StatisticsBean statisticsBean = new StatisticsBean();
+        statisticsBean.clear();
+        for ( long i = 1; i <= 1000; i++ ) {
+            statisticsBean.record(0, i, StatisticsBean.RESPONDER_PERFORM_SERVICE_LABELS, "LookupItem");
+        }
+        statisticsBean.record(0, 5, StatisticsBean.RESPONDER_TOTAL_LABELS, "LookupItem");
+
+        Map<String, StatisticsBean.StatsRecord> records = statisticsBean.getStatsRecords();
+        assertEquals(2, records.size());
+        assertEquals(3, statisticsBean.getMaxLabels());
+
+        StatisticsBean.StatsRecord record = records.get("3 Perform Service LookupItem");
+        assertEquals(1000, record.getCount());
+        assertEquals(500500, record.getTotalIntervals());
+        assertEquals(1000, record.getMaxInterval());
+        long p50 = record.getPercentileInterval(50.0);
+        assertTrue("p50 was " + p50, p50 >= 500 && p50 <= 500 * 1.04);
+        long p99 = record.getPercentileInterval(99.0);
+        assertTrue("p99 was " + p99, p99 >= 990 && p99 <= 1000);
+
+        String report = statisticsBean.createCSVReport();
+        assertTrue(report.contains("p95 ms."));
+        statisticsBean.clear();
+        assertEquals(0, statisticsBean.getStatsRecords().size());
+    }
+
+    @Test
+    public void testConstantAndCopiedLabelsShareRecord() {
+        StatisticsBean statisticsBean = new StatisticsBean();
+        statisticsBean.clear();
+        String[] copiedLabels = StatisticsBean.RESPONDER_PERFORM_SERVICE_LABELS.clone();
+        statisticsBean.record(0, 1, copiedLabels, "LookupItem");
+        statisticsBean.record(0, 2, StatisticsBean.RESPONDER_PERFORM_SERVICE_LABELS, "LookupItem");
+        statisticsBean.record(0, 3, StatisticsBean.RESPONDER_PERFORM_SERVICE_LABELS, "LookupItem");
+        statisticsBean.record(0, 4, StatisticsBean.RESPONDER_PERFORM_SERVICE_LABELS, (Object)null);
+        statisticsBean.record(0, 5, StatisticsBean.SCHEMA_COMPILE_LABELS);
+
+        Map<String, StatisticsBean.StatsRecord> records = statisticsBean.getStatsRecords();
+        assertEquals(3, records.size());
+        assertEquals(3, records.get("3 Perform Service LookupItem").getCount());
+        assertEquals(1, records.get("3 Perform Service null").getCount());
+        assertEquals(1, records.get("8 Compile Schema").getCount());
+
+        // Records found via the constant labels are forgotten on clear, like the others
+        statisticsBean.clear();
+        statisticsBean.record(0, 6, StatisticsBean.RESPONDER_PERFORM_SERVICE_LABELS, "LookupItem");
+        records = statisticsBean.getStatsRecords();
+        assertEquals(1, records.size());
+        assertEquals(1, records.get("3 Perform Service LookupItem").getCount());
+        statisticsBean.clear();
+    }
+
+    @Test
+    public void testClearWhileCreatingRecords() throws InterruptedException {
+        final StatisticsBean statisticsBean = new StatisticsBean();
+        for ( int round = 0; round < 500; round++ ) {
+            final String serviceName = "Service" + round;
+            final CountDownLatch start = new CountDownLatch(1);
+            final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+            Thread recorder = new Thread() {
+                public void run() {
+                    try {
+                        start.await();
+                        statisticsBean.record(0, 1, StatisticsBean.RESPONDER_TOTAL_LABELS, serviceName);
+                    } catch ( Throwable t ) {
+                        failures.add(t);
+                    }
+                }
+            };
+            Thread clearer = new Thread() {
+                public void run() {
+                    try {
+                        start.await();
+                        statisticsBean.clear();
+                    } catch ( Throwable t ) {
+                        failures.add(t);
+                    }
+                }
+            };
+            recorder.start();
+            clearer.start();
+            start.countDown();
+            recorder.join();
+            clearer.join();
+            assertTrue("Failures: " + failures, failures.isEmpty());
+
+            // Whichever ran first, a record made now must be in the report
+            statisticsBean.record(0, 1, StatisticsBean.RESPONDER_TOTAL_LABELS, serviceName);
+            assertTrue("Round " + round + " lost the record.",
+                statisticsBean.getStatsRecords().containsKey("6 Total " + serviceName));
+        }
+        statisticsBean.clear();
+    }
+
+    @Test
+    public void testLatencyHistogramSmallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for ( long i = 0; i < 10; i++ ) {
+            histogram.record(i);
+        }
+        histogram.record(-5);
+        assertEquals(11, histogram.getCount());
+        assertEquals(45, histogram.getTotal());
+        assertEquals(0, histogram.getPercentile(0.0));
+        assertEquals(4, histogram.getPercentile(50.0));
+        assertEquals(9, histogram.getPercentile(100.0));
+    }
+
+}
@@ -0,0 +1,32 @@
+/**
+ * Copyright (c) 2013 eXtensible Catalog Organization
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the MIT/X11 license. The text of the license can be
+ * found at http://www.opensource.org/licenses/mit-license.php.
+ */
+
+package org.extensiblecatalog.ncip.v2.initiator;
+
+import org.extensiblecatalog.ncip.v2.service.NCIPInitiationData;
+import org.extensiblecatalog.ncip.v2.service.NCIPResponseData;
+
+/**
+ * Receives the responses to a batch of initiation messages sent by
+ * {@link InitiatorService#performServices(java.util.Iterator, org.extensiblecatalog.ncip.v2.service.ServiceContext,
+ * org.extensiblecatalog.ncip.v2.service.RemoteServiceManager, BatchResponseHandler)}, one at a time and in the order
+ * the initiation messages were supplied.
+ */
+public interface BatchResponseHandler {
+
+    /**
+     * Handle the response to one initiation message.
+     *
+     * @param index          the position of the initiation message in the batch, starting at 0
+     * @param initiationData the initiation message
+     * @param responseData   the response message; if the message could not be sent or the response could not be
+     *                       read, a {@link org.extensiblecatalog.ncip.v2.service.ProblemResponseData} describing why
+     */
+    void handleResponse(int index, NCIPInitiationData initiationData, NCIPResponseData responseData);
+
+}
@@ -0,0 +1,87 @@
+/**
+ * Copyright (c) 2013 eXtensible Catalog Organization
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the MIT/X11 license. The text of the license can be
+ * found at http://www.opensource.org/licenses/mit-license.php.
+ */
+
+package org.extensiblecatalog.ncip.v2.initiator;
+
+import org.extensiblecatalog.ncip.v2.service.NCIPResponseData;
+
+import java.util.List;
+
+/**
+ * The outcome of sending a batch of initiation messages with {@link InitiatorService}: the number of messages sent,
+ * how many of the responses had Problems, and the throughput achieved.
+ */
+public class BatchResult {
+
+    protected final List<NCIPResponseData> responses;
+    protected final int messageCount;
+    protected final int problemCount;
+    protected final long elapsedTime;
+
+    public BatchResult(List<NCIPResponseData> responses, int messageCount, int problemCount, long elapsedTime) {
+
+        this.responses = responses;
+        this.messageCount = messageCount;
+        this.problemCount = problemCount;
+        this.elapsedTime = elapsedTime;
+
+    }
+
+    /**
+     * @return the responses, in the order of the initiation messages; null if the responses were passed to a
+     *         {@link BatchResponseHandler} instead
+     */
+    public List<NCIPResponseData> getResponses() {
+
+        return responses;
+
+    }
+
+    /**
+     * @return the number of initiation messages in the batch
+     */
+    public int getMessageCount() {
+
+        return messageCount;
+
+    }
+
+    /**
+     * @return the number of responses that had Problems, including messages that could not be sent
+     */
+    public int getProblemCount() {
+
+        return problemCount;
+
+    }
+
+    /**
+     * @return the time in milliseconds taken to send the batch and handle all the responses
+     */
+    public long getElapsedTime() {
+
+        return elapsedTime;
+
+    }
+
+    /**
+     * @return the number of messages sent per second
+     */
+    public double getMessagesPerSecond() {
+
+        return elapsedTime > 0 ? messageCount * 1000.0 / elapsedTime : 0.0;
+
+    }
+
+    public String toString() {
+
+        return messageCount + " messages (" + problemCount + " with problems) in " + elapsedTime + " ms.";
+
+    }
+
+}
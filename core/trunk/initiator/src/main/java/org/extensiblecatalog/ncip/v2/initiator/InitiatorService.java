@@ -13,7 +13,19 @@ import org.extensiblecatalog.ncip.v2.initiator.implprof1.InitiatorServiceManager
 import org.extensiblecatalog.ncip.v2.service.*;
 
 import java.io.*;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.log4j.Logger;
 
@@ -24,6 +36,9 @@ import org.apache.log4j.Logger;
  * This class uses a Translator to convert the NCIPInitiationData object to an array of bytes, which it then
  * passes to the RemoteServiceManager to send to the NCIP Resonder and return an array of bytes representing the
  * NCIP response message.
+ * <p/>
+ * Batches of initiation messages can be sent with the performServices methods, which overlap the translation of
+ * each message with the sending of the messages before it.
  */
 public class InitiatorService implements NCIPService<NCIPInitiationData, NCIPResponseData> {
 
@@ -34,6 +49,16 @@ public class InitiatorService implements NCIPService<NCIPInitiationData, NCIPRes
      */
     protected Translator translator;
 
+    /**
+     * The default maximum number of messages of a batch in flight at once.
+     */
+    public static final int DEFAULT_BATCH_WINDOW = 8;
+
+    /**
+     * The maximum number of messages of a batch that are sent but whose responses have not yet been handled.
+     */
+    protected int batchWindow = DEFAULT_BATCH_WINDOW;
+
     /**
      * Construct an InitiatorService with default values.
      */
@@ -101,12 +126,186 @@ public class InitiatorService implements NCIPService<NCIPInitiationData, NCIPRes
         this.translator = translator;
     }
 
+    /**
+     * Get the maximum number of messages of a batch that are sent but whose responses have not yet been handled.
+     *
+     * @return the in-flight window
+     */
+    public int getBatchWindow() {
+        return batchWindow;
+    }
+
+    /**
+     * Set the maximum number of messages of a batch that are sent but whose responses have not yet been handled.
+     *
+     * @param batchWindow the in-flight window
+     */
+    public void setBatchWindow(int batchWindow) {
+        this.batchWindow = batchWindow;
+    }
+
     public NCIPResponseData performService(NCIPInitiationData initiationData,
                                            ServiceContext serviceContext,
                                            RemoteServiceManager serviceManager) throws ServiceException {
 
         InitiatorServiceManager ncipSvcMgr = (InitiatorServiceManager)serviceManager;
 
+        byte[] initiationBytes = createInitiationBytes(initiationData, serviceContext);
+
+        return sendMessage(initiationBytes, serviceContext, ncipSvcMgr);
+
+    }
+
+    /**
+     * Send each of the initiation messages and return the responses in the same order. See
+     * {@link #performServices(Iterator, ServiceContext, RemoteServiceManager, BatchResponseHandler)}.
+     *
+     * @param initiationDataList the initiation messages
+     * @param serviceContext     the service context
+     * @param serviceManager     the {@link InitiatorServiceManager} to send the messages with
+     * @return the result, including the responses
+     * @throws ServiceException if interrupted
+     */
+    public BatchResult performServices(List<? extends NCIPInitiationData> initiationDataList,
+                                       ServiceContext serviceContext,
+                                       RemoteServiceManager serviceManager) throws ServiceException {
+
+        final List<NCIPResponseData> responses = new ArrayList<NCIPResponseData>(initiationDataList.size());
+        BatchResult result = performServices(initiationDataList.iterator(), serviceContext, serviceManager,
+            new BatchResponseHandler() {
+                public void handleResponse(int index, NCIPInitiationData initiationData,
+                                           NCIPResponseData responseData) {
+                    responses.add(responseData);
+                }
+            });
+
+        return new BatchResult(responses, result.getMessageCount(), result.getProblemCount(),
+            result.getElapsedTime());
+
+    }
+
+    /**
+     * Send each of the initiation messages, passing the responses to the handler in the same order. Each message is
+     * translated on the calling thread while up to {@link #getBatchWindow()} earlier messages are being sent and
+     * their responses translated on other threads, so the serviceManager must allow concurrent calls to
+     * {@link InitiatorServiceManager#sendMessage(byte[])} (as
+     * {@link org.extensiblecatalog.ncip.v2.initiator.implprof1.NCIPImplProf1ServiceManager} does with its
+     * default client). The handler is called on the calling thread.
+     * <p/>
+     * A message that cannot be translated or sent does not stop the batch; the handler receives a
+     * {@link ProblemResponseData} for it instead.
+     *
+     * @param initiationDataIterator the initiation messages, which are read one at a time as the window allows
+     * @param serviceContext         the service context
+     * @param serviceManager         the {@link InitiatorServiceManager} to send the messages with
+     * @param handler                the handler for the responses
+     * @return the result, without the responses
+     * @throws ServiceException if interrupted
+     */
+    public BatchResult performServices(Iterator<? extends NCIPInitiationData> initiationDataIterator,
+                                       final ServiceContext serviceContext,
+                                       RemoteServiceManager serviceManager,
+                                       BatchResponseHandler handler) throws ServiceException {
+
+        final InitiatorServiceManager ncipSvcMgr = (InitiatorServiceManager)serviceManager;
+        int window = Math.max(batchWindow, 1);
+
+        long startTime = System.currentTimeMillis();
+        int messageCount = 0;
+        int problemCount = 0;
+
+        LinkedList<NCIPInitiationData> inFlightData = new LinkedList<NCIPInitiationData>();
+        LinkedList<Future<NCIPResponseData>> inFlightResponses = new LinkedList<Future<NCIPResponseData>>();
+        ExecutorService executor = Executors.newFixedThreadPool(window, new ThreadFactory() {
+
+            private final AtomicInteger threadNumber = new AtomicInteger();
+
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "InitiatorBatch-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+
+        });
+
+        try {
+
+            while ( initiationDataIterator.hasNext() || ! inFlightResponses.isEmpty() ) {
+
+                if ( initiationDataIterator.hasNext() && inFlightResponses.size() < window ) {
+
+                    NCIPInitiationData initiationData = initiationDataIterator.next();
+                    Future<NCIPResponseData> response;
+                    try {
+
+                        final byte[] initiationBytes = createInitiationBytes(initiationData, serviceContext);
+                        response = executor.submit(new Callable<NCIPResponseData>() {
+                            public NCIPResponseData call() throws ServiceException {
+                                return sendMessage(initiationBytes, serviceContext, ncipSvcMgr);
+                            }
+                        });
+
+                    } catch (ServiceException e) {
+
+                        response = createFailedResponse(e);
+
+                    } catch (RuntimeException e) {
+
+                        response = createFailedResponse(e);
+
+                    }
+
+                    inFlightData.add(initiationData);
+                    inFlightResponses.add(response);
+
+                } else {
+
+                    NCIPResponseData responseData = getResponseData(inFlightResponses.removeFirst());
+                    if ( responseData.getProblems() != null && ! responseData.getProblems().isEmpty() ) {
+                        problemCount++;
+                    }
+                    handler.handleResponse(messageCount, inFlightData.removeFirst(), responseData);
+                    messageCount++;
+
+                }
+
+            }
+
+        } finally {
+
+            executor.shutdownNow();
+
+        }
+
+        BatchResult result = new BatchResult(null, messageCount, problemCount,
+            System.currentTimeMillis() - startTime);
+        LOG.debug("Batch completed: " + result);
+        return result;
+
+    }
+
+    /**
+     * Create an already-completed response holding a {@link ProblemResponseData} for the failure, which is queued
+     * behind the messages in flight to keep the responses in order.
+     */
+    protected Future<NCIPResponseData> createFailedResponse(final Throwable e) {
+
+        FutureTask<NCIPResponseData> failure = new FutureTask<NCIPResponseData>(new Callable<NCIPResponseData>() {
+            public NCIPResponseData call() {
+                return createProblemResponseData(e);
+            }
+        });
+        failure.run();
+        return failure;
+
+    }
+
+    /**
+     * Translate the initiation message to an array of bytes.
+     */
+    protected byte[] createInitiationBytes(NCIPInitiationData initiationData, ServiceContext serviceContext)
+        throws ServiceException {
+
         InputStream inputStream = null;
         try {
 
@@ -136,11 +335,7 @@ public class InitiatorService implements NCIPService<NCIPInitiationData, NCIPRes
 
                 }
 
-                InputStream responseMsgInputStream = ncipSvcMgr.sendMessage(initiationBytes);
-
-                NCIPResponseData responseData = translator.createResponseData(serviceContext, responseMsgInputStream);
-
-                return responseData;
+                return initiationBytes;
 
             } catch (IOException e) {
 
@@ -148,13 +343,6 @@ public class InitiatorService implements NCIPService<NCIPInitiationData, NCIPRes
                 throw new ServiceException(ServiceError.RUNTIME_ERROR,
                         "IOException reading bytes from the initiation message's InputStream.", e);
 
-            } catch (ValidationException e) {
-
-                ProblemResponseData responseData = new ProblemResponseData();
-                responseData.setProblems(e.getProblems());
-
-                return responseData;
-                
             }
 
         } catch (IOException e) {
@@ -167,5 +355,59 @@ public class InitiatorService implements NCIPService<NCIPInitiationData, NCIPRes
 
     }
 
+    /**
+     * Send the initiation message and translate the response message.
+     */
+    protected NCIPResponseData sendMessage(byte[] initiationBytes, ServiceContext serviceContext,
+                                           InitiatorServiceManager ncipSvcMgr) throws ServiceException {
+
+        InputStream responseMsgInputStream = ncipSvcMgr.sendMessage(initiationBytes);
+
+        try {
+
+            NCIPResponseData responseData = translator.createResponseData(serviceContext, responseMsgInputStream);
+
+            return responseData;
+
+        } catch (ValidationException e) {
+
+            ProblemResponseData responseData = new ProblemResponseData();
+            responseData.setProblems(e.getProblems());
+
+            return responseData;
+
+        }
+
+    }
+
+    protected NCIPResponseData getResponseData(Future<NCIPResponseData> response) throws ServiceException {
+
+        try {
+
+            return response.get();
+
+        } catch (InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+            throw new ServiceException(ServiceError.RUNTIME_ERROR, "Interrupted waiting for a response.", e);
+
+        } catch (ExecutionException e) {
+
+            return createProblemResponseData(e.getCause());
+
+        }
+
+    }
+
+    protected ProblemResponseData createProblemResponseData(Throwable e) {
+
+        List<Problem> problems = ServiceHelper.generateProblems(
+            Version1GeneralProcessingError.TEMPORARY_PROCESSING_FAILURE, "NCIPMessage", null, "Exception:", e);
+        ProblemResponseData problemResponseData = new ProblemResponseData();
+        problemResponseData.setProblems(problems);
+        return problemResponseData;
+
+    }
+
 }
 
@@ -0,0 +1,353 @@
+/**
+ * Copyright (c) 2013 eXtensible Catalog Organization
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the MIT/X11 license. The text of the license can be
+ * found at http://www.opensource.org/licenses/mit-license.php.
+ */
+
+package org.extensiblecatalog.ncip.v2.initiator.implprof1;
+
+import org.extensiblecatalog.ncip.v2.common.StatisticsBean;
+import org.extensiblecatalog.ncip.v2.common.StatisticsBeanFactory;
+import org.extensiblecatalog.ncip.v2.service.ServiceError;
+import org.extensiblecatalog.ncip.v2.service.ServiceException;
+import org.extensiblecatalog.ncip.v2.service.ToolkitException;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.ProtocolException;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An {@link org.extensiblecatalog.ncip.v2.initiator.NCIPClient} for the NCIP Implementation Profile 1 transport
+ * mechanisms of HTTP and HTTPS that can be shared by any number of threads sending to any number of targets.
+ * <p/>
+ * Unlike {@link NCIPImplProf1Client}, each message can name its own target address, so no lock is needed to send
+ * messages to different responders at the same time. The number of messages in progress to any one target (i.e.
+ * the number of connections open to it) is limited to {@link #getMaxConnectionsPerTarget()}; further messages wait
+ * for a connection to be released. Each response is read in full before it is returned, so that the connection is
+ * returned to the JVM's keep-alive cache straight away and re-used by the next message to that target. Note that
+ * the JVM keeps at most <code>http.maxConnections</code> (a system property, 5 by default) idle connections per
+ * target, so that property should be raised to match a higher per-target limit.
+ * <p/>
+ * Messages can also be sent asynchronously with {@link #sendMessageAsync(String, byte[])}, which runs the exchange
+ * on this client's executor service and returns a {@link Future} for the response.
+ */
+public class NCIPImplProf1PooledClient extends NCIPImplProf1Client {
+
+    /**
+     * The default maximum number of messages in progress to any one target.
+     */
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_TARGET = 5;
+    /**
+     * The default number of threads sending messages passed to {@link #sendMessageAsync(String, byte[])}.
+     */
+    public static final int DEFAULT_ASYNC_THREADS = 20;
+
+    /**
+     * The maximum number of messages in progress to any one target.
+     */
+    protected volatile int maxConnectionsPerTarget = DEFAULT_MAX_CONNECTIONS_PER_TARGET;
+    /**
+     * The permits limiting the messages in progress, by target ("protocol://host:port").
+     */
+    protected final Map<String, Semaphore> targetPermits = new ConcurrentHashMap<String, Semaphore>();
+    /**
+     * The executor service running messages passed to {@link #sendMessageAsync(String, byte[])}; created when first
+     * needed unless one is set.
+     */
+    protected volatile ExecutorService executorService;
+
+    /**
+     * Construct a new NCIPImplProf1PooledClient for the provided target address and
+     * {@link org.extensiblecatalog.ncip.v2.common.StatisticsBean}, with default timeout values.
+     *
+     * @param targetAddress the network address of the default target NCIP responder
+     */
+    public NCIPImplProf1PooledClient(String targetAddress, StatisticsBean statisticsBean) {
+        super(targetAddress, statisticsBean);
+    }
+
+    /**
+     * Construct a new NCIPImplProf1PooledClient with no default target address and default timeout values and
+     * {@link org.extensiblecatalog.ncip.v2.common.StatisticsBean}.
+     */
+    public NCIPImplProf1PooledClient() throws ToolkitException {
+        super(null, DEFAULT_CONNECT_TIMEOUT, DEFAULT_READ_TIMEOUT, StatisticsBeanFactory.buildStatisticsBean());
+    }
+
+    /**
+     * Construct a new NCIPImplProf1PooledClient with the supplied default target address and timeout values.
+     *
+     * @param targetAddress  the network address of the default target NCIP responder
+     * @param connectTimeout the connect timeout for this client's connections
+     * @param readTimeout    the read timeout for this client's connections
+     */
+    public NCIPImplProf1PooledClient(String targetAddress, int connectTimeout, int readTimeout,
+                                     StatisticsBean statisticsBean) {
+        super(targetAddress, connectTimeout, readTimeout, statisticsBean);
+    }
+
+    /**
+     * Get the maximum number of messages in progress to any one target.
+     *
+     * @return the maximum number of connections per target
+     */
+    public int getMaxConnectionsPerTarget() {
+        return maxConnectionsPerTarget;
+    }
+
+    /**
+     * Set the maximum number of messages in progress to any one target. This must be set before the first message is
+     * sent; targets already sent to keep their limit.
+     *
+     * @param maxConnectionsPerTarget the maximum number of connections per target
+     */
+    public void setMaxConnectionsPerTarget(int maxConnectionsPerTarget) {
+        this.maxConnectionsPerTarget = maxConnectionsPerTarget;
+    }
+
+    /**
+     * Get the executor service that runs messages passed to {@link #sendMessageAsync(String, byte[])}.
+     *
+     * @return the executor service, or null if none has been set or needed yet
+     */
+    public ExecutorService getExecutorService() {
+        return executorService;
+    }
+
+    /**
+     * Set the executor service that runs messages passed to {@link #sendMessageAsync(String, byte[])}; the caller
+     * remains responsible for shutting it down. If none is set, a fixed pool of {@link #DEFAULT_ASYNC_THREADS} daemon
+     * threads is created when first needed.
+     *
+     * @param executorService the executor service
+     */
+    public void setExecutorService(ExecutorService executorService) {
+        this.executorService = executorService;
+    }
+
+    /**
+     * Send the provided NCIP initiation message to the default target address.
+     *
+     * @param initiationMsgBytes the initiation message as an array of bytes (network octets)
+     * @return the {@link InputStream} from which the response message can be read
+     * @throws ServiceException if the exchange of messages with the NCIP responder fails
+     */
+    @Override
+    public InputStream sendMessage(byte[] initiationMsgBytes) throws ServiceException {
+        return sendMessage(targetAddress, initiationMsgBytes);
+    }
+
+    /**
+     * Send the provided NCIP initiation message to the default target address on this client's executor service.
+     *
+     * @param initiationMsgBytes the initiation message as an array of bytes (network octets)
+     * @return the {@link Future} response, whose get method throws an
+     *         {@link java.util.concurrent.ExecutionException} wrapping a {@link ServiceException} if the exchange fails
+     */
+    public Future<InputStream> sendMessageAsync(byte[] initiationMsgBytes) {
+        return sendMessageAsync(targetAddress, initiationMsgBytes);
+    }
+
+    /**
+     * Send the provided NCIP initiation message to the target address on this client's executor service.
+     *
+     * @param targetAddress      the network address of the target NCIP responder
+     * @param initiationMsgBytes the initiation message as an array of bytes (network octets)
+     * @return the {@link Future} response, whose get method throws an
+     *         {@link java.util.concurrent.ExecutionException} wrapping a {@link ServiceException} if the exchange fails
+     */
+    public Future<InputStream> sendMessageAsync(final String targetAddress, final byte[] initiationMsgBytes) {
+        return getOrCreateExecutorService().submit(new Callable<InputStream>() {
+            public InputStream call() throws ServiceException {
+                return sendMessage(targetAddress, initiationMsgBytes);
+            }
+        });
+    }
+
+    /**
+     * Send the provided NCIP initiation message, represented as an array of bytes, to the target address using the
+     * current connect and read timeouts, waiting for a connection to the target if
+     * {@link #getMaxConnectionsPerTarget()} messages are already in progress to it.
+     *
+     * @param targetAddress      the network address of the target NCIP responder
+     * @param initiationMsgBytes the initiation message as an array of bytes (network octets)
+     * @return the {@link InputStream} from which the response message can be read
+     * @throws ServiceException if the exchange of messages with the NCIP responder fails
+     */
+    public InputStream sendMessage(String targetAddress, byte[] initiationMsgBytes) throws ServiceException {
+
+        try {
+
+            // Make sure that the url starts with https:// or http://
+            if (targetAddress == null || ( ! targetAddress.regionMatches(true, 0, "https://", 0, 8)
+                && ! targetAddress.regionMatches(true, 0, "http://", 0, 7) )) {
+                MalformedURLException e =
+                    new MalformedURLException("The target address' protocol is not https or http.");
+                throw new ServiceException(ServiceError.UNSUPPORTED_REQUEST, e);
+            }
+
+            URL targetURL = new URL(targetAddress);
+            Semaphore permits = getPermits(targetURL);
+            permits.acquire();
+            try {
+
+                return exchange(targetURL, targetAddress, initiationMsgBytes);
+
+            } finally {
+                permits.release();
+            }
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceException(ServiceError.RUNTIME_ERROR,
+                "Interrupted waiting for a connection to target.", e);
+        } catch (SSLException e) {
+            throw new ServiceException(ServiceError.RUNTIME_ERROR, e);
+        } catch (MalformedURLException e) {
+            throw new ServiceException(ServiceError.UNSUPPORTED_REQUEST, e);
+        } catch (ProtocolException e) {
+            throw new ServiceException(ServiceError.RUNTIME_ERROR,
+                "Exception preparing HttpsURLConnection.", e);
+        } catch (IOException e) {
+            throw new ServiceException(ServiceError.SERVICE_UNAVAILABLE,
+                "Exception connecting to or exchanging messages with target.", e);
+        }
+
+    }
+
+    /**
+     * Exchange the messages over a (possibly re-used) connection, reading the whole response so that the
+     * connection can be kept alive; the connection is not disconnected, as that would close it.
+     */
+    protected InputStream exchange(URL targetURL, String targetAddress, byte[] initiationMsgBytes)
+        throws IOException, ServiceException {
+
+        HttpURLConnection con = (HttpURLConnection)targetURL.openConnection();
+        if (hostnameVerifier != null) {
+            if (con instanceof HttpsURLConnection) {
+                ((HttpsURLConnection)con).setHostnameVerifier(hostnameVerifier);
+            }
+        }
+        con.setDoInput(true);
+        con.setDoOutput(true);
+        con.setRequestMethod("POST");
+        con.setConnectTimeout(connectTimeout);
+        con.setReadTimeout(readTimeout);
+        con.setFixedLengthStreamingMode(initiationMsgBytes.length);
+        con.setRequestProperty("Content-Type", "application/xml; charset=\"utf-8\"");
+        con.setRequestProperty("Accept", "application/xml");
+
+        OutputStream outputStream = con.getOutputStream();
+        try {
+            outputStream.write(initiationMsgBytes);
+            outputStream.flush();
+        } finally {
+            outputStream.close();
+        }
+        long initPerfSvcStartTime = System.currentTimeMillis();
+
+        int httpResponseCode = con.getResponseCode();
+        String httpResponseMsg = con.getResponseMessage();
+        long initPerfSvcEndTime = System.currentTimeMillis();
+
+        statisticsBean.record(initPerfSvcStartTime, initPerfSvcEndTime,
+            StatisticsBean.RESPONDER_PERFORM_SERVICE_LABELS, "External Service at " + targetAddress);
+
+        if (httpResponseCode == HttpURLConnection.HTTP_OK) {
+            return new ByteArrayInputStream(readFully(con.getInputStream()));
+        } else {
+            // Drain the error response so that the connection can be kept alive
+            InputStream errorStream = con.getErrorStream();
+            if (errorStream != null) {
+                try {
+                    readFully(errorStream);
+                } catch (IOException e) {
+                    // Do nothing - the connection will simply not be re-used
+                }
+            }
+            throw new ServiceException(ServiceError.SERVICE_UNAVAILABLE, httpResponseMsg, null);
+        }
+
+    }
+
+    protected static byte[] readFully(InputStream inputStream) throws IOException {
+
+        try {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int length;
+            while ((length = inputStream.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, length);
+            }
+            return outputStream.toByteArray();
+        } finally {
+            inputStream.close();
+        }
+
+    }
+
+    protected Semaphore getPermits(URL targetURL) {
+
+        int port = targetURL.getPort() != -1 ? targetURL.getPort() : targetURL.getDefaultPort();
+        String target = targetURL.getProtocol().toLowerCase() + "://" + targetURL.getHost().toLowerCase() + ":" + port;
+        Semaphore permits = targetPermits.get(target);
+        if (permits == null) {
+            synchronized (targetPermits) {
+                permits = targetPermits.get(target);
+                if (permits == null) {
+                    permits = new Semaphore(Math.max(maxConnectionsPerTarget, 1), true);
+                    targetPermits.put(target, permits);
+                }
+            }
+        }
+        return permits;
+
+    }
+
+    protected ExecutorService getOrCreateExecutorService() {
+
+        ExecutorService service = executorService;
+        if (service == null) {
+            synchronized (this) {
+                service = executorService;
+                if (service == null) {
+                    service = Executors.newFixedThreadPool(DEFAULT_ASYNC_THREADS, new ThreadFactory() {
+
+                        private final AtomicInteger threadNumber = new AtomicInteger();
+
+                        public Thread newThread(Runnable runnable) {
+                            Thread thread = new Thread(runnable,
+                                "NCIPImplProf1PooledClient-" + threadNumber.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+
+                    });
+                    executorService = service;
+                }
+            }
+        }
+        return service;
+
+    }
+
+}
@@ -22,13 +22,18 @@ import java.util.Properties;
  * to the {@link NCIPImplProf1Client} class).
  * Note: At the moment it only supports HTTP and HTTPS transport (i.e., it does not support "Raw Socket"
  * transport).
+ * <p/>
+ * Unless another {@link NCIPClient} is injected, messages are sent with a {@link NCIPImplProf1PooledClient},
+ * which takes the target address with each message, so any number of threads can send messages at once.
+ * Other NCIPClient implementations hold the target address between calls, so messages sent through them are
+ * sent one at a time.
  */
 public class NCIPImplProf1ServiceManager implements InitiatorServiceManager {
 
 
     private static final Logger LOG = Logger.getLogger(NCIPImplProf1ServiceManager.class);
 
-    protected NCIPClient ncipClient;
+    protected volatile NCIPClient ncipClient;
 
     /**
      * The network address, or URL, of the target NCIP responder, e.g. https://mylibrary.mycollege.edu:9090/ncip/.
@@ -79,26 +84,59 @@ public class NCIPImplProf1ServiceManager implements InitiatorServiceManager {
      * @throws ServiceException if the NCIP service fails without the responder returning an NCIPMessage
      */
     @Override
-    public synchronized InputStream sendMessage(byte[] initiationMsgBytes) throws ServiceException {
+    public InputStream sendMessage(byte[] initiationMsgBytes) throws ServiceException {
 
-        if ( ncipClient == null ) {
+        NCIPClient client = getOrCreateNCIPClient();
+        InputStream inputStream;
+        if ( client instanceof NCIPImplProf1PooledClient ) {
 
-            try {
+            inputStream = ((NCIPImplProf1PooledClient)client).sendMessage(targetURL, initiationMsgBytes);
 
-                ncipClient = new NCIPImplProf1Client();
+        } else {
 
-            } catch (ToolkitException e) {
+            synchronized (client) {
 
-                throw new ServiceException(ServiceError.RUNTIME_ERROR, e);
+                client.setTargetAddress(targetURL);
+                inputStream = client.sendMessage(initiationMsgBytes);
 
             }
 
-       }
+        }
 
-        ncipClient.setTargetAddress(targetURL);
-        InputStream inputStream = ncipClient.sendMessage(initiationMsgBytes);
         return inputStream;
 
     }
 
+    protected NCIPClient getOrCreateNCIPClient() throws ServiceException {
+
+        NCIPClient client = ncipClient;
+        if ( client == null ) {
+
+            synchronized (this) {
+
+                client = ncipClient;
+                if ( client == null ) {
+
+                    try {
+
+                        client = new NCIPImplProf1PooledClient();
+
+                    } catch (ToolkitException e) {
+
+                        throw new ServiceException(ServiceError.RUNTIME_ERROR, e);
+
+                    }
+
+                    ncipClient = client;
+
+                }
+
+            }
+
+        }
+
+        return client;
+
+    }
+
 }
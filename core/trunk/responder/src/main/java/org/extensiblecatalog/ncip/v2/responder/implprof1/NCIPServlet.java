@@ -8,6 +8,7 @@
 
 package org.extensiblecatalog.ncip.v2.responder.implprof1;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.List;
@@ -23,6 +24,7 @@ import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.lang.StringEscapeUtils;
 import org.apache.log4j.Logger;
+import org.extensiblecatalog.ncip.v2.binding.jaxb.dozer.BaseJAXBDozerTranslator;
 import org.extensiblecatalog.ncip.v2.common.*;
 import org.extensiblecatalog.ncip.v2.service.*;
 
@@ -40,11 +42,22 @@ public class NCIPServlet extends HttpServlet {
      */
     private static final long serialVersionUID = -8518989441219684952L;
 
+    /**
+     * The initial size of the buffer used when {@link #setContentLengthInResponses} is true.
+     */
+    protected static final int RESPONSE_BUFFER_INITIAL_SIZE = 8192;
+
     /**
      * Whether to include stack traces in problem responses.
      */
     protected boolean includeStackTracesInProblemResponse = false;
 
+    /**
+     * Whether to buffer response messages so that the Content-Length header can be set; only applies when the
+     * {@link #translator} is a {@link StreamingTranslator}.
+     */
+    protected boolean setContentLengthInResponses = true;
+
     /**
      * The {@link Translator} instance used to translate network octets to instances of {@link NCIPInitiationData}
      * or {@link NCIPResponseData} for passing to the {@link NCIPService}.
@@ -67,6 +80,11 @@ public class NCIPServlet extends HttpServlet {
      */
     protected StatisticsBean statisticsBean;
 
+    /**
+     * The {@link RequestAdmissionGate} limiting the number of requests processed at once; null if there is no limit.
+     */
+    protected RequestAdmissionGate admissionGate;
+
     // TODO: Add constructors for variations
     /**
      * Construct a new instance of this servlet with no {@link MessageHandler} or {@link Translator} set; these
@@ -80,8 +98,9 @@ public class NCIPServlet extends HttpServlet {
 
         super();
 
-        this.includeStackTracesInProblemResponse
-            = CoreConfigurationFactory.buildConfiguration(properties).getIncludeStackTracesInProblemResponses();
+        CoreConfiguration coreConfig = CoreConfigurationFactory.buildConfiguration(properties);
+        this.includeStackTracesInProblemResponse = coreConfig.getIncludeStackTracesInProblemResponses();
+        this.setContentLengthInResponses = coreConfig.getSetContentLengthInResponses();
 
         this.messageHandler = MessageHandlerFactory.buildMessageHandler(properties);
 
@@ -91,12 +110,15 @@ public class NCIPServlet extends HttpServlet {
 
         this.statisticsBean = StatisticsBeanFactory.buildStatisticsBean(properties);
 
+        this.admissionGate = RequestAdmissionGate.buildRequestAdmissionGate(coreConfig, statisticsBean);
+
     }
 
     public NCIPServlet(CoreConfiguration coreConfig) throws ToolkitException {
 
         super();
         this.includeStackTracesInProblemResponse = coreConfig.getIncludeStackTracesInProblemResponses();
+        this.setContentLengthInResponses = coreConfig.getSetContentLengthInResponses();
         this.messageHandler = MessageHandlerFactory.buildMessageHandler(coreConfig.getMessageHandlerConfiguration());
 
         this.translator = TranslatorFactory.buildTranslator(coreConfig.getTranslatorConfiguration());
@@ -105,6 +127,8 @@ public class NCIPServlet extends HttpServlet {
 
         this.statisticsBean = StatisticsBeanFactory.buildStatisticsBean(coreConfig.getStatisticsBeanConfiguration());
 
+        this.admissionGate = RequestAdmissionGate.buildRequestAdmissionGate(coreConfig, statisticsBean);
+
     }
 
     /**
@@ -185,6 +209,16 @@ public class NCIPServlet extends HttpServlet {
         this.statisticsBean = statisticsBean;
     }
 
+    /**
+     * Set the {@link RequestAdmissionGate} for this responder instance; null puts no limit on the number of
+     * requests processed at once.
+     *
+     * @param admissionGate the admission gate
+     */
+    public void setAdmissionGate(RequestAdmissionGate admissionGate) {
+        this.admissionGate = admissionGate;
+    }
+
     /**
      * Set the includeStackTracesInProblemResponse flag.
      * @param includeStackTracesInProblemResponse
@@ -195,6 +229,16 @@ public class NCIPServlet extends HttpServlet {
 
     }
 
+    /**
+     * Set the setContentLengthInResponses flag.
+     * @param setContentLengthInResponses
+     */
+    public void setSetContentLengthInResponses(boolean setContentLengthInResponses) {
+
+        this.setContentLengthInResponses = setContentLengthInResponses;
+
+    }
+
     /**
      * Initialize the servlet
      * @param config
@@ -231,9 +275,23 @@ public class NCIPServlet extends HttpServlet {
                 serviceValidator = ServiceValidatorFactory.buildServiceValidator(appName);
 
             }
-            
-            includeStackTracesInProblemResponse
-                = ConfigurationHelper.getCoreConfiguration().getIncludeStackTracesInProblemResponses();
+
+            if ( translator instanceof BaseJAXBDozerTranslator ) {
+
+                // Compile the schema now rather than while handling the first message
+                ((BaseJAXBDozerTranslator)translator).prewarm(serviceValidator.getInitialServiceContext());
+
+            }
+
+            CoreConfiguration coreConfig = ConfigurationHelper.getCoreConfiguration();
+            includeStackTracesInProblemResponse = coreConfig.getIncludeStackTracesInProblemResponses();
+            setContentLengthInResponses = coreConfig.getSetContentLengthInResponses();
+
+            if ( admissionGate == null ) {
+
+                admissionGate = RequestAdmissionGate.buildRequestAdmissionGate(coreConfig, statisticsBean);
+
+            }
 
         } catch (ToolkitException e) {
 
@@ -243,10 +301,48 @@ public class NCIPServlet extends HttpServlet {
 
     }
 
+    /**
+     * Handle an NCIP message. If the number of requests processed at once is limited and no slot is free (or
+     * becomes free soon enough) the request is answered with a Temporary Processing Failure Problem without
+     * reading it, so that an overloaded responder sheds load instead of queueing requests without bound.
+     */
     @Override
     public void doPost(HttpServletRequest request, HttpServletResponse response)
         throws ServletException {
 
+        if ( admissionGate == null ) {
+
+            processRequest(request, response);
+
+        } else {
+
+            RequestAdmissionGate.Admission admission = admissionGate.enter();
+            if ( admission == RequestAdmissionGate.Admission.ADMITTED ) {
+
+                try {
+
+                    processRequest(request, response);
+
+                } finally {
+
+                    admissionGate.exit();
+
+                }
+
+            } else {
+
+                response.setContentType("application/xml; charset=\"utf-8\"");
+                returnProblem(response, admissionGate.getProblemDetail(admission));
+
+            }
+
+        }
+
+    }
+
+    protected void processRequest(HttpServletRequest request, HttpServletResponse response)
+        throws ServletException {
+
         long respTotalStartTime = System.currentTimeMillis();
         String serviceName = "Unknown";
 
@@ -308,19 +404,29 @@ public class NCIPServlet extends HttpServlet {
                 StatisticsBean.RESPONDER_PERFORM_SERVICE_LABELS, serviceName);
 
             InputStream responseMsgInputStream = null;
-            try {
+            if ( translator instanceof StreamingTranslator ) {
 
-                responseMsgInputStream = translator.createResponseMessageStream(serviceContext, responseData);
+                // The streaming translator writes the message to the response itself, leaving
+                // responseMsgInputStream null so that the following steps are skipped.
+                writeResponseMessage(response, (StreamingTranslator)translator, serviceContext, responseData);
 
-            } catch (ServiceException e) {
+            } else {
 
-                returnException(response,
-                    "Exception creating the InputStream from the NCIPResponseData object.", e);
+                try {
 
-            } catch (ValidationException e) {
+                    responseMsgInputStream = translator.createResponseMessageStream(serviceContext, responseData);
 
-                returnException(response,
-                    "Exception creating the InputStream from the NCIPResponseData object.", e);
+                } catch (ServiceException e) {
+
+                    returnException(response,
+                        "Exception creating the InputStream from the NCIPResponseData object.", e);
+
+                } catch (ValidationException e) {
+
+                    returnException(response,
+                        "Exception creating the InputStream from the NCIPResponseData object.", e);
+
+                }
 
             }
 
@@ -418,6 +524,73 @@ public class NCIPServlet extends HttpServlet {
 
     }
 
+    /**
+     * Write the response message to the HttpServletResponse's OutputStream. If {@link #setContentLengthInResponses}
+     * is true the message is marshalled into a buffer so the Content-Length can be set, and the buffer is then
+     * written without further copying; otherwise it is marshalled directly to the OutputStream.
+     */
+    protected void writeResponseMessage(HttpServletResponse response, StreamingTranslator streamingTranslator,
+                                        ServiceContext serviceContext, NCIPResponseData responseData)
+        throws ServletException {
+
+        ServletOutputStream outputStream;
+        try {
+
+            if ( setContentLengthInResponses ) {
+
+                ByteArrayOutputStream responseMsgBuffer = new ByteArrayOutputStream(RESPONSE_BUFFER_INITIAL_SIZE);
+                streamingTranslator.writeResponseMessage(serviceContext, responseData, responseMsgBuffer);
+
+                response.setContentLength(responseMsgBuffer.size());
+                outputStream = response.getOutputStream();
+                responseMsgBuffer.writeTo(outputStream);
+
+            } else {
+
+                outputStream = response.getOutputStream();
+                streamingTranslator.writeResponseMessage(serviceContext, responseData, outputStream);
+
+            }
+
+            outputStream.flush();
+
+        } catch (ServiceException e) {
+
+            returnResponseException(response, "Exception writing the NCIPResponseData object as a message.", e);
+
+        } catch (ValidationException e) {
+
+            returnResponseException(response, "Exception writing the NCIPResponseData object as a message.", e);
+
+        } catch (IOException e) {
+
+            returnResponseException(response,
+                "Exception writing the NCIP response message to the HttpServletResponse's OutputStream.", e);
+
+        }
+
+    }
+
+    /**
+     * Return a Problem response if nothing has been sent to the client yet; if part of the response has already
+     * been sent, all that can be done is to log the exception.
+     */
+    protected void returnResponseException(HttpServletResponse response, String msg, Throwable e)
+        throws ServletException {
+
+        if ( response.isCommitted() ) {
+
+            LOG.error(msg + " The response was already partially sent, so a Problem can not be returned.", e);
+
+        } else {
+
+            response.resetBuffer();
+            returnException(response, msg, e);
+
+        }
+
+    }
+
     protected void returnException(HttpServletResponse response, String msg, Throwable e) throws ServletException {
         if (includeStackTracesInProblemResponse) {
             returnProblem(response, msg + System.getProperty("line.separator")
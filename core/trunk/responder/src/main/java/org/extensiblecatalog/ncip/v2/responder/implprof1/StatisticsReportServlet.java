@@ -63,7 +63,13 @@ public class StatisticsReportServlet extends HttpServlet {
         DecimalFormat formatter = new DecimalFormat("0.00");
         responseMsg.append("<table border=\"2\"><tr><td align=\"center\" colspan=\"")
             .append(statisticsBean.getMaxLabels()).append("\">Type</td><td align=\"center\">Count</td>")
-            .append("<td align=\"center\">Total ms.</td><td align=\"center\">Average ms.</td></tr>");
+            .append("<td align=\"center\">Total ms.</td><td align=\"center\">Average ms.</td>");
+        for ( double percentile : StatisticsBean.REPORTED_PERCENTILES ) {
+
+            responseMsg.append("<td align=\"center\">p").append((int)percentile).append(" ms.</td>");
+
+        }
+        responseMsg.append("<td align=\"center\">Max ms.</td></tr>");
 
 
         for ( Map.Entry<String, StatisticsBean.StatsRecord> statRecord : statisticsBean.getStatsRecords().entrySet() ) {
@@ -82,16 +88,27 @@ public class StatisticsReportServlet extends HttpServlet {
 
             }
 
-            float floatAvg = ((float)statRecord.getValue().getTotalIntervals()) / ((float)statRecord.getValue().getCount());
+            long count = statRecord.getValue().getCount();
+            long totalIntervals = statRecord.getValue().getTotalIntervals();
+            float floatAvg = count == 0 ? 0.0f : ((float)totalIntervals) / ((float)count);
 
-            responseMsg.append("<td align=\"right\">").append(statRecord.getValue().getCount()).append("</td>")
-                .append("<td align=\"right\">").append(statRecord.getValue().getTotalIntervals()).append("</td>")
-                .append("<td align=\"right\">").append(formatter.format(floatAvg)).append("</td>")
+            responseMsg.append("<td align=\"right\">").append(count).append("</td>")
+                .append("<td align=\"right\">").append(totalIntervals).append("</td>")
+                .append("<td align=\"right\">").append(formatter.format(floatAvg)).append("</td>");
+            for ( double percentile : StatisticsBean.REPORTED_PERCENTILES ) {
+
+                responseMsg.append("<td align=\"right\">")
+                    .append(statRecord.getValue().getPercentileInterval(percentile)).append("</td>");
+
+            }
+            responseMsg.append("<td align=\"right\">").append(statRecord.getValue().getMaxInterval()).append("</td>")
                 .append("</tr>");
 
         }
         
         responseMsg.append("</table>");
+        responseMsg.append("<br/>Requests waiting for a request slot: ").append(statisticsBean.getQueueDepth())
+            .append(" (most at once: ").append(statisticsBean.getMaxQueueDepth()).append(")<br/>");
         responseMsg.append("<form name=\"clearForm\" action=\"Statistics\" method=\"POST\">")
             .append("<input type=hidden name=action value=\"clear\">")
             .append("<input type=\"submit\" value=\"clear\"></form>");
@@ -14,14 +14,33 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 
 public final class ReflectionHelper {
 
     private static final Logger LOG = Logger.getLogger(ReflectionHelper.class);
 
+    /**
+     * Placeholder cached for lookups that found no matching member, so that repeated misses are not re-scanned.
+     */
+    static final Object NOT_FOUND = new Object();
+
+    /**
+     * Results of {@link #findField(Class, String)}, keyed by class and requested field name.
+     */
+    static final ConcurrentMap<MemberKey, Object> FIELD_CACHE = new ConcurrentHashMap<MemberKey, Object>();
+
+    /**
+     * Results of {@link #findMethod(Class, String, Class[])}, keyed by class, requested method name and
+     * requested parameter types.
+     */
+    static final ConcurrentMap<MemberKey, Object> METHOD_CACHE = new ConcurrentHashMap<MemberKey, Object>();
+
     private ReflectionHelper() {
 
         // Private constructor to prevent instantiation.
@@ -31,6 +50,7 @@ public final class ReflectionHelper {
     /**
      * Handles case-insensitive lookups
      * Note: Tests for plural form of fieldName, e.g. when the field is a collection
+     * The result (including a failure to find the field) is cached per class and fieldName.
      *
      * @param objClass
      * @param fieldName
@@ -38,7 +58,30 @@ public final class ReflectionHelper {
      */
     public static Field findField(Class objClass, String fieldName) {
 
-        LOG.debug("Looking for field " + fieldName + " in " + objClass.getName());
+        Field result;
+
+        MemberKey key = new MemberKey(objClass, fieldName, null);
+        Object cached = FIELD_CACHE.get(key);
+        if (cached == null) {
+
+            result = scanForField(objClass, fieldName);
+            FIELD_CACHE.putIfAbsent(key, result != null ? result : NOT_FOUND);
+
+        } else {
+
+            result = (cached == NOT_FOUND) ? null : (Field) cached;
+
+        }
+
+        return result;
+
+    }
+
+    private static Field scanForField(Class objClass, String fieldName) {
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Looking for field " + fieldName + " in " + objClass.getName());
+        }
         Field result = null;
 
         Field[] fields = objClass.getDeclaredFields();
@@ -141,6 +184,7 @@ public final class ReflectionHelper {
 
     /**
      * Return the Method object for the given methodName and parameterTypes on the given objClass.
+     * The result (including a failure to find the method) is cached per class, methodName and parameterTypes.
      *
      * @param objClass
      * @param methodName
@@ -149,8 +193,31 @@ public final class ReflectionHelper {
      */
     public static Method findMethod(Class objClass, String methodName, Class... parameterTypes) {
 
-        LOG.debug("Looking for method " + methodName + "(" + formatClassNames(parameterTypes) + ") on "
+        Method result;
+
+        MemberKey key = new MemberKey(objClass, methodName, parameterTypes);
+        Object cached = METHOD_CACHE.get(key);
+        if (cached == null) {
+
+            result = scanForMethod(objClass, methodName, parameterTypes);
+            METHOD_CACHE.putIfAbsent(key.copy(), result != null ? result : NOT_FOUND);
+
+        } else {
+
+            result = (cached == NOT_FOUND) ? null : (Method) cached;
+
+        }
+
+        return result;
+
+    }
+
+    private static Method scanForMethod(Class objClass, String methodName, Class... parameterTypes) {
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Looking for method " + methodName + "(" + formatClassNames(parameterTypes) + ") on "
                 + objClass.getName() + ".");
+        }
         Method result = null;
 
         Method[] methods = objClass.getDeclaredMethods();
@@ -190,7 +257,7 @@ public final class ReflectionHelper {
 
         }
 
-        if (result == null) {
+        if (result == null && LOG.isDebugEnabled()) {
             LOG.debug("Method " + methodName + "(" + formatClassNames(parameterTypes) + ") on "
                     + objClass.getName() + " not found.");
         }
@@ -423,4 +490,73 @@ public final class ReflectionHelper {
 
     }
 
+    /**
+     * Key for the member lookup caches. A key uses the caller's parameterTypes array, so that a lookup doesn't copy
+     * it; keys that are put in a cache must be a {@link #copy()}, so later changes to the caller's array don't matter.
+     */
+    static final class MemberKey {
+
+        private static final Class[] NO_PARAMETERS = new Class[0];
+
+        private final Class objClass;
+        private final String name;
+        private final Class[] parameterTypes;
+        private final int hashCode;
+
+        MemberKey(Class objClass, String name, Class[] parameterTypes) {
+
+            this.objClass = objClass;
+            this.name = name;
+            this.parameterTypes = (parameterTypes != null) ? parameterTypes : NO_PARAMETERS;
+            this.hashCode = (objClass.hashCode() * 31 + name.hashCode()) * 31 + Arrays.hashCode(this.parameterTypes);
+
+        }
+
+        private MemberKey(MemberKey key) {
+
+            this.objClass = key.objClass;
+            this.name = key.name;
+            this.parameterTypes = (key.parameterTypes.length != 0) ? key.parameterTypes.clone() : NO_PARAMETERS;
+            this.hashCode = key.hashCode;
+
+        }
+
+        /**
+         * Returns a key with its own copy of the parameterTypes array.
+         */
+        MemberKey copy() {
+
+            return new MemberKey(this);
+
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+
+            boolean result = false;
+            if (this == obj) {
+
+                result = true;
+
+            } else if (obj instanceof MemberKey) {
+
+                MemberKey that = (MemberKey) obj;
+                result = objClass == that.objClass && name.equals(that.name)
+                    && Arrays.equals(parameterTypes, that.parameterTypes);
+
+            }
+
+            return result;
+
+        }
+
+        @Override
+        public int hashCode() {
+
+            return hashCode;
+
+        }
+
+    }
+
 }
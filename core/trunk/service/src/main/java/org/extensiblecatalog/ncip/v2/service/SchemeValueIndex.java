@@ -0,0 +1,213 @@
+/**
+ * Copyright (c) 2010 eXtensible Catalog Organization
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the MIT/X11 license. The text of the license can be
+ * found at http://www.opensource.org/licenses/mit-license.php.
+ */
+
+package org.extensiblecatalog.ncip.v2.service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * An index over the values list of one {@link SchemeValuePair} sub-class, keyed first on the canonical form of the
+ * Scheme URI and then on the Value, so that {@link SchemeValuePair#find} does not have to test every instance.
+ * Reads are lock-free; instances added to the values list (which the SVP constructors do) are indexed the next time
+ * the index is consulted. Because the values lists are only ever appended to, the index only has to process the
+ * entries added since the last time it was consulted.
+ * <p/>
+ * Where more than one instance has the same Scheme and Value, the first one added to the values list is returned,
+ * as with a scan of the list. Instances with a null Scheme are kept separately and are returned only when the
+ * rules in {@link SchemeValuePair#matches(String, String)} allow it; those rules are evaluated when the lookup is
+ * done, so that calls to {@link SchemeValuePair#allowNullScheme} after the index is built are honored. A lookup with
+ * a null Scheme returns the first instance in the values list that matches, whichever Scheme it has.
+ */
+final class SchemeValueIndex<SVP extends SchemeValuePair> {
+
+    /**
+     * The values list this index was built from.
+     */
+    private final List<SVP> values;
+
+    /**
+     * The number of entries from the {@link #values} list that have been indexed.
+     */
+    private volatile int indexedCount = 0;
+
+    /**
+     * Instances with non-null Schemes, by case-folded canonical Scheme URI and then by case-folded Value.
+     */
+    private final Map<String, Map<String, SVP>> byScheme = new ConcurrentHashMap<String, Map<String, SVP>>();
+
+    /**
+     * Instances with null Schemes, by case-folded Value.
+     */
+    private final Map<String, SVP> nullScheme = new ConcurrentHashMap<String, SVP>();
+
+    /**
+     * All instances, by case-folded Value, in the order they were added to the values list; used for lookups with a
+     * null Scheme, which may match an instance of any Scheme.
+     */
+    private final Map<String, List<SVP>> allByValue = new ConcurrentHashMap<String, List<SVP>>();
+
+    SchemeValueIndex(List<SVP> values) {
+
+        this.values = values;
+
+    }
+
+    List<SVP> getValues() {
+
+        return values;
+
+    }
+
+    /**
+     * Find the instance matching the scheme and value.
+     *
+     * @param scheme the Scheme URI, which may be null
+     * @param value  the Value; if null or empty, no instance is returned
+     * @return the matching instance, or null if there is none
+     */
+    SVP find(String scheme, String value) {
+
+        if (value == null || value.length() == 0) {
+
+            return null;
+
+        }
+
+        if (values.size() > indexedCount) {
+
+            update();
+
+        }
+
+        String valueKey = foldCase(value);
+        SVP match = null;
+        if (scheme != null) {
+
+            Map<String, SVP> byValue = byScheme.get(foldCase(SchemeValuePair.canonicalizeSchemeURI(scheme)));
+            if (byValue != null) {
+
+                match = byValue.get(valueKey);
+
+            }
+
+            if (match == null) {
+
+                SVP candidate = nullScheme.get(valueKey);
+                if (candidate != null && candidate.areNullSchemesAllowed()) {
+
+                    match = candidate;
+
+                }
+
+            }
+
+        } else {
+
+            List<SVP> candidates = allByValue.get(valueKey);
+            if (candidates != null) {
+
+                for (SVP candidate : candidates) {
+
+                    if (candidate.getScheme() == null || candidate.areNullSchemesAllowed()) {
+
+                        match = candidate;
+                        break;
+
+                    }
+
+                }
+
+            }
+
+        }
+
+        return match;
+
+    }
+
+    /**
+     * Index any entries appended to the values list since the last update.
+     */
+    synchronized void update() {
+
+        int size = values.size();
+        for (int i = indexedCount; i < size; ++i) {
+
+            add(values.get(i));
+
+        }
+
+        indexedCount = size;
+
+    }
+
+    private void add(SVP svp) {
+
+        String value = svp.getValue();
+        if (value == null) {
+
+            return;
+
+        }
+
+        String valueKey = foldCase(value);
+        List<SVP> sameValue = allByValue.get(valueKey);
+        if (sameValue == null) {
+
+            sameValue = new CopyOnWriteArrayList<SVP>();
+            allByValue.put(valueKey, sameValue);
+
+        }
+
+        sameValue.add(svp);
+        if (svp.getScheme() != null) {
+
+            String schemeKey = foldCase(SchemeValuePair.canonicalizeSchemeURI(svp.getScheme()));
+            Map<String, SVP> byValue = byScheme.get(schemeKey);
+            if (byValue == null) {
+
+                byValue = new ConcurrentHashMap<String, SVP>();
+                byScheme.put(schemeKey, byValue);
+
+            }
+
+            if (!byValue.containsKey(valueKey)) {
+
+                byValue.put(valueKey, svp);
+
+            }
+
+        } else if (!nullScheme.containsKey(valueKey)) {
+
+            nullScheme.put(valueKey, svp);
+
+        }
+
+    }
+
+    /**
+     * Fold the case of the string so that two strings have equal keys exactly when
+     * {@link String#compareToIgnoreCase(String)} considers them equal.
+     */
+    static String foldCase(String s) {
+
+        char[] chars = s.toCharArray();
+        for (int i = 0; i < chars.length; ++i) {
+
+            chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+
+        }
+
+        return new String(chars);
+
+    }
+
+}
@@ -14,6 +14,8 @@ import org.apache.log4j.Logger;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * A pair of Strings, one a value and the other a scheme, represented by a URI
@@ -50,6 +52,14 @@ public abstract class SchemeValuePair {
 
     protected static final Map<String, String> SCHEME_URI_ALIAS_MAP = new HashMap<String, String>();
 
+    /**
+     * The {@link SchemeValueIndex} for each SchemeValuePair sub-class that has been searched, keyed by the class
+     * passed to {@link #find}. These are discarded whenever a Scheme URI alias is added, because the index keys
+     * are the canonical Scheme URIs.
+     */
+    protected static final ConcurrentMap<Class, SchemeValueIndex> INDEXES_BY_CLASS
+            = new ConcurrentHashMap<Class, SchemeValueIndex>();
+
     static {
 
         // Known aliases
@@ -146,6 +156,7 @@ public abstract class SchemeValuePair {
     public static void setSchemeURIAlias(String canonicalURI, String aliasURI) {
 
         SCHEME_URI_ALIAS_MAP.put(aliasURI, canonicalURI);
+        INDEXES_BY_CLASS.clear();
 
     }
 
@@ -225,9 +236,7 @@ public abstract class SchemeValuePair {
                                                                         List<SVP> values, Class<SVP> svpClass)
             throws ServiceException {
 
-        // TODO: Reorganize this so we match on Scheme, and then on value, not testing everything in the list.
-        // I think that will require changes to any SVP-derived class, which may mean class in connector projects.
-        SchemeValuePair match = searchList(scheme, value, values);
+        SchemeValuePair match = getIndex(values, svpClass).find(scheme, value);
 
         if (match == null) {
 
@@ -247,20 +256,49 @@ public abstract class SchemeValuePair {
 
     }
 
-    static <SVP extends SchemeValuePair> SVP searchList(final String scheme, final String value,
-                                                        final List<SVP> values) {
+    /**
+     * Find the instance that matches the scheme & value strings supplied, using the index for the SchemeValuePair
+     * sub-class. Unlike {@link #find(String, String, List, Class)} this does not apply the
+     * {@link SchemeValueBehavior} when there is no match.
+     *
+     * @param svpClass the class whose values list is to be searched, i.e. the class passed to
+     *                 {@link #find(String, String, List, Class)}
+     * @param scheme   a String representing the Scheme URI.
+     * @param value    a String representing the Value in the Scheme.
+     * @return an instance that matches, or null if none is found to match or the class has not been searched yet.
+     */
+    static SchemeValuePair findIndexed(Class<?> svpClass, final String scheme, final String value) {
+
+        SchemeValueIndex index = INDEXES_BY_CLASS.get(svpClass);
+        return index != null ? index.find(scheme, value) : null;
+
+    }
+
+    static <SVP extends SchemeValuePair> SchemeValueIndex<SVP> getIndex(final List<SVP> values,
+                                                                        Class<SVP> svpClass) {
+
+        SchemeValueIndex<SVP> index = INDEXES_BY_CLASS.get(svpClass);
+        if (index == null) {
+
+            // If another thread has just built the index, use that one so that all threads share it.
+            SchemeValueIndex<SVP> newIndex = new SchemeValueIndex<SVP>(values);
+            index = INDEXES_BY_CLASS.putIfAbsent(svpClass, newIndex);
+            if (index == null) {
+
+                index = newIndex;
 
-        SVP match = null;
-        if (value != null && value.length() > 0) {
-            for (SVP svp : values) {
-                if (svp.matches(scheme, value)) {
-                    match = svp;
-                    break;
-                }
             }
+
         }
 
-        return match;
+        if (index.getValues() != values) {
+
+            index = new SchemeValueIndex<SVP>(values);
+            INDEXES_BY_CLASS.put(svpClass, index);
+
+        }
+
+        return index;
 
     }
 
@@ -270,10 +308,14 @@ public abstract class SchemeValuePair {
 
         SVP match;
 
+        SchemeValueIndex<SVP> index = getIndex(values, svpClass);
+        // Lock the shared values list rather than the index, as two threads may hold different indexes over the
+        // same list (e.g. after setSchemeURIAlias discards the indexes); each index catches up with the list
+        // when it is consulted.
         synchronized (values) {
 
-            // While synchronized on values list, re-check that this instance isn't in the list and if not, add it.
-            match = SchemeValuePair.searchList(scheme, value, values);
+            // While synchronized on the values list, re-check that this instance isn't in the list and if not, add it.
+            match = index.find(scheme, value);
 
             if (match == null) {
 
@@ -307,6 +349,7 @@ public abstract class SchemeValuePair {
                 }
 
                 values.add(match);
+                index.update();
 
             } else {
 
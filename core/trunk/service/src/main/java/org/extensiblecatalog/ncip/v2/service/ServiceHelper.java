@@ -14,9 +14,9 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.math.BigDecimal;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class ServiceHelper {
 
@@ -24,7 +24,7 @@ public class ServiceHelper {
     private static final int LENGTH_OF_INITIATION_DATA_LITERAL = INITIATION_DATA_SUFFIX.length();
     private static final int LENGTH_OF_RESPONSE_DATA_LITERAL = "ResponseData".length();
     private static final int LENGTH_OF_DATA_LITERAL = "Data".length();
-    protected static final Map<Class, Method> findMethodsByClass = new HashMap<Class, Method>();
+    protected static final Map<Class, Method> findMethodsByClass = new ConcurrentHashMap<Class, Method>();
 
     private ServiceHelper() {
         // Do not allow construction
@@ -235,7 +235,12 @@ public class ServiceHelper {
         SVCSVP result;
         try {
             Method findMethod = getFindMethod(svcSVPClass);
-            result = (SVCSVP) findMethod.invoke(null, scheme, value);
+            // Try the index the find method searches first, to avoid the reflective call; if there's no match
+            // the find method is called so that the class's SchemeValueBehavior is applied.
+            result = (SVCSVP) SchemeValuePair.findIndexed(findMethod.getDeclaringClass(), scheme, value);
+            if (result == null) {
+                result = (SVCSVP) findMethod.invoke(null, scheme, value);
+            }
         } catch (IllegalAccessException e) {
             throw new ToolkitException(e);
         } catch (InvocationTargetException e) {
@@ -0,0 +1,95 @@
+/**
+ * Copyright (c) 2012 eXtensible Catalog Organization
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the MIT/X11 license. The text of the license can be
+ * found at http://www.opensource.org/licenses/mit-license.php.
+ */
+
+package org.extensiblecatalog.ncip.v2.service;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+public class TestReflectionHelper {
+
+    public static class TestBean {
+
+        private String name;
+        private String[] items;
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public void setName(Integer number) {
+            this.name = String.valueOf(number);
+        }
+
+        public String[] getItems() {
+            return items;
+        }
+
+    }
+
+    @Test
+    public void testMethodCache() {
+
+        // A miss scans the class and caches the result; a hit returns the cached Method
+        int cacheSize = ReflectionHelper.METHOD_CACHE.size();
+        Method setNameString = ReflectionHelper.findMethod(TestBean.class, "setName", String.class);
+        Assert.assertNotNull(setNameString);
+        Assert.assertEquals(cacheSize + 1, ReflectionHelper.METHOD_CACHE.size());
+        Assert.assertSame(setNameString, ReflectionHelper.findMethod(TestBean.class, "setName", String.class));
+        Assert.assertEquals(cacheSize + 1, ReflectionHelper.METHOD_CACHE.size());
+
+        // Names are matched ignoring case, but cached as requested
+        Assert.assertEquals(setNameString, ReflectionHelper.findMethod(TestBean.class, "SETNAME", String.class));
+        Assert.assertEquals(cacheSize + 2, ReflectionHelper.METHOD_CACHE.size());
+
+        // Overloaded methods are cached separately, by parameter types
+        Method setNameInteger = ReflectionHelper.findMethod(TestBean.class, "setName", Integer.class);
+        Assert.assertNotNull(setNameInteger);
+        Assert.assertEquals(Integer.class, setNameInteger.getParameterTypes()[0]);
+        Assert.assertSame(setNameString, ReflectionHelper.findMethod(TestBean.class, "setName", String.class));
+        Assert.assertSame(setNameInteger, ReflectionHelper.findMethod(TestBean.class, "setName", Integer.class));
+        Assert.assertEquals(cacheSize + 3, ReflectionHelper.METHOD_CACHE.size());
+
+        // A failure to find the method is cached too
+        Assert.assertNull(ReflectionHelper.findMethod(TestBean.class, "setName", Long.class));
+        Assert.assertEquals(cacheSize + 4, ReflectionHelper.METHOD_CACHE.size());
+        Assert.assertNull(ReflectionHelper.findMethod(TestBean.class, "setName", Long.class));
+        Assert.assertEquals(cacheSize + 4, ReflectionHelper.METHOD_CACHE.size());
+
+        // Changing the caller's array after the lookup does not change the cached key
+        Class[] parameterTypes = {Boolean.class};
+        Assert.assertNull(ReflectionHelper.findMethod(TestBean.class, "setName", parameterTypes));
+        Assert.assertEquals(cacheSize + 5, ReflectionHelper.METHOD_CACHE.size());
+        parameterTypes[0] = String.class;
+        Assert.assertNull(ReflectionHelper.findMethod(TestBean.class, "setName", Boolean.class));
+        Assert.assertSame(setNameString, ReflectionHelper.findMethod(TestBean.class, "setName", parameterTypes));
+        Assert.assertEquals(cacheSize + 5, ReflectionHelper.METHOD_CACHE.size());
+
+    }
+
+    @Test
+    public void testFieldCache() {
+
+        int cacheSize = ReflectionHelper.FIELD_CACHE.size();
+        Field name = ReflectionHelper.findField(TestBean.class, "Name");
+        Assert.assertNotNull(name);
+        Assert.assertSame(name, ReflectionHelper.findField(TestBean.class, "Name"));
+
+        // The plural form of the name is found for collections
+        Assert.assertEquals("items", ReflectionHelper.findField(TestBean.class, "item").getName());
+
+        Assert.assertNull(ReflectionHelper.findField(TestBean.class, "nickname"));
+        Assert.assertNull(ReflectionHelper.findField(TestBean.class, "nickname"));
+        Assert.assertEquals(cacheSize + 3, ReflectionHelper.FIELD_CACHE.size());
+
+    }
+
+}
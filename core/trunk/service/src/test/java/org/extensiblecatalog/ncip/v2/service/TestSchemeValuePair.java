@@ -13,6 +13,10 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
 
 import static org.hamcrest.CoreMatchers.*;
 
@@ -151,6 +155,125 @@ public class TestSchemeValuePair {
 
     }
 
+    @Test
+    public void testFindIndexed() throws ServiceException, ToolkitException {
+
+        // Scheme and value are compared ignoring case, and the instance found is the one defined first
+        Language copy = new Language(Version1Language.ZAP.getScheme(), Version1Language.ZAP.getValue());
+        Assert.assertSame(Version1Language.ZAP, Language.find(Version1Language.ZAP.getScheme().toUpperCase(),
+            Version1Language.ZAP.getValue().toUpperCase()));
+        Assert.assertSame(Version1Language.ZAP, ServiceHelper.findSchemeValuePair(Language.class,
+            Version1Language.ZAP.getScheme(), Version1Language.ZAP.getValue()));
+
+        // An alias added after the index was built is recognized
+        String LANGUAGE_ALIAS_SCHEME = "http://dummy/languagealias";
+        SchemeValuePair.setSchemeURIAlias(Version1Language.VERSION_1_LANGUAGE, LANGUAGE_ALIAS_SCHEME);
+        Assert.assertSame(Version1Language.ZAP, Language.find(LANGUAGE_ALIAS_SCHEME, Version1Language.ZAP.getValue()));
+
+        // A null scheme matches only if the class allows it, which may be set after the index was built
+        try {
+            Language.find(null, Version1Language.ZAP.getValue());
+            Assert.fail("Language.find(null, \"" + Version1Language.ZAP.getValue()
+                + "\") succeeded when it should fail as Language does not allow null Schemes.");
+        } catch (ServiceException e) {
+            LOG.debug("Exception thrown:", e);
+            Assert.assertTrue(e.getLocalizedMessage().matches("(?i).*no match found for scheme .*"));
+        }
+        Assert.assertNotNull(FiscalActionType.find(Version1FiscalActionType.CANCEL.getScheme(),
+            Version1FiscalActionType.CANCEL.getValue()));
+        SchemeValuePair.allowNullScheme(FiscalActionType.class.getName());
+        Assert.assertEquals(Version1FiscalActionType.CANCEL,
+            FiscalActionType.find(null, Version1FiscalActionType.CANCEL.getValue()));
+
+    }
+
+    public static class TestRaceType extends SchemeValuePair {
+
+        public TestRaceType(String scheme, String value) {
+            super(scheme, value);
+        }
+
+    }
+
+    public static class TestSharedValueType extends SchemeValuePair {
+
+        public TestSharedValueType(String scheme, String value) {
+            super(scheme, value);
+        }
+
+    }
+
+    @Test
+    public void testFindNullSchemeReturnsFirstAdded() {
+
+        // Many Schemes share the Value, so the order they are hashed in is unlikely to be the order they were added
+        SchemeValuePair.allowNullScheme(TestSharedValueType.class.getName());
+        List<TestSharedValueType> values = new ArrayList<TestSharedValueType>();
+        for (int i = 0; i < 32; ++i) {
+            values.add(new TestSharedValueType("http://dummy/sharedvalue/" + (31 - i), "Shared"));
+        }
+        SchemeValueIndex<TestSharedValueType> index = new SchemeValueIndex<TestSharedValueType>(values);
+        Assert.assertSame(values.get(0), index.find(null, "shared"));
+        Assert.assertSame(values.get(5), index.find("http://dummy/sharedvalue/26", "Shared"));
+
+        // An instance with a null Scheme that was added later does not take precedence over the first one
+        values.add(new TestSharedValueType(null, "Shared"));
+        Assert.assertSame(values.get(0), index.find(null, "Shared"));
+
+        // The first instance with a null Scheme is found when no earlier instance allows a null Scheme
+        List<TestSharedValueType> otherValues = new ArrayList<TestSharedValueType>();
+        otherValues.add(new TestSharedValueType(null, "Other"));
+        otherValues.add(new TestSharedValueType("http://dummy/sharedvalue/0", "Other"));
+        index = new SchemeValueIndex<TestSharedValueType>(otherValues);
+        Assert.assertSame(otherValues.get(0), index.find(null, "Other"));
+
+    }
+
+    @Test
+    public void testAddIfAbsentRace() throws InterruptedException {
+
+        final int threadCount = 8;
+        for (int round = 0; round < 200; ++round) {
+
+            final List<TestRaceType> values = Collections.synchronizedList(new ArrayList<TestRaceType>());
+            final CountDownLatch start = new CountDownLatch(1);
+            final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+            List<Thread> threads = new ArrayList<Thread>();
+            for (int i = 0; i < threadCount; ++i) {
+
+                final boolean clearIndexes = i % 2 == 0;
+                Thread thread = new Thread() {
+                    public void run() {
+                        try {
+                            start.await();
+                            // Discarding the indexes (as setSchemeURIAlias does) lets threads build separate ones
+                            if (clearIndexes) {
+                                SchemeValuePair.INDEXES_BY_CLASS.clear();
+                            }
+                            SchemeValuePair.addIfAbsent("http://dummy/racescheme", "value", values,
+                                TestRaceType.class);
+                        } catch (Throwable t) {
+                            failures.add(t);
+                        }
+                    }
+                };
+                threads.add(thread);
+                thread.start();
+
+            }
+
+            start.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            Assert.assertTrue("Failures: " + failures, failures.isEmpty());
+            Assert.assertEquals("Round " + round + " added duplicates.", 1, values.size());
+
+        }
+
+    }
+
     @Test
     public void testMatches() {
 